@@ -0,0 +1,94 @@
+package com.tms.position;
+
+import com.tms.position.entity.Position;
+import com.tms.position.messaging.EnrichedTradeDecoder;
+import com.tms.position.model.EnrichedTrade;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic inputs shared by the benchmarks, so runs of different versions
+ * measure the same work.
+ */
+public final class BenchmarkData {
+
+    public static final LocalDate AS_OF_DATE = LocalDate.of(2024, 1, 15);
+
+    private BenchmarkData() {
+    }
+
+    // A trades.enriched payload with the nesting and extra fields upstream sends
+    public static byte[] tradeJson(int i, String side, String quantity, String price) {
+        String json = "{\"eventId\":\"evt-" + i + "\",\"eventType\":\"TradeEnriched\","
+            + "\"eventTime\":1705312800000,\"tradeId\":\"T-" + i + "\",\"correlationId\":\"corr-" + i + "\","
+            + "\"side\":\"" + side + "\",\"quantity\":\"" + quantity + "\",\"price\":\"" + price + "\","
+            + "\"currency\":\"USD\",\"tradeDate\":\"" + AS_OF_DATE + "\",\"settlementDate\":\"2024-01-17\","
+            + "\"account\":{\"accountId\":" + (1000 + i % 50) + ",\"accountCode\":\"ACC-" + (i % 50) + "\","
+            + "\"accountName\":\"Benchmark account\",\"accountType\":\"INSTITUTIONAL\"},"
+            + "\"instrument\":{\"instrumentId\":" + (2000 + i % 200) + ",\"symbol\":\"SYM" + (i % 200) + "\","
+            + "\"isin\":\"US0000000000\",\"exchange\":\"XNYS\",\"assetClass\":\"EQUITY\"},"
+            + "\"counterparty\":{\"counterpartyId\":42,\"name\":\"Benchmark broker\"}}";
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Alternating buys and sells of one position that cross through flat now and
+     * then, so the average cost, realized P&L and flip branches are all taken.
+     */
+    public static List<EnrichedTrade> tradeCycle(int count, boolean fixedPointFriendly) {
+        EnrichedTradeDecoder decoder = new EnrichedTradeDecoder();
+        SplittableRandom random = new SplittableRandom(7);
+        List<EnrichedTrade> trades = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String side = i % 3 == 2 ? "SELL" : "BUY";
+            String quantity = Integer.toString(100 + random.nextInt(900));
+            String price = (100 + random.nextInt(50)) + "." + (10 + random.nextInt(90));
+            // More fractional digits than the 8 dp scale forces the BigDecimal fallback
+            if (!fixedPointFriendly) {
+                price = price + "00000123";
+            }
+            EnrichedTrade trade = decoder.decode(tradeJson(0, side, quantity, price));
+            trades.add(trade);
+        }
+        return trades;
+    }
+
+    public static Position position(long positionId, int instrument) {
+        SplittableRandom random = new SplittableRandom(positionId);
+        BigDecimal quantity = BigDecimal.valueOf(random.nextInt(1, 10_000)).setScale(8);
+        BigDecimal avgCost = new BigDecimal(random.nextInt(10_00, 500_00)).movePointLeft(2).setScale(8);
+        return Position.builder()
+            .positionId(positionId)
+            .accountId(1000L)
+            .accountCode("ACC-0")
+            .instrumentId(2000L + instrument)
+            .symbol("SYM" + instrument)
+            .quantity(quantity)
+            .avgCost(avgCost)
+            .costBasis(quantity.multiply(avgCost).setScale(4, RoundingMode.HALF_UP))
+            .realizedPnl(new BigDecimal(random.nextInt(-10_000_00, 10_000_00)).movePointLeft(2).setScale(4))
+            .marketValue(quantity.multiply(avgCost).setScale(4, RoundingMode.HALF_UP))
+            .unrealizedPnl(BigDecimal.ZERO.setScale(4))
+            .currency("USD")
+            .asOfDate(AS_OF_DATE)
+            .version(3)
+            .createdAt(LocalDateTime.of(2024, 1, 15, 9, 30))
+            .updatedAt(LocalDateTime.of(2024, 1, 15, 15, 59))
+            .build();
+    }
+
+    public static List<Position> positions(int count) {
+        List<Position> positions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            positions.add(position(i + 1, i % 5000));
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,70 @@
+package com.tms.position.calculation;
+
+import com.tms.position.BenchmarkData;
+import com.tms.position.entity.Position;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.PositionChange;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Average cost and realized P&L calculation: one trade at a time as in record
+ * mode, a poll's worth folded into one change as in batch mode, and the
+ * BigDecimal reference path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionCalculatorBenchmark {
+
+    private static final int TRADES = 500;
+
+    @Param({"true", "false"})
+    public boolean fixedPoint;
+
+    private final PositionCalculator calculator = new PositionCalculator();
+    private final PositionState state = new PositionState();
+    private List<EnrichedTrade> trades;
+    private Position position;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        trades = BenchmarkData.tradeCycle(TRADES, fixedPoint);
+        position = Position.opening(trades.get(0));
+    }
+
+    @Benchmark
+    public PositionChange applySingleTrade() {
+        // Start the cycle over from flat so the position stays in fixed-point range
+        if (next == TRADES) {
+            next = 0;
+            position = Position.opening(trades.get(0));
+        }
+        EnrichedTrade trade = trades.get(next++);
+        return calculator.applyTrades(position, false, List.of(trade), state, "corr");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRADES)
+    public PositionChange applyTradeBatch() {
+        Position fresh = Position.opening(trades.get(0));
+        return calculator.applyTrades(fresh, true, trades, state, "corr");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRADES)
+    public BigDecimal applyReference() {
+        PositionState reference = new PositionState();
+        for (EnrichedTrade trade : trades) {
+            PositionCalculator.applyReference(reference, trade.getSide(), trade.getQuantity(), trade.getPrice());
+        }
+        return reference.lastRealizedPnlDecimal();
+    }
+}
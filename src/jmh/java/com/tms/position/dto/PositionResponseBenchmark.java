@@ -0,0 +1,40 @@
+package com.tms.position.dto;
+
+import com.tms.position.BenchmarkData;
+import com.tms.position.entity.Position;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read-side work per account: mapping a page of positions to responses.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PositionResponseBenchmark {
+
+    @Param({"100", "10000"})
+    public int positionCount;
+
+    private List<Position> positions;
+
+    @Setup
+    public void setUp() {
+        positions = BenchmarkData.positions(positionCount);
+    }
+
+    @Benchmark
+    public List<PositionResponse> mapResponses() {
+        List<PositionResponse> responses = new ArrayList<>(positions.size());
+        for (Position position : positions) {
+            responses.add(PositionResponse.from(position));
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,71 @@
+package com.tms.position.messaging;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tms.common.config.kafka.KafkaTopics;
+import com.tms.position.BenchmarkData;
+import com.tms.position.model.EnrichedTrade;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * trades.enriched decoding: the streaming decoder into a fresh or reused trade and
+ * through the Kafka deserializer, against a Jackson tree parse and the Spring Kafka
+ * JsonDeserializer Map path the consumers used before the decoder existed. Compare
+ * allocation with the gc profiler, the jmh profile's default:
+ * -Djmh.args="EnrichedTradeDecoder -prof gc" and read gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EnrichedTradeDecoderBenchmark {
+
+    private final EnrichedTradeDecoder decoder = new EnrichedTradeDecoder();
+    private final EnrichedTrade reused = new EnrichedTrade();
+    private final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS, true);
+    // Not configured, so no decode timer is recorded
+    private final EnrichedTradeDeserializer deserializer = new EnrichedTradeDeserializer();
+    // As configured before: no type headers on the topic, values bound to a Map
+    private final JsonDeserializer<Map<?, ?>> jsonDeserializer = new JsonDeserializer<>(Map.class, false);
+    private byte[] payload;
+
+    @Setup
+    public void setUp() {
+        payload = BenchmarkData.tradeJson(1, "BUY", "1250.5", "101.2575");
+    }
+
+    @Benchmark
+    public EnrichedTrade decode() {
+        return decoder.decode(payload);
+    }
+
+    @Benchmark
+    public EnrichedTrade decodeReused() {
+        decoder.decode(payload, reused);
+        return reused;
+    }
+
+    @Benchmark
+    public EnrichedTrade deserializer() {
+        return deserializer.deserialize(KafkaTopics.TRADES_ENRICHED, payload);
+    }
+
+    @Benchmark
+    public JsonNode jacksonTree() throws IOException {
+        return objectMapper.readTree(payload);
+    }
+
+    @Benchmark
+    public Map<?, ?> jsonDeserializerMap() {
+        return jsonDeserializer.deserialize(KafkaTopics.TRADES_ENRICHED, payload);
+    }
+}
@@ -0,0 +1,53 @@
+package com.tms.position.messaging;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tms.position.BenchmarkData;
+import com.tms.position.calculation.PositionCalculator;
+import com.tms.position.calculation.PositionState;
+import com.tms.position.entity.Position;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionUpdated;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and serializing one PositionUpdated event: the legacy map through
+ * Jackson, against the compact record in its binary and JSON encodings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionUpdatedBenchmark {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PositionUpdatedCodec codec = new PositionUpdatedCodec();
+    private PositionChange change;
+
+    @Setup
+    public void setUp() {
+        List<EnrichedTrade> trades = BenchmarkData.tradeCycle(3, true);
+        Position position = BenchmarkData.position(42, 7);
+        change = new PositionCalculator().applyTrades(position, false, trades, new PositionState(), "corr");
+    }
+
+    @Benchmark
+    public byte[] legacyMap() throws Exception {
+        return objectMapper.writeValueAsBytes(PositionEventPublisher.legacyEvent(change));
+    }
+
+    @Benchmark
+    public byte[] compactBinary() {
+        return codec.encodeBinary(PositionUpdated.of(change, 1705312800000L));
+    }
+
+    @Benchmark
+    public byte[] compactJson() {
+        return codec.encodeJson(PositionUpdated.of(change, 1705312800000L));
+    }
+}
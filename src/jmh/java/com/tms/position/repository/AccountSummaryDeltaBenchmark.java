@@ -0,0 +1,61 @@
+package com.tms.position.repository;
+
+import com.tms.position.BenchmarkData;
+import com.tms.position.entity.Position;
+import com.tms.position.model.PositionChange;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account summary upkeep of one write-behind flush: folding the flush's changes into
+ * one delta per account and date and binding the MERGE rows. The batch update itself
+ * is stubbed out, so only the in-process cost is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AccountSummaryDeltaBenchmark {
+
+    @Param({"100", "10000"})
+    public int changeCount;
+
+    @Param({"1", "100"})
+    public int accountCount;
+
+    private AccountSummaryJdbcRepository repository;
+    private List<PositionChange> changes;
+    private int rowsBound;
+
+    @Setup
+    public void setUp() {
+        repository = new AccountSummaryJdbcRepository(new JdbcTemplate() {
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                rowsBound += batchArgs.size();
+                return new int[batchArgs.size()];
+            }
+        });
+        List<Position> positions = BenchmarkData.positions(changeCount);
+        changes = new ArrayList<>(positions.size());
+        for (int i = 0; i < positions.size(); i++) {
+            Position position = positions.get(i);
+            position.setAccountCode("ACC-" + (i % accountCount));
+            changes.add(new PositionChange(position, BigDecimal.ZERO, position.getQuantity(),
+                position.getRealizedPnl(), "T-" + i, null, List.of(), i % 10 == 0, position.getCostBasis(), 0));
+        }
+    }
+
+    @Benchmark
+    public int applyChanges() {
+        repository.applyChanges(changes);
+        return rowsBound;
+    }
+}
@@ -0,0 +1,69 @@
+package com.tms.position.loadtest;
+
+/**
+ * Shape of one load run, read from {@code loadtest.*} system properties.
+ *
+ * @param trades           trades in the measured run
+ * @param warmupTrades     trades sent and applied before measuring
+ * @param rate             target trades/second outside bursts; 0 sends as fast as possible
+ * @param burstFactor      rate multiplier during a burst; 1 disables bursts
+ * @param burstEveryMs     time from the start of one burst to the next
+ * @param burstLengthMs    length of a burst
+ * @param accounts         distinct accounts
+ * @param instruments      distinct instruments
+ * @param accountSkew      Zipf exponent over accounts; 0 is uniform
+ * @param instrumentSkew   Zipf exponent over instruments; around 1 gives a few hot symbols
+ * @param partitions       trades.enriched partitions
+ * @param consumerMode     position.consumer.mode of the service under test
+ * @param eventsMode       position.events.mode of the service under test
+ * @param timeoutSeconds   how long to wait for the service to apply the run
+ * @param seed             random seed, so runs of different versions send the same trades
+ * @param report           JSON report file
+ */
+public record LoadProfile(int trades,
+                          int warmupTrades,
+                          int rate,
+                          double burstFactor,
+                          long burstEveryMs,
+                          long burstLengthMs,
+                          int accounts,
+                          int instruments,
+                          double accountSkew,
+                          double instrumentSkew,
+                          int partitions,
+                          String consumerMode,
+                          String eventsMode,
+                          int timeoutSeconds,
+                          long seed,
+                          String report) {
+
+    public static LoadProfile fromSystemProperties() {
+        return new LoadProfile(
+            Integer.getInteger("loadtest.trades", 200_000),
+            Integer.getInteger("loadtest.warmup-trades", 20_000),
+            Integer.getInteger("loadtest.rate", 0),
+            Double.parseDouble(System.getProperty("loadtest.burst-factor", "1")),
+            Long.getLong("loadtest.burst-every-ms", 10_000),
+            Long.getLong("loadtest.burst-length-ms", 1_000),
+            Integer.getInteger("loadtest.accounts", 500),
+            Integer.getInteger("loadtest.instruments", 2_000),
+            Double.parseDouble(System.getProperty("loadtest.account-skew", "0.5")),
+            Double.parseDouble(System.getProperty("loadtest.instrument-skew", "1.0")),
+            Integer.getInteger("loadtest.partitions", 12),
+            System.getProperty("loadtest.consumer-mode", "record"),
+            System.getProperty("loadtest.events-mode", "legacy"),
+            Integer.getInteger("loadtest.timeout-seconds", 900),
+            Long.getLong("loadtest.seed", 42),
+            System.getProperty("loadtest.report", "target/loadtest-report.json"));
+    }
+
+    /**
+     * Target rate at the given time since the start of the run.
+     */
+    public double rateAt(long elapsedMs) {
+        if (burstFactor > 1 && burstEveryMs > 0 && elapsedMs % burstEveryMs < burstLengthMs) {
+            return rate * burstFactor;
+        }
+        return rate;
+    }
+}
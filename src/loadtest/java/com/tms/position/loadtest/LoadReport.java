@@ -0,0 +1,62 @@
+package com.tms.position.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Outcome of a load run. Latency runs from handing a trade to the producer to
+ * receiving the PositionUpdated event it triggered.
+ */
+public record LoadReport(LoadProfile profile,
+                         long trades,
+                         long durationMs,
+                         double tradesPerSecond,
+                         long latencySamples,
+                         double latencyP50Ms,
+                         double latencyP95Ms,
+                         double latencyP99Ms,
+                         double latencyP999Ms,
+                         double latencyMaxMs,
+                         long statements,
+                         double statementsPerTrade,
+                         List<StatementCount> topStatements,
+                         long consumerBytesPerTrade,
+                         long jvmBytesPerTrade) {
+
+    public record StatementCount(long executions, String text) {
+    }
+
+    static double percentileMs(long[] sortedNanos, double percentile) {
+        if (sortedNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))] / 1_000_000.0;
+    }
+
+    static long[] sorted(long[] values, int count) {
+        long[] copy = Arrays.copyOf(values, count);
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    public String toText() {
+        StringBuilder text = new StringBuilder();
+        text.append(String.format(Locale.ROOT, "%n=== Position pipeline load test (%s consumer, %s events) ===%n",
+            profile.consumerMode(), profile.eventsMode()));
+        text.append(String.format(Locale.ROOT, "Trades:               %,d in %,d ms%n", trades, durationMs));
+        text.append(String.format(Locale.ROOT, "Throughput:           %,.0f trades/s%n", tradesPerSecond));
+        text.append(String.format(Locale.ROOT,
+            "Latency (ms):         p50 %.2f  p95 %.2f  p99 %.2f  p99.9 %.2f  max %.2f  (%,d samples)%n",
+            latencyP50Ms, latencyP95Ms, latencyP99Ms, latencyP999Ms, latencyMaxMs, latencySamples));
+        text.append(String.format(Locale.ROOT, "SQL statements:       %,d (%.2f per trade)%n",
+            statements, statementsPerTrade));
+        for (StatementCount statement : topStatements) {
+            text.append(String.format(Locale.ROOT, "  %,12d  %s%n", statement.executions(), statement.text()));
+        }
+        text.append(String.format(Locale.ROOT, "Allocated per trade:  %,d B on consumer threads, %,d B in the JVM%n",
+            consumerBytesPerTrade, jvmBytesPerTrade));
+        return text.toString();
+    }
+}
@@ -0,0 +1,306 @@
+package com.tms.position.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tms.common.config.kafka.KafkaTopics;
+import com.tms.position.PositionServiceApplication;
+import com.tms.position.messaging.PositionUpdatedCodec;
+import com.tms.position.messaging.PositionUpdatedSerializer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.kafka.test.EmbeddedKafkaKraftBroker;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.MSSQLServerContainer;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives generated trades through the trades.enriched to positions.updated
+ * pipeline of a full service instance and reports throughput, end-to-end latency,
+ * SQL statements and allocation per trade.
+ *
+ * <p>Stand-ins: an embedded KRaft Kafka broker in this JVM, and SQL Server and
+ * Redis in local containers, so a Docker daemon is required.
+ */
+public final class PositionLoadTest {
+
+    private static final String SQL_SERVER_IMAGE = "mcr.microsoft.com/mssql/server:2022-latest";
+    private static final String REDIS_IMAGE = "redis:7-alpine";
+
+    private final LoadProfile profile;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PositionUpdatedCodec codec = new PositionUpdatedCodec();
+    private final Map<String, Long> sentNanos = new ConcurrentHashMap<>();
+    private final AtomicInteger latencyCount = new AtomicInteger();
+    private final long[] latencies;
+    private volatile boolean measuring;
+    private volatile boolean running = true;
+
+    private PositionLoadTest(LoadProfile profile) {
+        this.profile = profile;
+        this.latencies = new long[profile.trades()];
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile = LoadProfile.fromSystemProperties();
+        LoadReport report = new PositionLoadTest(profile).run();
+        System.out.println(report.toText());
+
+        File file = new File(profile.report());
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper().findAndRegisterModules().writerWithDefaultPrettyPrinter().writeValue(file, report);
+        System.out.println("Report written to " + file.getAbsolutePath());
+        System.exit(0);
+    }
+
+    private LoadReport run() throws Exception {
+        try (MSSQLServerContainer<?> sqlServer = new MSSQLServerContainer<>(SQL_SERVER_IMAGE).acceptLicense();
+             GenericContainer<?> redis = new GenericContainer<>(REDIS_IMAGE).withExposedPorts(6379)) {
+            sqlServer.start();
+            redis.start();
+            EmbeddedKafkaKraftBroker kafka = new EmbeddedKafkaKraftBroker(1, profile.partitions(),
+                KafkaTopics.TRADES_ENRICHED, KafkaTopics.POSITIONS_UPDATED);
+            kafka.afterPropertiesSet();
+
+            try (ConfigurableApplicationContext service = startService(sqlServer, redis, kafka);
+                 KafkaProducer<String, byte[]> producer = producer(kafka);
+                 Connection sql = DriverManager.getConnection(sqlServer.getJdbcUrl(), sqlServer.getUsername(),
+                     sqlServer.getPassword())) {
+
+                Thread listener = Thread.ofPlatform().name("loadtest-listener").start(() -> listen(kafka));
+                TradeGenerator generator = new TradeGenerator(profile, UUID.randomUUID().toString().substring(0, 8));
+
+                System.out.printf("Warming up with %,d trades%n", profile.warmupTrades());
+                send(producer, generator, profile.warmupTrades());
+                awaitApplied(sql, profile.warmupTrades());
+
+                execute(sql, "DBCC FREEPROCCACHE WITH NO_INFOMSGS");
+                long consumerBytes = allocatedBytes(true);
+                long jvmBytes = allocatedBytes(false);
+                measuring = true;
+
+                System.out.printf("Sending %,d trades%n", profile.trades());
+                long start = System.nanoTime();
+                send(producer, generator, profile.trades());
+                awaitApplied(sql, profile.warmupTrades() + profile.trades());
+                long durationNanos = System.nanoTime() - start;
+                // Let the events of the last trades arrive
+                TimeUnit.SECONDS.sleep(2);
+                measuring = false;
+
+                consumerBytes = allocatedBytes(true) - consumerBytes;
+                jvmBytes = allocatedBytes(false) - jvmBytes;
+                long statements = queryLong(sql,
+                    "SELECT COALESCE(SUM(execution_count), 0) FROM sys.dm_exec_query_stats");
+                List<LoadReport.StatementCount> topStatements = topStatements(sql);
+
+                running = false;
+                listener.join(5_000);
+                return report(durationNanos, statements, topStatements, consumerBytes, jvmBytes);
+            } finally {
+                kafka.destroy();
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startService(MSSQLServerContainer<?> sqlServer, GenericContainer<?> redis,
+                                                        EmbeddedKafkaKraftBroker kafka) {
+        // Command line arguments override application.yml
+        return new SpringApplicationBuilder(PositionServiceApplication.class).run(
+            "--server.port=0",
+            "--spring.datasource.url=" + sqlServer.getJdbcUrl(),
+            "--spring.datasource.username=" + sqlServer.getUsername(),
+            "--spring.datasource.password=" + sqlServer.getPassword(),
+            "--spring.data.redis.host=" + redis.getHost(),
+            "--spring.data.redis.port=" + redis.getMappedPort(6379),
+            "--spring.kafka.bootstrap-servers=" + kafka.getBrokersAsString(),
+            "--position.consumer.mode=" + profile.consumerMode(),
+            "--position.events.mode=" + profile.eventsMode(),
+            "--logging.level.com.tms.position=WARN");
+    }
+
+    private KafkaProducer<String, byte[]> producer(EmbeddedKafkaKraftBroker kafka) {
+        return new KafkaProducer<>(Map.of(
+            ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, kafka.getBrokersAsString(),
+            ProducerConfig.LINGER_MS_CONFIG, 5,
+            ProducerConfig.ACKS_CONFIG, "1"),
+            new StringSerializer(), new ByteArraySerializer());
+    }
+
+    private void send(KafkaProducer<String, byte[]> producer, TradeGenerator generator, int count) {
+        long start = System.nanoTime();
+        long due = start;
+        for (int i = 0; i < count; i++) {
+            if (profile.rate() > 0) {
+                long now = System.nanoTime();
+                if (due > now) {
+                    LockSupport.parkNanos(due - now);
+                }
+                due += (long) (1_000_000_000L / profile.rateAt((due - start) / 1_000_000));
+            }
+            TradeGenerator.Trade trade = generator.next();
+            if (measuring) {
+                sentNanos.put(trade.tradeId(), System.nanoTime());
+            }
+            producer.send(new ProducerRecord<>(KafkaTopics.TRADES_ENRICHED, trade.key(), trade.payload()));
+        }
+        producer.flush();
+    }
+
+    // Matches each PositionUpdated event to the trade that triggered it
+    private void listen(EmbeddedKafkaKraftBroker kafka) {
+        try (KafkaConsumer<String, byte[]> consumer = new KafkaConsumer<>(Map.of(
+                ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, kafka.getBrokersAsString(),
+                ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false),
+                new StringDeserializer(), new ByteArrayDeserializer())) {
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (PartitionInfo info : consumer.partitionsFor(KafkaTopics.POSITIONS_UPDATED)) {
+                partitions.add(new TopicPartition(info.topic(), info.partition()));
+            }
+            consumer.assign(partitions);
+            consumer.seekToEnd(partitions);
+
+            while (running) {
+                for (ConsumerRecord<String, byte[]> record : consumer.poll(Duration.ofMillis(100))) {
+                    long received = System.nanoTime();
+                    Long sent = sentNanos.remove(triggeringTradeId(record));
+                    if (sent != null) {
+                        int index = latencyCount.getAndIncrement();
+                        if (index < latencies.length) {
+                            latencies[index] = received - sent;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private String triggeringTradeId(ConsumerRecord<String, byte[]> record) {
+        try {
+            Header format = record.headers().lastHeader(PositionUpdatedSerializer.FORMAT_HEADER);
+            if (format != null && new String(format.value(), StandardCharsets.UTF_8)
+                    .startsWith(PositionUpdatedCodec.FORMAT_BINARY)) {
+                return codec.decodeBinary(record.value()).triggeringTradeId();
+            }
+            JsonNode event = objectMapper.readTree(record.value());
+            return event.path("triggeringTradeId").asText(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Every applied trade leaves one position_history row, in all consumer modes
+    private void awaitApplied(Connection sql, long expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(profile.timeoutSeconds());
+        long applied = 0;
+        while (System.nanoTime() < deadline) {
+            applied = queryLong(sql, "SELECT COUNT_BIG(*) FROM position_history WHERE change_reason = 'TRADE'");
+            if (applied >= expected) {
+                return;
+            }
+            TimeUnit.MILLISECONDS.sleep(100);
+        }
+        throw new IllegalStateException("Only " + applied + " of " + expected + " trades applied before the timeout");
+    }
+
+    private LoadReport report(long durationNanos, long statements, List<LoadReport.StatementCount> topStatements,
+                              long consumerBytes, long jvmBytes) {
+        long trades = profile.trades();
+        int samples = Math.min(latencyCount.get(), latencies.length);
+        long[] sorted = LoadReport.sorted(latencies, samples);
+        return new LoadReport(profile, trades,
+            TimeUnit.NANOSECONDS.toMillis(durationNanos),
+            trades * 1_000_000_000.0 / durationNanos,
+            samples,
+            LoadReport.percentileMs(sorted, 0.50),
+            LoadReport.percentileMs(sorted, 0.95),
+            LoadReport.percentileMs(sorted, 0.99),
+            LoadReport.percentileMs(sorted, 0.999),
+            LoadReport.percentileMs(sorted, 1.0),
+            statements,
+            (double) statements / trades,
+            topStatements,
+            consumerBytes / trades,
+            jvmBytes / trades);
+    }
+
+    private static List<LoadReport.StatementCount> topStatements(Connection sql) throws SQLException {
+        List<LoadReport.StatementCount> top = new ArrayList<>();
+        try (Statement statement = sql.createStatement();
+             ResultSet rs = statement.executeQuery(
+                 "SELECT TOP 10 SUM(s.execution_count) AS executions, " +
+                 "    MIN(LEFT(REPLACE(REPLACE(t.text, CHAR(13), ' '), CHAR(10), ' '), 160)) AS text " +
+                 "FROM sys.dm_exec_query_stats s CROSS APPLY sys.dm_exec_sql_text(s.sql_handle) t " +
+                 "GROUP BY s.query_hash ORDER BY executions DESC")) {
+            while (rs.next()) {
+                top.add(new LoadReport.StatementCount(rs.getLong("executions"), rs.getString("text").strip()));
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Bytes allocated so far by live platform threads; with {@code consumerOnly},
+     * only by listener container consumers and the service's own worker threads.
+     * Work on virtual threads, as in parallel mode, is not attributed.
+     */
+    private static long allocatedBytes(boolean consumerOnly) {
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!consumerOnly) {
+            return threads.getTotalThreadAllocatedBytes();
+        }
+        long total = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            String name = thread.getName();
+            if (name.contains("-C-") || name.startsWith("position-")) {
+                total += Math.max(0, threads.getThreadAllocatedBytes(thread.threadId()));
+            }
+        }
+        return total;
+    }
+
+    private static long queryLong(Connection sql, String query) throws SQLException {
+        try (Statement statement = sql.createStatement(); ResultSet rs = statement.executeQuery(query)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    private static void execute(Connection sql, String command) throws SQLException {
+        try (Statement statement = sql.createStatement()) {
+            statement.execute(command);
+        }
+    }
+}
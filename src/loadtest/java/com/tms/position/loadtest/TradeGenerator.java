@@ -0,0 +1,86 @@
+package com.tms.position.loadtest;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Enriched trades in the trades.enriched wire format. Accounts and instruments
+ * are drawn from Zipf distributions, so a few of each take most of the flow, and
+ * every instrument's price follows its own random walk.
+ */
+public class TradeGenerator {
+
+    private final SplittableRandom random;
+    private final double[] accountCdf;
+    private final double[] instrumentCdf;
+    private final long[] pricesInCents;
+    private final String runId;
+    private final LocalDate tradeDate = LocalDate.now();
+    private long sequence;
+
+    public record Trade(String tradeId, String key, byte[] payload) {
+    }
+
+    public TradeGenerator(LoadProfile profile, String runId) {
+        this.random = new SplittableRandom(profile.seed());
+        this.accountCdf = zipfCdf(profile.accounts(), profile.accountSkew());
+        this.instrumentCdf = zipfCdf(profile.instruments(), profile.instrumentSkew());
+        this.pricesInCents = new long[profile.instruments()];
+        for (int i = 0; i < pricesInCents.length; i++) {
+            pricesInCents[i] = 1_000 + random.nextInt(49_000);
+        }
+        this.runId = runId;
+    }
+
+    public Trade next() {
+        int account = sample(accountCdf);
+        int instrument = sample(instrumentCdf);
+        long seq = sequence++;
+
+        // Up to 0.5% per trade, never below one dollar
+        long price = pricesInCents[instrument];
+        price = Math.max(100, price + (long) (price * (random.nextDouble() - 0.5) * 0.01));
+        pricesInCents[instrument] = price;
+
+        String tradeId = "LT-" + runId + "-" + seq;
+        String accountCode = "LT-ACC-" + account;
+        String side = random.nextInt(10) < 6 ? "BUY" : "SELL";
+        int quantity = 1 + random.nextInt(1_000);
+        String json = "{\"eventId\":\"evt-" + tradeId + "\",\"eventType\":\"TradeEnriched\","
+            + "\"eventTime\":" + System.currentTimeMillis() + ","
+            + "\"tradeId\":\"" + tradeId + "\",\"correlationId\":\"" + tradeId + "\","
+            + "\"side\":\"" + side + "\",\"quantity\":\"" + quantity + "\","
+            + "\"price\":\"" + BigDecimal.valueOf(price, 2).setScale(4, RoundingMode.UNNECESSARY) + "\","
+            + "\"currency\":\"USD\",\"tradeDate\":\"" + tradeDate + "\","
+            + "\"settlementDate\":\"" + tradeDate.plusDays(2) + "\","
+            + "\"account\":{\"accountId\":" + (100_000 + account) + ",\"accountCode\":\"" + accountCode + "\","
+            + "\"accountName\":\"Load test account " + account + "\",\"accountType\":\"INSTITUTIONAL\"},"
+            + "\"instrument\":{\"instrumentId\":" + (200_000 + instrument) + ",\"symbol\":\"LT" + instrument + "\","
+            + "\"isin\":\"XS" + String.format("%010d", instrument) + "\",\"exchange\":\"XNYS\","
+            + "\"assetClass\":\"EQUITY\"}}";
+        // Keyed by account code, as the upstream enrichment service does
+        return new Trade(tradeId, accountCode, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private int sample(double[] cdf) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return index >= 0 ? index : Math.min(-index - 1, cdf.length - 1);
+    }
+
+    private static double[] zipfCdf(int size, double exponent) {
+        double[] cdf = new double[size];
+        double total = 0;
+        for (int k = 0; k < size; k++) {
+            total += 1 / Math.pow(k + 1, exponent);
+            cdf[k] = total;
+        }
+        for (int k = 0; k < size; k++) {
+            cdf[k] /= total;
+        }
+        return cdf;
+    }
+}
@@ -3,9 +3,11 @@ package com.tms.position;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @ComponentScan(basePackages = {"com.tms.position", "com.tms.common"})
+@EnableScheduling
 public class PositionServiceApplication {
 
     public static void main(String[] args) {
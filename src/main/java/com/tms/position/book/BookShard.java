@@ -0,0 +1,33 @@
+package com.tms.position.book;
+
+import com.tms.position.entity.Position;
+import com.tms.position.model.PositionKey;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Positions owned by one assigned Kafka partition. Not thread-safe on its own;
+ * {@link PositionBook} guards every access with the shard's monitor.
+ */
+class BookShard {
+
+    final int partition;
+    final Map<PositionKey, Position> positions = new HashMap<>();
+    final Map<String, Set<PositionKey>> keysByAccount = new HashMap<>();
+
+    // Date for which the shard holds every row of its accounts, or null
+    LocalDate preloadedDate;
+
+    BookShard(int partition) {
+        this.partition = partition;
+    }
+
+    void put(PositionKey key, Position position) {
+        positions.put(key, position);
+        keysByAccount.computeIfAbsent(position.getAccountCode(), a -> new HashSet<>()).add(key);
+    }
+}
@@ -0,0 +1,257 @@
+package com.tms.position.book;
+
+import com.tms.common.observability.logging.CorrelationIdFilter;
+import com.tms.position.calculation.PositionCalculator;
+import com.tms.position.calculation.PositionState;
+import com.tms.position.entity.Position;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionKey;
+import com.tms.position.repository.PositionJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.utils.Utils;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory position book, sharded by trades.enriched partition and keyed by
+ * (accountId, instrumentId, asOfDate). Trades are applied here first; the
+ * resulting positions are handed to the {@link WriteBehindFlusher}, which makes
+ * them durable and only then acknowledges the Kafka offsets.
+ */
+@Component
+@ConditionalOnProperty(name = "position.consumer.mode", havingValue = "book")
+@RequiredArgsConstructor
+@Slf4j
+public class PositionBook {
+
+    private final PositionJdbcRepository positionJdbcRepository;
+    private final PositionCalculator positionCalculator;
+    private final WriteBehindFlusher writeBehindFlusher;
+
+    private final Map<Integer, BookShard> shards = new ConcurrentHashMap<>();
+    private final Map<Long, PositionKey> keysById = new ConcurrentHashMap<>();
+
+    private volatile int partitionCount;
+    // Cleared when a trade arrives on a partition other than its account's; reads then go to the database
+    private volatile boolean accountAffinity = true;
+
+    public void assign(Collection<Integer> partitions, int partitionCount, boolean preload) {
+        this.partitionCount = partitionCount;
+        List<BookShard> added = new ArrayList<>();
+        for (Integer partition : partitions) {
+            if (!shards.containsKey(partition)) {
+                BookShard shard = new BookShard(partition);
+                shards.put(partition, shard);
+                added.add(shard);
+            }
+        }
+        if (added.isEmpty() || !preload) {
+            return;
+        }
+
+        LocalDate today = LocalDate.now();
+        Map<Integer, BookShard> byPartition = new HashMap<>();
+        added.forEach(shard -> byPartition.put(shard.partition, shard));
+
+        int loaded = 0;
+        for (Position position : positionJdbcRepository.findByAsOfDate(today)) {
+            BookShard shard = byPartition.get(partitionFor(position.getAccountCode()));
+            if (shard != null) {
+                synchronized (shard) {
+                    shard.put(PositionJdbcRepository.keyOf(position), position);
+                }
+                keysById.put(position.getPositionId(), PositionJdbcRepository.keyOf(position));
+                loaded++;
+            }
+        }
+        for (BookShard shard : added) {
+            synchronized (shard) {
+                shard.preloadedDate = today;
+            }
+        }
+        log.info("Position book assigned partitions={}, preloaded positions={}", partitions, loaded);
+    }
+
+    public void release(Collection<Integer> partitions) {
+        for (Integer partition : partitions) {
+            BookShard shard = shards.remove(partition);
+            if (shard != null) {
+                synchronized (shard) {
+                    shard.positions.values().forEach(p -> {
+                        if (p.getPositionId() != null) {
+                            keysById.remove(p.getPositionId());
+                        }
+                    });
+                }
+            }
+        }
+        log.info("Position book released partitions={}", partitions);
+    }
+
+    /**
+     * Applies a poll to the book and queues the resulting positions for flushing.
+     * The acknowledgment is completed by the flusher once the flush is durable.
+     */
+    public void apply(List<ConsumerRecord<String, EnrichedTrade>> records, Acknowledgment acknowledgment) {
+        String fallbackCorrelationId = CorrelationIdFilter.getCurrentCorrelationId();
+
+        Map<PositionKey, List<EnrichedTrade>> tradesByKey = new LinkedHashMap<>();
+        Map<PositionKey, BookShard> shardByKey = new HashMap<>();
+        Map<Integer, List<PositionChange>> changesByPartition = new HashMap<>();
+        for (ConsumerRecord<String, EnrichedTrade> record : records) {
+            changesByPartition.computeIfAbsent(record.partition(), p -> new ArrayList<>());
+            EnrichedTrade trade = record.value();
+            if (trade == null) {
+                log.error("Skipping undecodable enriched trade: partition={}, offset={}",
+                    record.partition(), record.offset());
+                continue;
+            }
+            if (accountAffinity && partitionCount > 0 && partitionFor(trade.getAccountCode()) != record.partition()) {
+                accountAffinity = false;
+                log.warn("Trades are not partitioned by account code; serving position reads from the database");
+            }
+            PositionKey key = trade.positionKey();
+            tradesByKey.computeIfAbsent(key, k -> new ArrayList<>()).add(trade);
+            shardByKey.putIfAbsent(key, shardFor(record.partition()));
+        }
+
+        Map<PositionKey, Position> priors = loadMissing(shardByKey);
+
+        PositionState state = new PositionState();
+        for (Map.Entry<PositionKey, List<EnrichedTrade>> entry : tradesByKey.entrySet()) {
+            BookShard shard = shardByKey.get(entry.getKey());
+            synchronized (shard) {
+                Position position = shard.positions.get(entry.getKey());
+                boolean opened = position == null;
+                if (opened) {
+                    position = Position.opening(entry.getValue().get(0), priors.get(entry.getKey()));
+                    shard.put(entry.getKey(), position);
+                }
+                PositionChange change = positionCalculator.applyTrades(position, opened, entry.getValue(), state,
+                    fallbackCorrelationId);
+                // The flusher works on a snapshot so later trades can keep mutating the book entry
+                changesByPartition.get(shard.partition).add(change.withPosition(position.toBuilder().build()));
+            }
+        }
+
+        writeBehindFlusher.submit(changesByPartition, acknowledgment);
+    }
+
+    // Called by the flusher once a new position has its generated id
+    void positionPersisted(PositionKey key, Position stored) {
+        keysById.put(stored.getPositionId(), key);
+        for (BookShard shard : shards.values()) {
+            synchronized (shard) {
+                Position position = shard.positions.get(key);
+                if (position != null) {
+                    position.setPositionId(stored.getPositionId());
+                    position.setCreatedAt(stored.getCreatedAt());
+                    position.setUpdatedAt(stored.getUpdatedAt());
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Positions of an account, if the partition owning the account is local and
+     * fully loaded for the date. Empty means the caller must ask the database.
+     */
+    public Optional<List<Position>> findByAccount(String accountCode, LocalDate asOfDate) {
+        if (!accountAffinity || partitionCount == 0) {
+            return Optional.empty();
+        }
+        BookShard shard = shards.get(partitionFor(accountCode));
+        if (shard == null) {
+            return Optional.empty();
+        }
+        synchronized (shard) {
+            if (!asOfDate.equals(shard.preloadedDate)) {
+                return Optional.empty();
+            }
+            List<Position> positions = new ArrayList<>();
+            for (PositionKey key : shard.keysByAccount.getOrDefault(accountCode, Set.of())) {
+                Position position = shard.positions.get(key);
+                if (key.asOfDate().equals(asOfDate)) {
+                    positions.add(position.toBuilder().build());
+                }
+            }
+            positions.sort(Comparator.comparing(Position::getSymbol));
+            return Optional.of(positions);
+        }
+    }
+
+    public Optional<Position> findById(Long positionId) {
+        PositionKey key = keysById.get(positionId);
+        if (key == null) {
+            return Optional.empty();
+        }
+        for (BookShard shard : shards.values()) {
+            synchronized (shard) {
+                Position position = shard.positions.get(key);
+                if (position != null) {
+                    return Optional.of(position.toBuilder().build());
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Loads rows the book does not hold yet and returns, for keys that are new on
+    // their date, the earlier row to carry forward
+    private Map<PositionKey, Position> loadMissing(Map<PositionKey, BookShard> shardByKey) {
+        List<PositionKey> missing = new ArrayList<>();
+        List<PositionKey> absent = new ArrayList<>();
+        for (Map.Entry<PositionKey, BookShard> entry : shardByKey.entrySet()) {
+            BookShard shard = entry.getValue();
+            synchronized (shard) {
+                if (shard.positions.containsKey(entry.getKey())) {
+                    continue;
+                }
+                // A preloaded shard already holds every row of its accounts for that date
+                if (accountAffinity && entry.getKey().asOfDate().equals(shard.preloadedDate)) {
+                    absent.add(entry.getKey());
+                } else {
+                    missing.add(entry.getKey());
+                }
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            Map<PositionKey, Position> loaded = positionJdbcRepository.findByKeys(missing);
+            loaded.forEach((key, position) -> {
+                BookShard shard = shardByKey.get(key);
+                synchronized (shard) {
+                    shard.put(key, position);
+                }
+                keysById.put(position.getPositionId(), key);
+            });
+            for (PositionKey key : missing) {
+                if (!loaded.containsKey(key)) {
+                    absent.add(key);
+                }
+            }
+        }
+
+        return absent.isEmpty() ? Map.of() : positionJdbcRepository.findLatestBefore(absent);
+    }
+
+    private BookShard shardFor(int partition) {
+        // Records can only arrive for assigned partitions, but tolerate a listener racing a rebalance
+        return shards.computeIfAbsent(partition, BookShard::new);
+    }
+
+    // Mirrors the default producer partitioner for a String key
+    private int partitionFor(String accountCode) {
+        return Utils.toPositive(Utils.murmur2(accountCode.getBytes(StandardCharsets.UTF_8))) % partitionCount;
+    }
+}
@@ -0,0 +1,45 @@
+package com.tms.position.book;
+
+import com.tms.common.config.kafka.KafkaTopics;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.messaging.TradePartitionListener;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+@Component
+@Order(0)
+@ConditionalOnProperty(name = "position.consumer.mode", havingValue = "book")
+@RequiredArgsConstructor
+@Slf4j
+public class PositionBookPartitionListener implements TradePartitionListener {
+
+    private static final Duration REVOKE_FLUSH_TIMEOUT = Duration.ofSeconds(30);
+
+    private final PositionBook positionBook;
+    private final WriteBehindFlusher writeBehindFlusher;
+    private final PositionProperties properties;
+
+    @Override
+    public void onTradePartitionsAssigned(Consumer<?, ?> consumer, List<Integer> partitions) {
+        int partitionCount = consumer.partitionsFor(KafkaTopics.TRADES_ENRICHED).size();
+        positionBook.assign(partitions, partitionCount, properties.getBook().isPreload());
+    }
+
+    // Drain first so the container's commit on revocation covers everything applied. Whatever
+    // did not drain is fenced, so it cannot overwrite the new owner's rows
+    @Override
+    public void onTradePartitionsRevoked(Consumer<?, ?> consumer, List<Integer> partitions) {
+        if (!writeBehindFlusher.awaitFlushed(REVOKE_FLUSH_TIMEOUT)) {
+            log.warn("Position write-behind not drained before revocation; uncommitted trades will be redelivered");
+        }
+        writeBehindFlusher.fence(partitions);
+        positionBook.release(partitions);
+    }
+}
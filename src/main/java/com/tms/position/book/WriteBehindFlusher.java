@@ -0,0 +1,281 @@
+package com.tms.position.book;
+
+import com.tms.common.observability.metrics.TradeMetrics;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dedup.TradeDedupFilter;
+import com.tms.position.entity.Position;
+import com.tms.position.messaging.PositionEventPublisher;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionKey;
+import com.tms.position.repository.AccountSummaryJdbcRepository;
+import com.tms.position.repository.PositionJdbcRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Single-threaded write-behind for the position book. Requests are flushed in
+ * submission order; consecutive requests are coalesced into one transaction.
+ * Events are published and offsets acknowledged only after the covering
+ * transaction has committed, so a committed offset never points past a
+ * position change that is not yet durable.
+ *
+ * <p>Revoked partitions are fenced: their queued changes are dropped, a retry in
+ * progress starts over without them, and requests covering them are not
+ * acknowledged. The new owner replays those trades from the committed offsets.
+ * A fence waits for a commit in progress, and a commit for a fence in progress,
+ * so a revoked owner never commits once fence() has returned.
+ * Trades are marked applied for deduplication only once committed and unfenced.
+ */
+@Component
+@ConditionalOnProperty(name = "position.consumer.mode", havingValue = "book")
+@RequiredArgsConstructor
+@Slf4j
+public class WriteBehindFlusher {
+
+    private final PositionJdbcRepository positionJdbcRepository;
+    private final AccountSummaryJdbcRepository accountSummaryJdbcRepository;
+    private final PositionEventPublisher positionEventPublisher;
+    private final TradeDedupFilter tradeDedupFilter;
+    private final TransactionTemplate transactionTemplate;
+    private final TradeMetrics tradeMetrics;
+    private final PositionProperties properties;
+    private final ObjectProvider<PositionBook> positionBook;
+
+    private BlockingQueue<FlushRequest> queue;
+    private Thread flusherThread;
+    private volatile boolean running;
+    // Partition -> times it was fenced; requests remember the count they were submitted under
+    private final Map<Integer, Integer> epochs = new ConcurrentHashMap<>();
+    // Moves on every fence, so a flush in progress notices it
+    private final AtomicInteger fences = new AtomicInteger();
+    // Held by fence() and from the last fence check until the commit returns
+    private final ReentrantLock fenceLock = new ReentrantLock();
+
+    @PostConstruct
+    void start() {
+        queue = new LinkedBlockingQueue<>(properties.getBook().getQueueCapacity());
+        running = true;
+        flusherThread = new Thread(this::run, "position-write-behind");
+        flusherThread.setDaemon(true);
+        flusherThread.start();
+    }
+
+    @PreDestroy
+    void stop() throws InterruptedException {
+        awaitFlushed(Duration.ofSeconds(30));
+        running = false;
+        flusherThread.interrupt();
+        flusherThread.join(5000);
+    }
+
+    /**
+     * Queues one poll's changes keyed by partition. The keys cover every partition of
+     * the poll, also those without changes, as the acknowledgment covers them all.
+     * Blocks when the queue is full, which back-pressures the listener.
+     */
+    public void submit(Map<Integer, List<PositionChange>> changesByPartition, Acknowledgment acknowledgment) {
+        Map<Integer, Integer> submittedEpochs = new HashMap<>();
+        changesByPartition.keySet().forEach(partition -> submittedEpochs.put(partition, epoch(partition)));
+        try {
+            queue.put(new FlushRequest(changesByPartition, submittedEpochs, acknowledgment, null));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing position flush", e);
+        }
+    }
+
+    /**
+     * Waits until everything submitted so far is durable and acknowledged.
+     */
+    public boolean awaitFlushed(Duration timeout) {
+        CompletableFuture<Void> barrier = new CompletableFuture<>();
+        try {
+            if (!queue.offer(new FlushRequest(Map.of(), Map.of(), null, barrier),
+                    timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            barrier.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("Timed out waiting for position write-behind to drain", e);
+            return false;
+        }
+    }
+
+    /**
+     * Stops flushing the partitions' queued changes: their new owner may already be
+     * writing the same positions. Called from the consumer thread on revocation.
+     */
+    public void fence(Collection<Integer> partitions) {
+        fenceLock.lock();
+        try {
+            partitions.forEach(partition -> epochs.merge(partition, 1, Integer::sum));
+            fences.incrementAndGet();
+        } finally {
+            fenceLock.unlock();
+        }
+    }
+
+    private int epoch(int partition) {
+        return epochs.getOrDefault(partition, 0);
+    }
+
+    private boolean fenced(FlushRequest request, int partition) {
+        return request.epochs().get(partition) != epoch(partition);
+    }
+
+    private void run() {
+        List<FlushRequest> drained = new ArrayList<>();
+        while (running) {
+            try {
+                drained.add(queue.take());
+                queue.drainTo(drained);
+                flush(drained);
+                drained.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flush(List<FlushRequest> requests) throws InterruptedException {
+        Map<PositionKey, Position> latest = new LinkedHashMap<>();
+        boolean persisted = false;
+        while (!persisted) {
+            int fencesSeen = fences.get();
+            List<PositionChange> changes = new ArrayList<>();
+            for (FlushRequest request : requests) {
+                for (Map.Entry<Integer, List<PositionChange>> entry : request.changesByPartition().entrySet()) {
+                    if (!fenced(request, entry.getKey())) {
+                        changes.addAll(entry.getValue());
+                    }
+                }
+            }
+            // Last snapshot per key wins; requests are in submission order
+            latest.clear();
+            for (PositionChange change : changes) {
+                latest.put(PositionJdbcRepository.keyOf(change.position()), change.position());
+            }
+            persisted = latest.isEmpty() || persist(new ArrayList<>(latest.values()), changes, latest, fencesSeen);
+        }
+
+        PositionBook book = positionBook.getIfAvailable();
+        List<PositionChange> applied = new ArrayList<>();
+        for (FlushRequest request : requests) {
+            boolean fenced = false;
+            for (Map.Entry<Integer, List<PositionChange>> entry : request.changesByPartition().entrySet()) {
+                // Persisted before a later fence, but the shard is gone and its offsets are no longer ours
+                if (fenced(request, entry.getKey())) {
+                    fenced = true;
+                    continue;
+                }
+                for (PositionChange change : entry.getValue()) {
+                    Position stored = latest.get(PositionJdbcRepository.keyOf(change.position()));
+                    if (book != null && change.position() == stored) {
+                        book.positionPersisted(PositionJdbcRepository.keyOf(stored), stored);
+                    }
+                    change.position().setUpdatedAt(stored.getUpdatedAt());
+                    positionEventPublisher.publish(change);
+                    tradeMetrics.incrementPositionsUpdated();
+                }
+                applied.addAll(entry.getValue());
+            }
+            // Trades of fenced partitions stay unmarked, so their redelivery is not taken for a duplicate
+            tradeDedupFilter.markChangesApplied(applied);
+            applied.clear();
+            if (fenced) {
+                log.warn("Dropped position flush of revoked partitions: partitions={}",
+                    request.changesByPartition().keySet());
+            } else if (request.acknowledgment() != null) {
+                request.acknowledgment().acknowledge();
+            }
+            if (request.barrier() != null) {
+                request.barrier().complete(null);
+            }
+        }
+    }
+
+    /**
+     * Retries until durable: offsets stay uncommitted meanwhile and the bounded queue
+     * stalls the listener. Returns false, with nothing written, once a partition is
+     * fenced after fencesSeen; the caller then starts over without it.
+     */
+    private boolean persist(List<Position> positions, List<PositionChange> changes,
+                            Map<PositionKey, Position> latest, int fencesSeen) throws InterruptedException {
+        int chunkSize = properties.getBook().getMaxFlushPositions();
+        // upsertAll assigns ids and versions; a rolled back attempt must not leave them behind
+        Long[] ids = new Long[positions.size()];
+        Integer[] versions = new Integer[positions.size()];
+        for (int i = 0; i < positions.size(); i++) {
+            ids[i] = positions.get(i).getPositionId();
+            versions[i] = positions.get(i).getVersion();
+        }
+
+        while (fences.get() == fencesSeen) {
+            try {
+                long startTime = System.currentTimeMillis();
+                boolean committed = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    for (int from = 0; from < positions.size(); from += chunkSize) {
+                        positionJdbcRepository.upsertAll(
+                            positions.subList(from, Math.min(from + chunkSize, positions.size())));
+                    }
+                    // Earlier snapshots of a new position learn its id from the latest one
+                    for (PositionChange change : changes) {
+                        change.position().setPositionId(
+                            latest.get(PositionJdbcRepository.keyOf(change.position())).getPositionId());
+                    }
+                    // Applied-trade markers go in the same transaction as the positions
+                    positionJdbcRepository.insertJournal(changes);
+                    accountSummaryJdbcRepository.applyChanges(changes);
+                    // Last check before commit: a long attempt may have outlived the revocation timeout.
+                    // Held across the commit, so no fence lands between this check and the commit
+                    fenceLock.lock();
+                    if (fences.get() != fencesSeen) {
+                        status.setRollbackOnly();
+                        return false;
+                    }
+                    return true;
+                }));
+                if (committed) {
+                    tradeMetrics.recordPositionCalculationTime(System.currentTimeMillis() - startTime);
+                    log.debug("Position write-behind flushed: positions={}", positions.size());
+                    return true;
+                }
+            } catch (RuntimeException e) {
+                log.error("Position write-behind flush failed, retrying: positions={}", positions.size(), e);
+                Thread.sleep(properties.getBook().getRetryBackoffMs());
+            } finally {
+                if (fenceLock.isHeldByCurrentThread()) {
+                    fenceLock.unlock();
+                }
+            }
+            for (int i = 0; i < positions.size(); i++) {
+                positions.get(i).setPositionId(ids[i]);
+                positions.get(i).setVersion(versions[i]);
+            }
+        }
+        return false;
+    }
+
+    private record FlushRequest(Map<Integer, List<PositionChange>> changesByPartition,
+                                Map<Integer, Integer> epochs, Acknowledgment acknowledgment,
+                                CompletableFuture<Void> barrier) {
+    }
+}
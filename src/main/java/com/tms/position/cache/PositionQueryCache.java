@@ -0,0 +1,280 @@
+package com.tms.position.cache;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dto.AccountPositionSummary;
+import com.tms.position.entity.Position;
+import com.tms.position.replica.ReadRouting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for the position query endpoints: a bounded in-process tier
+ * in front of Redis, in front of the database. Entries touched by a position
+ * update are refreshed or evicted once that update commits.
+ *
+ * <p>With a read replica, a load only goes to the replica if it has caught up with
+ * the last invalidation in the key's stripe, so a lagging replica cannot put the
+ * value from before an update back into the cache.
+ */
+@Component
+@Slf4j
+public class PositionQueryCache {
+
+    private static final String CACHE_NAME = "position-query";
+    private static final String KEY_PREFIX = "position-query:";
+    private static final int GENERATION_STRIPES = 1024;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final PositionProperties.Cache properties;
+    private final ReadRouting readRouting;
+    private final Cache<String, Object> local;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final JavaType positionType;
+    private final JavaType positionListType;
+    private final JavaType summaryType;
+
+    // Bumped on every invalidation of a key in the stripe; a load that raced an
+    // invalidation is returned to its caller but not cached
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    // When the stripe was last invalidated, this server's clock
+    private final AtomicLongArray invalidatedAt = new AtomicLongArray(GENERATION_STRIPES);
+
+    public PositionQueryCache(StringRedisTemplate redisTemplate,
+                              ObjectMapper objectMapper,
+                              PositionProperties positionProperties,
+                              ReadRouting readRouting,
+                              MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.properties = positionProperties.getCache();
+        this.readRouting = readRouting;
+        this.local = Caffeine.newBuilder()
+            .maximumSize(properties.getLocalMaximumSize())
+            .expireAfterWrite(properties.getLocalTtl())
+            .recordStats()
+            .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, CACHE_NAME);
+
+        // Same meter names and tags as the local tier so both show up side by side
+        this.redisHits = Counter.builder("cache.gets")
+            .tag("cache", CACHE_NAME + "-redis")
+            .tag("result", "hit")
+            .register(meterRegistry);
+        this.redisMisses = Counter.builder("cache.gets")
+            .tag("cache", CACHE_NAME + "-redis")
+            .tag("result", "miss")
+            .register(meterRegistry);
+
+        this.positionType = objectMapper.constructType(Position.class);
+        this.positionListType = objectMapper.getTypeFactory().constructCollectionType(List.class, Position.class);
+        this.summaryType = objectMapper.constructType(AccountPositionSummary.class);
+    }
+
+    public Optional<Position> getPosition(Long positionId, Supplier<Optional<Position>> loader) {
+        return Optional.ofNullable(get(positionKey(positionId), positionType, () -> loader.get().orElse(null)));
+    }
+
+    public List<Position> getPositionsByAccount(String accountCode, LocalDate asOfDate,
+                                                Supplier<List<Position>> loader) {
+        return get(accountKey(accountCode, asOfDate), positionListType, loader);
+    }
+
+    public AccountPositionSummary getAccountSummary(String accountCode, LocalDate asOfDate,
+                                                    Supplier<AccountPositionSummary> loader) {
+        return get(summaryKey(accountCode, asOfDate), summaryType, loader);
+    }
+
+    /**
+     * Refreshes the position's own entry and evicts the account views containing it.
+     * Inside a transaction this is deferred until commit so readers never see
+     * uncommitted state.
+     */
+    public void positionChanged(Position position) {
+        if (!properties.isEnabled() || position.getPositionId() == null) {
+            return;
+        }
+        Position snapshot = position.toBuilder().build();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh(snapshot);
+                }
+            });
+        } else {
+            refresh(snapshot);
+        }
+    }
+
+    // For summaries corrected outside the update path
+    public void accountSummaryChanged(String accountCode, LocalDate asOfDate) {
+        String summaryKey = summaryKey(accountCode, asOfDate);
+        bumpGeneration(summaryKey);
+        local.invalidate(summaryKey);
+        try {
+            redisTemplate.delete(summaryKey);
+        } catch (Exception e) {
+            log.warn("Failed to evict account summary from cache: accountCode={}", accountCode, e);
+        }
+    }
+
+    // For account rows written outside the update path, e.g. by the roll-forward
+    public void accountChanged(String accountCode, LocalDate asOfDate) {
+        String accountKey = accountKey(accountCode, asOfDate);
+        String summaryKey = summaryKey(accountCode, asOfDate);
+        bumpGeneration(accountKey);
+        bumpGeneration(summaryKey);
+        local.invalidate(accountKey);
+        local.invalidate(summaryKey);
+        try {
+            redisTemplate.delete(List.of(accountKey, summaryKey));
+        } catch (Exception e) {
+            log.warn("Failed to evict account from cache: accountCode={}", accountCode, e);
+        }
+    }
+
+    public void evictPosition(Long positionId) {
+        String positionKey = positionKey(positionId);
+        bumpGeneration(positionKey);
+        local.invalidate(positionKey);
+        try {
+            redisTemplate.delete(positionKey);
+        } catch (Exception e) {
+            log.warn("Failed to evict position from cache: positionId={}", positionId, e);
+        }
+    }
+
+    // Bulk eviction for rows rewritten by the revaluation engine, one Redis round trip
+    public void positionsRevalued(Collection<Long> positionIds, Collection<String> accountCodes,
+                                  LocalDate asOfDate) {
+        List<String> keys = new ArrayList<>(positionIds.size() + accountCodes.size() * 2);
+        positionIds.forEach(positionId -> keys.add(positionKey(positionId)));
+        accountCodes.forEach(accountCode -> {
+            keys.add(accountKey(accountCode, asOfDate));
+            keys.add(summaryKey(accountCode, asOfDate));
+        });
+        keys.forEach(this::bumpGeneration);
+        local.invalidateAll(keys);
+        try {
+            redisTemplate.delete(keys);
+        } catch (Exception e) {
+            log.warn("Failed to evict revalued positions from cache: positions={}", positionIds.size(), e);
+        }
+    }
+
+    private void refresh(Position position) {
+        String positionKey = positionKey(position.getPositionId());
+        String accountKey = accountKey(position.getAccountCode(), position.getAsOfDate());
+        String summaryKey = summaryKey(position.getAccountCode(), position.getAsOfDate());
+
+        bumpGeneration(positionKey);
+        bumpGeneration(accountKey);
+        bumpGeneration(summaryKey);
+
+        local.put(positionKey, position);
+        local.invalidate(accountKey);
+        local.invalidate(summaryKey);
+
+        try {
+            redisTemplate.opsForValue().set(positionKey, objectMapper.writeValueAsString(position),
+                properties.getRedisTtl());
+            redisTemplate.delete(List.of(accountKey, summaryKey));
+        } catch (Exception e) {
+            log.warn("Failed to refresh position query cache: positionId={}", position.getPositionId(), e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(String key, JavaType type, Supplier<T> loader) {
+        if (!properties.isEnabled()) {
+            return loader.get();
+        }
+
+        Object cached = local.getIfPresent(key);
+        if (cached != null) {
+            return (T) cached;
+        }
+
+        long generation = generation(key);
+        T value = readRedis(key, type);
+        if (value != null) {
+            redisHits.increment();
+            if (generation(key) == generation) {
+                local.put(key, value);
+            }
+            return value;
+        }
+        redisMisses.increment();
+
+        value = readRouting.read(invalidatedAt.get(stripe(key)), loader);
+        if (value != null && generation(key) == generation) {
+            local.put(key, value);
+            writeRedis(key, value);
+        }
+        return value;
+    }
+
+    private <T> T readRedis(String key, JavaType type) {
+        try {
+            String json = redisTemplate.opsForValue().get(key);
+            return json != null ? objectMapper.readValue(json, type) : null;
+        } catch (Exception e) {
+            log.warn("Failed to read position query cache: key={}", key, e);
+            return null;
+        }
+    }
+
+    private void writeRedis(String key, Object value) {
+        try {
+            redisTemplate.opsForValue().set(key, objectMapper.writeValueAsString(value), properties.getRedisTtl());
+        } catch (Exception e) {
+            log.warn("Failed to write position query cache: key={}", key, e);
+        }
+    }
+
+    private long generation(String key) {
+        return generations.get(stripe(key));
+    }
+
+    private void bumpGeneration(String key) {
+        int stripe = stripe(key);
+        invalidatedAt.accumulateAndGet(stripe, System.currentTimeMillis(), Math::max);
+        generations.incrementAndGet(stripe);
+    }
+
+    private static int stripe(String key) {
+        return key.hashCode() & (GENERATION_STRIPES - 1);
+    }
+
+    private static String positionKey(Long positionId) {
+        return KEY_PREFIX + "id:" + positionId;
+    }
+
+    private static String accountKey(String accountCode, LocalDate asOfDate) {
+        return KEY_PREFIX + "account:" + accountCode + ":" + asOfDate;
+    }
+
+    private static String summaryKey(String accountCode, LocalDate asOfDate) {
+        return KEY_PREFIX + "summary:" + accountCode + ":" + asOfDate;
+    }
+}
@@ -0,0 +1,232 @@
+package com.tms.position.calculation;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Scaled-long decimal helpers used by the position calculator. Every method
+ * works on primitives only and signals "not representable" with {@link #NaN}
+ * instead of throwing, so callers can fall back to BigDecimal without paying
+ * for an exception.
+ */
+public final class FixedPoint {
+
+    // Sentinel for overflow / unparseable input; never a valid scaled value
+    public static final long NaN = Long.MIN_VALUE;
+
+    public static final int QUANTITY_SCALE = 8;
+    public static final int COST_SCALE = 8;
+    public static final int AMOUNT_SCALE = 4;
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L,
+        1_000_000_000L, 10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L,
+        10_000_000_000_000L, 100_000_000_000_000L, 1_000_000_000_000_000L,
+        10_000_000_000_000_000L, 100_000_000_000_000_000L, 1_000_000_000_000_000_000L
+    };
+
+    private static final long MASK_32 = 0xFFFF_FFFFL;
+
+    private FixedPoint() {
+    }
+
+    public static long pow10(int exponent) {
+        return POWERS_OF_TEN[exponent];
+    }
+
+    /**
+     * Parses a plain decimal string ("-12.5", "100") into a long scaled by 10^scale.
+     * Exponent notation, more fractional digits than the scale (unless they are
+     * trailing zeros) and out-of-range values return {@link #NaN}.
+     */
+    public static long parse(CharSequence text, int scale) {
+        if (text == null) {
+            return NaN;
+        }
+        return parse(text, 0, text.length(), scale);
+    }
+
+    public static long parse(CharSequence text, int from, int to, int scale) {
+        if (from >= to) {
+            return NaN;
+        }
+
+        int i = from;
+        boolean negative = false;
+        char first = text.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+        }
+
+        long value = 0;
+        int fractionDigits = -1;
+        boolean digits = false;
+        for (; i < to; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (fractionDigits >= 0) {
+                    return NaN;
+                }
+                fractionDigits = 0;
+                continue;
+            }
+            if (c < '0' || c > '9') {
+                return NaN;
+            }
+            digits = true;
+            if (fractionDigits >= 0) {
+                if (fractionDigits == scale) {
+                    // Extra precision is only acceptable when it is zero
+                    if (c != '0') {
+                        return NaN;
+                    }
+                    continue;
+                }
+                fractionDigits++;
+            }
+            if (value > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return NaN;
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (!digits) {
+            return NaN;
+        }
+
+        int pad = scale - Math.max(fractionDigits, 0);
+        long factor = POWERS_OF_TEN[pad];
+        if (value > Long.MAX_VALUE / factor) {
+            return NaN;
+        }
+        value *= factor;
+        return negative ? -value : value;
+    }
+
+    public static long fromBigDecimal(BigDecimal value, int scale) {
+        if (value == null) {
+            return NaN;
+        }
+        if (value.scale() > scale) {
+            value = value.stripTrailingZeros();
+            if (value.scale() > scale) {
+                return NaN;
+            }
+        }
+        BigDecimal scaled = value.setScale(scale, RoundingMode.UNNECESSARY);
+        if (scaled.precision() > 18) {
+            return NaN;
+        }
+        return scaled.unscaledValue().longValue();
+    }
+
+    public static BigDecimal toBigDecimal(long value, int scale) {
+        return BigDecimal.valueOf(value, scale);
+    }
+
+    public static long add(long a, long b) {
+        long r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0 || r == NaN) {
+            return NaN;
+        }
+        return r;
+    }
+
+    public static long subtract(long a, long b) {
+        long r = a - b;
+        if (((a ^ b) & (a ^ r)) < 0 || r == NaN) {
+            return NaN;
+        }
+        return r;
+    }
+
+    public static long mulDivHalfUp(long a, long b, long divisor) {
+        return mulAddDivHalfUp(a, b, 0, 0, divisor);
+    }
+
+    /**
+     * Computes round((a * b + c * d) / divisor) with HALF_UP rounding, using an
+     * exact 128-bit intermediate. Returns {@link #NaN} if the result does not fit.
+     * The divisor must be positive.
+     */
+    public static long mulAddDivHalfUp(long a, long b, long c, long d, long divisor) {
+        if (a == NaN || b == NaN || c == NaN || d == NaN) {
+            return NaN;
+        }
+
+        // 128-bit signed sum of the two products as (hi, lo)
+        long lo1 = a * b;
+        long hi1 = Math.multiplyHigh(a, b);
+        long lo2 = c * d;
+        long hi2 = Math.multiplyHigh(c, d);
+        long lo = lo1 + lo2;
+        long hi = hi1 + hi2 + (Long.compareUnsigned(lo, lo1) < 0 ? 1 : 0);
+
+        boolean negative = hi < 0;
+        if (negative) {
+            lo = -lo;
+            hi = ~hi + (lo == 0 ? 1 : 0);
+        }
+
+        // Quotient must fit in 64 bits for the unsigned division below
+        if (Long.compareUnsigned(hi, divisor) >= 0) {
+            return NaN;
+        }
+
+        long quotient = divideUnsigned128(hi, lo, divisor);
+        if (quotient < 0) {
+            return NaN;
+        }
+        long remainder = lo - quotient * divisor;
+        if (Long.compareUnsigned(remainder << 1, divisor) >= 0) {
+            quotient++;
+            // Long.MAX_VALUE rounds up to the NaN sentinel
+            if (quotient == NaN) {
+                return NaN;
+            }
+        }
+        return negative ? -quotient : quotient;
+    }
+
+    // Unsigned (u1:u0) / v for u1 < v, after Hacker's Delight divlu
+    static long divideUnsigned128(long u1, long u0, long v) {
+        if (u1 == 0) {
+            return Long.divideUnsigned(u0, v);
+        }
+
+        int shift = Long.numberOfLeadingZeros(v);
+        v <<= shift;
+        long vn1 = v >>> 32;
+        long vn0 = v & MASK_32;
+
+        long un32 = shift == 0 ? u1 : (u1 << shift) | (u0 >>> (64 - shift));
+        long un10 = u0 << shift;
+        long un1 = un10 >>> 32;
+        long un0 = un10 & MASK_32;
+
+        long q1 = Long.divideUnsigned(un32, vn1);
+        long rhat = un32 - q1 * vn1;
+        while (Long.compareUnsigned(q1, MASK_32) > 0
+                || Long.compareUnsigned(q1 * vn0, (rhat << 32) | un1) > 0) {
+            q1--;
+            rhat += vn1;
+            if (Long.compareUnsigned(rhat, MASK_32) > 0) {
+                break;
+            }
+        }
+
+        long un21 = (un32 << 32) + un1 - q1 * v;
+        long q0 = Long.divideUnsigned(un21, vn1);
+        rhat = un21 - q0 * vn1;
+        while (Long.compareUnsigned(q0, MASK_32) > 0
+                || Long.compareUnsigned(q0 * vn0, (rhat << 32) | un0) > 0) {
+            q0--;
+            rhat += vn1;
+            if (Long.compareUnsigned(rhat, MASK_32) > 0) {
+                break;
+            }
+        }
+
+        return (q1 << 32) | q0;
+    }
+}
@@ -0,0 +1,199 @@
+package com.tms.position.calculation;
+
+import com.tms.position.entity.Position;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionJournalEntry;
+import com.tms.position.model.TradeSide;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.tms.position.calculation.FixedPoint.*;
+
+/**
+ * Weighted-average-cost and realized P&L calculation.
+ *
+ * <p>The fixed-point path works on scaled longs with exact 128-bit intermediates
+ * and allocates nothing. Inputs it cannot represent (unknown side, more than 8
+ * decimal places, results out of range) go through the BigDecimal reference
+ * implementation instead. Both paths round to the column scales with HALF_UP,
+ * i.e. they produce exactly what the position table stores.
+ */
+@Component
+public class PositionCalculator {
+
+    private static final long AMOUNT_DIVISOR = pow10(QUANTITY_SCALE + COST_SCALE - AMOUNT_SCALE);
+    private static final long REALIZED_FACTOR = pow10(QUANTITY_SCALE + COST_SCALE - AMOUNT_SCALE);
+    // Columns are DECIMAL(18, scale), narrower than a long
+    private static final long COLUMN_LIMIT = pow10(18);
+
+    /**
+     * Folds trades for one position in order into a single net change, updating
+     * the entity once at the end. {@code opened} marks a position that did not
+     * exist before these trades. The state is scratch space and may be reused.
+     */
+    public PositionChange applyTrades(Position position, boolean opened, List<EnrichedTrade> trades,
+                                      PositionState state, String fallbackCorrelationId) {
+        BigDecimal previousQuantity = position.getQuantity();
+        // A new row adds its whole cost basis to the account, including any carried-forward part
+        BigDecimal previousCostBasis = opened ? BigDecimal.ZERO : position.getCostBasis();
+        long realizedPnl = 0;
+        String lastTradeId = null;
+        String correlationId = fallbackCorrelationId;
+        long eventTime = 0;
+
+        List<PositionJournalEntry> journal = new ArrayList<>(trades.size());
+
+        state.load(position);
+        for (EnrichedTrade trade : trades) {
+            long tradePreviousQuantity = state.getQuantity();
+            long tradePreviousAvgCost = state.getAvgCost();
+            apply(state, trade);
+            realizedPnl += state.getLastRealizedPnl();
+            journal.add(new PositionJournalEntry(trade.getTradeId(), tradePreviousQuantity, state.getQuantity(),
+                tradePreviousAvgCost, state.getAvgCost(), state.getLastRealizedPnl()));
+            lastTradeId = trade.getTradeId();
+            if (trade.getCorrelationId() != null) {
+                correlationId = trade.getCorrelationId();
+            }
+            if (trade.getEventTime() > 0 && (eventTime == 0 || trade.getEventTime() < eventTime)) {
+                eventTime = trade.getEventTime();
+            }
+        }
+        state.copyTo(position);
+
+        return new PositionChange(position, previousQuantity, position.getQuantity().subtract(previousQuantity),
+            toBigDecimal(realizedPnl, AMOUNT_SCALE), lastTradeId, correlationId, journal,
+            opened, position.getCostBasis().subtract(previousCostBasis), eventTime);
+    }
+
+    public void apply(PositionState state, EnrichedTrade trade) {
+        if (trade.getTradeSide() == null || !trade.isFixedPoint()
+                || !tryApply(state, trade.getTradeSide(), trade.getScaledQuantity(), trade.getScaledPrice())) {
+            applyReference(state, trade.getSide(), trade.getQuantity(), trade.getPrice());
+        }
+    }
+
+    public void apply(PositionState state, String side, BigDecimal quantity, BigDecimal price) {
+        TradeSide tradeSide = TradeSide.parse(side);
+        long scaledQuantity = fromBigDecimal(quantity, QUANTITY_SCALE);
+        long scaledPrice = fromBigDecimal(price, COST_SCALE);
+        if (tradeSide == null || scaledQuantity == NaN || scaledPrice == NaN
+                || !tryApply(state, tradeSide, scaledQuantity, scaledPrice)) {
+            applyReference(state, side, quantity, price);
+        }
+    }
+
+    /**
+     * Fixed-point path. Quantity and price are scaled by 10^8. Returns false and
+     * leaves the state untouched if any intermediate result overflows or a result
+     * does not fit its column, where the reference implementation throws.
+     */
+    public boolean tryApply(PositionState state, TradeSide side, long quantity, long price) {
+        long previousQuantity = state.getQuantity();
+        long previousAvgCost = state.getAvgCost();
+        long realizedPnl = 0;
+        long cumulativeRealizedPnl = state.getRealizedPnl();
+
+        long newQuantity = side == TradeSide.SELL
+            ? subtract(previousQuantity, quantity)
+            : add(previousQuantity, quantity);
+        if (newQuantity == NaN) {
+            return false;
+        }
+
+        long newAvgCost;
+        if (side == TradeSide.BUY) {
+            // Weighted average cost for buys
+            if (newQuantity > 0) {
+                // (scale 16 sum) / (scale 8 quantity) lands directly on the scale 8 avg cost
+                newAvgCost = mulAddDivHalfUp(previousQuantity, previousAvgCost, quantity, price, newQuantity);
+            } else {
+                newAvgCost = price;
+            }
+        } else {
+            // For sells, calculate realized P&L
+            if (previousQuantity > 0) {
+                long priceChange = subtract(price, previousAvgCost);
+                realizedPnl = mulDivHalfUp(quantity, priceChange, AMOUNT_DIVISOR);
+                cumulativeRealizedPnl = mulAddDivHalfUp(cumulativeRealizedPnl, REALIZED_FACTOR,
+                    quantity, priceChange, AMOUNT_DIVISOR);
+                if (realizedPnl == NaN || cumulativeRealizedPnl == NaN) {
+                    return false;
+                }
+            }
+            newAvgCost = previousAvgCost; // Avg cost unchanged on sells
+        }
+        if (newAvgCost == NaN) {
+            return false;
+        }
+
+        long costBasis = mulDivHalfUp(Math.abs(newQuantity), newAvgCost, AMOUNT_DIVISOR);
+        if (costBasis == NaN || !fitsColumn(newQuantity) || !fitsColumn(newAvgCost) || !fitsColumn(costBasis)
+                || !fitsColumn(cumulativeRealizedPnl) || !fitsColumn(realizedPnl)) {
+            return false;
+        }
+
+        state.set(newQuantity, newAvgCost, costBasis, cumulativeRealizedPnl, realizedPnl);
+        return true;
+    }
+
+    /**
+     * BigDecimal reference implementation; the original position math, rounded to
+     * the column scales the way the database rounds on write.
+     */
+    public static void applyReference(PositionState state, String side, BigDecimal quantity, BigDecimal price) {
+        BigDecimal previousQuantity = toBigDecimal(state.getQuantity(), QUANTITY_SCALE);
+        BigDecimal previousAvgCost = toBigDecimal(state.getAvgCost(), COST_SCALE);
+        BigDecimal previousRealizedPnl = toBigDecimal(state.getRealizedPnl(), AMOUNT_SCALE);
+        BigDecimal realizedPnl = BigDecimal.ZERO;
+
+        // Adjust quantity for sell trades
+        BigDecimal quantityChange = "SELL".equals(side) ? quantity.negate() : quantity;
+        BigDecimal newQuantity = previousQuantity.add(quantityChange);
+
+        BigDecimal newAvgCost;
+        if ("BUY".equals(side)) {
+            // Weighted average cost for buys
+            if (newQuantity.compareTo(BigDecimal.ZERO) > 0) {
+                BigDecimal existingValue = previousQuantity.multiply(previousAvgCost);
+                BigDecimal newValue = quantity.multiply(price);
+                newAvgCost = existingValue.add(newValue)
+                    .divide(newQuantity, COST_SCALE, RoundingMode.HALF_UP);
+            } else {
+                newAvgCost = price;
+            }
+        } else {
+            // For sells, calculate realized P&L
+            if (previousQuantity.compareTo(BigDecimal.ZERO) > 0) {
+                realizedPnl = quantity.multiply(price.subtract(previousAvgCost));
+            }
+            newAvgCost = previousAvgCost; // Avg cost unchanged on sells
+        }
+
+        BigDecimal costBasis = newQuantity.abs().multiply(newAvgCost);
+
+        state.set(
+            scaled(newQuantity, QUANTITY_SCALE),
+            scaled(newAvgCost, COST_SCALE),
+            scaled(costBasis, AMOUNT_SCALE),
+            scaled(previousRealizedPnl.add(realizedPnl), AMOUNT_SCALE),
+            scaled(realizedPnl, AMOUNT_SCALE));
+    }
+
+    private static boolean fitsColumn(long value) {
+        return value > -COLUMN_LIMIT && value < COLUMN_LIMIT;
+    }
+
+    private static long scaled(BigDecimal value, int scale) {
+        long scaled = fromBigDecimal(value.setScale(scale, RoundingMode.HALF_UP), scale);
+        if (scaled == NaN) {
+            throw new ArithmeticException("Position value exceeds column range: " + value);
+        }
+        return scaled;
+    }
+}
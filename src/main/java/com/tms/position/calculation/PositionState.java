@@ -0,0 +1,64 @@
+package com.tms.position.calculation;
+
+import com.tms.position.entity.Position;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+
+import static com.tms.position.calculation.FixedPoint.*;
+
+/**
+ * Mutable, reusable scaled-long view of a position's calculated columns.
+ * Quantity and avg cost carry 8 decimal places, cost basis and P&L carry 4,
+ * matching the position table.
+ */
+@Getter
+@Setter
+public final class PositionState {
+
+    private long quantity;
+    private long avgCost;
+    private long costBasis;
+    private long realizedPnl;
+
+    // Realized P&L of the most recently applied trade
+    private long lastRealizedPnl;
+
+    public PositionState load(Position position) {
+        quantity = scaledOrThrow(position.getQuantity(), QUANTITY_SCALE);
+        avgCost = scaledOrThrow(position.getAvgCost(), COST_SCALE);
+        costBasis = scaledOrThrow(position.getCostBasis(), AMOUNT_SCALE);
+        realizedPnl = position.getRealizedPnl() == null ? 0 : scaledOrThrow(position.getRealizedPnl(), AMOUNT_SCALE);
+        lastRealizedPnl = 0;
+        return this;
+    }
+
+    public void copyTo(Position position) {
+        position.setQuantity(toBigDecimal(quantity, QUANTITY_SCALE));
+        position.setAvgCost(toBigDecimal(avgCost, COST_SCALE));
+        position.setCostBasis(toBigDecimal(costBasis, AMOUNT_SCALE));
+        position.setRealizedPnl(toBigDecimal(realizedPnl, AMOUNT_SCALE));
+    }
+
+    public BigDecimal lastRealizedPnlDecimal() {
+        return toBigDecimal(lastRealizedPnl, AMOUNT_SCALE);
+    }
+
+    void set(long quantity, long avgCost, long costBasis, long realizedPnl, long lastRealizedPnl) {
+        this.quantity = quantity;
+        this.avgCost = avgCost;
+        this.costBasis = costBasis;
+        this.realizedPnl = realizedPnl;
+        this.lastRealizedPnl = lastRealizedPnl;
+    }
+
+    private static long scaledOrThrow(BigDecimal value, int scale) {
+        // Column values have at most the column scale, so this can only fail on corrupt input
+        long scaled = fromBigDecimal(value.setScale(scale, java.math.RoundingMode.HALF_UP), scale);
+        if (scaled == NaN) {
+            throw new ArithmeticException("Position value out of fixed-point range: " + value);
+        }
+        return scaled;
+    }
+}
@@ -0,0 +1,82 @@
+package com.tms.position.config;
+
+import com.tms.position.messaging.PriceTickDeserializer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import java.util.Map;
+
+@Configuration
+public class KafkaConsumerConfig {
+
+    // Same settings as the default listener factory (manual ack included), but
+    // hands each poll to the listener as a single List
+    @Bean
+    @ConditionalOnProperty(name = "position.consumer.mode", havingValue = "batch")
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        return batchFactory(configurer, consumerFactory);
+    }
+
+    // Batch listener for the position book. The write-behind flusher acknowledges
+    // from its own thread once a flush is durable; the container commits those
+    // acks on its next poll, in order. The rebalance listener comes from the configurer
+    @Bean
+    @ConditionalOnProperty(name = "position.consumer.mode", havingValue = "book")
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> bookKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        return batchFactory(configurer, consumerFactory);
+    }
+
+    // Batch listener for the key-ordered lanes. The dispatcher commits offsets
+    // itself; idle events keep those commits going between polls
+    @Bean
+    @ConditionalOnProperty(name = "position.consumer.mode", havingValue = "parallel")
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> parallelKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory,
+            PositionProperties positionProperties) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = batchFactory(configurer, consumerFactory);
+        factory.getContainerProperties().setIdleEventInterval(
+            positionProperties.getParallel().getIdleCommitInterval().toMillis());
+        return factory;
+    }
+
+    // Price ticks for the revaluation engine. Same connection settings, but with the
+    // price deserializer, and a new group starts from the latest prices
+    @Bean
+    @ConditionalOnProperty(name = "position.revaluation.enabled", havingValue = "true")
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> priceKafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            KafkaProperties kafkaProperties,
+            ObjectProvider<SslBundles> sslBundles) {
+        Map<String, Object> config = kafkaProperties.buildConsumerProperties(sslBundles.getIfAvailable());
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        config.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, PriceTickDeserializer.class);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+
+        return batchFactory(configurer, new DefaultKafkaConsumerFactory<>(config));
+    }
+
+    private static ConcurrentKafkaListenerContainerFactory<Object, Object> batchFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> consumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, consumerFactory);
+        factory.setBatchListener(true);
+        return factory;
+    }
+}
@@ -0,0 +1,222 @@
+package com.tms.position.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "position")
+public class PositionProperties {
+
+    private Consumer consumer = new Consumer();
+    private Book book = new Book();
+    private Dedup dedup = new Dedup();
+    private Cache cache = new Cache();
+    private ReadReplica readReplica = new ReadReplica();
+    private Summary summary = new Summary();
+    private Export export = new Export();
+    private Bulk bulk = new Bulk();
+    private Streaming streaming = new Streaming();
+    private RollForward rollForward = new RollForward();
+    private Journal journal = new Journal();
+    private Checkpoint checkpoint = new Checkpoint();
+    private Archive archive = new Archive();
+    private Parallel parallel = new Parallel();
+    private Dlq dlq = new Dlq();
+    private Events events = new Events();
+    private Revaluation revaluation = new Revaluation();
+    private Metrics metrics = new Metrics();
+
+    @Data
+    public static class Consumer {
+        // record | batch | book
+        private String mode = "record";
+    }
+
+    @Data
+    public static class Book {
+        // Load today's rows for an assigned partition up front (assumes trades are keyed by account code)
+        private boolean preload = true;
+        // Pending flush requests before the listener blocks
+        private int queueCapacity = 64;
+        // Upper bound on positions written by one flush transaction
+        private int maxFlushPositions = 5000;
+        private long retryBackoffMs = 1000;
+    }
+
+    @Data
+    public static class Dedup {
+        private boolean enabled = true;
+        // Slots per index generation; each slot is 8 bytes and two generations are kept
+        private int capacity = 1 << 20;
+        // History loaded into the index on the first partition assignment
+        private Duration warmWindow = Duration.ofHours(24);
+        // Tolerated difference between producer and service clocks
+        private Duration clockSkew = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Cache {
+        private boolean enabled = true;
+        private long localMaximumSize = 10_000;
+        // Bounds staleness of the in-process tier for writes made by other instances
+        private Duration localTtl = Duration.ofSeconds(5);
+        private Duration redisTtl = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class ReadReplica {
+        // Routes read-only transactions to a separate replica pool
+        private boolean enabled = false;
+        private String url;
+        // Default to the primary's credentials
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+        // Replica reads go to the primary while the replica trails by more than this
+        private Duration maxLag = Duration.ofSeconds(5);
+        private long heartbeatIntervalMs = 500;
+    }
+
+    @Data
+    public static class Summary {
+        // "-" disables the reconciliation job
+        private String reconcileCron = "0 */15 * * * *";
+        // Dates checked per run, counting back from today
+        private int reconcileDays = 2;
+    }
+
+    @Data
+    public static class Export {
+        // Rows per round trip on the streaming export cursor
+        private int fetchSize = 1000;
+        private int defaultPageSize = 500;
+        private int maxPageSize = 5000;
+    }
+
+    @Data
+    public static class Bulk {
+        private int maxAccounts = 1000;
+        private int maxSymbols = 500;
+        // Accounts per IN list; with the symbols it must stay under SQL Server's 2100 parameters
+        private int accountsPerQuery = 200;
+        // Shared by all bulk requests, so they cannot take over the connection pool
+        private int maxConcurrentQueries = 4;
+    }
+
+    @Data
+    public static class Streaming {
+        private int maxSubscribers = 1000;
+        private int maxAccountsPerSubscriber = 100;
+        // Distinct symbols buffered per subscriber; further symbols are dropped and the client told to resync
+        private int bufferSize = 1024;
+        private Duration timeout = Duration.ofMinutes(30);
+        private long heartbeatIntervalMs = 15_000;
+    }
+
+    @Data
+    public static class RollForward {
+        // Rolls the previous day into today; "-" disables the scheduled run
+        private String cron = "0 5 0 * * *";
+        private int shards = 16;
+        // Shards copied concurrently
+        private int parallelism = 4;
+        // A shard left running this long by a crashed run may be claimed again
+        private Duration staleAfter = Duration.ofMinutes(30);
+    }
+
+    @Data
+    public static class Journal {
+        // Snapshots the previous day after the roll-forward; "-" disables it
+        private String snapshotCron = "0 30 0 * * *";
+        private int rebuildParallelism = 4;
+        // Accounts replayed by one rebuild task before it stops splitting
+        private int rebuildAccountsPerTask = 256;
+    }
+
+    @Data
+    public static class Checkpoint {
+        // Intraday realized P&L checkpoints for point-in-time queries
+        private String cron = "0 */5 * * * *";
+        // Journal rows younger than this may belong to transactions still open
+        private Duration commitLag = Duration.ofMinutes(1);
+        private Duration retention = Duration.ofDays(7);
+    }
+
+    @Data
+    public static class Archive {
+        // Moves closed dates to the columnstore archive; "-" disables the job
+        private String cron = "0 15 1 * * *";
+        // Dates younger than this stay in the hot table, and are never archived. Trades
+        // dated earlier are parked on the DLQ
+        private int hotDays = 7;
+        private long watermarkRefreshMs = 60_000;
+    }
+
+    @Data
+    public static class Parallel {
+        // Single-writer lanes; a position always maps to the same lane
+        private int lanes = 64;
+        // Trades dispatched but not finished before the consumer blocks
+        private int maxInFlight = 10_000;
+        private int maxAttempts = 3;
+        private long retryBackoffMs = 1000;
+        // How long a revoked partition may take to finish its in-flight trades
+        private Duration drainTimeout = Duration.ofSeconds(30);
+        private Duration idleCommitInterval = Duration.ofSeconds(1);
+    }
+
+    @Data
+    public static class Dlq {
+        // Trades that exhausted their retries, with the original topic, partition and offset as headers
+        private String topic = "trades.enriched.dlq";
+        // How long parking may wait on the DLQ topic before it falls back to the local store
+        private Duration sendTimeout = Duration.ofSeconds(10);
+        private String localDirectory = "dead-letters";
+        private long forwardIntervalMs = 30_000;
+        private String replayGroupId = "position-service-dlq-replay";
+        // Trades per second a replay may apply, so it cannot starve live traffic
+        private int replayRate = 2000;
+        // Trades per replay transaction, capped at the rate
+        private int replayBatchSize = 500;
+    }
+
+    @Data
+    public static class Events {
+        // legacy: one JSON map per change; compact: typed events on a batching producer
+        private String mode = "legacy";
+        // Compact mode encoding: binary or json
+        private String format = "binary";
+        private int lingerMs = 20;
+        private int batchSize = 256 * 1024;
+        private String compressionType = "lz4";
+        // Collapses changes of one position within the window into one net event; 0 publishes each change
+        private Duration conflationWindow = Duration.ZERO;
+    }
+
+    @Data
+    public static class Revaluation {
+        private boolean enabled = false;
+        private String topic = "market-data.prices";
+        // Price partitions, and so instruments, are split across the instances of this group
+        private String groupId = "position-service-revaluation";
+        // Ticks are conflated per instrument and written back once per interval
+        private Duration flushInterval = Duration.ofMillis(500);
+        // Positions per write-back statement, at most 1000
+        private int batchSize = 1000;
+        // How often positions created elsewhere are added to the instrument index
+        private Duration indexRefreshInterval = Duration.ofSeconds(5);
+        // Position ids are allocated before commit; ids handed out this recently are read again
+        private Duration indexRescanWindow = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Metrics {
+        // Times one in N calls per pipeline stage; 1 times every call
+        private int sampleRate = 1;
+        private double[] percentiles = {0.5, 0.95, 0.99, 0.999};
+    }
+}
@@ -0,0 +1,151 @@
+package com.tms.position.controller;
+
+import com.tms.position.dlq.DeadLetterReplayService;
+import com.tms.position.dto.ArchiveResponse;
+import com.tms.position.dto.DeadLetterReplayResponse;
+import com.tms.position.dto.RebuildResponse;
+import com.tms.position.dto.RollForwardResponse;
+import com.tms.position.dto.SnapshotResponse;
+import com.tms.position.repository.ArchivedDateException;
+import com.tms.position.service.PositionArchiveService;
+import com.tms.position.service.PositionRebuildService;
+import com.tms.position.service.PositionRollForwardService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/v1/admin/positions")
+@RequiredArgsConstructor
+@Slf4j
+@Tag(name = "Position Admin", description = "Position maintenance operations")
+public class PositionAdminController {
+
+    private final PositionRollForwardService positionRollForwardService;
+    private final PositionRebuildService positionRebuildService;
+    private final DeadLetterReplayService deadLetterReplayService;
+    private final PositionArchiveService positionArchiveService;
+
+    @PostMapping("/roll-forward")
+    @Operation(summary = "Roll positions forward",
+        description = "Copies all open positions of a date to the next day. Restartable: completed shards are skipped")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Roll-forward finished"),
+        @ApiResponse(responseCode = "400", description = "The date is outside the hot window"),
+        @ApiResponse(responseCode = "409", description = "A roll-forward is already running")
+    })
+    public ResponseEntity<RollForwardResponse> rollForward(
+            @Parameter(description = "Date to roll from (YYYY-MM-DD), defaults to yesterday")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fromDate,
+            @Parameter(description = "Also rerun shards that already completed")
+            @RequestParam(defaultValue = "false") boolean rerun) {
+
+        LocalDate effectiveDate = fromDate != null ? fromDate : LocalDate.now().minusDays(1);
+        log.info("Roll-forward requested: fromDate={}, rerun={}", effectiveDate, rerun);
+
+        try {
+            return ResponseEntity.ok(positionRollForwardService.rollForward(effectiveDate, rerun));
+        } catch (ArchivedDateException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PostMapping("/snapshot")
+    @Operation(summary = "Snapshot positions",
+        description = "Snapshots all positions of a date as the base for rebuilds")
+    @ApiResponse(responseCode = "400", description = "The date is outside the hot window")
+    public ResponseEntity<SnapshotResponse> snapshot(
+            @Parameter(description = "As of date (YYYY-MM-DD), defaults to yesterday")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate) {
+
+        LocalDate effectiveDate = asOfDate != null ? asOfDate : LocalDate.now().minusDays(1);
+        log.info("Position snapshot requested: asOfDate={}", effectiveDate);
+        try {
+            return ResponseEntity.ok(positionRebuildService.snapshot(effectiveDate));
+        } catch (ArchivedDateException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/rebuild")
+    @Operation(summary = "Rebuild positions",
+        description = "Restores the positions of a date from its latest snapshot plus the position journal")
+    @ApiResponse(responseCode = "400", description = "The date is outside the hot window")
+    public ResponseEntity<RebuildResponse> rebuild(
+            @Parameter(description = "As of date (YYYY-MM-DD)")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate) {
+
+        log.info("Position rebuild requested: asOfDate={}", asOfDate);
+        try {
+            return ResponseEntity.ok(positionRebuildService.rebuild(asOfDate));
+        } catch (ArchivedDateException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/archive")
+    @Operation(summary = "Archive closed dates",
+        description = "Moves positions older than position.archive.hot-days from the hot table to the archive")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Archive finished"),
+        @ApiResponse(responseCode = "409", description = "An archive run is already in progress")
+    })
+    public ResponseEntity<ArchiveResponse> archive() {
+        log.info("Position archive requested");
+        try {
+            return ResponseEntity.ok(positionArchiveService.archive());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+    }
+
+    @PostMapping("/dlq/replay")
+    @Operation(summary = "Replay parked trades",
+        description = "Starts re-ingesting the DLQ topic in the background at a limited rate. Already applied trades " +
+            "are skipped")
+    @ApiResponses({
+        @ApiResponse(responseCode = "202", description = "Replay started"),
+        @ApiResponse(responseCode = "409", description = "A replay is already running, or the service is in book mode")
+    })
+    public ResponseEntity<DeadLetterReplayResponse> replayDeadLetters(
+            @Parameter(description = "Trades per second, defaults to position.dlq.replay-rate")
+            @RequestParam(defaultValue = "0") int rate,
+            @Parameter(description = "Stop after this many trades; 0 drains the topic")
+            @RequestParam(defaultValue = "0") long maxTrades) {
+
+        log.info("DLQ replay requested: rate={}, maxTrades={}", rate, maxTrades);
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(deadLetterReplayService.start(rate, maxTrades));
+        } catch (IllegalStateException e) {
+            DeadLetterReplayResponse status = deadLetterReplayService.status();
+            status.setMessage(e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(status);
+        }
+    }
+
+    @GetMapping("/dlq/replay")
+    @Operation(summary = "DLQ replay status", description = "Progress of the running or last replay")
+    public ResponseEntity<DeadLetterReplayResponse> getDeadLetterReplay() {
+        return ResponseEntity.ok(deadLetterReplayService.status());
+    }
+
+    @DeleteMapping("/dlq/replay")
+    @Operation(summary = "Stop DLQ replay", description = "Stops the running replay after its current batch")
+    public ResponseEntity<DeadLetterReplayResponse> stopDeadLetterReplay() {
+        log.info("DLQ replay stop requested");
+        deadLetterReplayService.stop();
+        return ResponseEntity.ok(deadLetterReplayService.status());
+    }
+}
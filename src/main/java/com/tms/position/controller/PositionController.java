@@ -1,20 +1,40 @@
 package com.tms.position.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.tms.position.dto.AccountPositionSummary;
+import com.tms.position.dto.BulkPositionRequest;
+import com.tms.position.dto.BulkPositionResponse;
+import com.tms.position.dto.PositionPageResponse;
 import com.tms.position.dto.PositionResponse;
 import com.tms.position.entity.Position;
+import com.tms.position.replica.ReadConsistency;
+import com.tms.position.service.PositionAsOfService;
+import com.tms.position.service.PositionBulkQueryService;
 import com.tms.position.service.PositionService;
+import com.tms.position.stream.PositionStreamHub;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -25,7 +45,13 @@ import java.util.stream.Collectors;
 @Tag(name = "Position", description = "Position management APIs")
 public class PositionController {
 
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
     private final PositionService positionService;
+    private final PositionBulkQueryService positionBulkQueryService;
+    private final PositionAsOfService positionAsOfService;
+    private final PositionStreamHub positionStreamHub;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/{positionId}")
     @Operation(summary = "Get position by ID", description = "Retrieves a position by its ID")
@@ -34,16 +60,54 @@ public class PositionController {
         @ApiResponse(responseCode = "404", description = "Position not found")
     })
     public ResponseEntity<PositionResponse> getPosition(
-            @Parameter(description = "Position ID") @PathVariable Long positionId) {
+            @Parameter(description = "Position ID") @PathVariable Long positionId,
+            @Parameter(description = "Lowest acceptable position version, e.g. the last one the client has seen")
+            @RequestParam(required = false) Long minVersion,
+            @Parameter(description = "Include every change committed up to this time (YYYY-MM-DDTHH:MM:SS[.fff]), "
+                + "server local time")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime consistentAsOf) {
 
         log.info("Getting position: positionId={}", positionId);
 
-        return positionService.getPosition(positionId)
-            .map(this::toPositionResponse)
+        return positionService.getPosition(positionId, new ReadConsistency(minVersion, consistentAsOf))
+            .map(PositionResponse::from)
             .map(ResponseEntity::ok)
             .orElse(ResponseEntity.notFound().build());
     }
 
+    @GetMapping("/{positionId}/at")
+    @Operation(summary = "Get position at a point in time",
+        description = "Reconstructs a position as it was at the timestamp from the position journal. "
+            + "Market value and unrealized P&L are not included")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Position found"),
+        @ApiResponse(responseCode = "404", description = "Position not found, or not yet created at the timestamp")
+    })
+    public ResponseEntity<PositionResponse> getPositionAt(
+            @Parameter(description = "Position ID") @PathVariable Long positionId,
+            @Parameter(description = "Timestamp (YYYY-MM-DDTHH:MM:SS[.fff]), server local time")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime timestamp) {
+
+        log.info("Getting position at time: positionId={}, timestamp={}", positionId, timestamp);
+
+        return positionAsOfService.getPositionAt(positionId, timestamp)
+            .map(ResponseEntity::ok)
+            .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/account/{accountCode}/at")
+    @Operation(summary = "Get positions by account at a point in time",
+        description = "Reconstructs the account's positions of the timestamp's date as they were at the timestamp")
+    public ResponseEntity<List<PositionResponse>> getPositionsByAccountAt(
+            @Parameter(description = "Account code") @PathVariable String accountCode,
+            @Parameter(description = "Timestamp (YYYY-MM-DDTHH:MM:SS[.fff]), server local time")
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime timestamp) {
+
+        log.info("Getting positions for account at time: accountCode={}, timestamp={}", accountCode, timestamp);
+        return ResponseEntity.ok(positionAsOfService.getPositionsByAccountAt(accountCode, timestamp));
+    }
+
     @GetMapping("/account/{accountCode}")
     @Operation(summary = "Get positions by account", description = "Retrieves all positions for an account")
     @ApiResponses({
@@ -52,39 +116,126 @@ public class PositionController {
     public ResponseEntity<List<PositionResponse>> getPositionsByAccount(
             @Parameter(description = "Account code") @PathVariable String accountCode,
             @Parameter(description = "As of date (YYYY-MM-DD)")
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate,
+            @Parameter(description = "Include every change committed up to this time (YYYY-MM-DDTHH:MM:SS[.fff]), "
+                + "server local time")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime consistentAsOf) {
 
         LocalDate effectiveDate = asOfDate != null ? asOfDate : LocalDate.now();
         log.info("Getting positions for account: accountCode={}, asOfDate={}", accountCode, effectiveDate);
 
-        List<Position> positions = positionService.getPositionsByAccount(accountCode, effectiveDate);
+        List<Position> positions = positionService.getPositionsByAccount(accountCode, effectiveDate,
+            new ReadConsistency(null, consistentAsOf));
         List<PositionResponse> responses = positions.stream()
-            .map(this::toPositionResponse)
+            .map(PositionResponse::from)
             .collect(Collectors.toList());
 
         return ResponseEntity.ok(responses);
     }
 
+    @GetMapping(value = "/account/{accountCode}/export", produces = NDJSON_VALUE)
+    @Operation(summary = "Export positions by account",
+        description = "Streams all positions for an account as newline-delimited JSON, ordered by symbol")
+    public ResponseEntity<StreamingResponseBody> exportPositionsByAccount(
+            @Parameter(description = "Account code") @PathVariable String accountCode,
+            @Parameter(description = "As of date (YYYY-MM-DD)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate) {
+
+        LocalDate effectiveDate = asOfDate != null ? asOfDate : LocalDate.now();
+        log.info("Exporting positions for account: accountCode={}, asOfDate={}", accountCode, effectiveDate);
+
+        ObjectWriter writer = objectMapper.writerFor(PositionResponse.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+                positionService.exportPositionsByAccount(accountCode, effectiveDate, position -> {
+                    try {
+                        writer.writeValue(generator, position);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(NDJSON_VALUE))
+            .body(body);
+    }
+
+    @GetMapping("/account/{accountCode}/page")
+    @Operation(summary = "Get a page of positions by account",
+        description = "Keyset pagination over an account's positions ordered by (symbol, positionId)")
+    public ResponseEntity<PositionPageResponse> getPositionPage(
+            @Parameter(description = "Account code") @PathVariable String accountCode,
+            @Parameter(description = "As of date (YYYY-MM-DD)")
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate,
+            @Parameter(description = "Symbol of the last position on the previous page")
+            @RequestParam(required = false) String afterSymbol,
+            @Parameter(description = "Position ID of the last position on the previous page")
+            @RequestParam(required = false) Long afterPositionId,
+            @Parameter(description = "Page size")
+            @RequestParam(required = false) Integer limit) {
+
+        LocalDate effectiveDate = asOfDate != null ? asOfDate : LocalDate.now();
+        return ResponseEntity.ok(positionService.getPositionPage(accountCode, effectiveDate,
+            afterSymbol, afterPositionId, limit));
+    }
+
+    @PostMapping("/bulk")
+    @Operation(summary = "Get positions of many accounts",
+        description = "Positions grouped per account, optionally filtered by symbol and with account summaries")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Positions found"),
+        @ApiResponse(responseCode = "400", description = "No accounts, or more accounts or symbols than allowed")
+    })
+    public ResponseEntity<BulkPositionResponse> getPositionsByAccounts(
+            @Valid @RequestBody BulkPositionRequest request) {
+        log.info("Bulk position query: accounts={}, asOfDate={}", request.getAccountCodes().size(),
+            request.getAsOfDate());
+
+        try {
+            return ResponseEntity.ok(positionBulkQueryService.query(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream position changes",
+        description = "Server-Sent Events of position changes for the accounts. Updates of a symbol are conflated "
+            + "while the client is behind; a resync event means updates were dropped and positions should be reloaded")
+    @ApiResponses({
+        @ApiResponse(responseCode = "200", description = "Stream opened"),
+        @ApiResponse(responseCode = "400", description = "No accounts, or more accounts than allowed"),
+        @ApiResponse(responseCode = "503", description = "Subscriber limit reached")
+    })
+    public ResponseEntity<SseEmitter> streamPositions(
+            @Parameter(description = "Account codes to subscribe to")
+            @RequestParam List<String> accountCodes) {
+
+        try {
+            return ResponseEntity.ok(positionStreamHub.subscribe(accountCodes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
     @GetMapping("/account/{accountCode}/summary")
     @Operation(summary = "Get account position summary", description = "Retrieves summary of all positions for an account")
     public ResponseEntity<AccountPositionSummary> getAccountSummary(
             @PathVariable String accountCode,
-            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate) {
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOfDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime consistentAsOf) {
 
         LocalDate effectiveDate = asOfDate != null ? asOfDate : LocalDate.now();
-        List<Position> positions = positionService.getPositionsByAccount(accountCode, effectiveDate);
-
-        AccountPositionSummary summary = AccountPositionSummary.builder()
-            .accountCode(accountCode)
-            .asOfDate(effectiveDate)
-            .positionCount(positions.size())
-            .totalCostBasis(positions.stream()
-                .map(Position::getCostBasis)
-                .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add))
-            .totalRealizedPnl(positions.stream()
-                .map(Position::getRealizedPnl)
-                .reduce(java.math.BigDecimal.ZERO, java.math.BigDecimal::add))
-            .build();
+        AccountPositionSummary summary = positionService.getAccountSummary(accountCode, effectiveDate,
+            new ReadConsistency(null, consistentAsOf));
 
         return ResponseEntity.ok(summary);
     }
@@ -94,33 +245,4 @@ public class PositionController {
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Position Service is running");
     }
-
-    private PositionResponse toPositionResponse(Position position) {
-        return PositionResponse.builder()
-            .positionId(position.getPositionId())
-            .accountId(position.getAccountId())
-            .accountCode(position.getAccountCode())
-            .instrumentId(position.getInstrumentId())
-            .symbol(position.getSymbol())
-            .quantity(position.getQuantity())
-            .avgCost(position.getAvgCost())
-            .costBasis(position.getCostBasis())
-            .realizedPnl(position.getRealizedPnl())
-            .currency(position.getCurrency())
-            .asOfDate(position.getAsOfDate())
-            .updatedAt(position.getUpdatedAt())
-            .build();
-    }
-
-    @lombok.Data
-    @lombok.Builder
-    @lombok.NoArgsConstructor
-    @lombok.AllArgsConstructor
-    public static class AccountPositionSummary {
-        private String accountCode;
-        private LocalDate asOfDate;
-        private int positionCount;
-        private java.math.BigDecimal totalCostBasis;
-        private java.math.BigDecimal totalRealizedPnl;
-    }
 }
@@ -0,0 +1,183 @@
+package com.tms.position.dedup;
+
+import com.tms.position.config.PositionProperties;
+import com.tms.position.messaging.TradePartitionListener;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionJournalEntry;
+import com.tms.position.repository.PositionJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Drops trades whose position effect is already committed.
+ *
+ * <p>The persisted marker is the position_history row written in the same
+ * transaction as the position. In front of it sits a {@link TradeIdIndex} of
+ * recently applied trade ids, warmed from position_history whenever partitions
+ * are assigned. A hit is a duplicate. A miss is definitive when the record was
+ * produced after the index's coverage watermark, since the trade cannot have been
+ * applied before it was produced; only older records are checked against the
+ * database, with one query per poll.
+ */
+@Component
+@Order(1)
+@Slf4j
+public class TradeDedupFilter implements TradePartitionListener {
+
+    private final PositionJdbcRepository positionJdbcRepository;
+    private final PositionProperties.Dedup config;
+    private final TradeIdIndex index;
+
+    private final Counter duplicates;
+    private final Counter databaseChecks;
+
+    // Start of the window loaded into the index; nothing is covered before the first warm-up
+    private volatile long warmedSince = Long.MAX_VALUE;
+    private volatile long lastWarmAt = Long.MIN_VALUE;
+
+    public TradeDedupFilter(PositionJdbcRepository positionJdbcRepository,
+                            PositionProperties properties,
+                            MeterRegistry meterRegistry) {
+        this.positionJdbcRepository = positionJdbcRepository;
+        this.config = properties.getDedup();
+        this.index = new TradeIdIndex(config.getCapacity());
+        this.duplicates = Counter.builder("position.dedup.duplicates")
+            .description("Redelivered trades skipped because their position change was already applied")
+            .register(meterRegistry);
+        this.databaseChecks = Counter.builder("position.dedup.database.checks")
+            .description("Trades older than the in-memory index coverage checked against position_history")
+            .register(meterRegistry);
+        Gauge.builder("position.dedup.index.size", index, TradeIdIndex::size)
+            .description("Trade ids held by the in-memory dedup index")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns the records whose trades have not been applied yet, in order.
+     * Also removes repeats of the same trade within the list.
+     */
+    public List<ConsumerRecord<String, EnrichedTrade>> filterUnapplied(
+            List<ConsumerRecord<String, EnrichedTrade>> records) {
+        if (!config.isEnabled()) {
+            return records;
+        }
+
+        long coveredSince = coveredSince();
+        List<ConsumerRecord<String, EnrichedTrade>> unapplied = new ArrayList<>(records.size());
+        Set<String> seen = new HashSet<>();
+        Set<String> uncertain = null;
+
+        for (ConsumerRecord<String, EnrichedTrade> record : records) {
+            EnrichedTrade trade = record.value();
+            if (trade == null) {
+                unapplied.add(record);
+                continue;
+            }
+            String tradeId = trade.getTradeId();
+            if (!seen.add(tradeId) || index.contains(tradeId)) {
+                logDuplicate(record);
+                continue;
+            }
+            if (record.timestamp() < coveredSince) {
+                if (uncertain == null) {
+                    uncertain = new HashSet<>();
+                }
+                uncertain.add(tradeId);
+            }
+            unapplied.add(record);
+        }
+
+        if (uncertain == null) {
+            return unapplied;
+        }
+
+        databaseChecks.increment(uncertain.size());
+        Set<String> applied = positionJdbcRepository.findAppliedTradeIds(uncertain);
+        if (applied.isEmpty()) {
+            return unapplied;
+        }
+        long now = System.currentTimeMillis();
+        List<ConsumerRecord<String, EnrichedTrade>> result = new ArrayList<>(unapplied.size());
+        for (ConsumerRecord<String, EnrichedTrade> record : unapplied) {
+            if (record.value() != null && applied.contains(record.value().getTradeId())) {
+                index.add(record.value().getTradeId(), now);
+                logDuplicate(record);
+            } else {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    // Call once the position change of these trades is committed
+    public void markApplied(Collection<EnrichedTrade> trades) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (EnrichedTrade trade : trades) {
+            index.add(trade.getTradeId(), now);
+        }
+    }
+
+    // Same, for committed changes; their journal names the trades behind them
+    public void markChangesApplied(Collection<PositionChange> changes) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (PositionChange change : changes) {
+            for (PositionJournalEntry entry : change.journal()) {
+                index.add(entry.tradeId(), now);
+            }
+        }
+    }
+
+    // Picks up markers written by the previous owner of the newly assigned partitions
+    @Override
+    public void onTradePartitionsAssigned(Consumer<?, ?> consumer, List<Integer> partitions) {
+        if (!config.isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long skew = config.getClockSkew().toMillis();
+        long from = lastWarmAt == Long.MIN_VALUE
+            ? now - config.getWarmWindow().toMillis()
+            : lastWarmAt - skew;
+
+        LocalDateTime since = new Timestamp(from).toLocalDateTime();
+        int[] loaded = {0};
+        positionJdbcRepository.forEachAppliedTradeSince(since, (tradeId, createdAt) -> {
+            index.add(tradeId, Timestamp.valueOf(createdAt).getTime());
+            loaded[0]++;
+        });
+        if (lastWarmAt == Long.MIN_VALUE) {
+            warmedSince = from;
+        }
+        lastWarmAt = now;
+        log.info("Trade dedup index warmed: partitions={}, since={}, loaded={}, size={}",
+            partitions, since, loaded[0], index.size());
+    }
+
+    private long coveredSince() {
+        long since = Math.max(warmedSince, index.coveredSince());
+        return since == Long.MAX_VALUE ? since : since + config.getClockSkew().toMillis();
+    }
+
+    private void logDuplicate(ConsumerRecord<String, EnrichedTrade> record) {
+        duplicates.increment();
+        log.info("Skipping already applied trade: tradeId={}, partition={}, offset={}",
+            record.value().getTradeId(), record.partition(), record.offset());
+    }
+}
@@ -0,0 +1,151 @@
+package com.tms.position.dedup;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Memory-bounded, lock-free set of recently applied trade ids.
+ *
+ * <p>Ids are stored as 64-bit fingerprints in two open-addressing generations.
+ * Lookups and inserts are CAS-only; when the current generation fills up it
+ * becomes the previous one and the old previous generation is dropped. The
+ * index remembers the latest apply time it ever dropped, so
+ * {@link #coveredSince()} tells callers from which instant a miss is definitive.
+ */
+public class TradeIdIndex {
+
+    private static final int MAX_PROBES = 32;
+    private static final int PRESENT = 0;
+    private static final int INSERTED = 1;
+    private static final int FULL = 2;
+
+    private final int capacity;
+    private final int rotateThreshold;
+    private final ReentrantLock rotationLock = new ReentrantLock();
+
+    private volatile Generation current;
+    private volatile Generation previous;
+    private volatile long droppedHighWater = Long.MIN_VALUE;
+
+    public TradeIdIndex(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(capacity, 1024) - 1) << 1;
+        this.rotateThreshold = this.capacity / 2;
+        this.current = new Generation(this.capacity);
+    }
+
+    public boolean contains(String tradeId) {
+        long fingerprint = fingerprint(tradeId);
+        Generation older = previous;
+        return current.contains(fingerprint) || (older != null && older.contains(fingerprint));
+    }
+
+    public void add(String tradeId, long appliedAtMillis) {
+        long fingerprint = fingerprint(tradeId);
+        while (true) {
+            Generation generation = current;
+            // Raise the watermark before the id becomes visible, so a concurrent drop never under-reports
+            generation.maxAppliedAt.accumulateAndGet(appliedAtMillis, Math::max);
+            int result = generation.insert(fingerprint);
+            if (result == PRESENT) {
+                return;
+            }
+            if (result == INSERTED) {
+                if (generation.size.incrementAndGet() >= rotateThreshold) {
+                    rotate(generation);
+                }
+                return;
+            }
+            rotate(generation);
+        }
+    }
+
+    // Every id applied after this instant is still in the index
+    public long coveredSince() {
+        return droppedHighWater;
+    }
+
+    public int size() {
+        Generation older = previous;
+        return current.size.get() + (older != null ? older.size.get() : 0);
+    }
+
+    private void rotate(Generation full) {
+        rotationLock.lock();
+        try {
+            if (current != full) {
+                return;
+            }
+            Generation dropped = previous;
+            if (dropped != null) {
+                droppedHighWater = Math.max(droppedHighWater, dropped.maxAppliedAt.get());
+            }
+            previous = full;
+            current = new Generation(capacity);
+        } finally {
+            rotationLock.unlock();
+        }
+    }
+
+    static long fingerprint(String tradeId) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < tradeId.length(); i++) {
+            h = (h ^ tradeId.charAt(i)) * 0x100000001b3L;
+        }
+        // fmix64 finalizer spreads FNV's weak low bits
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        // 0 marks an empty slot
+        return h == 0 ? 1 : h;
+    }
+
+    private static final class Generation {
+
+        final AtomicLongArray slots;
+        final int mask;
+        final AtomicInteger size = new AtomicInteger();
+        final AtomicLong maxAppliedAt = new AtomicLong(Long.MIN_VALUE);
+
+        Generation(int capacity) {
+            this.slots = new AtomicLongArray(capacity);
+            this.mask = capacity - 1;
+        }
+
+        boolean contains(long fingerprint) {
+            int index = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                long slot = slots.get(index);
+                if (slot == fingerprint) {
+                    return true;
+                }
+                if (slot == 0) {
+                    return false;
+                }
+                index = (index + 1) & mask;
+            }
+            return false;
+        }
+
+        int insert(long fingerprint) {
+            int index = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                long slot = slots.get(index);
+                if (slot == 0) {
+                    if (slots.compareAndSet(index, 0, fingerprint)) {
+                        return INSERTED;
+                    }
+                    slot = slots.get(index);
+                }
+                if (slot == fingerprint) {
+                    return PRESENT;
+                }
+                index = (index + 1) & mask;
+            }
+            return FULL;
+        }
+    }
+}
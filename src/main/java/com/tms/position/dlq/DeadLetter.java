@@ -0,0 +1,36 @@
+package com.tms.position.dlq;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A parked trade: the trades.enriched key and payload plus failure metadata
+ * headers, as it goes to the DLQ topic or the local store.
+ */
+record DeadLetter(String key, byte[] value, Map<String, String> headers) {
+
+    static final String ORIGINAL_TOPIC = "dlq-original-topic";
+    static final String ORIGINAL_PARTITION = "dlq-original-partition";
+    static final String ORIGINAL_OFFSET = "dlq-original-offset";
+    static final String ORIGINAL_TIMESTAMP = "dlq-original-timestamp";
+    static final String EXCEPTION = "dlq-exception";
+    static final String EXCEPTION_MESSAGE = "dlq-exception-message";
+    static final String FAILED_AT = "dlq-failed-at";
+
+    static Map<String, String> failureHeaders(String topic, int partition, long offset, long timestamp,
+                                              Throwable cause) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put(ORIGINAL_TOPIC, topic);
+        headers.put(ORIGINAL_PARTITION, Integer.toString(partition));
+        headers.put(ORIGINAL_OFFSET, Long.toString(offset));
+        headers.put(ORIGINAL_TIMESTAMP, Long.toString(timestamp));
+        if (cause != null) {
+            headers.put(EXCEPTION, cause.getClass().getName());
+            if (cause.getMessage() != null) {
+                headers.put(EXCEPTION_MESSAGE, cause.getMessage());
+            }
+        }
+        headers.put(FAILED_AT, Long.toString(System.currentTimeMillis()));
+        return headers;
+    }
+}
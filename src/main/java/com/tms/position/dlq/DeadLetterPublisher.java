@@ -0,0 +1,205 @@
+package com.tms.position.dlq;
+
+import com.tms.position.config.PositionProperties;
+import com.tms.position.messaging.EnrichedTradeEncoder;
+import com.tms.position.model.EnrichedTrade;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.core.log.LogAccessor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parks trades that could not be applied: on the DLQ topic, or in a local store
+ * while the topic cannot be reached, from where they are forwarded later. A park
+ * returns only once the trades are durable in one of the two, so the caller can
+ * acknowledge them afterwards; if neither works it throws and the caller must not.
+ *
+ * <p>Decoded trades are parked re-encoded; undecodable ones with the raw payload
+ * the deserializer kept. Uses its own idempotent producer, like the compact
+ * PositionUpdated sender, so the default KafkaTemplate stays in place.
+ */
+@Component
+@Slf4j
+public class DeadLetterPublisher {
+
+    private static final LogAccessor LOG_ACCESSOR = new LogAccessor(DeadLetterPublisher.class);
+
+    private final DefaultKafkaProducerFactory<String, byte[]> producerFactory;
+    private final KafkaTemplate<String, byte[]> kafkaTemplate;
+    private final EnrichedTradeEncoder encoder = new EnrichedTradeEncoder();
+    private final LocalDeadLetterStore localStore;
+    private final PositionProperties.Dlq properties;
+    private final Counter parked;
+    private final Counter parkedLocally;
+    private final Counter forwarded;
+
+    public DeadLetterPublisher(KafkaProperties kafkaProperties,
+                               ObjectProvider<SslBundles> sslBundles,
+                               PositionProperties positionProperties,
+                               MeterRegistry meterRegistry) {
+        this.properties = positionProperties.getDlq();
+        this.producerFactory = new DefaultKafkaProducerFactory<>(
+            producerConfig(kafkaProperties, sslBundles.getIfAvailable(), properties));
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        this.localStore = new LocalDeadLetterStore(Path.of(properties.getLocalDirectory()));
+        this.parked = Counter.builder("position.dlq.parked")
+            .description("Trades published to the DLQ topic")
+            .register(meterRegistry);
+        this.parkedLocally = Counter.builder("position.dlq.parked.local")
+            .description("Trades parked in the local store because the DLQ topic was unavailable")
+            .register(meterRegistry);
+        this.forwarded = Counter.builder("position.dlq.forwarded")
+            .description("Trades forwarded from the local store to the DLQ topic")
+            .register(meterRegistry);
+    }
+
+    private static Map<String, Object> producerConfig(KafkaProperties kafkaProperties, SslBundles sslBundles,
+                                                      PositionProperties.Dlq dlq) {
+        Map<String, Object> config = kafkaProperties.buildProducerProperties(sslBundles);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class);
+        config.put(ProducerConfig.ACKS_CONFIG, "all");
+        config.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        // Fail over to the local store instead of blocking the consumer on metadata
+        config.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, dlq.getSendTimeout().toMillis());
+        return config;
+    }
+
+    public void park(ConsumerRecord<String, EnrichedTrade> record, Throwable cause) {
+        park(List.of(record), cause);
+    }
+
+    /**
+     * Whether a failure lies with the database rather than with the trades. Such a
+     * batch is not worth splitting into single trades: each of them would fail too.
+     */
+    public static boolean isDatabaseUnavailable(Throwable e) {
+        return e instanceof TransientDataAccessException
+            || e instanceof RecoverableDataAccessException
+            || e instanceof DataAccessResourceFailureException
+            || e instanceof TransactionException
+            || e instanceof CallNotPermittedException;
+    }
+
+    public void park(List<ConsumerRecord<String, EnrichedTrade>> records, Throwable cause) {
+        if (records.isEmpty()) {
+            return;
+        }
+        List<DeadLetter> letters = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, EnrichedTrade> record : records) {
+            letters.add(toDeadLetter(record, cause));
+        }
+
+        if (send(letters)) {
+            parked.increment(letters.size());
+            log.warn("Parked {} trade(s) on {}", letters.size(), properties.getTopic());
+            return;
+        }
+        try {
+            localStore.append(letters);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to park " + letters.size() + " trade(s) locally", e);
+        }
+        parkedLocally.increment(letters.size());
+        log.warn("DLQ topic unavailable, parked {} trade(s) in {}", letters.size(), properties.getLocalDirectory());
+    }
+
+    // A batch already sent in part is stored again as a whole; replay drops the repeats
+    @Scheduled(fixedDelayString = "${position.dlq.forward-interval-ms:30000}")
+    public void forwardLocal() {
+        try {
+            int count = localStore.forward(this::send);
+            if (count > 0) {
+                forwarded.increment(count);
+                log.info("Forwarded {} locally parked trade(s) to {}", count, properties.getTopic());
+            }
+        } catch (IOException e) {
+            log.error("Failed to forward locally parked trades", e);
+        }
+    }
+
+    private boolean send(List<DeadLetter> letters) {
+        try {
+            CompletableFuture<?>[] sends = new CompletableFuture<?>[letters.size()];
+            for (int i = 0; i < sends.length; i++) {
+                sends[i] = kafkaTemplate.send(toProducerRecord(letters.get(i)));
+            }
+            CompletableFuture.allOf(sends).get(properties.getSendTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            log.warn("Failed to publish {} dead letter(s) to {}", letters.size(), properties.getTopic(), e);
+            return false;
+        }
+    }
+
+    private ProducerRecord<String, byte[]> toProducerRecord(DeadLetter letter) {
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(properties.getTopic(), letter.key(),
+            letter.value());
+        letter.headers().forEach((name, value) -> {
+            if (value != null) {
+                record.headers().add(name, value.getBytes(StandardCharsets.UTF_8));
+            }
+        });
+        return record;
+    }
+
+    private DeadLetter toDeadLetter(ConsumerRecord<String, EnrichedTrade> record, Throwable cause) {
+        byte[] value;
+        Throwable failure = cause;
+        if (record.value() != null) {
+            value = encoder.encode(record.value());
+        } else {
+            DeserializationException error = SerializationUtils.getExceptionFromHeader(record,
+                SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR);
+            value = error != null ? error.getData() : null;
+            if (failure == null) {
+                failure = error;
+            }
+        }
+        return new DeadLetter(record.key(), value, DeadLetter.failureHeaders(record.topic(), record.partition(),
+            record.offset(), record.timestamp(), failure));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        producerFactory.destroy();
+        try {
+            localStore.close();
+        } catch (IOException e) {
+            log.warn("Failed to close the local dead letter store", e);
+        }
+    }
+}
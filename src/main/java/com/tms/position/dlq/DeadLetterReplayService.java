@@ -0,0 +1,315 @@
+package com.tms.position.dlq;
+
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dedup.TradeDedupFilter;
+import com.tms.position.dto.DeadLetterReplayResponse;
+import com.tms.position.messaging.EnrichedTradeDecoder;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.repository.PositionTables;
+import com.tms.position.service.PositionService;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-ingests parked trades from the DLQ topic through the batched update path.
+ * Each poll is put back into the original partition and offset order, which keeps
+ * the trades of a position in order, and applied in one transaction after taking
+ * its permits from a rate limiter, so a large backlog cannot crowd out live
+ * traffic. Trades applied in the meantime are dropped by the dedup filter. Offsets
+ * are committed per poll, so a stopped or failed replay resumes where it left off.
+ *
+ * <p>If a poll's transaction fails for anything but an unavailable database, its
+ * trades are applied one at a time; those that still fail are skipped and counted,
+ * so a single bad trade cannot hold back the rest of the backlog.
+ */
+@Service
+@Slf4j
+public class DeadLetterReplayService {
+
+    private static final String STATUS_IDLE = "IDLE";
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_COMPLETED = "COMPLETED";
+    private static final String STATUS_STOPPED = "STOPPED";
+    private static final String STATUS_FAILED = "FAILED";
+
+    // Polls that must come back empty before the backlog counts as drained
+    private static final int EMPTY_POLLS_TO_FINISH = 3;
+
+    private final PositionService positionService;
+    private final TradeDedupFilter tradeDedupFilter;
+    private final PositionTables positionTables;
+    private final PositionProperties properties;
+    private final DefaultKafkaConsumerFactory<String, byte[]> consumerFactory;
+    private final EnrichedTradeDecoder decoder = new EnrichedTradeDecoder();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "position-dlq-replay");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean stopRequested = new AtomicBoolean();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+    private final Counter replayedTrades;
+    private final Counter rejectedTrades;
+    private volatile String status = STATUS_IDLE;
+    private volatile String message;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    public DeadLetterReplayService(PositionService positionService,
+                                   TradeDedupFilter tradeDedupFilter,
+                                   PositionTables positionTables,
+                                   KafkaProperties kafkaProperties,
+                                   ObjectProvider<SslBundles> sslBundles,
+                                   PositionProperties properties,
+                                   MeterRegistry meterRegistry) {
+        this.positionService = positionService;
+        this.tradeDedupFilter = tradeDedupFilter;
+        this.positionTables = positionTables;
+        this.properties = properties;
+        this.consumerFactory = new DefaultKafkaConsumerFactory<>(
+            consumerConfig(kafkaProperties, sslBundles.getIfAvailable(), properties.getDlq()));
+        this.replayedTrades = Counter.builder("position.dlq.replayed")
+            .description("Parked trades applied by a DLQ replay")
+            .register(meterRegistry);
+        this.rejectedTrades = Counter.builder("position.dlq.rejected")
+            .description("Parked trades that failed again on replay and were skipped")
+            .register(meterRegistry);
+    }
+
+    private static Map<String, Object> consumerConfig(KafkaProperties kafkaProperties, SslBundles sslBundles,
+                                                      PositionProperties.Dlq dlq) {
+        Map<String, Object> config = kafkaProperties.buildConsumerProperties(sslBundles);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, dlq.getReplayGroupId());
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class);
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        return config;
+    }
+
+    /**
+     * Starts replaying in the background. A rate or limit of 0 or less means the
+     * configured rate and no limit.
+     *
+     * @throws IllegalStateException if a replay is running, or the service runs in book mode
+     */
+    public DeadLetterReplayResponse start(int ratePerSecond, long maxTrades) {
+        // The book owns its positions; writing them behind its back would be overwritten
+        if ("book".equals(properties.getConsumer().getMode())) {
+            throw new IllegalStateException("DLQ replay is not supported in book mode");
+        }
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("DLQ replay already running");
+        }
+
+        int rate = ratePerSecond > 0 ? ratePerSecond : properties.getDlq().getReplayRate();
+        stopRequested.set(false);
+        replayed.set(0);
+        skipped.set(0);
+        status = STATUS_RUNNING;
+        message = null;
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        log.info("DLQ replay started: topic={}, rate={}/s, maxTrades={}",
+            properties.getDlq().getTopic(), rate, maxTrades);
+
+        executor.execute(() -> {
+            try {
+                replay(rate, maxTrades);
+                status = stopRequested.get() ? STATUS_STOPPED : STATUS_COMPLETED;
+            } catch (Exception e) {
+                log.error("DLQ replay failed: replayed={}", replayed.get(), e);
+                status = STATUS_FAILED;
+                message = e.getMessage();
+            } finally {
+                finishedAt = LocalDateTime.now();
+                running.set(false);
+                log.info("DLQ replay finished: status={}, replayed={}, skipped={}",
+                    status, replayed.get(), skipped.get());
+            }
+        });
+        return status();
+    }
+
+    public void stop() {
+        stopRequested.set(true);
+    }
+
+    public DeadLetterReplayResponse status() {
+        return DeadLetterReplayResponse.builder()
+            .status(status)
+            .replayed(replayed.get())
+            .skipped(skipped.get())
+            .startedAt(startedAt)
+            .finishedAt(finishedAt)
+            .message(message)
+            .build();
+    }
+
+    private void replay(int rate, long maxTrades) {
+        // A poll never holds more trades than one period's permits
+        RateLimiter rateLimiter = RateLimiter.of("dlq-replay", RateLimiterConfig.custom()
+            .limitForPeriod(rate)
+            .limitRefreshPeriod(Duration.ofSeconds(1))
+            .timeoutDuration(Duration.ofSeconds(1))
+            .build());
+
+        // One poll is one transaction and one rate limiter acquisition
+        Properties overrides = new Properties();
+        overrides.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG,
+            String.valueOf(Math.min(Math.max(1, properties.getDlq().getReplayBatchSize()), rate)));
+        try (Consumer<String, byte[]> consumer = consumerFactory.createConsumer(null, null, null, overrides)) {
+            consumer.subscribe(List.of(properties.getDlq().getTopic()));
+            int emptyPolls = 0;
+            while (!stopRequested.get() && (maxTrades <= 0 || replayed.get() + skipped.get() < maxTrades)) {
+                ConsumerRecords<String, byte[]> records = consumer.poll(Duration.ofSeconds(1));
+                if (records.isEmpty()) {
+                    if (!consumer.assignment().isEmpty() && ++emptyPolls >= EMPTY_POLLS_TO_FINISH) {
+                        return;
+                    }
+                    continue;
+                }
+                emptyPolls = 0;
+
+                List<ConsumerRecord<String, EnrichedTrade>> trades = decode(records);
+                if (!trades.isEmpty()) {
+                    if (!acquire(rateLimiter, trades.size())) {
+                        // Stopped without permits: the poll stays uncommitted for the next replay
+                        return;
+                    }
+                    apply(trades);
+                }
+                consumer.commitSync();
+            }
+        }
+    }
+
+    private List<ConsumerRecord<String, EnrichedTrade>> decode(ConsumerRecords<String, byte[]> records) {
+        List<ConsumerRecord<String, EnrichedTrade>> trades = new ArrayList<>(records.count());
+        for (ConsumerRecord<String, byte[]> record : records) {
+            try {
+                EnrichedTrade trade = decoder.decode(record.value());
+                if (!positionTables.isHot(trade.getTradeDate())) {
+                    // Stays on the DLQ topic for manual correction of the archived date
+                    skipped.incrementAndGet();
+                    log.error("Skipping parked trade for a date outside the hot window: tradeId={}, tradeDate={}, " +
+                        "partition={}, offset={}", trade.getTradeId(), trade.getTradeDate(),
+                        record.partition(), record.offset());
+                    continue;
+                }
+                // Restores the original position so ordering and dedup see the trade as it first arrived
+                trades.add(new ConsumerRecord<>(
+                    header(record, DeadLetter.ORIGINAL_TOPIC, record.topic()),
+                    Integer.parseInt(header(record, DeadLetter.ORIGINAL_PARTITION, "0")),
+                    Long.parseLong(header(record, DeadLetter.ORIGINAL_OFFSET, "0")),
+                    Long.parseLong(header(record, DeadLetter.ORIGINAL_TIMESTAMP, "0")),
+                    TimestampType.CREATE_TIME, -1, -1, record.key(), trade, new RecordHeaders(),
+                    Optional.empty()));
+            } catch (RuntimeException e) {
+                skipped.incrementAndGet();
+                log.error("Skipping undecodable parked trade: partition={}, offset={}",
+                    record.partition(), record.offset(), e);
+            }
+        }
+        trades.sort(Comparator.<ConsumerRecord<String, EnrichedTrade>>comparingInt(ConsumerRecord::partition)
+            .thenComparingLong(ConsumerRecord::offset));
+        return trades;
+    }
+
+    private void apply(List<ConsumerRecord<String, EnrichedTrade>> records) {
+        List<ConsumerRecord<String, EnrichedTrade>> unapplied = tradeDedupFilter.filterUnapplied(records);
+        skipped.addAndGet(records.size() - unapplied.size());
+        if (unapplied.isEmpty()) {
+            return;
+        }
+        List<EnrichedTrade> trades = unapplied.stream().map(ConsumerRecord::value).toList();
+        try {
+            positionService.updatePositions(trades);
+        } catch (RuntimeException e) {
+            // Failures of the database end the replay with the poll uncommitted
+            if (DeadLetterPublisher.isDatabaseUnavailable(e)) {
+                throw e;
+            }
+            // A trade that was parked for throwing throws again; find it instead of failing every replay here
+            log.warn("DLQ replay batch failed, applying its trades one by one: size={}", trades.size(), e);
+            applyIndividually(unapplied);
+            return;
+        }
+        tradeDedupFilter.markApplied(trades);
+        replayed.addAndGet(trades.size());
+        replayedTrades.increment(trades.size());
+    }
+
+    private void applyIndividually(List<ConsumerRecord<String, EnrichedTrade>> records) {
+        for (ConsumerRecord<String, EnrichedTrade> record : records) {
+            EnrichedTrade trade = record.value();
+            try {
+                positionService.updatePosition(trade);
+            } catch (RuntimeException e) {
+                if (DeadLetterPublisher.isDatabaseUnavailable(e)) {
+                    throw e;
+                }
+                // Left behind on the DLQ topic, below the committed offset, for manual correction
+                skipped.incrementAndGet();
+                rejectedTrades.increment();
+                log.error("Skipping parked trade that still fails: tradeId={}, partition={}, offset={}",
+                    trade.getTradeId(), record.partition(), record.offset(), e);
+                continue;
+            }
+            tradeDedupFilter.markApplied(List.of(trade));
+            replayed.incrementAndGet();
+            replayedTrades.increment();
+        }
+    }
+
+    // False if the replay was stopped before the permits were granted
+    private boolean acquire(RateLimiter rateLimiter, int permits) {
+        while (!rateLimiter.acquirePermission(permits)) {
+            if (stopRequested.get()) {
+                return false;
+            }
+            // Otherwise waits out the current period
+        }
+        return true;
+    }
+
+    private static String header(ConsumerRecord<?, ?> record, String name, String defaultValue) {
+        Header header = record.headers().lastHeader(name);
+        return header != null ? new String(header.value(), StandardCharsets.UTF_8) : defaultValue;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested.set(true);
+        executor.shutdown();
+    }
+}
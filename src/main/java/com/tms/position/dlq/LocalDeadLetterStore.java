@@ -0,0 +1,185 @@
+package com.tms.position.dlq;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only segment files holding dead letters while the DLQ topic cannot be
+ * reached. Every append is forced to disk before it returns. Each entry is framed
+ * by its length and a CRC32, so a write torn by a crash ends the segment instead
+ * of corrupting it.
+ */
+@Slf4j
+final class LocalDeadLetterStore {
+
+    private static final String SEGMENT_PREFIX = "dead-letters-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private FileChannel current;
+    private long nextSegment;
+
+    LocalDeadLetterStore(Path directory) {
+        this.directory = directory;
+    }
+
+    synchronized void append(List<DeadLetter> letters) throws IOException {
+        if (current == null) {
+            Files.createDirectories(directory);
+            // Names sort in creation order, also across restarts
+            Path segment = directory.resolve(SEGMENT_PREFIX + System.currentTimeMillis() + "-"
+                + (nextSegment++) + SEGMENT_SUFFIX);
+            current = FileChannel.open(segment, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+        for (DeadLetter letter : letters) {
+            byte[] entry = encode(letter);
+            CRC32 crc = new CRC32();
+            crc.update(entry);
+            ByteBuffer frame = ByteBuffer.allocate(12 + entry.length);
+            frame.putInt(entry.length).putLong(crc.getValue()).put(entry).flip();
+            while (frame.hasRemaining()) {
+                current.write(frame);
+            }
+        }
+        current.force(false);
+    }
+
+    /**
+     * Hands each stored segment, oldest first, to the sender and deletes it once the
+     * sender accepted it. Stops at the first segment the sender rejects. Returns the
+     * number of dead letters forwarded.
+     */
+    int forward(Predicate<List<DeadLetter>> sender) throws IOException {
+        synchronized (this) {
+            // New appends go to a fresh segment, so every existing one is complete
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+        }
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+
+        List<Path> segments;
+        try (Stream<Path> files = Files.list(directory)) {
+            segments = files
+                .filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                .sorted()
+                .toList();
+        }
+
+        int forwarded = 0;
+        for (Path segment : segments) {
+            List<DeadLetter> letters = read(segment);
+            if (!letters.isEmpty() && !sender.test(letters)) {
+                break;
+            }
+            Files.delete(segment);
+            forwarded += letters.size();
+        }
+        return forwarded;
+    }
+
+    synchronized void close() throws IOException {
+        if (current != null) {
+            current.close();
+            current = null;
+        }
+    }
+
+    private static List<DeadLetter> read(Path segment) throws IOException {
+        List<DeadLetter> letters = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                try {
+                    long checksum = in.readLong();
+                    byte[] entry = in.readNBytes(length);
+                    CRC32 crc = new CRC32();
+                    crc.update(entry);
+                    if (entry.length < length || crc.getValue() != checksum) {
+                        log.warn("Dropping torn tail of dead letter segment: file={}, entries={}",
+                            segment.getFileName(), letters.size());
+                        break;
+                    }
+                    letters.add(decode(entry));
+                } catch (EOFException e) {
+                    log.warn("Dropping torn tail of dead letter segment: file={}, entries={}",
+                        segment.getFileName(), letters.size());
+                    break;
+                }
+            }
+        }
+        return letters;
+    }
+
+    private static byte[] encode(DeadLetter letter) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256 + (letter.value() != null
+            ? letter.value().length : 0));
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeNullable(out, letter.key());
+            if (letter.value() == null) {
+                out.writeInt(-1);
+            } else {
+                out.writeInt(letter.value().length);
+                out.write(letter.value());
+            }
+            out.writeInt(letter.headers().size());
+            for (Map.Entry<String, String> header : letter.headers().entrySet()) {
+                out.writeUTF(header.getKey());
+                writeNullable(out, header.getValue());
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    private static DeadLetter decode(byte[] entry) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry))) {
+            String key = readNullable(in);
+            int valueLength = in.readInt();
+            byte[] value = valueLength < 0 ? null : in.readNBytes(valueLength);
+            int headerCount = in.readInt();
+            Map<String, String> headers = new LinkedHashMap<>();
+            for (int i = 0; i < headerCount; i++) {
+                headers.put(in.readUTF(), readNullable(in));
+            }
+            return new DeadLetter(key, value, headers);
+        }
+    }
+
+    // writeUTF is limited to 64 KB, which long exception messages can exceed
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        return length < 0 ? null : new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+}
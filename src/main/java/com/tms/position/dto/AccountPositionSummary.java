@@ -0,0 +1,22 @@
+package com.tms.position.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountPositionSummary {
+    private String accountCode;
+    private LocalDate asOfDate;
+    private int positionCount;
+    private BigDecimal totalCostBasis;
+    private BigDecimal totalRealizedPnl;
+    private BigDecimal totalMarketValue;
+}
@@ -0,0 +1,21 @@
+package com.tms.position.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One account's part of a bulk response. The summary is only set when requested.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountPositionsResponse {
+    private String accountCode;
+    private List<PositionResponse> positions;
+    private AccountPositionSummary summary;
+}
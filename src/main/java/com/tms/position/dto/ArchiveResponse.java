@@ -0,0 +1,20 @@
+package com.tms.position.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveResponse {
+    // Dates before this were moved
+    private LocalDate archivedBefore;
+    private int datesArchived;
+    private long rowsArchived;
+    private long durationMs;
+}
@@ -0,0 +1,26 @@
+package com.tms.position.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Positions of several accounts in one call. Without symbols all of an account's
+ * positions are returned; asOfDate defaults to today.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPositionRequest {
+    @NotEmpty
+    private List<String> accountCodes;
+    private LocalDate asOfDate;
+    private List<String> symbols;
+    private boolean includeSummaries;
+}
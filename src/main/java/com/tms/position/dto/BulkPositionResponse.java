@@ -0,0 +1,21 @@
+package com.tms.position.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Bulk query result, one entry per requested account in request order.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPositionResponse {
+    private LocalDate asOfDate;
+    private List<AccountPositionsResponse> accounts;
+}
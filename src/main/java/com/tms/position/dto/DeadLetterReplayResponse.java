@@ -0,0 +1,23 @@
+package com.tms.position.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeadLetterReplayResponse {
+    // IDLE, RUNNING, COMPLETED, STOPPED or FAILED
+    private String status;
+    private long replayed;
+    // Already applied, or still undecodable
+    private long skipped;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String message;
+}
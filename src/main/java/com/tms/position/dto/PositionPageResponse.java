@@ -0,0 +1,22 @@
+package com.tms.position.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One keyset page of account positions. Pass nextAfterSymbol and
+ * nextAfterPositionId back to fetch the following page; both are null on the last page.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PositionPageResponse {
+    private List<PositionResponse> positions;
+    private String nextAfterSymbol;
+    private Long nextAfterPositionId;
+}
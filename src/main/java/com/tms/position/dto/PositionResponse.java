@@ -1,5 +1,6 @@
 package com.tms.position.dto;
 
+import com.tms.position.entity.Position;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -28,4 +29,23 @@ public class PositionResponse {
     private String currency;
     private LocalDate asOfDate;
     private LocalDateTime updatedAt;
+
+    public static PositionResponse from(Position position) {
+        return PositionResponse.builder()
+            .positionId(position.getPositionId())
+            .accountId(position.getAccountId())
+            .accountCode(position.getAccountCode())
+            .instrumentId(position.getInstrumentId())
+            .symbol(position.getSymbol())
+            .quantity(position.getQuantity())
+            .avgCost(position.getAvgCost())
+            .costBasis(position.getCostBasis())
+            .marketValue(position.getMarketValue())
+            .unrealizedPnl(position.getUnrealizedPnl())
+            .realizedPnl(position.getRealizedPnl())
+            .currency(position.getCurrency())
+            .asOfDate(position.getAsOfDate())
+            .updatedAt(position.getUpdatedAt())
+            .build();
+    }
 }
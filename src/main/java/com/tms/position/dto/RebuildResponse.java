@@ -0,0 +1,21 @@
+package com.tms.position.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RebuildResponse {
+    private LocalDate asOfDate;
+    // Null when no snapshot exists and the whole journal was replayed
+    private Long snapshotId;
+    private long positionsRebuilt;
+    private long positionsCorrected;
+    private long durationMs;
+}
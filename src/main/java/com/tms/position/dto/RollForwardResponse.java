@@ -0,0 +1,23 @@
+package com.tms.position.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollForwardResponse {
+    private LocalDate fromDate;
+    private LocalDate toDate;
+    private int shards;
+    private int completedShards;
+    // Completed by an earlier run or claimed by another instance
+    private int skippedShards;
+    private int failedShards;
+    private long rowsCopied;
+}
@@ -1,5 +1,6 @@
 package com.tms.position.entity;
 
+import com.tms.position.model.EnrichedTrade;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -14,7 +15,7 @@ import java.time.LocalDateTime;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 public class Position {
 
     @Id
@@ -43,10 +44,11 @@ public class Position {
     @Column(name = "cost_basis", nullable = false, precision = 18, scale = 4)
     private BigDecimal costBasis;
 
-    @Column(name = "market_value", precision = 18, scale = 4)
+    // Written only by the revaluation engine, so a trade update never overwrites a newer valuation
+    @Column(name = "market_value", precision = 18, scale = 4, insertable = false, updatable = false)
     private BigDecimal marketValue;
 
-    @Column(name = "unrealized_pnl", precision = 18, scale = 4)
+    @Column(name = "unrealized_pnl", precision = 18, scale = 4, insertable = false, updatable = false)
     private BigDecimal unrealizedPnl;
 
     @Column(name = "realized_pnl", precision = 18, scale = 4)
@@ -68,6 +70,44 @@ public class Position {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    // Flat position for the first trade of an account/instrument on a date
+    public static Position opening(EnrichedTrade trade) {
+        return Position.builder()
+            .accountId(trade.getAccountId())
+            .accountCode(trade.getAccountCode())
+            .instrumentId(trade.getInstrumentId())
+            .symbol(trade.getSymbol())
+            .quantity(BigDecimal.ZERO)
+            .avgCost(BigDecimal.ZERO)
+            .costBasis(BigDecimal.ZERO)
+            .realizedPnl(BigDecimal.ZERO)
+            .currency(trade.getCurrency())
+            .asOfDate(trade.getTradeDate())
+            .build();
+    }
+
+    // First row of a date for a position that was open on an earlier date: carries
+    // the holding and its cost, realized P&L starts again from zero
+    public static Position carriedForward(Position prior, LocalDate asOfDate) {
+        return Position.builder()
+            .accountId(prior.getAccountId())
+            .accountCode(prior.getAccountCode())
+            .instrumentId(prior.getInstrumentId())
+            .symbol(prior.getSymbol())
+            .quantity(prior.getQuantity())
+            .avgCost(prior.getAvgCost())
+            .costBasis(prior.getCostBasis())
+            .realizedPnl(BigDecimal.ZERO)
+            .currency(prior.getCurrency())
+            .asOfDate(asOfDate)
+            .build();
+    }
+
+    // Opening row for a trade's date, carried from the latest earlier row if there is one
+    public static Position opening(EnrichedTrade trade, Position prior) {
+        return prior != null ? carriedForward(prior, trade.getTradeDate()) : opening(trade);
+    }
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
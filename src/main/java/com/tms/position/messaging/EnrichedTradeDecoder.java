@@ -0,0 +1,229 @@
+package com.tms.position.messaging;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.tms.position.calculation.FixedPoint;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.TradeSide;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Streaming decoder for trades.enriched payloads. Reads the JSON token stream
+ * straight into an {@link EnrichedTrade}, skipping every field position keeping
+ * does not use, without building an intermediate Map tree. Thread-safe.
+ */
+public class EnrichedTradeDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public EnrichedTrade decode(byte[] data) {
+        EnrichedTrade trade = new EnrichedTrade();
+        decode(data, trade);
+        return trade;
+    }
+
+    public void decode(byte[] data, EnrichedTrade trade) {
+        if (data == null || data.length == 0) {
+            throw new EnrichedTradeDecodingException("Empty enriched trade payload");
+        }
+
+        trade.reset();
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new EnrichedTradeDecodingException("Enriched trade payload is not a JSON object");
+            }
+            readTrade(parser, trade);
+        } catch (EnrichedTradeDecodingException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            throw new EnrichedTradeDecodingException("Malformed enriched trade payload: " + e.getMessage(), e);
+        }
+        validate(trade);
+    }
+
+    private void readTrade(JsonParser parser, EnrichedTrade trade) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "tradeId" -> trade.setTradeId(text(parser, token));
+                case "correlationId" -> trade.setCorrelationId(text(parser, token));
+                case "currency" -> trade.setCurrency(text(parser, token));
+                case "side" -> {
+                    trade.setSide(text(parser, token));
+                    trade.setTradeSide(TradeSide.parse(trade.getSide()));
+                }
+                case "quantity" -> readQuantity(parser, token, trade);
+                case "price" -> readPrice(parser, token, trade);
+                case "tradeDate" -> trade.setTradeDate(date(parser, token));
+                case "eventTime" -> {
+                    // Only the epoch-millis form is used; other forms fall back to the record timestamp
+                    if (token == JsonToken.VALUE_NUMBER_INT) {
+                        trade.setEventTime(parser.getLongValue());
+                    }
+                }
+                case "account" -> readAccount(parser, token, trade);
+                case "instrument" -> readInstrument(parser, token, trade);
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readAccount(JsonParser parser, JsonToken token, EnrichedTrade trade) throws IOException {
+        expectObject(token, "account");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "accountId" -> trade.setAccountId(longValue(parser, value, "account.accountId"));
+                case "accountCode" -> trade.setAccountCode(text(parser, value));
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readInstrument(JsonParser parser, JsonToken token, EnrichedTrade trade) throws IOException {
+        expectObject(token, "instrument");
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "instrumentId" -> trade.setInstrumentId(longValue(parser, value, "instrument.instrumentId"));
+                case "symbol" -> trade.setSymbol(text(parser, value));
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    private void readQuantity(JsonParser parser, JsonToken token, EnrichedTrade trade) throws IOException {
+        long scaled = scaledDecimal(parser, token, FixedPoint.QUANTITY_SCALE, "quantity");
+        trade.setScaledQuantity(scaled);
+        if (scaled == FixedPoint.NaN) {
+            trade.setExactQuantity(exactDecimal(parser, "quantity"));
+        }
+    }
+
+    private void readPrice(JsonParser parser, JsonToken token, EnrichedTrade trade) throws IOException {
+        long scaled = scaledDecimal(parser, token, FixedPoint.COST_SCALE, "price");
+        trade.setScaledPrice(scaled);
+        if (scaled == FixedPoint.NaN) {
+            trade.setExactPrice(exactDecimal(parser, "price"));
+        }
+    }
+
+    // Decimals arrive as strings upstream, but plain JSON numbers are accepted too
+    private long scaledDecimal(JsonParser parser, JsonToken token, int scale, String field) throws IOException {
+        if (token != JsonToken.VALUE_STRING && token != JsonToken.VALUE_NUMBER_INT
+                && token != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw new EnrichedTradeDecodingException("Field '" + field + "' must be a decimal, was " + token
+                + " at " + parser.currentLocation());
+        }
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        return FixedPoint.parse(CharBuffer.wrap(chars, offset, parser.getTextLength()), scale);
+    }
+
+    private BigDecimal exactDecimal(JsonParser parser, String field) throws IOException {
+        try {
+            return new BigDecimal(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+        } catch (NumberFormatException e) {
+            throw new EnrichedTradeDecodingException("Field '" + field + "' is not a decimal: '"
+                + parser.getText() + "' at " + parser.currentLocation(), e);
+        }
+    }
+
+    private long longValue(JsonParser parser, JsonToken token, String field) throws IOException {
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getLongValue();
+        }
+        if (token == JsonToken.VALUE_STRING) {
+            try {
+                return Long.parseLong(parser.getText());
+            } catch (NumberFormatException e) {
+                throw new EnrichedTradeDecodingException("Field '" + field + "' is not an integer: '"
+                    + parser.getText() + "'", e);
+            }
+        }
+        throw new EnrichedTradeDecodingException("Field '" + field + "' must be an integer, was " + token
+            + " at " + parser.currentLocation());
+    }
+
+    private LocalDate date(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            throw new EnrichedTradeDecodingException("Field 'tradeDate' must be an ISO date string, was " + token);
+        }
+        char[] c = parser.getTextCharacters();
+        int o = parser.getTextOffset();
+        // Fast path for the yyyy-MM-dd form every producer sends
+        if (parser.getTextLength() == 10 && c[o + 4] == '-' && c[o + 7] == '-') {
+            int year = digits(c, o, 4);
+            int month = digits(c, o + 5, 2);
+            int day = digits(c, o + 8, 2);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                try {
+                    return LocalDate.of(year, month, day);
+                } catch (RuntimeException e) {
+                    // fall through to the strict parser for the error message
+                }
+            }
+        }
+        try {
+            return LocalDate.parse(parser.getText());
+        } catch (DateTimeParseException e) {
+            throw new EnrichedTradeDecodingException("Field 'tradeDate' is not an ISO date: '"
+                + parser.getText() + "'", e);
+        }
+    }
+
+    private static int digits(char[] chars, int offset, int length) {
+        int value = 0;
+        for (int i = offset; i < offset + length; i++) {
+            char c = chars[i];
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    private static String text(JsonParser parser, JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isStructStart()) {
+            throw new EnrichedTradeDecodingException("Field '" + parser.currentName()
+                + "' must be a scalar at " + parser.currentLocation());
+        }
+        return parser.getText();
+    }
+
+    private static void expectObject(JsonToken token, String field) {
+        if (token != JsonToken.START_OBJECT) {
+            throw new EnrichedTradeDecodingException("Field '" + field + "' must be an object, was " + token);
+        }
+    }
+
+    private static void validate(EnrichedTrade trade) {
+        StringBuilder missing = new StringBuilder();
+        if (trade.getTradeId() == null) missing.append(" tradeId");
+        if (trade.getAccountId() == 0) missing.append(" account.accountId");
+        if (trade.getAccountCode() == null) missing.append(" account.accountCode");
+        if (trade.getInstrumentId() == 0) missing.append(" instrument.instrumentId");
+        if (trade.getSymbol() == null) missing.append(" instrument.symbol");
+        if (trade.getSide() == null) missing.append(" side");
+        if (trade.getScaledQuantity() == FixedPoint.NaN && trade.getExactQuantity() == null) missing.append(" quantity");
+        if (trade.getScaledPrice() == FixedPoint.NaN && trade.getExactPrice() == null) missing.append(" price");
+        if (trade.getTradeDate() == null) missing.append(" tradeDate");
+        if (!missing.isEmpty()) {
+            throw new EnrichedTradeDecodingException("Enriched trade " + trade.getTradeId()
+                + " is missing required field(s):" + missing);
+        }
+    }
+}
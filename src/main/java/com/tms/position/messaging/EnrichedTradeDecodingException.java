@@ -0,0 +1,14 @@
+package com.tms.position.messaging;
+
+import org.apache.kafka.common.errors.SerializationException;
+
+public class EnrichedTradeDecodingException extends SerializationException {
+
+    public EnrichedTradeDecodingException(String message) {
+        super(message);
+    }
+
+    public EnrichedTradeDecodingException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,53 @@
+package com.tms.position.messaging;
+
+import com.tms.position.metrics.PositionPipelineMetrics;
+import com.tms.position.model.EnrichedTrade;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka deserializer for trades.enriched. Configure it as the delegate of
+ * ErrorHandlingDeserializer so decoding failures reach the error handler
+ * instead of stalling the partition.
+ *
+ * <p>Kafka instantiates it outside the application context, so decode time goes to
+ * the global Micrometer registry, which Spring Boot wires to its own, sampled at
+ * the {@value #SAMPLE_RATE_CONFIG} consumer property.
+ */
+public class EnrichedTradeDeserializer implements Deserializer<EnrichedTrade> {
+
+    public static final String SAMPLE_RATE_CONFIG = "position.metrics.sample-rate";
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final EnrichedTradeDecoder decoder = new EnrichedTradeDecoder();
+    private Timer timer;
+    private int sampleRate = 1;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object rate = configs.get(SAMPLE_RATE_CONFIG);
+        if (rate != null) {
+            sampleRate = Integer.parseInt(rate.toString());
+        }
+        timer = PositionPipelineMetrics.stageTimer(PositionPipelineMetrics.Stage.DESERIALIZE, PERCENTILES,
+            Metrics.globalRegistry);
+    }
+
+    @Override
+    public EnrichedTrade deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        long start = timer != null ? PositionPipelineMetrics.start(sampleRate) : 0;
+        EnrichedTrade trade = decoder.decode(data);
+        if (start != 0) {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return trade;
+    }
+}
@@ -0,0 +1,48 @@
+package com.tms.position.messaging;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.tms.position.model.EnrichedTrade;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.IOException;
+
+/**
+ * Writes an {@link EnrichedTrade} back in the trades.enriched layout, with the
+ * fields {@link EnrichedTradeDecoder} reads and string decimals. Used where a
+ * decoded trade has to be sent on again. Thread-safe.
+ */
+public class EnrichedTradeEncoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    public byte[] encode(EnrichedTrade trade) {
+        ByteArrayBuilder buffer = new ByteArrayBuilder(384);
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(buffer)) {
+            json.writeStartObject();
+            json.writeStringField("tradeId", trade.getTradeId());
+            json.writeStringField("correlationId", trade.getCorrelationId());
+            if (trade.getEventTime() > 0) {
+                json.writeNumberField("eventTime", trade.getEventTime());
+            }
+            json.writeStringField("side", trade.getSide());
+            json.writeStringField("quantity", trade.getQuantity().toPlainString());
+            json.writeStringField("price", trade.getPrice().toPlainString());
+            json.writeStringField("currency", trade.getCurrency());
+            json.writeStringField("tradeDate", trade.getTradeDate().toString());
+            json.writeObjectFieldStart("account");
+            json.writeNumberField("accountId", trade.getAccountId());
+            json.writeStringField("accountCode", trade.getAccountCode());
+            json.writeEndObject();
+            json.writeObjectFieldStart("instrument");
+            json.writeNumberField("instrumentId", trade.getInstrumentId());
+            json.writeStringField("symbol", trade.getSymbol());
+            json.writeEndObject();
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new SerializationException("Failed to encode enriched trade " + trade.getTradeId(), e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,247 @@
+package com.tms.position.messaging;
+
+import com.tms.common.config.kafka.KafkaTopics;
+import com.tms.common.observability.logging.CorrelationIdFilter;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dedup.TradeDedupFilter;
+import com.tms.position.dlq.DeadLetterPublisher;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.repository.ArchivedDateException;
+import com.tms.position.repository.PositionTables;
+import com.tms.position.service.PositionService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.slf4j.MDC;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs trades on a fixed set of single-writer lanes, each a single virtual thread.
+ * Trades are striped by (accountId, instrumentId), so updates to one position stay
+ * in order while different positions proceed concurrently. Offsets are committed
+ * per partition only up to the lowest trade that has not finished.
+ *
+ * <p>All consumer calls happen on the consumer thread: from the listener, the
+ * idle event and the rebalance callback.
+ *
+ * <p>A trade's offset only completes once it is applied or parked, so a park that
+ * keeps failing holds back its partition's commits. The position.parallel.pending.age
+ * gauge shows how long the oldest unfinished trade has been holding them.
+ */
+@Component
+@ConditionalOnProperty(name = "position.consumer.mode", havingValue = "parallel")
+@Order(0)
+@Slf4j
+public class KeyOrderedDispatcher implements TradePartitionListener {
+
+    private static final int MAX_PARK_BACKOFF_STEPS = 10;
+
+    private final PositionService positionService;
+    private final TradeDedupFilter tradeDedupFilter;
+    private final DeadLetterPublisher deadLetterPublisher;
+    private final PositionTables positionTables;
+    private final PositionProperties.Parallel properties;
+    private final ExecutorService[] lanes;
+    private final Semaphore inFlight;
+    private final Map<Integer, PartitionOffsetTracker> trackers = new ConcurrentHashMap<>();
+
+    public KeyOrderedDispatcher(PositionService positionService,
+                                TradeDedupFilter tradeDedupFilter,
+                                DeadLetterPublisher deadLetterPublisher,
+                                PositionTables positionTables,
+                                PositionProperties positionProperties,
+                                MeterRegistry meterRegistry) {
+        this.positionService = positionService;
+        this.tradeDedupFilter = tradeDedupFilter;
+        this.deadLetterPublisher = deadLetterPublisher;
+        this.positionTables = positionTables;
+        this.properties = positionProperties.getParallel();
+        this.lanes = new ExecutorService[properties.getLanes()];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("position-lane-" + i).factory());
+        }
+        this.inFlight = new Semaphore(properties.getMaxInFlight());
+        TimeGauge.builder("position.parallel.pending.age", this, TimeUnit.NANOSECONDS,
+                KeyOrderedDispatcher::oldestPendingNanos)
+            .description("Time the oldest unfinished trade has been holding back its partition's commits")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Hands a poll to the lanes. Blocks while too many trades are outstanding.
+     */
+    public void dispatch(List<ConsumerRecord<String, EnrichedTrade>> records) throws InterruptedException {
+        for (ConsumerRecord<String, EnrichedTrade> record : records) {
+            tracker(record.partition()).seen(record.offset());
+        }
+
+        for (ConsumerRecord<String, EnrichedTrade> record : tradeDedupFilter.filterUnapplied(records)) {
+            EnrichedTrade trade = record.value();
+            if (trade == null) {
+                log.error("Parking undecodable enriched trade: partition={}, offset={}",
+                    record.partition(), record.offset());
+                deadLetterPublisher.park(record, null);
+                continue;
+            }
+            if (!positionTables.isHot(trade.getTradeDate())) {
+                log.error("Parking trade for a date outside the hot window: tradeId={}, tradeDate={}",
+                    trade.getTradeId(), trade.getTradeDate());
+                deadLetterPublisher.park(record, new ArchivedDateException(trade.getTradeDate()));
+                continue;
+            }
+            if (trade.getEventTime() == 0) {
+                trade.setEventTime(record.timestamp());
+            }
+            inFlight.acquire();
+            PartitionOffsetTracker tracker = tracker(record.partition());
+            tracker.dispatched(record.offset());
+            lanes[laneFor(trade)].execute(() -> {
+                try {
+                    if (process(record)) {
+                        tracker.completed(record.offset());
+                    }
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Commits, for every partition, everything below its lowest unfinished offset.
+     */
+    public void commitCompleted(Consumer<?, ?> consumer) {
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+        Map<PartitionOffsetTracker, Long> committing = new HashMap<>();
+        trackers.forEach((partition, tracker) -> {
+            long offset = tracker.committable();
+            if (offset >= 0) {
+                offsets.put(new TopicPartition(KafkaTopics.TRADES_ENRICHED, partition), new OffsetAndMetadata(offset));
+                committing.put(tracker, offset);
+            }
+        });
+        if (offsets.isEmpty()) {
+            return;
+        }
+
+        try {
+            consumer.commitSync(offsets);
+            committing.forEach(PartitionOffsetTracker::committed);
+        } catch (Exception e) {
+            // The same offsets are retried on the next commit
+            log.warn("Failed to commit trade offsets: {}", offsets, e);
+        }
+    }
+
+    // Drains the revoked partitions before they move, so a key is never processed on two instances at once
+    @Override
+    public void onTradePartitionsRevoked(Consumer<?, ?> consumer, List<Integer> partitions) {
+        long deadline = System.nanoTime() + properties.getDrainTimeout().toNanos();
+        for (Integer partition : partitions) {
+            PartitionOffsetTracker tracker = trackers.get(partition);
+            while (tracker != null && !tracker.isIdle() && System.nanoTime() < deadline) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            if (tracker != null && !tracker.isIdle()) {
+                log.warn("Trades still in flight after revocation: partition={}", partition);
+            }
+        }
+
+        commitCompleted(consumer);
+        partitions.forEach(trackers::remove);
+    }
+
+    /**
+     * Applies the trade, retrying up to the configured attempts, then parks it on the
+     * DLQ, retrying the park until it succeeds. Returns false only if interrupted: the
+     * offset then stays pending, so the trade is redelivered after a restart.
+     */
+    private boolean process(ConsumerRecord<String, EnrichedTrade> record) {
+        EnrichedTrade trade = record.value();
+        MDC.put(CorrelationIdFilter.CORRELATION_ID_MDC_KEY, trade.getCorrelationId());
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    positionService.updatePosition(trade);
+                    tradeDedupFilter.markApplied(List.of(trade));
+                    return true;
+                } catch (Exception e) {
+                    if (attempt >= properties.getMaxAttempts()) {
+                        // Same outcome as the record-mode fallback: park the trade and move on
+                        log.error("Parking trade after {} attempts: tradeId={}, partition={}, offset={}",
+                            attempt, trade.getTradeId(), record.partition(), record.offset(), e);
+                        return park(record, e);
+                    }
+                    log.warn("Position update failed, retrying: tradeId={}, attempt={}",
+                        trade.getTradeId(), attempt, e);
+                    Thread.sleep(properties.getRetryBackoffMs() * attempt);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            MDC.remove(CorrelationIdFilter.CORRELATION_ID_MDC_KEY);
+        }
+    }
+
+    // Neither the DLQ topic nor the local fallback took the trade: its partition cannot commit past it
+    private boolean park(ConsumerRecord<String, EnrichedTrade> record, Exception cause) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                deadLetterPublisher.park(record, cause);
+                return true;
+            } catch (Exception e) {
+                log.error("Failed to park trade, holding back its partition: partition={}, offset={}, attempt={}",
+                    record.partition(), record.offset(), attempt, e);
+                Thread.sleep(properties.getRetryBackoffMs() * Math.min(attempt, MAX_PARK_BACKOFF_STEPS));
+            }
+        }
+    }
+
+    private double oldestPendingNanos() {
+        long now = System.nanoTime();
+        long oldest = 0;
+        for (PartitionOffsetTracker tracker : trackers.values()) {
+            oldest = Math.max(oldest, tracker.oldestPendingNanos(now));
+        }
+        return oldest;
+    }
+
+    private PartitionOffsetTracker tracker(int partition) {
+        return trackers.computeIfAbsent(partition, p -> new PartitionOffsetTracker());
+    }
+
+    private int laneFor(EnrichedTrade trade) {
+        long hash = trade.getAccountId() * 0x9E3779B97F4A7C15L + trade.getInstrumentId();
+        return (int) Math.floorMod(hash ^ (hash >>> 32), (long) lanes.length);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (ExecutorService lane : lanes) {
+            lane.shutdown();
+        }
+    }
+}
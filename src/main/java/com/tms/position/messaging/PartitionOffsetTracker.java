@@ -0,0 +1,65 @@
+package com.tms.position.messaging;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Offsets of one partition that were handed to lanes but have not finished yet.
+ * The committable offset is the lowest unfinished one, or one past the highest
+ * seen when nothing is outstanding. Registration happens on the consumer thread,
+ * completion on lane threads. Each pending offset keeps its dispatch time, so a
+ * trade that holds back the partition's commits for long can be spotted.
+ */
+final class PartitionOffsetTracker {
+
+    // Offset -> System.nanoTime() at dispatch
+    private final ConcurrentSkipListMap<Long, Long> pending = new ConcurrentSkipListMap<>();
+    private volatile long highestSeen = -1;
+    private long committed = -1;
+
+    // Offsets skipped without dispatch only need to move the high-water mark
+    void seen(long offset) {
+        if (offset > highestSeen) {
+            highestSeen = offset;
+        }
+    }
+
+    void dispatched(long offset) {
+        dispatched(offset, System.nanoTime());
+    }
+
+    void dispatched(long offset, long nanoTime) {
+        pending.put(offset, nanoTime);
+        seen(offset);
+    }
+
+    void completed(long offset) {
+        pending.remove(offset);
+    }
+
+    boolean isIdle() {
+        return pending.isEmpty();
+    }
+
+    /**
+     * Next offset to commit, or -1 if it has not moved since the last commit.
+     */
+    long committable() {
+        long high = highestSeen;
+        Map.Entry<Long, Long> lowestPending = pending.firstEntry();
+        long next = lowestPending != null ? lowestPending.getKey() : high + 1;
+        return next > committed && next > 0 ? next : -1;
+    }
+
+    /**
+     * Nanos since the lowest pending offset was dispatched, or 0 if none is pending.
+     */
+    long oldestPendingNanos(long nanoTime) {
+        Map.Entry<Long, Long> lowestPending = pending.firstEntry();
+        return lowestPending != null ? Math.max(0, nanoTime - lowestPending.getValue()) : 0;
+    }
+
+    void committed(long offset) {
+        committed = offset;
+    }
+}
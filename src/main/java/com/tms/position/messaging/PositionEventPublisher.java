@@ -0,0 +1,159 @@
+package com.tms.position.messaging;
+
+import com.tms.common.config.kafka.KafkaTopics;
+import com.tms.position.cache.PositionQueryCache;
+import com.tms.position.entity.Position;
+import com.tms.position.metrics.PositionPipelineMetrics;
+import com.tms.position.metrics.PositionPipelineMetrics.Stage;
+import com.tms.position.model.PositionChange;
+import com.tms.position.revaluation.RevaluationEngine;
+import com.tms.position.stream.PositionStreamHub;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@Slf4j
+public class PositionEventPublisher {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final PositionQueryCache positionQueryCache;
+    // Present in compact events mode, which replaces the map-based event
+    private final PositionUpdatedSender positionUpdatedSender;
+    private final RevaluationEngine revaluationEngine;
+    private final PositionStreamHub positionStreamHub;
+    private final PositionPipelineMetrics pipelineMetrics;
+
+    private static final String POSITION_CACHE_PREFIX = "position:";
+
+    public PositionEventPublisher(KafkaTemplate<String, Object> kafkaTemplate,
+                                  RedisTemplate<String, Object> redisTemplate,
+                                  PositionQueryCache positionQueryCache,
+                                  ObjectProvider<PositionUpdatedSender> positionUpdatedSender,
+                                  ObjectProvider<RevaluationEngine> revaluationEngine,
+                                  PositionStreamHub positionStreamHub,
+                                  PositionPipelineMetrics pipelineMetrics) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.redisTemplate = redisTemplate;
+        this.positionQueryCache = positionQueryCache;
+        this.positionUpdatedSender = positionUpdatedSender.getIfAvailable();
+        this.revaluationEngine = revaluationEngine.getIfAvailable();
+        this.positionStreamHub = positionStreamHub;
+        this.pipelineMetrics = pipelineMetrics;
+    }
+
+    /**
+     * Publishes the change once the surrounding transaction commits, or right away
+     * outside one. A rolled back or retried update publishes nothing.
+     */
+    public void publish(PositionChange change) {
+        // Defers itself; registering from afterCommit would be too late to run
+        positionQueryCache.positionChanged(change.position());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishCommitted(change);
+                }
+            });
+        } else {
+            publishCommitted(change);
+        }
+    }
+
+    private void publishCommitted(PositionChange change) {
+        long stage = pipelineMetrics.start();
+        // Update cache
+        updatePositionCache(change.position());
+        if (revaluationEngine != null) {
+            revaluationEngine.positionChanged(change.position());
+        }
+        stage = pipelineMetrics.lap(Stage.CACHE, stage);
+
+        // Publish position updated event
+        if (positionUpdatedSender != null) {
+            positionUpdatedSender.send(change);
+        } else {
+            publishPositionUpdatedEvent(change);
+        }
+        positionStreamHub.publish(change);
+        pipelineMetrics.stop(Stage.SEND, stage);
+        pipelineMetrics.recordEndToEnd(change.eventTime());
+    }
+
+    private void updatePositionCache(Position position) {
+        try {
+            String key = POSITION_CACHE_PREFIX + position.getAccountCode() + ":" + position.getSymbol();
+            Map<String, Object> cached = new HashMap<>();
+            cached.put("positionId", position.getPositionId());
+            cached.put("accountCode", position.getAccountCode());
+            cached.put("symbol", position.getSymbol());
+            cached.put("quantity", position.getQuantity().toString());
+            cached.put("avgCost", position.getAvgCost().toString());
+            cached.put("costBasis", position.getCostBasis().toString());
+            cached.put("currency", position.getCurrency());
+            cached.put("updatedAt", position.getUpdatedAt().toString());
+
+            redisTemplate.opsForValue().set(key, cached, 24, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.warn("Failed to update position cache", e);
+        }
+    }
+
+    private void publishPositionUpdatedEvent(PositionChange change) {
+        Position position = change.position();
+        Map<String, Object> event = legacyEvent(change);
+
+        String key = position.getAccountCode() + ":" + position.getSymbol();
+        kafkaTemplate.send(KafkaTopics.POSITIONS_UPDATED, key, event)
+            .whenComplete((result, ex) -> {
+                if (ex != null) {
+                    log.error("Failed to publish PositionUpdated event: positionId={}",
+                        position.getPositionId(), ex);
+                } else {
+                    log.debug("PositionUpdated event published: positionId={}",
+                        position.getPositionId());
+                }
+            });
+    }
+
+    // Map-based PositionUpdated event of the legacy events mode
+    static Map<String, Object> legacyEvent(PositionChange change) {
+        Position position = change.position();
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("eventId", UUID.randomUUID().toString());
+        event.put("eventType", "PositionUpdated");
+        event.put("eventTime", Instant.now().toEpochMilli());
+        event.put("correlationId", change.correlationId());
+        event.put("source", "position-service");
+
+        event.put("positionId", position.getPositionId().toString());
+        event.put("accountId", position.getAccountId().toString());
+        event.put("accountCode", position.getAccountCode());
+        event.put("instrumentId", position.getInstrumentId().toString());
+        event.put("symbol", position.getSymbol());
+        event.put("previousQuantity", change.previousQuantity().toString());
+        event.put("newQuantity", position.getQuantity().toString());
+        event.put("quantityChange", change.quantityChange().toString());
+        event.put("avgCost", position.getAvgCost().toString());
+        event.put("costBasis", position.getCostBasis().toString());
+        event.put("realizedPnl", change.realizedPnl().toString());
+        event.put("currency", position.getCurrency());
+        event.put("triggeringTradeId", change.triggeringTradeId());
+        event.put("asOfDate", position.getAsOfDate().toString());
+        event.put("updateType", "TRADE");
+        return event;
+    }
+}
@@ -0,0 +1,230 @@
+package com.tms.position.messaging;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.tms.position.model.PositionUpdated;
+import org.apache.kafka.common.errors.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+
+/**
+ * Encodings of {@link PositionUpdated}. The binary form starts with a schema
+ * version byte, followed by the fields in declaration order: varint lengths and
+ * ids, decimals as scale plus unscaled two's-complement bytes, dates as epoch
+ * days (non-negative days shifted up by one, leaving 0 for null). New fields may
+ * only be appended, under a new version. The JSON form has the field names and
+ * string decimals of the original map-based event. Thread-safe.
+ */
+public class PositionUpdatedCodec {
+
+    public static final byte SCHEMA_VERSION = 1;
+
+    public static final String FORMAT_BINARY = "binary";
+    public static final String FORMAT_JSON = "json";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String SOURCE = "position-service";
+
+    public byte[] encodeBinary(PositionUpdated event) {
+        Output out = new Output();
+        out.write(SCHEMA_VERSION);
+        out.writeString(event.eventId());
+        out.writeVarLong(event.eventTime());
+        out.writeString(event.correlationId());
+        out.writeVarLong(event.positionId());
+        out.writeVarLong(event.accountId());
+        out.writeString(event.accountCode());
+        out.writeVarLong(event.instrumentId());
+        out.writeString(event.symbol());
+        out.writeDate(event.asOfDate());
+        out.writeString(event.currency());
+        out.writeDecimal(event.previousQuantity());
+        out.writeDecimal(event.newQuantity());
+        out.writeDecimal(event.quantityChange());
+        out.writeDecimal(event.avgCost());
+        out.writeDecimal(event.costBasis());
+        out.writeDecimal(event.realizedPnl());
+        out.writeString(event.triggeringTradeId());
+        out.writeString(event.updateType());
+        out.writeVarLong(event.tradeCount());
+        return out.toByteArray();
+    }
+
+    public PositionUpdated decodeBinary(byte[] data) {
+        if (data == null || data.length == 0) {
+            throw new SerializationException("Empty PositionUpdated payload");
+        }
+        ByteBuffer in = ByteBuffer.wrap(data);
+        byte version = in.get();
+        if (version != SCHEMA_VERSION) {
+            throw new SerializationException("Unsupported PositionUpdated schema version: " + version);
+        }
+        try {
+            String eventId = readString(in);
+            long eventTime = readVarLong(in);
+            String correlationId = readString(in);
+            long positionId = readVarLong(in);
+            long accountId = readVarLong(in);
+            String accountCode = readString(in);
+            long instrumentId = readVarLong(in);
+            String symbol = readString(in);
+            LocalDate asOfDate = readDate(in);
+            return new PositionUpdated(eventId, eventTime, correlationId, positionId, accountId, accountCode,
+                instrumentId, symbol, asOfDate, readString(in),
+                readDecimal(in), readDecimal(in), readDecimal(in), readDecimal(in), readDecimal(in), readDecimal(in),
+                readString(in), readString(in), (int) readVarLong(in));
+        } catch (BufferUnderflowException | IllegalArgumentException | DateTimeException e) {
+            throw new SerializationException("Malformed PositionUpdated payload", e);
+        }
+    }
+
+    public byte[] encodeJson(PositionUpdated event) {
+        ByteArrayBuilder buffer = new ByteArrayBuilder(512);
+        try (JsonGenerator json = JSON_FACTORY.createGenerator(buffer)) {
+            json.writeStartObject();
+            json.writeStringField("eventId", event.eventId());
+            json.writeStringField("eventType", PositionUpdated.EVENT_TYPE);
+            json.writeNumberField("eventTime", event.eventTime());
+            json.writeStringField("correlationId", event.correlationId());
+            json.writeStringField("source", SOURCE);
+            json.writeStringField("positionId", Long.toString(event.positionId()));
+            json.writeStringField("accountId", Long.toString(event.accountId()));
+            json.writeStringField("accountCode", event.accountCode());
+            json.writeStringField("instrumentId", Long.toString(event.instrumentId()));
+            json.writeStringField("symbol", event.symbol());
+            writeDecimal(json, "previousQuantity", event.previousQuantity());
+            writeDecimal(json, "newQuantity", event.newQuantity());
+            writeDecimal(json, "quantityChange", event.quantityChange());
+            writeDecimal(json, "avgCost", event.avgCost());
+            writeDecimal(json, "costBasis", event.costBasis());
+            writeDecimal(json, "realizedPnl", event.realizedPnl());
+            json.writeStringField("currency", event.currency());
+            json.writeStringField("triggeringTradeId", event.triggeringTradeId());
+            json.writeStringField("asOfDate", event.asOfDate() != null ? event.asOfDate().toString() : null);
+            json.writeStringField("updateType", event.updateType());
+            json.writeNumberField("tradeCount", event.tradeCount());
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new SerializationException("Failed to encode PositionUpdated as JSON", e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void writeDecimal(JsonGenerator json, String field, BigDecimal value) throws IOException {
+        json.writeStringField(field, value != null ? value.toPlainString() : null);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = readLength(in);
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        long encoded = readVarLong(in);
+        if (encoded == 0) {
+            return null;
+        }
+        return LocalDate.ofEpochDay(encoded > 0 ? encoded - 1 : encoded);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer in) {
+        long declared = readVarLong(in) - 1;
+        if (declared < 0) {
+            return null;
+        }
+        int scale = (int) readVarLong(in);
+        int length = checkLength(in, declared);
+        byte[] unscaled = new byte[length];
+        in.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+
+    // Length + 1 prefix, -1 for null. A length past the end of the payload means truncation or corruption
+    private static int readLength(ByteBuffer in) {
+        long declared = readVarLong(in) - 1;
+        return declared < 0 ? -1 : checkLength(in, declared);
+    }
+
+    private static int checkLength(ByteBuffer in, long declared) {
+        if (declared > in.remaining()) {
+            throw new SerializationException("Malformed PositionUpdated payload: length " + declared +
+                " at position " + in.position() + " exceeds the " + in.remaining() + " remaining bytes");
+        }
+        return (int) declared;
+    }
+
+    // Zigzag varint, so small negative values stay short too
+    private static long readVarLong(ByteBuffer in) {
+        long raw = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            raw |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (raw >>> 1) ^ -(raw & 1);
+            }
+        }
+        throw new IllegalArgumentException("Varint longer than 10 bytes");
+    }
+
+    private static final class Output extends ByteArrayOutputStream {
+
+        Output() {
+            super(128);
+        }
+
+        void writeVarLong(long value) {
+            long raw = (value << 1) ^ (value >> 63);
+            while ((raw & ~0x7FL) != 0) {
+                write((int) ((raw & 0x7F) | 0x80));
+                raw >>>= 7;
+            }
+            write((int) raw);
+        }
+
+        // Length + 1, with 0 for null
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            write(bytes, 0, bytes.length);
+        }
+
+        // 0 for null; days before the epoch are already non-zero
+        void writeDate(LocalDate value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            long epochDay = value.toEpochDay();
+            writeVarLong(epochDay >= 0 ? epochDay + 1 : epochDay);
+        }
+
+        void writeDecimal(BigDecimal value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] unscaled = value.unscaledValue().toByteArray();
+            writeVarLong(unscaled.length + 1L);
+            writeVarLong(value.scale());
+            write(unscaled, 0, unscaled.length);
+        }
+    }
+}
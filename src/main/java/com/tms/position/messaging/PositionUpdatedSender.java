@@ -0,0 +1,131 @@
+package com.tms.position.messaging;
+
+import com.tms.common.config.kafka.KafkaTopics;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionUpdated;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.boot.ssl.SslBundles;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes typed PositionUpdated events for the compact events mode. With a
+ * conflation window, changes are held per position and the net change is sent
+ * once per window; a position's events still leave in order, since each window
+ * sends at most one event per position and windows are flushed by one thread.
+ *
+ * <p>Uses its own producer, with the connection settings of spring.kafka.producer
+ * but tuned for throughput: lingering, large batches and compression. It is not a
+ * bean, so the default KafkaTemplate stays in place for everything else.
+ */
+@Component
+@ConditionalOnProperty(name = "position.events.mode", havingValue = "compact")
+@Slf4j
+public class PositionUpdatedSender {
+
+    private final DefaultKafkaProducerFactory<String, PositionUpdated> producerFactory;
+    private final KafkaTemplate<String, PositionUpdated> kafkaTemplate;
+    private final Map<Long, PositionUpdated> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService flusher;
+    private final Counter published;
+    private final Counter conflated;
+
+    public PositionUpdatedSender(KafkaProperties kafkaProperties,
+                                 ObjectProvider<SslBundles> sslBundles,
+                                 PositionProperties positionProperties,
+                                 MeterRegistry meterRegistry) {
+        this.producerFactory = new DefaultKafkaProducerFactory<>(
+            producerConfig(kafkaProperties, sslBundles.getIfAvailable(), positionProperties.getEvents()));
+        this.kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        this.published = Counter.builder("position.events.published")
+            .description("PositionUpdated events sent")
+            .register(meterRegistry);
+        this.conflated = Counter.builder("position.events.conflated")
+            .description("Position changes folded into another PositionUpdated event")
+            .register(meterRegistry);
+
+        long windowMs = positionProperties.getEvents().getConflationWindow().toMillis();
+        if (windowMs > 0) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "position-event-conflation");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, windowMs, windowMs, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+    }
+
+    private static Map<String, Object> producerConfig(KafkaProperties kafkaProperties, SslBundles sslBundles,
+                                                      PositionProperties.Events events) {
+        Map<String, Object> config = kafkaProperties.buildProducerProperties(sslBundles);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, PositionUpdatedSerializer.class);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, events.getLingerMs());
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, events.getBatchSize());
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, events.getCompressionType());
+        config.put(PositionUpdatedSerializer.FORMAT_CONFIG, events.getFormat());
+        return config;
+    }
+
+    public void send(PositionChange change) {
+        PositionUpdated event = PositionUpdated.of(change, System.currentTimeMillis());
+        if (flusher == null) {
+            send(event);
+            return;
+        }
+        pending.merge(event.positionId(), event, (held, next) -> {
+            conflated.increment();
+            return held.conflate(next);
+        });
+    }
+
+    private void flush() {
+        for (Long positionId : pending.keySet()) {
+            PositionUpdated event = pending.remove(positionId);
+            if (event != null) {
+                send(event);
+            }
+        }
+    }
+
+    private void send(PositionUpdated event) {
+        kafkaTemplate.send(KafkaTopics.POSITIONS_UPDATED, event.key(), event)
+            .whenComplete((result, ex) -> {
+                if (ex != null) {
+                    log.error("Failed to publish PositionUpdated event: positionId={}", event.positionId(), ex);
+                } else {
+                    log.debug("PositionUpdated event published: positionId={}", event.positionId());
+                }
+            });
+        published.increment();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        if (flusher != null) {
+            flusher.shutdown();
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            flush();
+        }
+        kafkaTemplate.flush();
+        producerFactory.destroy();
+    }
+}
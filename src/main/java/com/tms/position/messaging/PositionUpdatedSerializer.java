@@ -0,0 +1,50 @@
+package com.tms.position.messaging;
+
+import com.tms.position.model.PositionUpdated;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Kafka serializer for compact PositionUpdated events. The encoding is chosen with
+ * the {@value #FORMAT_CONFIG} producer property and announced in the record
+ * headers, so consumers can tell the formats apart.
+ */
+public class PositionUpdatedSerializer implements Serializer<PositionUpdated> {
+
+    public static final String FORMAT_CONFIG = "position.events.format";
+
+    public static final String EVENT_TYPE_HEADER = "event-type";
+    public static final String FORMAT_HEADER = "content-format";
+
+    private static final byte[] EVENT_TYPE = PositionUpdated.EVENT_TYPE.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] BINARY_FORMAT = (PositionUpdatedCodec.FORMAT_BINARY + ";v="
+        + PositionUpdatedCodec.SCHEMA_VERSION).getBytes(StandardCharsets.UTF_8);
+    private static final byte[] JSON_FORMAT = PositionUpdatedCodec.FORMAT_JSON.getBytes(StandardCharsets.UTF_8);
+
+    private final PositionUpdatedCodec codec = new PositionUpdatedCodec();
+    private boolean json;
+
+    @Override
+    public void configure(Map<String, ?> configs, boolean isKey) {
+        Object format = configs.get(FORMAT_CONFIG);
+        json = format != null && PositionUpdatedCodec.FORMAT_JSON.equalsIgnoreCase(format.toString());
+    }
+
+    @Override
+    public byte[] serialize(String topic, PositionUpdated data) {
+        if (data == null) {
+            return null;
+        }
+        return json ? codec.encodeJson(data) : codec.encodeBinary(data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, PositionUpdated data) {
+        headers.add(EVENT_TYPE_HEADER, EVENT_TYPE);
+        headers.add(FORMAT_HEADER, json ? JSON_FORMAT : BINARY_FORMAT);
+        return serialize(topic, data);
+    }
+}
@@ -0,0 +1,44 @@
+package com.tms.position.messaging;
+
+import com.tms.position.model.PriceTick;
+import com.tms.position.revaluation.RevaluationEngine;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "position.revaluation.enabled", havingValue = "true")
+@RequiredArgsConstructor
+@Slf4j
+public class PriceTickConsumer {
+
+    private final RevaluationEngine revaluationEngine;
+
+    // Prices are acknowledged as soon as the engine holds them: only the latest
+    // price matters, so a tick lost in a crash is superseded by the next one
+    @KafkaListener(
+        topics = "${position.revaluation.topic}",
+        groupId = "${position.revaluation.group-id}",
+        containerFactory = "priceKafkaListenerContainerFactory"
+    )
+    public void handlePriceTicks(List<ConsumerRecord<String, PriceTick>> records, Acknowledgment acknowledgment) {
+        List<PriceTick> ticks = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, PriceTick> record : records) {
+            if (record.value() == null) {
+                log.warn("Skipping undecodable price tick: partition={}, offset={}",
+                    record.partition(), record.offset());
+                continue;
+            }
+            ticks.add(record.value());
+        }
+        revaluationEngine.onTicks(ticks);
+        acknowledgment.acknowledge();
+    }
+}
@@ -0,0 +1,58 @@
+package com.tms.position.messaging;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.tms.position.model.PriceTick;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Kafka deserializer for price ticks: a JSON object with {@code instrumentId},
+ * {@code price} (string or number) and an optional epoch-millis {@code timestamp}.
+ * Other fields are skipped. Configure it as the delegate of ErrorHandlingDeserializer.
+ */
+public class PriceTickDeserializer implements Deserializer<PriceTick> {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Override
+    public PriceTick deserialize(String topic, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+
+        long instrumentId = 0;
+        BigDecimal price = null;
+        long timestamp = 0;
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new SerializationException("Price tick payload is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "instrumentId" -> instrumentId = token == JsonToken.VALUE_STRING
+                        ? Long.parseLong(parser.getText()) : parser.getLongValue();
+                    case "price" -> price = token == JsonToken.VALUE_STRING
+                        ? new BigDecimal(parser.getText()) : parser.getDecimalValue();
+                    case "timestamp" -> timestamp = parser.getLongValue();
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (SerializationException e) {
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Malformed price tick payload: " + e.getMessage(), e);
+        }
+
+        if (instrumentId <= 0 || price == null) {
+            throw new SerializationException("Price tick without instrumentId or price");
+        }
+        return new PriceTick(instrumentId, price, timestamp);
+    }
+}
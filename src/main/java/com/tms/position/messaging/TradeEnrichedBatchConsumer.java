@@ -0,0 +1,149 @@
+package com.tms.position.messaging;
+
+import com.tms.common.config.kafka.KafkaTopics;
+import com.tms.position.dedup.TradeDedupFilter;
+import com.tms.position.dlq.DeadLetterPublisher;
+import com.tms.position.metrics.PositionPipelineMetrics;
+import com.tms.position.metrics.PositionPipelineMetrics.Stage;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.repository.ArchivedDateException;
+import com.tms.position.repository.PositionTables;
+import com.tms.position.service.PositionService;
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import io.github.resilience4j.retry.annotation.Retry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "position.consumer.mode", havingValue = "batch")
+@RequiredArgsConstructor
+@Slf4j
+public class TradeEnrichedBatchConsumer {
+
+    private final PositionService positionService;
+    private final TradeDedupFilter tradeDedupFilter;
+    private final PositionPipelineMetrics pipelineMetrics;
+    private final DeadLetterPublisher deadLetterPublisher;
+    private final PositionTables positionTables;
+
+    @KafkaListener(
+        topics = KafkaTopics.TRADES_ENRICHED,
+        groupId = "${spring.kafka.consumer.group-id}",
+        containerFactory = "batchKafkaListenerContainerFactory"
+    )
+    @CircuitBreaker(name = "kafka-consumer", fallbackMethod = "handleTradeEnrichedBatchFallback")
+    @Retry(name = "kafka-consumer")
+    public void handleTradeEnrichedBatch(List<ConsumerRecord<String, EnrichedTrade>> records,
+                                         Acknowledgment acknowledgment) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        ConsumerRecord<String, EnrichedTrade> first = records.get(0);
+        ConsumerRecord<String, EnrichedTrade> last = records.get(records.size() - 1);
+        log.info("Received enriched trade batch for position update: size={}, first={}-{}@{}, last={}-{}@{}",
+            records.size(), first.topic(), first.partition(), first.offset(),
+            last.topic(), last.partition(), last.offset());
+
+        long stage = pipelineMetrics.start();
+        List<EnrichedTrade> trades = new ArrayList<>(records.size());
+        List<ConsumerRecord<String, EnrichedTrade>> undecodable = new ArrayList<>();
+        List<ConsumerRecord<String, EnrichedTrade>> late = new ArrayList<>();
+        List<ConsumerRecord<String, EnrichedTrade>> unapplied = tradeDedupFilter.filterUnapplied(records);
+        stage = pipelineMetrics.lap(Stage.DEDUP, stage);
+        for (ConsumerRecord<String, EnrichedTrade> record : unapplied) {
+            if (record.value() == null) {
+                // ErrorHandlingDeserializer leaves undecodable records null; the cause is in the headers
+                log.error("Parking undecodable enriched trade: partition={}, offset={}",
+                    record.partition(), record.offset());
+                undecodable.add(record);
+                continue;
+            }
+            if (!positionTables.isHot(record.value().getTradeDate())) {
+                log.error("Parking trade for a date outside the hot window: tradeId={}, tradeDate={}",
+                    record.value().getTradeId(), record.value().getTradeDate());
+                late.add(record);
+                continue;
+            }
+            if (record.value().getEventTime() == 0) {
+                record.value().setEventTime(record.timestamp());
+            }
+            trades.add(record.value());
+        }
+
+        try {
+            if (!trades.isEmpty()) {
+                positionService.updatePositions(trades);
+                pipelineMetrics.stop(Stage.TRANSACTION, stage);
+                tradeDedupFilter.markApplied(trades);
+            }
+            // Parked only once the rest committed, so a retried poll does not park them again
+            deadLetterPublisher.park(undecodable, null);
+            for (ConsumerRecord<String, EnrichedTrade> record : late) {
+                deadLetterPublisher.park(record, new ArchivedDateException(record.value().getTradeDate()));
+            }
+
+            // One offset commit for the whole poll
+            acknowledgment.acknowledge();
+            log.debug("Position batch updated successfully: size={}", records.size());
+
+        } catch (Exception e) {
+            log.error("Failed to update positions for trade batch: size={}", records.size(), e);
+            throw e;
+        }
+    }
+
+    public void handleTradeEnrichedBatchFallback(List<ConsumerRecord<String, EnrichedTrade>> records,
+                                                 Acknowledgment acknowledgment,
+                                                 Exception e) {
+        if (DeadLetterPublisher.isDatabaseUnavailable(e)) {
+            log.error("Database unavailable, sending trade batch to DLQ: size={}", records.size(), e);
+            // Throws if neither the DLQ topic nor the local store took them, leaving the poll unacknowledged
+            deadLetterPublisher.park(records, e);
+        } else {
+            // One bad trade fails the whole batch; apply one by one so only the failing trades are parked
+            log.error("Trade batch failed, applying its trades one by one: size={}", records.size(), e);
+            applyIndividually(records);
+        }
+        acknowledgment.acknowledge();
+    }
+
+    private void applyIndividually(List<ConsumerRecord<String, EnrichedTrade>> records) {
+        List<ConsumerRecord<String, EnrichedTrade>> unapplied = tradeDedupFilter.filterUnapplied(records);
+        for (int i = 0; i < unapplied.size(); i++) {
+            ConsumerRecord<String, EnrichedTrade> record = unapplied.get(i);
+            EnrichedTrade trade = record.value();
+            if (trade == null) {
+                deadLetterPublisher.park(record, null);
+                continue;
+            }
+            if (!positionTables.isHot(trade.getTradeDate())) {
+                deadLetterPublisher.park(record, new ArchivedDateException(trade.getTradeDate()));
+                continue;
+            }
+            try {
+                positionService.updatePosition(trade);
+            } catch (RuntimeException e) {
+                if (DeadLetterPublisher.isDatabaseUnavailable(e)) {
+                    log.error("Database unavailable, sending rest of trade batch to DLQ: size={}",
+                        unapplied.size() - i, e);
+                    deadLetterPublisher.park(unapplied.subList(i, unapplied.size()), e);
+                    return;
+                }
+                log.error("Parking trade that fails on its own: tradeId={}, partition={}, offset={}",
+                    trade.getTradeId(), record.partition(), record.offset(), e);
+                deadLetterPublisher.park(record, e);
+                continue;
+            }
+            tradeDedupFilter.markApplied(List.of(trade));
+        }
+    }
+}
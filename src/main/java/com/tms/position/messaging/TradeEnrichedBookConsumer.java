@@ -0,0 +1,72 @@
+package com.tms.position.messaging;
+
+import com.tms.common.config.kafka.KafkaTopics;
+import com.tms.position.book.PositionBook;
+import com.tms.position.dedup.TradeDedupFilter;
+import com.tms.position.dlq.DeadLetterPublisher;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.repository.ArchivedDateException;
+import com.tms.position.repository.PositionTables;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "position.consumer.mode", havingValue = "book")
+@RequiredArgsConstructor
+@Slf4j
+public class TradeEnrichedBookConsumer {
+
+    private final PositionBook positionBook;
+    private final TradeDedupFilter tradeDedupFilter;
+    private final DeadLetterPublisher deadLetterPublisher;
+    private final PositionTables positionTables;
+
+    // No retry/circuit breaker here: the book cannot fail on I/O, and the
+    // write-behind flusher retries persistence itself before acknowledging
+    @KafkaListener(
+        topics = KafkaTopics.TRADES_ENRICHED,
+        groupId = "${spring.kafka.consumer.group-id}",
+        containerFactory = "bookKafkaListenerContainerFactory"
+    )
+    public void handleTradeEnrichedBatch(List<ConsumerRecord<String, EnrichedTrade>> records,
+                                         Acknowledgment acknowledgment) {
+        if (records.isEmpty()) {
+            return;
+        }
+
+        log.debug("Applying enriched trade batch to position book: size={}", records.size());
+        // Always hand the poll to the book, even if fully filtered, so its ack keeps its place in the flush order
+        List<ConsumerRecord<String, EnrichedTrade>> unapplied = tradeDedupFilter.filterUnapplied(records);
+        List<ConsumerRecord<String, EnrichedTrade>> undecodable = new ArrayList<>();
+        List<ConsumerRecord<String, EnrichedTrade>> applicable = new ArrayList<>(unapplied.size());
+        for (ConsumerRecord<String, EnrichedTrade> record : unapplied) {
+            EnrichedTrade trade = record.value();
+            if (trade == null) {
+                undecodable.add(record);
+                continue;
+            }
+            if (!positionTables.isHot(trade.getTradeDate())) {
+                log.error("Parking trade for a date outside the hot window: tradeId={}, tradeDate={}",
+                    trade.getTradeId(), trade.getTradeDate());
+                deadLetterPublisher.park(record, new ArchivedDateException(trade.getTradeDate()));
+                continue;
+            }
+            if (trade.getEventTime() == 0) {
+                trade.setEventTime(record.timestamp());
+            }
+            applicable.add(record);
+        }
+        // Parked before the book sees the poll, so the book's acknowledgment covers them
+        deadLetterPublisher.park(undecodable, null);
+        // The flusher marks the trades applied once they are durable, unless their partition is revoked first
+        positionBook.apply(applicable, acknowledgment);
+    }
+}
@@ -2,6 +2,13 @@ package com.tms.position.messaging;
 
 import com.tms.common.config.kafka.KafkaTopics;
 import com.tms.common.observability.logging.CorrelationIdFilter;
+import com.tms.position.dedup.TradeDedupFilter;
+import com.tms.position.dlq.DeadLetterPublisher;
+import com.tms.position.metrics.PositionPipelineMetrics;
+import com.tms.position.metrics.PositionPipelineMetrics.Stage;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.repository.ArchivedDateException;
+import com.tms.position.repository.PositionTables;
 import com.tms.position.service.PositionService;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.github.resilience4j.retry.annotation.Retry;
@@ -9,18 +16,24 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.slf4j.MDC;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
-import java.util.Map;
+import java.util.List;
 
 @Component
+@ConditionalOnProperty(name = "position.consumer.mode", havingValue = "record", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class TradeEnrichedConsumer {
 
     private final PositionService positionService;
+    private final TradeDedupFilter tradeDedupFilter;
+    private final PositionPipelineMetrics pipelineMetrics;
+    private final DeadLetterPublisher deadLetterPublisher;
+    private final PositionTables positionTables;
 
     @KafkaListener(
         topics = KafkaTopics.TRADES_ENRICHED,
@@ -29,18 +42,46 @@ public class TradeEnrichedConsumer {
     )
     @CircuitBreaker(name = "kafka-consumer", fallbackMethod = "handleTradeEnrichedFallback")
     @Retry(name = "kafka-consumer")
-    public void handleTradeEnriched(ConsumerRecord<String, Map<String, Object>> record,
+    public void handleTradeEnriched(ConsumerRecord<String, EnrichedTrade> record,
                                      Acknowledgment acknowledgment) {
-        Map<String, Object> tradeEvent = record.value();
-        String tradeId = (String) tradeEvent.get("tradeId");
-        String correlationId = (String) tradeEvent.get("correlationId");
+        EnrichedTrade trade = record.value();
+        if (trade == null) {
+            // Retrying cannot fix a payload that does not decode
+            log.error("Parking undecodable enriched trade: partition={}, offset={}",
+                record.partition(), record.offset());
+            deadLetterPublisher.park(record, null);
+            acknowledgment.acknowledge();
+            return;
+        }
+        String tradeId = trade.getTradeId();
+        String correlationId = trade.getCorrelationId();
 
         try {
             MDC.put(CorrelationIdFilter.CORRELATION_ID_MDC_KEY, correlationId);
             log.info("Received enriched trade for position update: tradeId={}, partition={}, offset={}",
                 tradeId, record.partition(), record.offset());
 
-            positionService.updatePosition(tradeEvent);
+            long stage = pipelineMetrics.start();
+            if (tradeDedupFilter.filterUnapplied(List.of(record)).isEmpty()) {
+                acknowledgment.acknowledge();
+                return;
+            }
+            stage = pipelineMetrics.lap(Stage.DEDUP, stage);
+
+            if (!positionTables.isHot(trade.getTradeDate())) {
+                // Retrying cannot bring an archived date back
+                log.error("Parking trade for a date outside the hot window: tradeId={}, tradeDate={}",
+                    tradeId, trade.getTradeDate());
+                deadLetterPublisher.park(record, new ArchivedDateException(trade.getTradeDate()));
+                acknowledgment.acknowledge();
+                return;
+            }
+            if (trade.getEventTime() == 0) {
+                trade.setEventTime(record.timestamp());
+            }
+            positionService.updatePosition(trade);
+            pipelineMetrics.stop(Stage.TRANSACTION, stage);
+            tradeDedupFilter.markApplied(List.of(trade));
 
             acknowledgment.acknowledge();
             log.debug("Position updated successfully for trade: tradeId={}", tradeId);
@@ -53,15 +94,14 @@ public class TradeEnrichedConsumer {
         }
     }
 
-    public void handleTradeEnrichedFallback(ConsumerRecord<String, Map<String, Object>> record,
+    public void handleTradeEnrichedFallback(ConsumerRecord<String, EnrichedTrade> record,
                                              Acknowledgment acknowledgment,
                                              Exception e) {
-        Map<String, Object> tradeEvent = record.value();
-        String tradeId = (String) tradeEvent.get("tradeId");
+        String tradeId = record.value() != null ? record.value().getTradeId() : null;
 
         log.error("Circuit breaker open, sending trade to DLQ: tradeId={}", tradeId, e);
-        // In production, this would send to DLQ topic
-        // For now, we acknowledge to prevent infinite retry
+        // Throws if neither the DLQ topic nor the local store took it, leaving the offset unacknowledged
+        deadLetterPublisher.park(record, e);
         acknowledgment.acknowledge();
     }
 }
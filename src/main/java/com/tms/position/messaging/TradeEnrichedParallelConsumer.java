@@ -0,0 +1,52 @@
+package com.tms.position.messaging;
+
+import com.tms.common.config.kafka.KafkaTopics;
+import com.tms.position.model.EnrichedTrade;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.event.ListenerContainerIdleEvent;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "position.consumer.mode", havingValue = "parallel")
+@RequiredArgsConstructor
+@Slf4j
+public class TradeEnrichedParallelConsumer {
+
+    static final String LISTENER_ID = "trade-enriched-parallel";
+
+    private final KeyOrderedDispatcher keyOrderedDispatcher;
+
+    // Never acknowledges: offsets are committed by the dispatcher once the lanes
+    // have finished everything below them
+    @KafkaListener(
+        id = LISTENER_ID,
+        idIsGroup = false,
+        topics = KafkaTopics.TRADES_ENRICHED,
+        groupId = "${spring.kafka.consumer.group-id}",
+        containerFactory = "parallelKafkaListenerContainerFactory"
+    )
+    public void handleTradeEnrichedBatch(List<ConsumerRecord<String, EnrichedTrade>> records,
+                                         Consumer<?, ?> consumer) throws InterruptedException {
+        keyOrderedDispatcher.commitCompleted(consumer);
+        if (records.isEmpty()) {
+            return;
+        }
+
+        log.debug("Dispatching enriched trade batch to lanes: size={}", records.size());
+        keyOrderedDispatcher.dispatch(records);
+    }
+
+    // Keeps committing while the topic is quiet and the lanes catch up
+    @EventListener(condition = "event.listenerId.startsWith('" + LISTENER_ID + "')")
+    public void onIdle(ListenerContainerIdleEvent event) {
+        keyOrderedDispatcher.commitCompleted(event.getConsumer());
+    }
+}
@@ -0,0 +1,19 @@
+package com.tms.position.messaging;
+
+import org.apache.kafka.clients.consumer.Consumer;
+
+import java.util.List;
+
+/**
+ * Callback for components that keep per-partition state for trades.enriched.
+ * Invoked on the consumer thread, before records of newly assigned partitions
+ * are delivered and before the container commits on revocation.
+ */
+public interface TradePartitionListener {
+
+    default void onTradePartitionsAssigned(Consumer<?, ?> consumer, List<Integer> partitions) {
+    }
+
+    default void onTradePartitionsRevoked(Consumer<?, ?> consumer, List<Integer> partitions) {
+    }
+}
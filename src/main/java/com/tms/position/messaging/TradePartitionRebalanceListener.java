@@ -0,0 +1,52 @@
+package com.tms.position.messaging;
+
+import com.tms.common.config.kafka.KafkaTopics;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The single rebalance listener of the application; Spring Boot applies it to
+ * every listener container factory built through its configurer. Fans out
+ * trades.enriched assignments to the registered {@link TradePartitionListener}s.
+ */
+@Component
+@RequiredArgsConstructor
+public class TradePartitionRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final List<TradePartitionListener> listeners;
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        List<Integer> assigned = tradePartitions(partitions);
+        if (!assigned.isEmpty()) {
+            listeners.forEach(l -> l.onTradePartitionsAssigned(consumer, assigned));
+        }
+    }
+
+    // Runs before the container commits pending acks
+    @Override
+    public void onPartitionsRevokedBeforeCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        List<Integer> revoked = tradePartitions(partitions);
+        if (!revoked.isEmpty()) {
+            listeners.forEach(l -> l.onTradePartitionsRevoked(consumer, revoked));
+        }
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        onPartitionsRevokedBeforeCommit(consumer, partitions);
+    }
+
+    private static List<Integer> tradePartitions(Collection<TopicPartition> partitions) {
+        return partitions.stream()
+            .filter(tp -> KafkaTopics.TRADES_ENRICHED.equals(tp.topic()))
+            .map(TopicPartition::partition)
+            .toList();
+    }
+}
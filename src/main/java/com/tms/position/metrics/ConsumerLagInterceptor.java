@@ -0,0 +1,84 @@
+package com.tms.position.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.BatchInterceptor;
+import org.springframework.kafka.listener.RecordInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-partition consumer lag gauges ({@code position.consumer.lag}), refreshed on
+ * the consumer thread at most once a second per consumer. The lag comes from the
+ * consumer's own fetch metadata, so it costs no broker round trip. Spring Boot
+ * applies the interceptor to every listener container factory built through its
+ * configurer.
+ */
+@Component
+public class ConsumerLagInterceptor implements RecordInterceptor<Object, Object>, BatchInterceptor<Object, Object> {
+
+    private static final long REFRESH_INTERVAL_MS = 1000;
+
+    private final MeterRegistry meterRegistry;
+    private final Map<TopicPartition, AtomicLong> lags = new ConcurrentHashMap<>();
+    private final Map<Consumer<?, ?>, Long> lastRefresh = new ConcurrentHashMap<>();
+
+    public ConsumerLagInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ConsumerRecord<Object, Object> intercept(ConsumerRecord<Object, Object> record,
+                                                    Consumer<Object, Object> consumer) {
+        refresh(consumer);
+        return record;
+    }
+
+    @Override
+    public ConsumerRecords<Object, Object> intercept(ConsumerRecords<Object, Object> records,
+                                                     Consumer<Object, Object> consumer) {
+        refresh(consumer);
+        return records;
+    }
+
+    @Override
+    public void clearThreadState(Consumer<?, ?> consumer) {
+        lastRefresh.remove(consumer);
+    }
+
+    private void refresh(Consumer<?, ?> consumer) {
+        long now = System.currentTimeMillis();
+        Long last = lastRefresh.get(consumer);
+        if (last != null && now - last < REFRESH_INTERVAL_MS) {
+            return;
+        }
+        lastRefresh.put(consumer, now);
+
+        for (TopicPartition partition : consumer.assignment()) {
+            OptionalLong lag = consumer.currentLag(partition);
+            if (lag.isPresent()) {
+                gauge(partition).set(lag.getAsLong());
+            }
+        }
+    }
+
+    private AtomicLong gauge(TopicPartition partition) {
+        return lags.computeIfAbsent(partition, tp -> {
+            AtomicLong lag = new AtomicLong();
+            Gauge.builder("position.consumer.lag", lag, AtomicLong::get)
+                .description("Records between the consumer position and the end of the partition")
+                .tag("topic", tp.topic())
+                .tag("partition", Integer.toString(tp.partition()))
+                .register(meterRegistry);
+            return lag;
+        });
+    }
+}
@@ -0,0 +1,97 @@
+package com.tms.position.metrics;
+
+import com.tms.position.config.PositionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histogram-backed timers for the stages of the trade-to-position pipeline, plus
+ * trade-event-time to PositionUpdated latency.
+ *
+ * <p>Timing is sampled: {@link #start()} returns 0 for calls that are not sampled
+ * and every later call on that token is a no-op, so unsampled trades pay for one
+ * random number and nothing else. Stages are sampled independently of each other,
+ * which keeps each stage's distribution unbiased.
+ */
+@Component
+public class PositionPipelineMetrics {
+
+    public enum Stage {
+        DESERIALIZE, DEDUP, LOAD, CALCULATE, SAVE, JOURNAL, SUMMARY, CACHE, SEND, TRANSACTION;
+
+        final String tag = name().toLowerCase();
+    }
+
+    public static final String STAGE_TIMER = "position.pipeline.stage";
+
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Timer endToEnd;
+    private final int sampleRate;
+
+    public PositionPipelineMetrics(PositionProperties positionProperties, MeterRegistry meterRegistry) {
+        PositionProperties.Metrics properties = positionProperties.getMetrics();
+        this.sampleRate = Math.max(properties.getSampleRate(), 1);
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, stageTimer(stage, properties.getPercentiles(), meterRegistry));
+        }
+        this.endToEnd = Timer.builder("position.pipeline.end-to-end")
+            .description("Trade event time to PositionUpdated publish")
+            .publishPercentileHistogram()
+            .publishPercentiles(properties.getPercentiles())
+            .minimumExpectedValue(Duration.ofMillis(1))
+            .maximumExpectedValue(Duration.ofMinutes(5))
+            .register(meterRegistry);
+    }
+
+    // Shared with the Kafka deserializer, which is not a bean and registers its own timer
+    public static Timer stageTimer(Stage stage, double[] percentiles, MeterRegistry meterRegistry) {
+        return Timer.builder(STAGE_TIMER)
+            .description("Time spent per stage of applying a trade to its position")
+            .tag("stage", stage.tag)
+            .publishPercentileHistogram()
+            .publishPercentiles(percentiles)
+            .minimumExpectedValue(Duration.ofNanos(10_000))
+            .maximumExpectedValue(Duration.ofSeconds(10))
+            .register(meterRegistry);
+    }
+
+    public static long start(int sampleRate) {
+        return sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0 ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Starts timing if this call is sampled. Returns the token for {@link #stop} and {@link #lap}.
+     */
+    public long start() {
+        return start(sampleRate);
+    }
+
+    public void stop(Stage stage, long start) {
+        if (start != 0) {
+            stageTimers.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // Ends one stage and starts the next on the same token
+    public long lap(Stage stage, long start) {
+        if (start == 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        stageTimers.get(stage).record(now - start, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void recordEndToEnd(long eventTimeMillis) {
+        if (eventTimeMillis > 0 && start() != 0) {
+            endToEnd.record(Math.max(System.currentTimeMillis() - eventTimeMillis, 0), TimeUnit.MILLISECONDS);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.tms.position.model;
+
+import com.tms.position.calculation.FixedPoint;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Flat, typed view of a trades.enriched event holding only the fields position
+ * keeping needs. Instances are mutable so a decoder can refill one per message.
+ *
+ * <p>Quantity and price are kept as longs scaled by 10^8. Values that do not fit
+ * that representation are kept as BigDecimal instead; {@link #isFixedPoint()}
+ * tells which form is populated.
+ */
+@Getter
+@Setter
+public class EnrichedTrade {
+
+    private String tradeId;
+    private String correlationId;
+
+    private long accountId;
+    private String accountCode;
+    private long instrumentId;
+    private String symbol;
+    private String currency;
+
+    private String side;
+    private TradeSide tradeSide;
+
+    private long scaledQuantity = FixedPoint.NaN;
+    private long scaledPrice = FixedPoint.NaN;
+    private BigDecimal exactQuantity;
+    private BigDecimal exactPrice;
+
+    private LocalDate tradeDate;
+    // Epoch millis of the upstream event, or of the Kafka record when the payload has none
+    private long eventTime;
+
+    public void reset() {
+        tradeId = null;
+        correlationId = null;
+        accountId = 0;
+        accountCode = null;
+        instrumentId = 0;
+        symbol = null;
+        currency = null;
+        side = null;
+        tradeSide = null;
+        scaledQuantity = FixedPoint.NaN;
+        scaledPrice = FixedPoint.NaN;
+        exactQuantity = null;
+        exactPrice = null;
+        tradeDate = null;
+        eventTime = 0;
+    }
+
+    public boolean isFixedPoint() {
+        return scaledQuantity != FixedPoint.NaN && scaledPrice != FixedPoint.NaN;
+    }
+
+    public BigDecimal getQuantity() {
+        return exactQuantity != null ? exactQuantity
+            : FixedPoint.toBigDecimal(scaledQuantity, FixedPoint.QUANTITY_SCALE);
+    }
+
+    public BigDecimal getPrice() {
+        return exactPrice != null ? exactPrice
+            : FixedPoint.toBigDecimal(scaledPrice, FixedPoint.COST_SCALE);
+    }
+
+    public PositionKey positionKey() {
+        return new PositionKey(accountId, instrumentId, tradeDate);
+    }
+}
@@ -0,0 +1,29 @@
+package com.tms.position.model;
+
+import com.tms.position.entity.Position;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Net effect of one or more trades on a position, as published in PositionUpdated,
+ * together with the per-trade journal entries that produced it. {@code opened} and
+ * {@code costBasisChange} feed the account summary deltas. {@code eventTime} is the
+ * earliest event time of the trades, in epoch millis, or 0 if unknown.
+ */
+public record PositionChange(Position position,
+                             BigDecimal previousQuantity,
+                             BigDecimal quantityChange,
+                             BigDecimal realizedPnl,
+                             String triggeringTradeId,
+                             String correlationId,
+                             List<PositionJournalEntry> journal,
+                             boolean opened,
+                             BigDecimal costBasisChange,
+                             long eventTime) {
+
+    public PositionChange withPosition(Position position) {
+        return new PositionChange(position, previousQuantity, quantityChange, realizedPnl, triggeringTradeId,
+            correlationId, journal, opened, costBasisChange, eventTime);
+    }
+}
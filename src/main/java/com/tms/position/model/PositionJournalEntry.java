@@ -0,0 +1,14 @@
+package com.tms.position.model;
+
+/**
+ * Effect of a single trade on a position, in the calculator's scaled-long units
+ * (8 dp quantities and avg costs, 4 dp P&L). Persisted as a position_history row,
+ * which doubles as the applied-trade marker for deduplication.
+ */
+public record PositionJournalEntry(String tradeId,
+                                   long previousQuantity,
+                                   long newQuantity,
+                                   long previousAvgCost,
+                                   long newAvgCost,
+                                   long realizedPnl) {
+}
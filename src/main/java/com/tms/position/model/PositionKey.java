@@ -0,0 +1,9 @@
+package com.tms.position.model;
+
+import java.time.LocalDate;
+
+/**
+ * Natural key of a position row, mirroring uq_position_account_instrument_date.
+ */
+public record PositionKey(Long accountId, Long instrumentId, LocalDate asOfDate) {
+}
@@ -0,0 +1,77 @@
+package com.tms.position.model;
+
+import com.tms.position.entity.Position;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Typed PositionUpdated event of the compact publishing mode. Values are copied
+ * out of the position when the event is built, so it can be held for conflation
+ * while the position keeps changing. {@code tradeCount} is the number of trades
+ * whose net effect the event carries.
+ */
+public record PositionUpdated(String eventId,
+                              long eventTime,
+                              String correlationId,
+                              long positionId,
+                              long accountId,
+                              String accountCode,
+                              long instrumentId,
+                              String symbol,
+                              LocalDate asOfDate,
+                              String currency,
+                              BigDecimal previousQuantity,
+                              BigDecimal newQuantity,
+                              BigDecimal quantityChange,
+                              BigDecimal avgCost,
+                              BigDecimal costBasis,
+                              BigDecimal realizedPnl,
+                              String triggeringTradeId,
+                              String updateType,
+                              int tradeCount) {
+
+    public static final String EVENT_TYPE = "PositionUpdated";
+    public static final String UPDATE_TYPE_TRADE = "TRADE";
+
+    // The event id is derived from the triggering trade, so a replayed change keeps its id
+    public static PositionUpdated of(PositionChange change, long eventTime) {
+        Position position = change.position();
+        return new PositionUpdated(
+            position.getPositionId() + ":" + change.triggeringTradeId(),
+            eventTime,
+            change.correlationId(),
+            position.getPositionId(),
+            position.getAccountId(),
+            position.getAccountCode(),
+            position.getInstrumentId(),
+            position.getSymbol(),
+            position.getAsOfDate(),
+            position.getCurrency(),
+            change.previousQuantity(),
+            position.getQuantity(),
+            change.quantityChange(),
+            position.getAvgCost(),
+            position.getCostBasis(),
+            change.realizedPnl(),
+            change.triggeringTradeId(),
+            UPDATE_TYPE_TRADE,
+            Math.max(change.journal() != null ? change.journal().size() : 1, 1));
+    }
+
+    public String key() {
+        return accountCode + ":" + symbol;
+    }
+
+    /**
+     * Net of this event followed by {@code next} on the same position: the starting
+     * quantity of this one, the end state of {@code next}, and summed deltas.
+     */
+    public PositionUpdated conflate(PositionUpdated next) {
+        return new PositionUpdated(next.eventId, next.eventTime, next.correlationId, next.positionId,
+            next.accountId, next.accountCode, next.instrumentId, next.symbol, next.asOfDate, next.currency,
+            previousQuantity, next.newQuantity, quantityChange.add(next.quantityChange), next.avgCost,
+            next.costBasis, realizedPnl.add(next.realizedPnl), next.triggeringTradeId, next.updateType,
+            tradeCount + next.tradeCount);
+    }
+}
@@ -0,0 +1,10 @@
+package com.tms.position.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Latest price of an instrument from the price topic. Only the fields used for
+ * revaluation are decoded.
+ */
+public record PriceTick(long instrumentId, BigDecimal price, long timestamp) {
+}
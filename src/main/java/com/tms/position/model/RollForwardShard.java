@@ -0,0 +1,19 @@
+package com.tms.position.model;
+
+import java.time.LocalDate;
+
+/**
+ * One account-id range of a roll-forward run from {@code fromDate} to the next day.
+ */
+public record RollForwardShard(LocalDate fromDate,
+                               int shardNo,
+                               long accountIdFrom,
+                               long accountIdTo,
+                               String status,
+                               int rowsCopied) {
+
+    public static final String PENDING = "PENDING";
+    public static final String RUNNING = "RUNNING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+}
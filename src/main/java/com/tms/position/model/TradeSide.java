@@ -0,0 +1,17 @@
+package com.tms.position.model;
+
+public enum TradeSide {
+    BUY,
+    SELL;
+
+    // Returns null for sides the fixed-point path does not model
+    public static TradeSide parse(String side) {
+        if ("BUY".equals(side)) {
+            return BUY;
+        }
+        if ("SELL".equals(side)) {
+            return SELL;
+        }
+        return null;
+    }
+}
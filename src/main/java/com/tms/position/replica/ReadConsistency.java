@@ -0,0 +1,23 @@
+package com.tms.position.replica;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Freshness a client asks of a read: at least the given position version, and/or
+ * every change committed up to the timestamp (server local time). Reads without a
+ * bound may be served by the replica within its configured maximum lag.
+ */
+public record ReadConsistency(Long minVersion, LocalDateTime asOf) {
+
+    public static final ReadConsistency ANY = new ReadConsistency(null, null);
+
+    public boolean isBounded() {
+        return minVersion != null || asOf != null;
+    }
+
+    // Long.MIN_VALUE when there is no timestamp bound
+    public long asOfMillis() {
+        return asOf != null ? asOf.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : Long.MIN_VALUE;
+    }
+}
@@ -0,0 +1,75 @@
+package com.tms.position.replica;
+
+import com.tms.position.config.PositionProperties;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Separate primary and replica pools, so dashboard reads cannot starve the
+ * consumer of connections. Replaces the auto-configured DataSource with one that
+ * routes read-only transactions to the replica; JPA, JdbcTemplate and Flyway all
+ * use it, and only read-only transactions ever leave the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "position.read-replica.enabled", havingValue = "true")
+public class ReadReplicaConfig {
+
+    // spring.datasource.hikari.* still tunes the primary pool
+    @Bean
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariConfig primaryPoolConfig(DataSourceProperties dataSourceProperties) {
+        HikariConfig config = new HikariConfig();
+        config.setJdbcUrl(dataSourceProperties.determineUrl());
+        config.setUsername(dataSourceProperties.determineUsername());
+        config.setPassword(dataSourceProperties.determinePassword());
+        config.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        config.setPoolName("position-primary");
+        return config;
+    }
+
+    @Bean
+    public ReadReplicaPools readReplicaPools(HikariConfig primaryPoolConfig,
+                                             DataSourceProperties dataSourceProperties,
+                                             PositionProperties positionProperties,
+                                             MeterRegistry meterRegistry) {
+        PositionProperties.ReadReplica properties = positionProperties.getReadReplica();
+        HikariConfig replicaConfig = new HikariConfig();
+        replicaConfig.setJdbcUrl(properties.getUrl());
+        replicaConfig.setUsername(properties.getUsername() != null
+            ? properties.getUsername() : dataSourceProperties.determineUsername());
+        replicaConfig.setPassword(properties.getPassword() != null
+            ? properties.getPassword() : dataSourceProperties.determinePassword());
+        replicaConfig.setDriverClassName(dataSourceProperties.determineDriverClassName());
+        replicaConfig.setMaximumPoolSize(properties.getMaximumPoolSize());
+        replicaConfig.setReadOnly(true);
+        replicaConfig.setPoolName("position-replica");
+
+        // Pool metrics (hikaricp.connections.*) tagged with the pool name
+        MicrometerMetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+        primaryPoolConfig.setMetricsTrackerFactory(metrics);
+        replicaConfig.setMetricsTrackerFactory(metrics);
+        return new ReadReplicaPools(new HikariDataSource(primaryPoolConfig), new HikariDataSource(replicaConfig));
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadReplicaPools readReplicaPools,
+                                 ReplicaLagMonitor replicaLagMonitor,
+                                 MeterRegistry meterRegistry) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(readReplicaPools.primary(),
+            readReplicaPools.replica(), replicaLagMonitor, meterRegistry);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
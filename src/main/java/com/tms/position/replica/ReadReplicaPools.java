@@ -0,0 +1,16 @@
+package com.tms.position.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * The two connection pools behind the routing DataSource. Not DataSource beans
+ * themselves, so the health check and auto-configuration only see the routed one.
+ */
+public record ReadReplicaPools(HikariDataSource primary, HikariDataSource replica) implements AutoCloseable {
+
+    @Override
+    public void close() {
+        replica.close();
+        primary.close();
+    }
+}
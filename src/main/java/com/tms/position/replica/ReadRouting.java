@@ -0,0 +1,52 @@
+package com.tms.position.replica;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Decides, per read, whether the replica is fresh enough. Read-only transactions
+ * go to the replica while it is within its maximum lag; a read wrapped here is
+ * additionally sent to the primary when the replica has not yet caught up with
+ * the given point in time. Without a replica everything runs on the one pool.
+ */
+@Component
+public class ReadRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY_REQUIRED = new ThreadLocal<>();
+
+    private final ObjectProvider<ReplicaLagMonitor> replicaLagMonitor;
+
+    public ReadRouting(ObjectProvider<ReplicaLagMonitor> replicaLagMonitor) {
+        this.replicaLagMonitor = replicaLagMonitor;
+    }
+
+    /**
+     * Runs the read on the replica only if it has applied everything the primary
+     * committed up to {@code consistentAfterMillis} (epoch millis, this server's clock).
+     */
+    public <T> T read(long consistentAfterMillis, Supplier<T> read) {
+        ReplicaLagMonitor monitor = replicaLagMonitor.getIfAvailable();
+        if (monitor == null || monitor.caughtUpTo() >= consistentAfterMillis) {
+            return read.get();
+        }
+        return onPrimary(read);
+    }
+
+    public <T> T onPrimary(Supplier<T> read) {
+        if (primaryRequired()) {
+            return read.get();
+        }
+        PRIMARY_REQUIRED.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            PRIMARY_REQUIRED.remove();
+        }
+    }
+
+    static boolean primaryRequired() {
+        return PRIMARY_REQUIRED.get() != null;
+    }
+}
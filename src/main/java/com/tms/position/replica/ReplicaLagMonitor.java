@@ -0,0 +1,122 @@
+package com.tms.position.replica;
+
+import com.tms.position.config.PositionProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how far the replica trails the primary with a heartbeat row. Each beat
+ * bumps a sequence on the primary and remembers when, on this server's clock, it
+ * was written; once the replica shows that sequence, it holds everything committed
+ * before that moment. Comparing sequences rather than database timestamps keeps
+ * clock skew between the servers out of it.
+ *
+ * <p>Until the first beat comes back, or while the replica cannot be read, the lag
+ * keeps growing and reads fall back to the primary. Beats run on their own thread,
+ * so long scheduled jobs cannot hold them up and make the replica look stale.
+ */
+@Component
+@ConditionalOnProperty(name = "position.read-replica.enabled", havingValue = "true")
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final String BEAT =
+        "UPDATE replication_heartbeat SET seq = seq + 1, beat_at = SYSUTCDATETIME() " +
+        "OUTPUT inserted.seq WHERE id = 1";
+
+    // Outstanding beats beyond this only cost resolution, not correctness
+    private static final int MAX_OUTSTANDING_BEATS = 1024;
+
+    private record Beat(long seq, long writtenAt) {
+    }
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private final long maxLagMillis;
+    // Touched only by the heartbeat thread
+    private final Deque<Beat> outstanding = new ArrayDeque<>();
+    private volatile long caughtUpTo;
+    private boolean replicaReachable = true;
+    private final ScheduledExecutorService heartbeats;
+
+    public ReplicaLagMonitor(ReadReplicaPools pools,
+                             PositionProperties positionProperties,
+                             MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(pools.primary());
+        this.replica = new JdbcTemplate(pools.replica());
+        this.maxLagMillis = positionProperties.getReadReplica().getMaxLag().toMillis();
+        TimeGauge.builder("position.replica.lag", this, TimeUnit.MILLISECONDS, ReplicaLagMonitor::lagMillis)
+            .description("How far the read replica trails the primary")
+            .register(meterRegistry);
+
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "position-replica-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = positionProperties.getReadReplica().getHeartbeatIntervalMs();
+        heartbeats.scheduleWithFixedDelay(this::heartbeat, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    void heartbeat() {
+        try {
+            long writtenAt = System.currentTimeMillis();
+            Long seq = primary.queryForObject(BEAT, Long.class);
+            if (seq != null) {
+                if (outstanding.size() >= MAX_OUTSTANDING_BEATS) {
+                    outstanding.removeFirst();
+                }
+                outstanding.addLast(new Beat(seq, writtenAt));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to write replication heartbeat", e);
+        }
+
+        try {
+            Long replicated = replica.queryForObject("SELECT seq FROM replication_heartbeat WHERE id = 1", Long.class);
+            long reached = caughtUpTo;
+            while (replicated != null && !outstanding.isEmpty() && outstanding.peekFirst().seq() <= replicated) {
+                reached = outstanding.removeFirst().writtenAt();
+            }
+            caughtUpTo = reached;
+            replicaReachable = true;
+        } catch (Exception e) {
+            if (replicaReachable) {
+                log.warn("Failed to read replication heartbeat from the replica", e);
+            }
+            replicaReachable = false;
+        }
+    }
+
+    /**
+     * Point in time, on this server's clock, up to which the replica has applied
+     * every commit of the primary.
+     */
+    public long caughtUpTo() {
+        return caughtUpTo;
+    }
+
+    public boolean isWithinMaxLag() {
+        return lagMillis() <= maxLagMillis;
+    }
+
+    private double lagMillis() {
+        return System.currentTimeMillis() - caughtUpTo;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+    }
+}
@@ -0,0 +1,62 @@
+package com.tms.position.replica;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Sends read-only transactions to the replica pool and everything else to the
+ * primary. Must sit behind a LazyConnectionDataSourceProxy: the transaction is
+ * only marked read-only after it has asked for its connection, so the target is
+ * picked when the first statement runs.
+ */
+final class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+    private final Counter replicaReads;
+    private final Counter laggingFallbacks;
+    private final Counter consistencyFallbacks;
+
+    ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor replicaLagMonitor,
+                             MeterRegistry meterRegistry) {
+        this.replicaLagMonitor = replicaLagMonitor;
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        this.replicaReads = Counter.builder("position.replica.reads")
+            .tag("target", "replica")
+            .tag("reason", "fresh")
+            .description("Read-only transactions by the pool that served them")
+            .register(meterRegistry);
+        this.laggingFallbacks = Counter.builder("position.replica.reads")
+            .tag("target", "primary")
+            .tag("reason", "lag")
+            .register(meterRegistry);
+        this.consistencyFallbacks = Counter.builder("position.replica.reads")
+            .tag("target", "primary")
+            .tag("reason", "consistency")
+            .register(meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        if (ReadRouting.primaryRequired()) {
+            consistencyFallbacks.increment();
+            return Target.PRIMARY;
+        }
+        if (!replicaLagMonitor.isWithinMaxLag()) {
+            laggingFallbacks.increment();
+            return Target.PRIMARY;
+        }
+        replicaReads.increment();
+        return Target.REPLICA;
+    }
+}
@@ -0,0 +1,174 @@
+package com.tms.position.repository;
+
+import com.tms.position.dto.AccountPositionSummary;
+import com.tms.position.entity.Position;
+import com.tms.position.model.PositionChange;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Incrementally maintained account_position_summary rows, one per account and date.
+ */
+@Repository
+@RequiredArgsConstructor
+public class AccountSummaryJdbcRepository {
+
+    private static final String MERGE_DELTA =
+        "MERGE INTO account_position_summary WITH (HOLDLOCK) AS target " +
+        "USING (VALUES (?, ?, ?, ?, ?, ?)) AS source " +
+        "    (account_code, as_of_date, position_count, total_cost_basis, total_realized_pnl, updated_at) " +
+        "ON target.account_code = source.account_code AND target.as_of_date = source.as_of_date " +
+        "WHEN MATCHED THEN UPDATE SET " +
+        "    position_count = target.position_count + source.position_count, " +
+        "    total_cost_basis = target.total_cost_basis + source.total_cost_basis, " +
+        "    total_realized_pnl = target.total_realized_pnl + source.total_realized_pnl, " +
+        "    updated_at = source.updated_at " +
+        "WHEN NOT MATCHED THEN INSERT " +
+        "    (account_code, as_of_date, position_count, total_cost_basis, total_realized_pnl, updated_at) " +
+        "VALUES (source.account_code, source.as_of_date, source.position_count, source.total_cost_basis, " +
+        "    source.total_realized_pnl, source.updated_at);";
+
+    // Reads the positions under range locks before touching the summary, the same
+    // order the update path takes, and only writes when the stored row has drifted
+    private static final String MERGE_RECOMPUTED =
+        "MERGE INTO account_position_summary WITH (HOLDLOCK) AS target " +
+        "USING (SELECT ? AS account_code, ? AS as_of_date, COUNT(*) AS position_count, " +
+        "           COALESCE(SUM(cost_basis), 0) AS total_cost_basis, " +
+        "           COALESCE(SUM(realized_pnl), 0) AS total_realized_pnl, " +
+        "           SUM(market_value) AS total_market_value " +
+        "       FROM position WITH (HOLDLOCK) WHERE account_code = ? AND as_of_date = ?) AS source " +
+        "ON target.account_code = source.account_code AND target.as_of_date = source.as_of_date " +
+        "WHEN MATCHED AND (target.position_count <> source.position_count " +
+        "    OR target.total_cost_basis <> source.total_cost_basis " +
+        "    OR target.total_realized_pnl <> source.total_realized_pnl " +
+        "    OR EXISTS (SELECT target.total_market_value EXCEPT SELECT source.total_market_value)) " +
+        "THEN UPDATE SET " +
+        "    position_count = source.position_count, total_cost_basis = source.total_cost_basis, " +
+        "    total_realized_pnl = source.total_realized_pnl, total_market_value = source.total_market_value, " +
+        "    updated_at = SYSDATETIME() " +
+        "WHEN NOT MATCHED AND source.position_count > 0 THEN INSERT " +
+        "    (account_code, as_of_date, position_count, total_cost_basis, total_realized_pnl, total_market_value, " +
+        "     updated_at) " +
+        "VALUES (source.account_code, source.as_of_date, source.position_count, source.total_cost_basis, " +
+        "    source.total_realized_pnl, source.total_market_value, SYSDATETIME());";
+
+    private static final RowMapper<AccountPositionSummary> SUMMARY_ROW_MAPPER = (rs, rowNum) ->
+        AccountPositionSummary.builder()
+            .accountCode(rs.getString("account_code"))
+            .asOfDate(rs.getDate("as_of_date").toLocalDate())
+            .positionCount(rs.getInt("position_count"))
+            .totalCostBasis(rs.getBigDecimal("total_cost_basis"))
+            .totalRealizedPnl(rs.getBigDecimal("total_realized_pnl"))
+            .totalMarketValue(rs.getBigDecimal("total_market_value"))
+            .build();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds the net effect of the changes to their account summaries. Must run in the
+     * transaction that writes the positions.
+     */
+    public void applyChanges(Collection<PositionChange> changes) {
+        // Sorted so concurrent transactions lock summary rows in the same order
+        Map<SummaryKey, Delta> deltas = new TreeMap<>();
+        for (PositionChange change : changes) {
+            Position position = change.position();
+            deltas.computeIfAbsent(new SummaryKey(position.getAccountCode(), position.getAsOfDate()),
+                k -> new Delta()).add(change);
+        }
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(deltas.size());
+        for (Map.Entry<SummaryKey, Delta> entry : deltas.entrySet()) {
+            Delta delta = entry.getValue();
+            if (delta.isEmpty()) {
+                continue;
+            }
+            rows.add(new Object[] {
+                entry.getKey().accountCode(), Date.valueOf(entry.getKey().asOfDate()),
+                delta.positionCount, delta.costBasis, delta.realizedPnl, now
+            });
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(MERGE_DELTA, rows);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<AccountPositionSummary> find(String accountCode, LocalDate asOfDate) {
+        return jdbcTemplate.query(
+            "SELECT * FROM account_position_summary WHERE account_code = ? AND as_of_date = ?",
+            SUMMARY_ROW_MAPPER, accountCode, Date.valueOf(asOfDate)).stream().findFirst();
+    }
+
+    // Summary rows of several accounts; accounts without positions have no row
+    @Transactional(readOnly = true)
+    public List<AccountPositionSummary> findByAccounts(Collection<String> accountCodes, LocalDate asOfDate) {
+        List<Object> args = new ArrayList<>(accountCodes.size() + 1);
+        args.add(Date.valueOf(asOfDate));
+        args.addAll(accountCodes);
+        String placeholders = String.join(", ", Collections.nCopies(accountCodes.size(), "?"));
+        return jdbcTemplate.query(
+            "SELECT * FROM account_position_summary WHERE as_of_date = ? AND account_code IN (" + placeholders + ")",
+            SUMMARY_ROW_MAPPER, args.toArray());
+    }
+
+    public List<AccountPositionSummary> findByAsOfDate(LocalDate asOfDate) {
+        return jdbcTemplate.query("SELECT * FROM account_position_summary WHERE as_of_date = ?",
+            SUMMARY_ROW_MAPPER, Date.valueOf(asOfDate));
+    }
+
+    // Full recompute from the position table, without locks
+    public List<AccountPositionSummary> recomputeByAsOfDate(LocalDate asOfDate) {
+        return jdbcTemplate.query(
+            "SELECT account_code, as_of_date, COUNT(*) AS position_count, SUM(cost_basis) AS total_cost_basis, " +
+            "SUM(realized_pnl) AS total_realized_pnl, SUM(market_value) AS total_market_value " +
+            "FROM position WHERE as_of_date = ? GROUP BY account_code, as_of_date",
+            SUMMARY_ROW_MAPPER, Date.valueOf(asOfDate));
+    }
+
+    /**
+     * Overwrites one summary with a locked recompute. Returns true if the stored row
+     * had drifted.
+     */
+    public boolean repair(String accountCode, LocalDate asOfDate) {
+        Date date = Date.valueOf(asOfDate);
+        return jdbcTemplate.update(MERGE_RECOMPUTED, accountCode, date, accountCode, date) > 0;
+    }
+
+    private record SummaryKey(String accountCode, LocalDate asOfDate) implements Comparable<SummaryKey> {
+        @Override
+        public int compareTo(SummaryKey other) {
+            int byAccount = accountCode.compareTo(other.accountCode);
+            return byAccount != 0 ? byAccount : asOfDate.compareTo(other.asOfDate);
+        }
+    }
+
+    private static final class Delta {
+        private int positionCount;
+        private BigDecimal costBasis = BigDecimal.ZERO;
+        private BigDecimal realizedPnl = BigDecimal.ZERO;
+
+        void add(PositionChange change) {
+            if (change.opened()) {
+                positionCount++;
+            }
+            costBasis = costBasis.add(change.costBasisChange());
+            realizedPnl = realizedPnl.add(change.realizedPnl());
+        }
+
+        boolean isEmpty() {
+            return positionCount == 0 && costBasis.signum() == 0 && realizedPnl.signum() == 0;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.tms.position.repository;
+
+import java.time.LocalDate;
+
+/**
+ * A write or maintenance run for a date outside the hot window. The archive job
+ * may already have moved that date's positions, so the hot table no longer has them.
+ */
+public class ArchivedDateException extends IllegalArgumentException {
+
+    public ArchivedDateException(LocalDate asOfDate) {
+        super("Positions of " + asOfDate + " are outside the hot window and may be archived");
+    }
+}
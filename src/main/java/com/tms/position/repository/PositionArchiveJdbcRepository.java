@@ -0,0 +1,93 @@
+package com.tms.position.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Partition maintenance of the hot position table and the moves of closed dates
+ * into the columnstore archive. Layout changes must run in a transaction that
+ * holds {@link #lock()}, so only one instance maintains the layout at a time;
+ * {@link #compress} runs outside one.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PositionArchiveJdbcRepository {
+
+    public static final String HOT_FUNCTION = "pf_position_as_of_date";
+    public static final String HOT_SCHEME = "ps_position_as_of_date";
+    public static final String ARCHIVE_FUNCTION = "pf_position_archive_month";
+    public static final String ARCHIVE_SCHEME = "ps_position_archive_month";
+
+    private static final String COLUMNS =
+        "position_id, account_id, account_code, instrument_id, symbol, quantity, avg_cost, cost_basis, " +
+        "realized_pnl, currency, as_of_date, created_at, updated_at, version, market_value, unrealized_pnl";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void lock() {
+        jdbcTemplate.execute("EXEC sp_getapplock @Resource = 'position-archive', @LockMode = 'Exclusive', " +
+            "@LockOwner = 'Transaction', @LockTimeout = -1");
+    }
+
+    public Set<LocalDate> findBoundaries(String function) {
+        return new HashSet<>(jdbcTemplate.query(
+            "SELECT CAST(v.value AS DATE) FROM sys.partition_range_values v " +
+            "JOIN sys.partition_functions f ON f.function_id = v.function_id WHERE f.name = ?",
+            (rs, rowNum) -> rs.getDate(1).toLocalDate(), function));
+    }
+
+    // Splitting an empty partition only changes metadata; a non-empty one moves rows
+    public void split(String function, String scheme, LocalDate boundary) {
+        jdbcTemplate.execute("ALTER PARTITION SCHEME " + scheme + " NEXT USED [PRIMARY]");
+        jdbcTemplate.update("ALTER PARTITION FUNCTION " + function + "() SPLIT RANGE (?)", Date.valueOf(boundary));
+    }
+
+    public void merge(String function, LocalDate boundary) {
+        jdbcTemplate.update("ALTER PARTITION FUNCTION " + function + "() MERGE RANGE (?)", Date.valueOf(boundary));
+    }
+
+    public List<LocalDate> findHotDatesBefore(LocalDate before) {
+        return jdbcTemplate.query("SELECT DISTINCT as_of_date FROM position WHERE as_of_date < ? ORDER BY as_of_date",
+            (rs, rowNum) -> rs.getDate(1).toLocalDate(), Date.valueOf(before));
+    }
+
+    /**
+     * Copies a date's positions into the archive and removes them from the hot
+     * table: by truncating the date's partition when it holds only that date,
+     * otherwise by deleting its rows. Returns the number of positions moved.
+     */
+    public int moveToArchive(LocalDate asOfDate, boolean ownPartition) {
+        Date date = Date.valueOf(asOfDate);
+        // TABLOCK lets a large date load straight into compressed row groups
+        int moved = jdbcTemplate.update(
+            "INSERT INTO position_archive WITH (TABLOCK) (" + COLUMNS + ") " +
+            "SELECT " + COLUMNS + " FROM position WHERE as_of_date = ?", date);
+        if (ownPartition) {
+            Integer partition = jdbcTemplate.queryForObject(
+                "SELECT $PARTITION." + HOT_FUNCTION + "(?)", Integer.class, date);
+            jdbcTemplate.execute("TRUNCATE TABLE position WITH (PARTITIONS (" + partition + "))");
+        } else {
+            jdbcTemplate.update("DELETE FROM position WHERE as_of_date = ?", date);
+        }
+        return moved;
+    }
+
+    public int archivePartition(LocalDate asOfDate) {
+        Integer partition = jdbcTemplate.queryForObject(
+            "SELECT $PARTITION." + ARCHIVE_FUNCTION + "(?)", Integer.class, Date.valueOf(asOfDate));
+        return partition != null ? partition : 1;
+    }
+
+    // Compresses the delta rowgroups trickle-sized dates leave behind
+    public void compress(int archivePartition) {
+        jdbcTemplate.execute("ALTER INDEX cci_position_archive ON position_archive REORGANIZE PARTITION = " +
+            archivePartition + " WITH (COMPRESS_ALL_ROW_GROUPS = ON)");
+    }
+}
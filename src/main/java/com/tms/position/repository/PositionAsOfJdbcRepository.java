@@ -0,0 +1,157 @@
+package com.tms.position.repository;
+
+import com.tms.position.calculation.FixedPoint;
+import com.tms.position.dto.PositionResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Positions as they were at a point in time, reconstructed from position_history.
+ * Quantity and average cost come from the newest change at or before the time;
+ * realized P&L is the nearest checkpoint plus the changes after it. Every lookup
+ * is a seek on (position_id, created_at), however many changes the position had.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PositionAsOfJdbcRepository {
+
+    // Table placeholder; parameter order: at, at, at, at; the WHERE clause follows
+    private static final String SELECT_AS_OF =
+        "SELECT p.position_id, p.account_id, p.account_code, p.instrument_id, p.symbol, p.currency, " +
+        "    p.as_of_date, p.created_at, " +
+        "    COALESCE(s.new_quantity, f.previous_quantity, p.quantity) AS quantity, " +
+        "    COALESCE(s.new_avg_cost, f.previous_avg_cost, p.avg_cost) AS avg_cost, " +
+        "    COALESCE(c.realized_pnl, 0) + COALESCE(d.realized_pnl, 0) AS realized_pnl, " +
+        "    s.created_at AS changed_at " +
+        "FROM %s p " +
+        // Newest change at or before the time
+        "OUTER APPLY (SELECT TOP 1 h.new_quantity, h.new_avg_cost, h.created_at FROM position_history h " +
+        "    WHERE h.position_id = p.position_id AND h.created_at <= ? " +
+        "    ORDER BY h.created_at DESC, h.history_id DESC) s " +
+        // Without one, the state the position was created with
+        "OUTER APPLY (SELECT TOP 1 h.previous_quantity, h.previous_avg_cost FROM position_history h " +
+        "    WHERE h.position_id = p.position_id ORDER BY h.created_at, h.history_id) f " +
+        "OUTER APPLY (SELECT TOP 1 k.checkpoint_at, k.last_history_id, k.realized_pnl FROM position_checkpoint k " +
+        "    WHERE k.position_id = p.position_id AND k.checkpoint_at <= ? " +
+        "    ORDER BY k.checkpoint_at DESC, k.last_history_id DESC) c " +
+        // Changes of one position are serialized, so their ids and times rise together
+        "OUTER APPLY (SELECT SUM(h.realized_pnl) AS realized_pnl FROM position_history h " +
+        "    WHERE h.position_id = p.position_id AND h.created_at <= ? " +
+        "    AND h.created_at >= COALESCE(c.checkpoint_at, '0001-01-01') " +
+        "    AND h.history_id > COALESCE(c.last_history_id, 0)) d " +
+        "WHERE p.created_at <= ? ";
+
+    // Summed per position from its own previous checkpoint, so a change that committed
+    // after an earlier run still lands in the position's next checkpoint
+    private static final String INSERT_CHECKPOINTS =
+        "WITH changed AS (" +
+        "    SELECT position_id, MAX(history_id) AS last_history_id FROM position_history " +
+        "    WHERE history_id > ? AND history_id <= ? GROUP BY position_id) " +
+        "INSERT INTO position_checkpoint (position_id, checkpoint_at, last_history_id, realized_pnl) " +
+        "SELECT c.position_id, last.created_at, c.last_history_id, " +
+        "    COALESCE(prev.realized_pnl, 0) + delta.realized_pnl " +
+        "FROM changed c " +
+        "JOIN position_history last ON last.history_id = c.last_history_id " +
+        "OUTER APPLY (SELECT TOP 1 k.last_history_id, k.realized_pnl FROM position_checkpoint k " +
+        "    WHERE k.position_id = c.position_id ORDER BY k.checkpoint_at DESC, k.last_history_id DESC) prev " +
+        "CROSS APPLY (SELECT COALESCE(SUM(h.realized_pnl), 0) AS realized_pnl FROM position_history h " +
+        "    WHERE h.position_id = c.position_id AND h.history_id > COALESCE(prev.last_history_id, 0) " +
+        "    AND h.history_id <= c.last_history_id) delta " +
+        "WHERE prev.last_history_id IS NULL OR prev.last_history_id < c.last_history_id";
+
+    // Cost basis is derived the way PositionCalculator derives it
+    private static final RowMapper<PositionResponse> AS_OF_ROW_MAPPER = (rs, rowNum) -> {
+        BigDecimal quantity = rs.getBigDecimal("quantity");
+        BigDecimal avgCost = rs.getBigDecimal("avg_cost");
+        Timestamp changedAt = rs.getTimestamp("changed_at");
+        return PositionResponse.builder()
+            .positionId(rs.getLong("position_id"))
+            .accountId(rs.getLong("account_id"))
+            .accountCode(rs.getString("account_code"))
+            .instrumentId(rs.getLong("instrument_id"))
+            .symbol(rs.getString("symbol"))
+            .quantity(quantity)
+            .avgCost(avgCost)
+            .costBasis(quantity.abs().multiply(avgCost).setScale(FixedPoint.AMOUNT_SCALE, RoundingMode.HALF_UP))
+            .realizedPnl(rs.getBigDecimal("realized_pnl"))
+            .currency(rs.getString("currency"))
+            .asOfDate(rs.getDate("as_of_date").toLocalDate())
+            .updatedAt((changedAt != null ? changedAt : rs.getTimestamp("created_at")).toLocalDateTime())
+            .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PositionTables positionTables;
+
+    @Transactional(readOnly = true)
+    public Optional<PositionResponse> findPositionAt(long positionId, LocalDateTime at) {
+        Timestamp timestamp = Timestamp.valueOf(at);
+        // The id alone does not tell the date, so both tiers are searched
+        return jdbcTemplate.query(SELECT_AS_OF.formatted(PositionTables.ALL) + "AND p.position_id = ?",
+            AS_OF_ROW_MAPPER, timestamp, timestamp, timestamp, timestamp, positionId).stream().findFirst();
+    }
+
+    // Positions of the account on the time's date, in (symbol, positionId) order
+    @Transactional(readOnly = true)
+    public List<PositionResponse> findAccountAt(String accountCode, LocalDateTime at) {
+        Timestamp timestamp = Timestamp.valueOf(at);
+        return jdbcTemplate.query(
+            SELECT_AS_OF.formatted(positionTables.forDate(at.toLocalDate())) +
+                "AND p.account_code = ? AND p.as_of_date = ? ORDER BY p.symbol, p.position_id",
+            AS_OF_ROW_MAPPER, timestamp, timestamp, timestamp, timestamp,
+            accountCode, Date.valueOf(at.toLocalDate()));
+    }
+
+    /**
+     * Takes the checkpoint lock for the current transaction without waiting. Returns
+     * false if another instance holds it.
+     */
+    public boolean tryLockCheckpoint() {
+        Integer result = jdbcTemplate.queryForObject(
+            "DECLARE @result INT; " +
+            "EXEC @result = sp_getapplock @Resource = 'position-checkpoint', @LockMode = 'Exclusive', " +
+            "@LockOwner = 'Transaction', @LockTimeout = 0; " +
+            "SELECT @result", Integer.class);
+        return result != null && result >= 0;
+    }
+
+    public long findLastCheckpointedHistoryId() {
+        Long id = jdbcTemplate.queryForObject("SELECT MAX(last_history_id) FROM position_checkpoint", Long.class);
+        return id != null ? id : 0;
+    }
+
+    // Newest journal row written before the time; later ones may still belong to open transactions
+    public long findLastHistoryIdBefore(LocalDateTime before) {
+        Long id = jdbcTemplate.queryForObject(
+            "SELECT MAX(history_id) FROM position_history WHERE created_at < ?", Long.class, Timestamp.valueOf(before));
+        return id != null ? id : 0;
+    }
+
+    /**
+     * Checkpoints every position changed by the journal rows in (afterHistoryId, toHistoryId].
+     * Returns the number of checkpoints written.
+     */
+    public int insertCheckpoints(long afterHistoryId, long toHistoryId) {
+        return jdbcTemplate.update(INSERT_CHECKPOINTS, afterHistoryId, toHistoryId);
+    }
+
+    // Keeps the newest checkpoint of each position so later checkpoints can still build on it
+    public int deleteCheckpointsBefore(LocalDateTime before) {
+        return jdbcTemplate.update(
+            "DELETE k FROM position_checkpoint k WHERE k.checkpoint_at < ? AND EXISTS (" +
+            "    SELECT 1 FROM position_checkpoint n WHERE n.position_id = k.position_id " +
+            "    AND n.last_history_id > k.last_history_id)",
+            Timestamp.valueOf(before));
+    }
+}
@@ -0,0 +1,285 @@
+package com.tms.position.repository;
+
+import com.tms.position.calculation.FixedPoint;
+import com.tms.position.entity.Position;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionJournalEntry;
+import com.tms.position.model.PositionKey;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.BiConsumer;
+
+/**
+ * Set-based JDBC access to the position table for the batch update path.
+ * Rows returned here are detached; they never enter a JPA persistence context.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PositionJdbcRepository {
+
+    // SQL Server caps a statement at 2100 parameters; two per key leaves headroom
+    private static final int KEY_CHUNK_SIZE = 500;
+
+    private static final String COLUMNS =
+        "position_id, account_id, account_code, instrument_id, symbol, quantity, avg_cost, " +
+        "cost_basis, market_value, unrealized_pnl, realized_pnl, currency, as_of_date, version, created_at, updated_at";
+
+    private static final String SELECT_COLUMNS = "SELECT " + COLUMNS + " FROM position ";
+
+    // Table placeholder: the hot table, or the archive for keys with no hot row
+    private static final String SELECT_LATEST_COLUMNS =
+        "SELECT " + COLUMNS + " FROM (SELECT " + COLUMNS + ", ROW_NUMBER() OVER " +
+        "(PARTITION BY account_id, instrument_id ORDER BY as_of_date DESC) AS rn FROM %s ";
+
+    private static final String MERGE_POSITION =
+        "MERGE INTO position WITH (HOLDLOCK) AS target " +
+        "USING (VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)) AS source " +
+        "    (account_id, account_code, instrument_id, symbol, quantity, avg_cost, cost_basis, " +
+        "     realized_pnl, currency, as_of_date, updated_at) " +
+        "ON target.account_id = source.account_id " +
+        "   AND target.instrument_id = source.instrument_id " +
+        "   AND target.as_of_date = source.as_of_date " +
+        "WHEN MATCHED THEN UPDATE SET " +
+        "    quantity = source.quantity, avg_cost = source.avg_cost, cost_basis = source.cost_basis, " +
+        "    realized_pnl = source.realized_pnl, updated_at = source.updated_at, version = target.version + 1 " +
+        "WHEN NOT MATCHED THEN INSERT " +
+        "    (account_id, account_code, instrument_id, symbol, quantity, avg_cost, cost_basis, " +
+        "     realized_pnl, currency, as_of_date, created_at, updated_at, version) " +
+        "VALUES (source.account_id, source.account_code, source.instrument_id, source.symbol, " +
+        "     source.quantity, source.avg_cost, source.cost_basis, source.realized_pnl, source.currency, " +
+        "     source.as_of_date, source.updated_at, source.updated_at, 0);";
+
+    private static final String INSERT_HISTORY =
+        "INSERT INTO position_history (position_id, account_id, account_code, instrument_id, symbol, " +
+        "previous_quantity, new_quantity, quantity_change, previous_avg_cost, new_avg_cost, realized_pnl, " +
+        "triggering_trade_id, change_reason, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    static final String CHANGE_REASON_TRADE = "TRADE";
+    static final String CHANGE_REASON_ROLL_FORWARD = "ROLL_FORWARD";
+
+    private static final RowMapper<Position> POSITION_ROW_MAPPER = (rs, rowNum) -> Position.builder()
+        .positionId(rs.getLong("position_id"))
+        .accountId(rs.getLong("account_id"))
+        .accountCode(rs.getString("account_code"))
+        .instrumentId(rs.getLong("instrument_id"))
+        .symbol(rs.getString("symbol"))
+        .quantity(rs.getBigDecimal("quantity"))
+        .avgCost(rs.getBigDecimal("avg_cost"))
+        .costBasis(rs.getBigDecimal("cost_basis"))
+        .marketValue(rs.getBigDecimal("market_value"))
+        .unrealizedPnl(rs.getBigDecimal("unrealized_pnl"))
+        .realizedPnl(rs.getBigDecimal("realized_pnl"))
+        .currency(rs.getString("currency"))
+        .asOfDate(rs.getDate("as_of_date").toLocalDate())
+        .version(rs.getInt("version"))
+        .createdAt(rs.getTimestamp("created_at").toLocalDateTime())
+        .updatedAt(rs.getTimestamp("updated_at").toLocalDateTime())
+        .build();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PositionTables positionTables;
+
+    public Map<PositionKey, Position> findByKeys(Collection<PositionKey> keys) {
+        Map<PositionKey, Position> result = new HashMap<>(keys.size() * 2);
+        Map<LocalDate, List<PositionKey>> keysByDate = new HashMap<>();
+        for (PositionKey key : keys) {
+            keysByDate.computeIfAbsent(key.asOfDate(), d -> new ArrayList<>()).add(key);
+        }
+
+        for (Map.Entry<LocalDate, List<PositionKey>> entry : keysByDate.entrySet()) {
+            List<PositionKey> dateKeys = entry.getValue();
+            for (int from = 0; from < dateKeys.size(); from += KEY_CHUNK_SIZE) {
+                List<PositionKey> chunk = dateKeys.subList(from, Math.min(from + KEY_CHUNK_SIZE, dateKeys.size()));
+
+                StringBuilder sql = new StringBuilder(SELECT_COLUMNS).append("WHERE as_of_date = ? AND (");
+                List<Object> args = new ArrayList<>(chunk.size() * 2 + 1);
+                args.add(Date.valueOf(entry.getKey()));
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append(i == 0 ? "" : " OR ").append("(account_id = ? AND instrument_id = ?)");
+                    args.add(chunk.get(i).accountId());
+                    args.add(chunk.get(i).instrumentId());
+                }
+                sql.append(')');
+
+                for (Position position : jdbcTemplate.query(sql.toString(), POSITION_ROW_MAPPER, args.toArray())) {
+                    result.put(keyOf(position), position);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * For each key, the latest row of the same account and instrument dated before
+     * the key's date, keyed by the requested key. Keys with no earlier row are absent.
+     * Keys with no earlier hot row fall back to the archive. This does not rely on the
+     * archive watermark, which a freshly started instance has not loaded yet.
+     */
+    public Map<PositionKey, Position> findLatestBefore(Collection<PositionKey> keys) {
+        Map<PositionKey, Position> result = new HashMap<>(keys.size() * 2);
+        findLatestBefore(PositionTables.HOT, keys, result);
+        if (result.size() < keys.size()) {
+            List<PositionKey> missing = keys.stream().filter(key -> !result.containsKey(key)).toList();
+            findLatestBefore(PositionTables.ARCHIVE, missing, result);
+        }
+        return result;
+    }
+
+    private void findLatestBefore(String table, Collection<PositionKey> keys, Map<PositionKey, Position> result) {
+        Map<LocalDate, List<PositionKey>> keysByDate = new HashMap<>();
+        for (PositionKey key : keys) {
+            keysByDate.computeIfAbsent(key.asOfDate(), d -> new ArrayList<>()).add(key);
+        }
+
+        String select = SELECT_LATEST_COLUMNS.formatted(table);
+        for (Map.Entry<LocalDate, List<PositionKey>> entry : keysByDate.entrySet()) {
+            List<PositionKey> dateKeys = entry.getValue();
+            for (int from = 0; from < dateKeys.size(); from += KEY_CHUNK_SIZE) {
+                List<PositionKey> chunk = dateKeys.subList(from, Math.min(from + KEY_CHUNK_SIZE, dateKeys.size()));
+
+                StringBuilder sql = new StringBuilder(select).append("WHERE as_of_date < ? AND (");
+                List<Object> args = new ArrayList<>(chunk.size() * 2 + 1);
+                args.add(Date.valueOf(entry.getKey()));
+                for (int i = 0; i < chunk.size(); i++) {
+                    sql.append(i == 0 ? "" : " OR ").append("(account_id = ? AND instrument_id = ?)");
+                    args.add(chunk.get(i).accountId());
+                    args.add(chunk.get(i).instrumentId());
+                }
+                sql.append(")) latest WHERE rn = 1");
+
+                for (Position position : jdbcTemplate.query(sql.toString(), POSITION_ROW_MAPPER, args.toArray())) {
+                    result.put(new PositionKey(position.getAccountId(), position.getInstrumentId(), entry.getKey()),
+                        position);
+                }
+            }
+        }
+    }
+
+    public List<Position> findByAsOfDate(LocalDate asOfDate) {
+        return jdbcTemplate.query(SELECT_COLUMNS + "WHERE as_of_date = ?", POSITION_ROW_MAPPER,
+            Date.valueOf(asOfDate));
+    }
+
+    // Replaces the JPA account query, which only sees the hot table
+    @Transactional(readOnly = true)
+    public List<Position> findByAccount(String accountCode, LocalDate asOfDate) {
+        return jdbcTemplate.query(
+            "SELECT " + COLUMNS + " FROM " + positionTables.forDate(asOfDate) +
+            " WHERE account_code = ? AND as_of_date = ? ORDER BY symbol",
+            POSITION_ROW_MAPPER, accountCode, Date.valueOf(asOfDate));
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Position> findArchivedById(long positionId) {
+        return jdbcTemplate.query("SELECT " + COLUMNS + " FROM " + PositionTables.ARCHIVE + " WHERE position_id = ?",
+            POSITION_ROW_MAPPER, positionId).stream().findFirst();
+    }
+
+    /**
+     * Upserts all positions with one batched MERGE. Newly inserted positions get
+     * their generated position_id assigned back after the batch executes.
+     */
+    public void upsertAll(List<Position> positions) {
+        if (positions.isEmpty()) {
+            return;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.batchUpdate(MERGE_POSITION, positions, positions.size(), (ps, position) -> {
+            position.setUpdatedAt(now);
+            ps.setLong(1, position.getAccountId());
+            ps.setString(2, position.getAccountCode());
+            ps.setLong(3, position.getInstrumentId());
+            ps.setString(4, position.getSymbol());
+            ps.setBigDecimal(5, position.getQuantity());
+            ps.setBigDecimal(6, position.getAvgCost());
+            ps.setBigDecimal(7, position.getCostBasis());
+            ps.setBigDecimal(8, position.getRealizedPnl());
+            ps.setString(9, position.getCurrency());
+            ps.setDate(10, Date.valueOf(position.getAsOfDate()));
+            ps.setTimestamp(11, Timestamp.valueOf(now));
+        });
+
+        Map<PositionKey, Position> inserted = new HashMap<>();
+        for (Position position : positions) {
+            if (position.getPositionId() == null) {
+                position.setCreatedAt(now);
+                inserted.put(keyOf(position), position);
+            } else {
+                position.setVersion(position.getVersion() == null ? 1 : position.getVersion() + 1);
+            }
+        }
+        if (!inserted.isEmpty()) {
+            findByKeys(inserted.keySet()).forEach((key, stored) -> {
+                Position position = inserted.get(key);
+                position.setPositionId(stored.getPositionId());
+                position.setVersion(stored.getVersion());
+            });
+        }
+    }
+
+    /**
+     * Appends one position_history row per journaled trade. Must run in the same
+     * transaction as the position upsert: the row is the applied-trade marker.
+     */
+    public void insertJournal(Collection<PositionChange> changes) {
+        List<Object[]> rows = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (PositionChange change : changes) {
+            Position position = change.position();
+            for (PositionJournalEntry entry : change.journal()) {
+                rows.add(new Object[] {
+                    position.getPositionId(), position.getAccountId(), position.getAccountCode(),
+                    position.getInstrumentId(), position.getSymbol(),
+                    FixedPoint.toBigDecimal(entry.previousQuantity(), FixedPoint.QUANTITY_SCALE),
+                    FixedPoint.toBigDecimal(entry.newQuantity(), FixedPoint.QUANTITY_SCALE),
+                    FixedPoint.toBigDecimal(entry.newQuantity() - entry.previousQuantity(), FixedPoint.QUANTITY_SCALE),
+                    FixedPoint.toBigDecimal(entry.previousAvgCost(), FixedPoint.COST_SCALE),
+                    FixedPoint.toBigDecimal(entry.newAvgCost(), FixedPoint.COST_SCALE),
+                    FixedPoint.toBigDecimal(entry.realizedPnl(), FixedPoint.AMOUNT_SCALE),
+                    entry.tradeId(), CHANGE_REASON_TRADE, now
+                });
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_HISTORY, rows);
+        }
+    }
+
+    public Set<String> findAppliedTradeIds(Collection<String> tradeIds) {
+        Set<String> applied = new HashSet<>();
+        List<String> ids = new ArrayList<>(tradeIds);
+        for (int from = 0; from < ids.size(); from += KEY_CHUNK_SIZE) {
+            List<String> chunk = ids.subList(from, Math.min(from + KEY_CHUNK_SIZE, ids.size()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            applied.addAll(jdbcTemplate.queryForList(
+                "SELECT DISTINCT triggering_trade_id FROM position_history WHERE change_reason = '"
+                    + CHANGE_REASON_TRADE + "' AND triggering_trade_id IN (" + placeholders + ")",
+                String.class, chunk.toArray()));
+        }
+        return applied;
+    }
+
+    public void forEachAppliedTradeSince(LocalDateTime since, BiConsumer<String, LocalDateTime> action) {
+        jdbcTemplate.query(
+            "SELECT triggering_trade_id, created_at FROM position_history WHERE created_at >= ? " +
+            "AND change_reason = '" + CHANGE_REASON_TRADE + "'",
+            rs -> {
+                action.accept(rs.getString(1), rs.getTimestamp(2).toLocalDateTime());
+            },
+            Timestamp.valueOf(since));
+    }
+
+    public static PositionKey keyOf(Position position) {
+        return new PositionKey(position.getAccountId(), position.getInstrumentId(), position.getAsOfDate());
+    }
+}
@@ -0,0 +1,172 @@
+package com.tms.position.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Per-date position snapshots and the position_history reads used to replay the
+ * journal on top of them.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PositionJournalJdbcRepository {
+
+    private static final String INSERT_SNAPSHOT_ROWS =
+        "INSERT INTO position_snapshot (snapshot_id, account_id, position_id, account_code, quantity, avg_cost, " +
+        "    cost_basis, realized_pnl, last_history_id) " +
+        "SELECT ?, p.account_id, p.position_id, p.account_code, p.quantity, p.avg_cost, p.cost_basis, " +
+        "    p.realized_pnl, (SELECT MAX(h.history_id) FROM position_history h WHERE h.position_id = p.position_id) " +
+        "FROM position p WHERE p.as_of_date = ?";
+
+    private static final String SELECT_JOURNAL =
+        "SELECT h.history_id, h.position_id, h.account_code, h.previous_quantity, h.previous_avg_cost, " +
+        "    h.new_quantity, h.new_avg_cost, h.realized_pnl " +
+        "FROM position_history h JOIN position p ON p.position_id = h.position_id " +
+        "WHERE p.as_of_date = ? AND p.account_id BETWEEN ? AND ? " +
+        "ORDER BY h.position_id, h.history_id";
+
+    private static final String UPDATE_REBUILT =
+        "UPDATE position SET quantity = ?, avg_cost = ?, cost_basis = ?, realized_pnl = ?, " +
+        "    version = version + 1 " +
+        "WHERE position_id = ? " +
+        "AND (quantity <> ? OR avg_cost <> ? OR cost_basis <> ? OR realized_pnl <> ?)";
+
+    public record SnapshotRow(long positionId, String accountCode, BigDecimal quantity, BigDecimal avgCost,
+                              BigDecimal costBasis, BigDecimal realizedPnl, long lastHistoryId) {
+    }
+
+    public record JournalRow(long historyId, long positionId, String accountCode,
+                             BigDecimal previousQuantity, BigDecimal previousAvgCost,
+                             BigDecimal newQuantity, BigDecimal newAvgCost, BigDecimal realizedPnl) {
+    }
+
+    public record RebuiltPosition(long positionId, BigDecimal quantity, BigDecimal avgCost,
+                                  BigDecimal costBasis, BigDecimal realizedPnl) {
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Copies every position of the date into a new snapshot, with the newest journal
+     * row each one already reflects. The position rows of the date are range-locked
+     * first, so no update can slip in between a row and its journal. Must run in a
+     * transaction; returns the snapshot id.
+     */
+    public long insertSnapshot(LocalDate asOfDate) {
+        Date date = Date.valueOf(asOfDate);
+        Integer positionCount = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM position WITH (HOLDLOCK) WHERE as_of_date = ?", Integer.class, date);
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO position_snapshot_run (as_of_date, position_count) VALUES (?, ?)",
+                Statement.RETURN_GENERATED_KEYS);
+            statement.setDate(1, date);
+            statement.setInt(2, positionCount != null ? positionCount : 0);
+            return statement;
+        }, keyHolder);
+        long snapshotId = keyHolder.getKey().longValue();
+
+        jdbcTemplate.update(INSERT_SNAPSHOT_ROWS, snapshotId, date);
+        return snapshotId;
+    }
+
+    // Older snapshots of the same date are superseded by the latest one
+    public void deleteSnapshotsBefore(LocalDate asOfDate, long snapshotId) {
+        Date date = Date.valueOf(asOfDate);
+        jdbcTemplate.update(
+            "DELETE s FROM position_snapshot s JOIN position_snapshot_run r ON r.snapshot_id = s.snapshot_id " +
+            "WHERE r.as_of_date = ? AND r.snapshot_id < ?", date, snapshotId);
+        jdbcTemplate.update("DELETE FROM position_snapshot_run WHERE as_of_date = ? AND snapshot_id < ?",
+            date, snapshotId);
+    }
+
+    public Optional<Long> findLatestSnapshotId(LocalDate asOfDate) {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(
+            "SELECT MAX(snapshot_id) FROM position_snapshot_run WHERE as_of_date = ?",
+            Long.class, Date.valueOf(asOfDate)));
+    }
+
+    public List<Long> findAccountIds(LocalDate asOfDate) {
+        return jdbcTemplate.queryForList(
+            "SELECT DISTINCT account_id FROM position WHERE as_of_date = ? ORDER BY account_id",
+            Long.class, Date.valueOf(asOfDate));
+    }
+
+    public void forEachSnapshotRow(long snapshotId, long accountIdFrom, long accountIdTo,
+                                   Consumer<SnapshotRow> action) {
+        jdbcTemplate.query(
+            "SELECT position_id, account_code, quantity, avg_cost, cost_basis, realized_pnl, last_history_id " +
+            "FROM position_snapshot WHERE snapshot_id = ? AND account_id BETWEEN ? AND ?",
+            rs -> {
+                action.accept(new SnapshotRow(rs.getLong("position_id"), rs.getString("account_code"),
+                    rs.getBigDecimal("quantity"), rs.getBigDecimal("avg_cost"), rs.getBigDecimal("cost_basis"),
+                    rs.getBigDecimal("realized_pnl"), rs.getLong("last_history_id")));
+            },
+            snapshotId, accountIdFrom, accountIdTo);
+    }
+
+    // Journal rows of the date's positions in the account range, in replay order
+    public void forEachJournalRow(LocalDate asOfDate, long accountIdFrom, long accountIdTo,
+                                  Consumer<JournalRow> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_JOURNAL,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(1000);
+            statement.setDate(1, Date.valueOf(asOfDate));
+            statement.setLong(2, accountIdFrom);
+            statement.setLong(3, accountIdTo);
+            return statement;
+        }, rs -> {
+            action.accept(new JournalRow(rs.getLong("history_id"), rs.getLong("position_id"),
+                rs.getString("account_code"), rs.getBigDecimal("previous_quantity"),
+                rs.getBigDecimal("previous_avg_cost"), rs.getBigDecimal("new_quantity"),
+                rs.getBigDecimal("new_avg_cost"), rs.getBigDecimal("realized_pnl")));
+        });
+    }
+
+    /**
+     * Writes rebuilt values back, touching only rows that differ. Returns the ids of
+     * the positions that were corrected.
+     */
+    public List<Long> updateRebuilt(List<RebuiltPosition> positions) {
+        int[][] counts = jdbcTemplate.batchUpdate(UPDATE_REBUILT, positions, 1000, (ps, position) -> {
+            ps.setBigDecimal(1, position.quantity());
+            ps.setBigDecimal(2, position.avgCost());
+            ps.setBigDecimal(3, position.costBasis());
+            ps.setBigDecimal(4, position.realizedPnl());
+            ps.setLong(5, position.positionId());
+            ps.setBigDecimal(6, position.quantity());
+            ps.setBigDecimal(7, position.avgCost());
+            ps.setBigDecimal(8, position.costBasis());
+            ps.setBigDecimal(9, position.realizedPnl());
+        });
+
+        List<Long> corrected = new ArrayList<>();
+        int index = 0;
+        for (int[] batch : counts) {
+            for (int count : batch) {
+                if (count > 0) {
+                    corrected.add(positions.get(index).positionId());
+                }
+                index++;
+            }
+        }
+        return corrected;
+    }
+}
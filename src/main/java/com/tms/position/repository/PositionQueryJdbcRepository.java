@@ -0,0 +1,123 @@
+package com.tms.position.repository;
+
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dto.PositionResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Read-only account position queries that map rows straight to response DTOs,
+ * bypassing entity hydration and the persistence context.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PositionQueryJdbcRepository {
+
+    private static final String VIEW_COLUMNS =
+        "position_id, account_id, account_code, instrument_id, symbol, quantity, avg_cost, " +
+        "cost_basis, market_value, unrealized_pnl, realized_pnl, currency, as_of_date, updated_at";
+
+    private static final RowMapper<PositionResponse> VIEW_ROW_MAPPER = (rs, rowNum) -> PositionResponse.builder()
+        .positionId(rs.getLong("position_id"))
+        .accountId(rs.getLong("account_id"))
+        .accountCode(rs.getString("account_code"))
+        .instrumentId(rs.getLong("instrument_id"))
+        .symbol(rs.getString("symbol"))
+        .quantity(rs.getBigDecimal("quantity"))
+        .avgCost(rs.getBigDecimal("avg_cost"))
+        .costBasis(rs.getBigDecimal("cost_basis"))
+        .marketValue(rs.getBigDecimal("market_value"))
+        .unrealizedPnl(rs.getBigDecimal("unrealized_pnl"))
+        .realizedPnl(rs.getBigDecimal("realized_pnl"))
+        .currency(rs.getString("currency"))
+        .asOfDate(rs.getDate("as_of_date").toLocalDate())
+        .updatedAt(rs.getTimestamp("updated_at").toLocalDateTime())
+        .build();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PositionProperties properties;
+    private final PositionTables positionTables;
+
+    /**
+     * Walks the account's positions ordered by (symbol, positionId) over a
+     * forward-only cursor; only one fetch block is held in memory at a time.
+     */
+    @Transactional(readOnly = true)
+    public void streamByAccount(String accountCode, LocalDate asOfDate, Consumer<PositionResponse> action) {
+        String sql = "SELECT " + VIEW_COLUMNS + from(asOfDate) +
+            "WHERE account_code = ? AND as_of_date = ? ORDER BY symbol, position_id";
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql,
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(properties.getExport().getFetchSize());
+            statement.setString(1, accountCode);
+            statement.setDate(2, Date.valueOf(asOfDate));
+            return statement;
+        }, rs -> {
+            action.accept(VIEW_ROW_MAPPER.mapRow(rs, 0));
+        });
+    }
+
+    /**
+     * One keyset page: positions strictly after (afterSymbol, afterPositionId) in
+     * (symbol, positionId) order. A null afterSymbol starts from the beginning.
+     */
+    @Transactional(readOnly = true)
+    public List<PositionResponse> findPageByAccount(String accountCode, LocalDate asOfDate,
+                                                    String afterSymbol, Long afterPositionId, int limit) {
+        if (afterSymbol == null) {
+            return jdbcTemplate.query(
+                "SELECT TOP (?) " + VIEW_COLUMNS + from(asOfDate) +
+                "WHERE account_code = ? AND as_of_date = ? ORDER BY symbol, position_id",
+                VIEW_ROW_MAPPER, limit, accountCode, Date.valueOf(asOfDate));
+        }
+        long afterId = afterPositionId != null ? afterPositionId : Long.MIN_VALUE;
+        return jdbcTemplate.query(
+            "SELECT TOP (?) " + VIEW_COLUMNS + from(asOfDate) +
+            "WHERE account_code = ? AND as_of_date = ? " +
+            "AND (symbol > ? OR (symbol = ? AND position_id > ?)) ORDER BY symbol, position_id",
+            VIEW_ROW_MAPPER, limit, accountCode, Date.valueOf(asOfDate), afterSymbol, afterSymbol, afterId);
+    }
+
+    /**
+     * Positions of several accounts in one statement, ordered by account, symbol and
+     * position id. An empty symbol list means all symbols. Both lists become IN-list
+     * parameters, so callers keep them under the driver's 2100 parameter limit.
+     */
+    @Transactional(readOnly = true)
+    public List<PositionResponse> findByAccounts(Collection<String> accountCodes, LocalDate asOfDate,
+                                                 Collection<String> symbols) {
+        List<Object> args = new ArrayList<>(accountCodes.size() + symbols.size() + 1);
+        args.add(Date.valueOf(asOfDate));
+        args.addAll(accountCodes);
+        StringBuilder sql = new StringBuilder("SELECT ").append(VIEW_COLUMNS).append(from(asOfDate))
+            .append("WHERE as_of_date = ? AND account_code IN (").append(placeholders(accountCodes.size())).append(')');
+        if (!symbols.isEmpty()) {
+            sql.append(" AND symbol IN (").append(placeholders(symbols.size())).append(')');
+            args.addAll(symbols);
+        }
+        sql.append(" ORDER BY account_code, symbol, position_id");
+        return jdbcTemplate.query(sql.toString(), VIEW_ROW_MAPPER, args.toArray());
+    }
+
+    private String from(LocalDate asOfDate) {
+        return " FROM " + positionTables.forDate(asOfDate) + " ";
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
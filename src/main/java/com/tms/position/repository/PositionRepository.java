@@ -5,6 +5,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -22,6 +23,7 @@ public interface PositionRepository extends JpaRepository<Position, Long> {
 
     List<Position> findBySymbolAndAsOfDate(String symbol, LocalDate asOfDate);
 
+    @Transactional(readOnly = true)
     @Query("SELECT p FROM Position p WHERE p.accountCode = :accountCode AND p.asOfDate = :asOfDate ORDER BY p.symbol")
     List<Position> findPositionsByAccount(@Param("accountCode") String accountCode,
                                           @Param("asOfDate") LocalDate asOfDate);
@@ -0,0 +1,115 @@
+package com.tms.position.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Instrument holdings for the revaluation index, and the set-based write-back of
+ * revalued positions.
+ */
+@Repository
+@RequiredArgsConstructor
+public class PositionRevaluationJdbcRepository {
+
+    // Two parameters per position, under SQL Server's 2100 parameter cap
+    public static final int MAX_BATCH_SIZE = 1000;
+
+    // Values are derived from the row's current quantity and avg cost, so a trade
+    // committed after the price was picked up is still valued correctly. Only rows
+    // whose values change are written; their market value deltas go to the summaries.
+    private static final String REVALUE_HEAD =
+        "SET NOCOUNT ON; " +
+        "DECLARE @prices TABLE (position_id BIGINT PRIMARY KEY, price DECIMAL(18, 8) NOT NULL); " +
+        "DECLARE @changed TABLE (position_id BIGINT NOT NULL, account_code VARCHAR(50) NOT NULL, " +
+        "    as_of_date DATE NOT NULL, market_value_change DECIMAL(22, 4) NOT NULL); " +
+        "INSERT INTO @prices (position_id, price) VALUES ";
+
+    private static final String REVALUE_TAIL =
+        "; " +
+        "UPDATE p SET market_value = ROUND(p.quantity * v.price, 4), " +
+        "    unrealized_pnl = ROUND(p.quantity * (v.price - p.avg_cost), 4) " +
+        "OUTPUT inserted.position_id, inserted.account_code, inserted.as_of_date, " +
+        "    inserted.market_value - ISNULL(deleted.market_value, 0) INTO @changed " +
+        "FROM position p JOIN @prices v ON v.position_id = p.position_id " +
+        "WHERE p.market_value IS NULL OR p.unrealized_pnl IS NULL " +
+        "    OR p.market_value <> ROUND(p.quantity * v.price, 4) " +
+        "    OR p.unrealized_pnl <> ROUND(p.quantity * (v.price - p.avg_cost), 4); " +
+        "MERGE INTO account_position_summary WITH (HOLDLOCK) AS target " +
+        "USING (SELECT account_code, as_of_date, SUM(market_value_change) AS market_value_change " +
+        "    FROM @changed GROUP BY account_code, as_of_date) AS source " +
+        "ON target.account_code = source.account_code AND target.as_of_date = source.as_of_date " +
+        "WHEN MATCHED THEN UPDATE SET " +
+        "    total_market_value = ISNULL(target.total_market_value, 0) + source.market_value_change, " +
+        "    updated_at = SYSDATETIME(); " +
+        "SELECT position_id, account_code FROM @changed;";
+
+    public record Revaluation(long positionId, long instrumentId, BigDecimal price) {
+    }
+
+    public record RevaluedPosition(long positionId, String accountCode) {
+    }
+
+    public interface HoldingCallback {
+        void holding(long positionId, long instrumentId);
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Streams the (position, instrument) pairs of the date with ids above
+     * {@code afterPositionId}, in id order, so the index can be topped up with
+     * positions created since the last call. Returns the highest id read.
+     */
+    public long forEachHolding(LocalDate asOfDate, long afterPositionId, HoldingCallback callback) {
+        long[] highest = {afterPositionId};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                "SELECT position_id, instrument_id FROM position " +
+                "WHERE as_of_date = ? AND position_id > ? ORDER BY position_id",
+                ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(10_000);
+            statement.setDate(1, Date.valueOf(asOfDate));
+            statement.setLong(2, afterPositionId);
+            return statement;
+        }, rs -> {
+            long positionId = rs.getLong("position_id");
+            callback.holding(positionId, rs.getLong("instrument_id"));
+            highest[0] = positionId;
+        });
+        return highest[0];
+    }
+
+    /**
+     * Writes market value and unrealized P&L for up to {@link #MAX_BATCH_SIZE}
+     * positions in one round trip. Returns the positions whose values changed.
+     * Must run in a transaction.
+     */
+    public List<RevaluedPosition> revalue(List<Revaluation> revaluations) {
+        StringBuilder sql = new StringBuilder(REVALUE_HEAD.length() + REVALUE_TAIL.length()
+            + revaluations.size() * 8);
+        sql.append(REVALUE_HEAD);
+        Object[] args = new Object[revaluations.size() * 2];
+        for (int i = 0; i < revaluations.size(); i++) {
+            Revaluation revaluation = revaluations.get(i);
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+            args[i * 2] = revaluation.positionId();
+            args[i * 2 + 1] = revaluation.price();
+        }
+        sql.append(REVALUE_TAIL);
+
+        List<RevaluedPosition> revalued = new ArrayList<>();
+        jdbcTemplate.query(sql.toString(), rs -> {
+            revalued.add(new RevaluedPosition(rs.getLong("position_id"), rs.getString("account_code")));
+        }, args);
+        return revalued;
+    }
+}
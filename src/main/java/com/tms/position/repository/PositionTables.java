@@ -0,0 +1,81 @@
+package com.tms.position.repository;
+
+import com.tms.position.config.PositionProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.time.LocalDate;
+
+/**
+ * Picks the table that holds a date's positions. Dates inside the hot window are
+ * never archived and read the partitioned position table; dates known to be
+ * archived read the columnstore archive. Everything in between, where an archive
+ * run on another instance may just have moved the date, reads both through the
+ * position_all view.
+ */
+@Component
+@Slf4j
+public class PositionTables {
+
+    static final String HOT = "position";
+    static final String ARCHIVE = "position_archive";
+    static final String ALL = "position_all";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int hotDays;
+    // Newest archived date; only ever moves forward
+    private volatile LocalDate archivedThrough = LocalDate.MIN;
+
+    public PositionTables(JdbcTemplate jdbcTemplate, PositionProperties positionProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.hotDays = positionProperties.getArchive().getHotDays();
+    }
+
+    /**
+     * True for dates the archive job will not move yet, with a day of margin for
+     * instances whose clocks have not passed midnight.
+     */
+    public boolean isHot(LocalDate asOfDate) {
+        return asOfDate.isAfter(LocalDate.now().minusDays(hotDays));
+    }
+
+    /**
+     * Refuses dates the archive job may already have moved: a write there would
+     * open a second row beside the archived one.
+     *
+     * @throws ArchivedDateException if the date is outside the hot window
+     */
+    public void checkWritable(LocalDate asOfDate) {
+        if (!isHot(asOfDate)) {
+            throw new ArchivedDateException(asOfDate);
+        }
+    }
+
+    String forDate(LocalDate asOfDate) {
+        if (isHot(asOfDate)) {
+            return HOT;
+        }
+        return asOfDate.isAfter(archivedThrough) ? ALL : ARCHIVE;
+    }
+
+    public void archived(LocalDate asOfDate) {
+        if (asOfDate.isAfter(archivedThrough)) {
+            archivedThrough = asOfDate;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${position.archive.watermark-refresh-ms:60000}")
+    public void refreshArchivedThrough() {
+        try {
+            Date newest = jdbcTemplate.queryForObject("SELECT MAX(as_of_date) FROM " + ARCHIVE, Date.class);
+            if (newest != null) {
+                archived(newest.toLocalDate());
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refresh the archived date watermark", e);
+        }
+    }
+}
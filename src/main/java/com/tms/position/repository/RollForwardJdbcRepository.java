@@ -0,0 +1,162 @@
+package com.tms.position.repository;
+
+import com.tms.position.model.RollForwardShard;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Set-based end-of-day roll-forward of open positions and its per-shard progress.
+ */
+@Repository
+@RequiredArgsConstructor
+public class RollForwardJdbcRepository {
+
+    // Splits the accounts holding open positions into ranges of roughly equal account count
+    private static final String PLAN_SHARDS =
+        "SELECT MIN(account_id) AS account_id_from FROM (" +
+        "    SELECT account_id, NTILE(?) OVER (ORDER BY account_id) AS tile FROM (" +
+        "        SELECT DISTINCT account_id FROM position WHERE as_of_date = ? AND quantity <> 0) accounts" +
+        ") tiles GROUP BY tile ORDER BY account_id_from";
+
+    private static final String INSERT_SHARD =
+        "INSERT INTO position_roll_forward_shard (from_date, shard_no, account_id_from, account_id_to, status) " +
+        "VALUES (?, ?, ?, ?, ?)";
+
+    private static final String CLAIM_SHARD =
+        "UPDATE position_roll_forward_shard SET status = ?, attempts = attempts + 1, " +
+        "    started_at = SYSDATETIME(), last_error = NULL " +
+        "WHERE from_date = ? AND shard_no = ? " +
+        "AND (status IN (?, ?) OR (status = ? AND started_at < ?) OR (? = 1 AND status = ?))";
+
+    // One statement batch per shard: copy the open positions that do not exist on the
+    // next day yet, journal the copies, add them to the next day's account summaries,
+    // and report what was copied per account. NOT EXISTS makes a rerun of a shard a
+    // no-op for rows it already copied.
+    private static final String ROLL_SHARD =
+        "SET NOCOUNT ON; " +
+        "DECLARE @rolled TABLE (position_id BIGINT NOT NULL, account_id BIGINT NOT NULL, " +
+        "    account_code VARCHAR(50) NOT NULL, instrument_id BIGINT NOT NULL, symbol VARCHAR(20) NOT NULL, " +
+        "    quantity DECIMAL(18, 8) NOT NULL, avg_cost DECIMAL(18, 8) NOT NULL, " +
+        "    cost_basis DECIMAL(18, 4) NOT NULL); " +
+        "INSERT INTO position (account_id, account_code, instrument_id, symbol, quantity, avg_cost, cost_basis, " +
+        "    realized_pnl, currency, as_of_date, created_at, updated_at, version) " +
+        "OUTPUT inserted.position_id, inserted.account_id, inserted.account_code, inserted.instrument_id, " +
+        "    inserted.symbol, inserted.quantity, inserted.avg_cost, inserted.cost_basis INTO @rolled " +
+        "SELECT p.account_id, p.account_code, p.instrument_id, p.symbol, p.quantity, p.avg_cost, p.cost_basis, " +
+        "    0, p.currency, ?, SYSDATETIME(), SYSDATETIME(), 0 " +
+        "FROM position p " +
+        "WHERE p.as_of_date = ? AND p.quantity <> 0 AND p.account_id BETWEEN ? AND ? " +
+        "AND NOT EXISTS (SELECT 1 FROM position t WITH (UPDLOCK, HOLDLOCK) " +
+        "    WHERE t.account_id = p.account_id AND t.instrument_id = p.instrument_id AND t.as_of_date = ?); " +
+        "INSERT INTO position_history (position_id, account_id, account_code, instrument_id, symbol, " +
+        "    previous_quantity, new_quantity, quantity_change, previous_avg_cost, new_avg_cost, realized_pnl, " +
+        "    triggering_trade_id, change_reason, created_at) " +
+        "SELECT position_id, account_id, account_code, instrument_id, symbol, quantity, quantity, 0, " +
+        "    avg_cost, avg_cost, 0, ?, '" + PositionJdbcRepository.CHANGE_REASON_ROLL_FORWARD + "', SYSDATETIME() " +
+        "FROM @rolled; " +
+        "MERGE INTO account_position_summary WITH (HOLDLOCK) AS target " +
+        "USING (SELECT account_code, COUNT(*) AS position_count, SUM(cost_basis) AS total_cost_basis " +
+        "    FROM @rolled GROUP BY account_code) AS source " +
+        "ON target.account_code = source.account_code AND target.as_of_date = ? " +
+        "WHEN MATCHED THEN UPDATE SET " +
+        "    position_count = target.position_count + source.position_count, " +
+        "    total_cost_basis = target.total_cost_basis + source.total_cost_basis, updated_at = SYSDATETIME() " +
+        "WHEN NOT MATCHED THEN INSERT " +
+        "    (account_code, as_of_date, position_count, total_cost_basis, total_realized_pnl, updated_at) " +
+        "VALUES (source.account_code, ?, source.position_count, source.total_cost_basis, 0, SYSDATETIME()); " +
+        "SELECT account_code, COUNT(*) AS rolled FROM @rolled GROUP BY account_code;";
+
+    private static final RowMapper<RollForwardShard> SHARD_ROW_MAPPER = (rs, rowNum) -> new RollForwardShard(
+        rs.getDate("from_date").toLocalDate(),
+        rs.getInt("shard_no"),
+        rs.getLong("account_id_from"),
+        rs.getLong("account_id_to"),
+        rs.getString("status"),
+        rs.getInt("rows_copied"));
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public List<RollForwardShard> findShards(LocalDate fromDate) {
+        return jdbcTemplate.query(
+            "SELECT * FROM position_roll_forward_shard WHERE from_date = ? ORDER BY shard_no",
+            SHARD_ROW_MAPPER, Date.valueOf(fromDate));
+    }
+
+    /**
+     * Plans and records up to {@code shardCount} contiguous account-id ranges that
+     * together cover every account id, so a restarted run also picks up accounts
+     * that traded on the date after planning. Must run in a transaction.
+     */
+    public List<RollForwardShard> insertPlan(LocalDate fromDate, int shardCount) {
+        List<Long> starts = jdbcTemplate.queryForList(PLAN_SHARDS, Long.class, shardCount, Date.valueOf(fromDate));
+        if (starts.isEmpty()) {
+            starts = List.of(Long.MIN_VALUE);
+        }
+
+        List<RollForwardShard> shards = new ArrayList<>(starts.size());
+        for (int i = 0; i < starts.size(); i++) {
+            long from = i == 0 ? Long.MIN_VALUE : starts.get(i);
+            long to = i == starts.size() - 1 ? Long.MAX_VALUE : starts.get(i + 1) - 1;
+            shards.add(new RollForwardShard(fromDate, i, from, to, RollForwardShard.PENDING, 0));
+        }
+        jdbcTemplate.batchUpdate(INSERT_SHARD, shards, shards.size(), (ps, shard) -> {
+            ps.setDate(1, Date.valueOf(fromDate));
+            ps.setInt(2, shard.shardNo());
+            ps.setLong(3, shard.accountIdFrom());
+            ps.setLong(4, shard.accountIdTo());
+            ps.setString(5, shard.status());
+        });
+        return shards;
+    }
+
+    /**
+     * Marks a shard running if it is pending, failed, or running but abandoned
+     * since {@code staleBefore}; with {@code rerun} also if completed.
+     */
+    public boolean claim(RollForwardShard shard, LocalDateTime staleBefore, boolean rerun) {
+        return jdbcTemplate.update(CLAIM_SHARD,
+            RollForwardShard.RUNNING, Date.valueOf(shard.fromDate()), shard.shardNo(),
+            RollForwardShard.PENDING, RollForwardShard.FAILED,
+            RollForwardShard.RUNNING, Timestamp.valueOf(staleBefore),
+            rerun ? 1 : 0, RollForwardShard.COMPLETED) > 0;
+    }
+
+    /**
+     * Copies the shard's open positions to the next day. Returns the number of rows
+     * copied per account code. Must run in the transaction that completes the shard.
+     */
+    public Map<String, Integer> rollShard(RollForwardShard shard) {
+        Date fromDate = Date.valueOf(shard.fromDate());
+        Date toDate = Date.valueOf(shard.fromDate().plusDays(1));
+        Map<String, Integer> rolled = new LinkedHashMap<>();
+        jdbcTemplate.query(ROLL_SHARD, rs -> {
+            rolled.put(rs.getString("account_code"), rs.getInt("rolled"));
+        }, toDate, fromDate, shard.accountIdFrom(), shard.accountIdTo(), toDate,
+            PositionJdbcRepository.CHANGE_REASON_ROLL_FORWARD + ":" + shard.fromDate(), toDate, toDate);
+        return rolled;
+    }
+
+    public void complete(RollForwardShard shard, int rowsCopied) {
+        jdbcTemplate.update(
+            "UPDATE position_roll_forward_shard SET status = ?, rows_copied = ?, completed_at = SYSDATETIME() " +
+            "WHERE from_date = ? AND shard_no = ?",
+            RollForwardShard.COMPLETED, rowsCopied, Date.valueOf(shard.fromDate()), shard.shardNo());
+    }
+
+    public void fail(RollForwardShard shard, String error) {
+        jdbcTemplate.update(
+            "UPDATE position_roll_forward_shard SET status = ?, last_error = ? WHERE from_date = ? AND shard_no = ?",
+            RollForwardShard.FAILED, error, Date.valueOf(shard.fromDate()), shard.shardNo());
+    }
+}
@@ -0,0 +1,89 @@
+package com.tms.position.revaluation;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * instrumentId to the ids of the positions holding it, for one as-of date. Each
+ * instrument maps to a sorted copy-on-write array: lookups happen on every tick,
+ * while positions are only added when they are opened.
+ */
+final class InstrumentPositionIndex {
+
+    private static final long[] NONE = new long[0];
+
+    private final Map<Long, long[]> positionsByInstrument = new ConcurrentHashMap<>();
+    private volatile LocalDate asOfDate;
+    // Number of instruments, not positions
+    private final AtomicInteger size = new AtomicInteger();
+    // Highest position id read by each load, oldest first; only the flush thread touches them
+    private final Deque<long[]> loads = new ArrayDeque<>();
+    // Highest position id below which every position is indexed
+    private long settledUpTo;
+
+    LocalDate asOfDate() {
+        return asOfDate;
+    }
+
+    /**
+     * Position id to load from: the highest id read by a load at or before
+     * {@code settledAt}. Identity values are allocated before commit, so a lower id
+     * can become visible after a higher one was read; ids read more recently than
+     * that are read again.
+     */
+    long settledUpTo(long settledAt) {
+        while (!loads.isEmpty() && loads.peekFirst()[0] <= settledAt) {
+            settledUpTo = Math.max(settledUpTo, loads.removeFirst()[1]);
+        }
+        return settledUpTo;
+    }
+
+    void loaded(long at, long positionId) {
+        loads.addLast(new long[] {at, positionId});
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    void reset(LocalDate date) {
+        positionsByInstrument.clear();
+        loads.clear();
+        settledUpTo = 0;
+        size.set(0);
+        asOfDate = date;
+    }
+
+    long[] positions(long instrumentId) {
+        return positionsByInstrument.getOrDefault(instrumentId, NONE);
+    }
+
+    // Whether the position was not indexed yet
+    boolean add(long instrumentId, long positionId) {
+        boolean[] added = new boolean[1];
+        positionsByInstrument.compute(instrumentId, (id, positions) -> {
+            if (positions == null) {
+                size.incrementAndGet();
+                added[0] = true;
+                return new long[] {positionId};
+            }
+            int index = Arrays.binarySearch(positions, positionId);
+            if (index >= 0) {
+                return positions;
+            }
+            added[0] = true;
+            int insertAt = -index - 1;
+            long[] copy = new long[positions.length + 1];
+            System.arraycopy(positions, 0, copy, 0, insertAt);
+            copy[insertAt] = positionId;
+            System.arraycopy(positions, insertAt, copy, insertAt + 1, positions.length - insertAt);
+            return copy;
+        });
+        return added[0];
+    }
+}
@@ -0,0 +1,222 @@
+package com.tms.position.revaluation;
+
+import com.tms.position.cache.PositionQueryCache;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.entity.Position;
+import com.tms.position.model.PriceTick;
+import com.tms.position.repository.PositionRevaluationJdbcRepository;
+import com.tms.position.repository.PositionRevaluationJdbcRepository.Revaluation;
+import com.tms.position.repository.PositionRevaluationJdbcRepository.RevaluedPosition;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Revalues today's positions from price ticks.
+ *
+ * <p>Ticks are conflated per instrument: only the latest price of each instrument
+ * is kept until the next flush. Every flush interval one thread expands the
+ * pending instruments to their positions through an {@link InstrumentPositionIndex}
+ * and writes market value and unrealized P&L back in set-based batches, so the
+ * cost of a flush depends on the positions holding ticked instruments, never on
+ * the size of the position table.
+ *
+ * <p>The index is loaded once per date and then topped up with positions created
+ * since, by id. Ids allocated within the rescan window are read again, since a
+ * transaction can commit a lower id after a higher one was read. Positions changed
+ * by trades on this instance are revalued at the instrument's last price on the
+ * next flush; elsewhere they catch up on the next tick.
+ */
+@Component
+@ConditionalOnProperty(name = "position.revaluation.enabled", havingValue = "true")
+@Slf4j
+public class RevaluationEngine {
+
+    private final PositionRevaluationJdbcRepository positionRevaluationJdbcRepository;
+    private final PositionQueryCache positionQueryCache;
+    private final TransactionTemplate transactionTemplate;
+    private final PositionProperties.Revaluation properties;
+    private final InstrumentPositionIndex index = new InstrumentPositionIndex();
+
+    // Latest price per instrument not flushed yet
+    private final Map<Long, BigDecimal> pendingPrices = new ConcurrentHashMap<>();
+    // Latest flushed price per instrument
+    private final Map<Long, BigDecimal> lastPrices = new ConcurrentHashMap<>();
+    // positionId -> instrumentId of positions to revalue at the last price
+    private final Map<Long, Long> dirtyPositions = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flusher;
+    private long lastIndexRefresh;
+
+    private final Counter ticks;
+    private final Counter conflatedTicks;
+    private final Counter revaluedPositions;
+    private final Timer flushTimer;
+
+    public RevaluationEngine(PositionRevaluationJdbcRepository positionRevaluationJdbcRepository,
+                             PositionQueryCache positionQueryCache,
+                             TransactionTemplate transactionTemplate,
+                             PositionProperties positionProperties,
+                             MeterRegistry meterRegistry) {
+        this.positionRevaluationJdbcRepository = positionRevaluationJdbcRepository;
+        this.positionQueryCache = positionQueryCache;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = positionProperties.getRevaluation();
+        this.ticks = Counter.builder("position.revaluation.ticks")
+            .description("Price ticks received")
+            .register(meterRegistry);
+        this.conflatedTicks = Counter.builder("position.revaluation.ticks.conflated")
+            .description("Price ticks superseded by a newer tick before the flush")
+            .register(meterRegistry);
+        this.revaluedPositions = Counter.builder("position.revaluation.positions")
+            .description("Positions whose market value changed")
+            .register(meterRegistry);
+        this.flushTimer = Timer.builder("position.revaluation.flush.duration")
+            .register(meterRegistry);
+        Gauge.builder("position.revaluation.index.instruments", index, InstrumentPositionIndex::size)
+            .description("Instruments held by at least one indexed position")
+            .register(meterRegistry);
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "position-revaluation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = properties.getFlushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushSafely, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void onTicks(Collection<PriceTick> priceTicks) {
+        for (PriceTick tick : priceTicks) {
+            ticks.increment();
+            if (pendingPrices.put(tick.instrumentId(), tick.price()) != null) {
+                conflatedTicks.increment();
+            }
+        }
+    }
+
+    // Called for every published position change
+    public void positionChanged(Position position) {
+        if (position.getPositionId() == null || !position.getAsOfDate().equals(index.asOfDate())) {
+            return;
+        }
+        index.add(position.getInstrumentId(), position.getPositionId());
+        if (lastPrices.containsKey(position.getInstrumentId())) {
+            dirtyPositions.put(position.getPositionId(), position.getInstrumentId());
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flushTimer.record(this::flush);
+        } catch (Exception e) {
+            log.error("Position revaluation flush failed", e);
+        }
+    }
+
+    private void flush() {
+        refreshIndex();
+
+        Map<Long, Revaluation> revaluations = new LinkedHashMap<>();
+        for (Long instrumentId : pendingPrices.keySet()) {
+            BigDecimal price = pendingPrices.remove(instrumentId);
+            if (price == null) {
+                continue;
+            }
+            lastPrices.put(instrumentId, price);
+            for (long positionId : index.positions(instrumentId)) {
+                revaluations.put(positionId, new Revaluation(positionId, instrumentId, price));
+            }
+        }
+        for (Long positionId : dirtyPositions.keySet()) {
+            Long instrumentId = dirtyPositions.remove(positionId);
+            BigDecimal price = instrumentId != null ? lastPrices.get(instrumentId) : null;
+            if (price != null) {
+                revaluations.putIfAbsent(positionId, new Revaluation(positionId, instrumentId, price));
+            }
+        }
+        if (revaluations.isEmpty()) {
+            return;
+        }
+
+        List<Revaluation> pending = new ArrayList<>(revaluations.values());
+        int batchSize = Math.min(properties.getBatchSize(), PositionRevaluationJdbcRepository.MAX_BATCH_SIZE);
+        int changed = 0;
+        for (int from = 0; from < pending.size(); from += batchSize) {
+            List<Revaluation> batch = pending.subList(from, Math.min(from + batchSize, pending.size()));
+            try {
+                changed += write(batch);
+            } catch (Exception e) {
+                // Retried on the next flush, unless a newer tick replaces the price first
+                batch.forEach(r -> dirtyPositions.putIfAbsent(r.positionId(), r.instrumentId()));
+                log.warn("Failed to write revalued positions, retrying next flush: positions={}", batch.size(), e);
+            }
+        }
+        log.debug("Positions revalued: candidates={}, changed={}", pending.size(), changed);
+    }
+
+    private int write(List<Revaluation> batch) {
+        List<RevaluedPosition> revalued = transactionTemplate.execute(status ->
+            positionRevaluationJdbcRepository.revalue(batch));
+        if (revalued == null || revalued.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> positionIds = new ArrayList<>(revalued.size());
+        Set<String> accountCodes = new HashSet<>();
+        for (RevaluedPosition position : revalued) {
+            positionIds.add(position.positionId());
+            accountCodes.add(position.accountCode());
+        }
+        positionQueryCache.positionsRevalued(positionIds, accountCodes, index.asOfDate());
+        revaluedPositions.increment(revalued.size());
+        return revalued.size();
+    }
+
+    // Reloads on a new date, otherwise picks up positions created since the last refresh
+    private void refreshIndex() {
+        LocalDate today = LocalDate.now();
+        long now = System.currentTimeMillis();
+        boolean newDate = !today.equals(index.asOfDate());
+        if (!newDate && now - lastIndexRefresh < properties.getIndexRefreshInterval().toMillis()) {
+            return;
+        }
+
+        if (newDate) {
+            index.reset(today);
+            dirtyPositions.clear();
+        }
+        long settledUpTo = index.settledUpTo(now - properties.getIndexRescanWindow().toMillis());
+        long loadedUpTo = positionRevaluationJdbcRepository.forEachHolding(today, settledUpTo,
+            (positionId, instrumentId) -> {
+                // New positions are valued straight away if their instrument has ticked; rescanned ones are not
+                if (index.add(instrumentId, positionId) && lastPrices.containsKey(instrumentId)) {
+                    dirtyPositions.putIfAbsent(positionId, instrumentId);
+                }
+            });
+        index.loaded(now, loadedUpTo);
+        lastIndexRefresh = now;
+        if (newDate) {
+            log.info("Revaluation index loaded: asOfDate={}, instruments={}", today, index.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+    }
+}
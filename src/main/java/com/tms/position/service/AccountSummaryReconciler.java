@@ -0,0 +1,105 @@
+package com.tms.position.service;
+
+import com.tms.position.cache.PositionQueryCache;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dto.AccountPositionSummary;
+import com.tms.position.repository.AccountSummaryJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Verifies the incrementally maintained account summaries against a full
+ * recompute from the position table and repairs any that have drifted.
+ */
+@Component
+@Slf4j
+public class AccountSummaryReconciler {
+
+    private final AccountSummaryJdbcRepository accountSummaryJdbcRepository;
+    private final PositionQueryCache positionQueryCache;
+    private final PositionProperties properties;
+    private final Counter checked;
+    private final Counter drifted;
+
+    public AccountSummaryReconciler(AccountSummaryJdbcRepository accountSummaryJdbcRepository,
+                                    PositionQueryCache positionQueryCache,
+                                    PositionProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.accountSummaryJdbcRepository = accountSummaryJdbcRepository;
+        this.positionQueryCache = positionQueryCache;
+        this.properties = properties;
+        this.checked = Counter.builder("position.summary.reconciled")
+            .description("Account summaries compared against a full recompute")
+            .register(meterRegistry);
+        this.drifted = Counter.builder("position.summary.drift")
+            .description("Account summaries found to differ from a full recompute and repaired")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${position.summary.reconcile-cron:0 */15 * * * *}")
+    public void reconcileRecent() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < properties.getSummary().getReconcileDays(); i++) {
+            try {
+                reconcile(today.minusDays(i));
+            } catch (Exception e) {
+                log.error("Account summary reconciliation failed: asOfDate={}", today.minusDays(i), e);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of summaries repaired for the date.
+     */
+    public int reconcile(LocalDate asOfDate) {
+        Map<String, AccountPositionSummary> stored = accountSummaryJdbcRepository.findByAsOfDate(asOfDate).stream()
+            .collect(Collectors.toMap(AccountPositionSummary::getAccountCode, Function.identity()));
+        List<AccountPositionSummary> recomputed = accountSummaryJdbcRepository.recomputeByAsOfDate(asOfDate);
+
+        // The unlocked comparison also flags in-flight updates; repair() rechecks under locks
+        Set<String> suspects = new TreeSet<>();
+        for (AccountPositionSummary expected : recomputed) {
+            AccountPositionSummary actual = stored.remove(expected.getAccountCode());
+            if (actual == null || !matches(expected, actual)) {
+                suspects.add(expected.getAccountCode());
+            }
+        }
+        suspects.addAll(stored.keySet());
+        checked.increment(recomputed.size());
+
+        int repaired = 0;
+        for (String accountCode : suspects) {
+            if (accountSummaryJdbcRepository.repair(accountCode, asOfDate)) {
+                repaired++;
+                drifted.increment();
+                positionQueryCache.accountSummaryChanged(accountCode, asOfDate);
+                log.warn("Account summary drift repaired: accountCode={}, asOfDate={}", accountCode, asOfDate);
+            }
+        }
+
+        log.info("Account summaries reconciled: asOfDate={}, accounts={}, repaired={}",
+            asOfDate, recomputed.size(), repaired);
+        return repaired;
+    }
+
+    private static boolean matches(AccountPositionSummary expected, AccountPositionSummary actual) {
+        return expected.getPositionCount() == actual.getPositionCount()
+            && expected.getTotalCostBasis().compareTo(actual.getTotalCostBasis()) == 0
+            && expected.getTotalRealizedPnl().compareTo(actual.getTotalRealizedPnl()) == 0
+            && sameAmount(expected.getTotalMarketValue(), actual.getTotalMarketValue());
+    }
+
+    // Market value is NULL until the account's positions are first revalued
+    private static boolean sameAmount(BigDecimal expected, BigDecimal actual) {
+        return expected == null ? actual == null : actual != null && expected.compareTo(actual) == 0;
+    }
+}
@@ -0,0 +1,164 @@
+package com.tms.position.service;
+
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dto.ArchiveResponse;
+import com.tms.position.repository.PositionArchiveJdbcRepository;
+import com.tms.position.repository.PositionTables;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.tms.position.repository.PositionArchiveJdbcRepository.ARCHIVE_FUNCTION;
+import static com.tms.position.repository.PositionArchiveJdbcRepository.ARCHIVE_SCHEME;
+import static com.tms.position.repository.PositionArchiveJdbcRepository.HOT_FUNCTION;
+import static com.tms.position.repository.PositionArchiveJdbcRepository.HOT_SCHEME;
+
+/**
+ * Keeps the hot position table down to its last few dates. Startup and each run
+ * roll the partitions forward from the migration's seed boundary to the coming
+ * days, so every date is written into its own partition. Each run then moves every
+ * closed date into the columnstore archive in one transaction and merges its
+ * emptied partition away.
+ *
+ * <p>Closed dates are never written again: trades dated outside the hot window are
+ * parked on the DLQ, and roll-forward, snapshots and rebuilds refuse those dates.
+ */
+@Service
+@Slf4j
+public class PositionArchiveService {
+
+    // Future dates that get their own partition ahead of time
+    private static final int DAYS_AHEAD = 2;
+
+    private final PositionArchiveJdbcRepository positionArchiveJdbcRepository;
+    private final PositionTables positionTables;
+    private final TransactionTemplate transactionTemplate;
+    private final PositionProperties.Archive properties;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter rowsArchived;
+
+    public PositionArchiveService(PositionArchiveJdbcRepository positionArchiveJdbcRepository,
+                                  PositionTables positionTables,
+                                  TransactionTemplate transactionTemplate,
+                                  PositionProperties positionProperties,
+                                  MeterRegistry meterRegistry) {
+        this.positionArchiveJdbcRepository = positionArchiveJdbcRepository;
+        this.positionTables = positionTables;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = positionProperties.getArchive();
+        this.rowsArchived = Counter.builder("position.archive.rows")
+            .description("Positions moved from the hot table to the archive")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void addPartitionsOnStartup() {
+        try {
+            addHotPartitions(LocalDate.now());
+        } catch (Exception e) {
+            log.error("Failed to add position partitions on startup", e);
+        }
+    }
+
+    @Scheduled(cron = "${position.archive.cron:0 15 1 * * *}")
+    public void archiveClosedDates() {
+        try {
+            archive();
+        } catch (Exception e) {
+            log.error("Scheduled position archive failed", e);
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if an archive run is already in progress on this instance
+     */
+    public ArchiveResponse archive() {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Position archive already running");
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            LocalDate today = LocalDate.now();
+            addHotPartitions(today);
+
+            LocalDate before = today.minusDays(properties.getHotDays());
+            List<LocalDate> dates = positionArchiveJdbcRepository.findHotDatesBefore(before);
+            log.info("Position archive started: before={}, dates={}", before, dates.size());
+
+            long rows = 0;
+            Set<Integer> archivePartitions = new TreeSet<>();
+            // Oldest first, so the partition an emptied one merges into is empty as well
+            for (LocalDate date : dates) {
+                int moved = archiveDate(date);
+                positionTables.archived(date);
+                rowsArchived.increment(moved);
+                rows += moved;
+                archivePartitions.add(positionArchiveJdbcRepository.archivePartition(date));
+                log.info("Archived positions: asOfDate={}, rows={}", date, moved);
+            }
+            archivePartitions.forEach(positionArchiveJdbcRepository::compress);
+
+            ArchiveResponse response = ArchiveResponse.builder()
+                .archivedBefore(before)
+                .datesArchived(dates.size())
+                .rowsArchived(rows)
+                .durationMs(System.currentTimeMillis() - startTime)
+                .build();
+            log.info("Position archive finished: dates={}, rows={}, durationMs={}",
+                response.getDatesArchived(), response.getRowsArchived(), response.getDurationMs());
+            return response;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // Splits the trailing partition, which holds no dates past today once the boundaries
+    // have caught up with the calendar; until then the first split moves today's rows
+    private void addHotPartitions(LocalDate today) {
+        transactionTemplate.executeWithoutResult(status -> {
+            positionArchiveJdbcRepository.lock();
+            Set<LocalDate> boundaries = positionArchiveJdbcRepository.findBoundaries(HOT_FUNCTION);
+            for (int day = 0; day <= DAYS_AHEAD; day++) {
+                LocalDate boundary = today.plusDays(day);
+                if (!boundaries.contains(boundary)) {
+                    positionArchiveJdbcRepository.split(HOT_FUNCTION, HOT_SCHEME, boundary);
+                }
+            }
+        });
+    }
+
+    private int archiveDate(LocalDate date) {
+        return transactionTemplate.execute(status -> {
+            positionArchiveJdbcRepository.lock();
+
+            // Columnstore partitions can only be split while empty, so the archive
+            // always keeps the month after the newest archived date ahead of it
+            Set<LocalDate> archiveBoundaries = positionArchiveJdbcRepository.findBoundaries(ARCHIVE_FUNCTION);
+            LocalDate month = date.withDayOfMonth(1);
+            for (LocalDate boundary : List.of(month, month.plusMonths(1))) {
+                if (!archiveBoundaries.contains(boundary)) {
+                    positionArchiveJdbcRepository.split(ARCHIVE_FUNCTION, ARCHIVE_SCHEME, boundary);
+                }
+            }
+
+            Set<LocalDate> hotBoundaries = positionArchiveJdbcRepository.findBoundaries(HOT_FUNCTION);
+            boolean ownPartition = hotBoundaries.contains(date) && hotBoundaries.contains(date.plusDays(1));
+            int moved = positionArchiveJdbcRepository.moveToArchive(date, ownPartition);
+            if (hotBoundaries.contains(date)) {
+                positionArchiveJdbcRepository.merge(HOT_FUNCTION, date);
+            }
+            return moved;
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package com.tms.position.service;
+
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dto.PositionResponse;
+import com.tms.position.repository.PositionAsOfJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Point-in-time position queries, and the intraday checkpoints that keep their
+ * realized P&L sums short. Market value and unrealized P&L are not journaled, so
+ * historical positions come without them.
+ *
+ * <p>Every instance schedules the checkpoint; an application lock lets one of them
+ * write a range while the others skip the run.
+ */
+@Service
+@Slf4j
+public class PositionAsOfService {
+
+    private final PositionAsOfJdbcRepository positionAsOfJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PositionProperties.Checkpoint properties;
+    private final Counter checkpoints;
+
+    public PositionAsOfService(PositionAsOfJdbcRepository positionAsOfJdbcRepository,
+                               TransactionTemplate transactionTemplate,
+                               PositionProperties positionProperties,
+                               MeterRegistry meterRegistry) {
+        this.positionAsOfJdbcRepository = positionAsOfJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = positionProperties.getCheckpoint();
+        this.checkpoints = Counter.builder("position.checkpoint.written")
+            .description("Intraday position checkpoints written")
+            .register(meterRegistry);
+    }
+
+    public Optional<PositionResponse> getPositionAt(long positionId, LocalDateTime at) {
+        return positionAsOfJdbcRepository.findPositionAt(positionId, at);
+    }
+
+    public List<PositionResponse> getPositionsByAccountAt(String accountCode, LocalDateTime at) {
+        return positionAsOfJdbcRepository.findAccountAt(accountCode, at);
+    }
+
+    @Scheduled(cron = "${position.checkpoint.cron:0 */5 * * * *}")
+    public void checkpointScheduled() {
+        try {
+            checkpoint();
+        } catch (Exception e) {
+            log.error("Position checkpoint failed", e);
+        }
+    }
+
+    /**
+     * Checkpoints the positions changed since the previous run. Rows younger than the
+     * commit lag are left for the next run. Returns the number of checkpoints written,
+     * or 0 when another instance is checkpointing.
+     */
+    public int checkpoint() {
+        long[] range = new long[2];
+        // The range is read under the lock, so two instances never checkpoint the same one
+        Integer written = transactionTemplate.execute(status -> {
+            if (!positionAsOfJdbcRepository.tryLockCheckpoint()) {
+                return null;
+            }
+            range[0] = positionAsOfJdbcRepository.findLastCheckpointedHistoryId();
+            range[1] = positionAsOfJdbcRepository.findLastHistoryIdBefore(
+                LocalDateTime.now().minus(properties.getCommitLag()));
+            return range[1] > range[0] ? positionAsOfJdbcRepository.insertCheckpoints(range[0], range[1]) : 0;
+        });
+        if (written == null) {
+            log.info("Position checkpoint skipped: running on another instance");
+            return 0;
+        }
+        checkpoints.increment(written);
+
+        int deleted = positionAsOfJdbcRepository.deleteCheckpointsBefore(
+            LocalDateTime.now().minus(properties.getRetention()));
+        log.info("Position checkpoint finished: historyIds=({}, {}], written={}, deleted={}",
+            range[0], range[1], written, deleted);
+        return written;
+    }
+}
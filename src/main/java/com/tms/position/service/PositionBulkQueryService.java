@@ -0,0 +1,175 @@
+package com.tms.position.service;
+
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dto.AccountPositionSummary;
+import com.tms.position.dto.AccountPositionsResponse;
+import com.tms.position.dto.BulkPositionRequest;
+import com.tms.position.dto.BulkPositionResponse;
+import com.tms.position.dto.PositionResponse;
+import com.tms.position.repository.AccountSummaryJdbcRepository;
+import com.tms.position.repository.PositionQueryJdbcRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Positions of many accounts in a few statements. Account codes are split into
+ * IN-list chunks that run concurrently on virtual threads; a semaphore shared by
+ * all bulk requests caps how many of them hold a connection at once.
+ *
+ * <p>Like export and paging, bulk reads go to the database directly, also in book mode.
+ */
+@Service
+@Slf4j
+public class PositionBulkQueryService {
+
+    private final PositionQueryJdbcRepository positionQueryJdbcRepository;
+    private final AccountSummaryJdbcRepository accountSummaryJdbcRepository;
+    private final PositionProperties.Bulk properties;
+    private final Semaphore connections;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Timer queryTimer;
+
+    public PositionBulkQueryService(PositionQueryJdbcRepository positionQueryJdbcRepository,
+                                    AccountSummaryJdbcRepository accountSummaryJdbcRepository,
+                                    PositionProperties positionProperties,
+                                    MeterRegistry meterRegistry) {
+        this.positionQueryJdbcRepository = positionQueryJdbcRepository;
+        this.accountSummaryJdbcRepository = accountSummaryJdbcRepository;
+        this.properties = positionProperties.getBulk();
+        this.connections = new Semaphore(properties.getMaxConcurrentQueries());
+        this.queryTimer = Timer.builder("position.bulk.query")
+            .description("Bulk multi-account position queries")
+            .register(meterRegistry);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the request exceeds the configured account or symbol limits
+     */
+    public BulkPositionResponse query(BulkPositionRequest request) {
+        LocalDate asOfDate = request.getAsOfDate() != null ? request.getAsOfDate() : LocalDate.now();
+        List<String> accountCodes = distinct(request.getAccountCodes());
+        List<String> symbols = distinct(request.getSymbols());
+        if (accountCodes.size() > properties.getMaxAccounts()) {
+            throw new IllegalArgumentException("At most " + properties.getMaxAccounts() + " accounts per request");
+        }
+        if (symbols.size() > properties.getMaxSymbols()) {
+            throw new IllegalArgumentException("At most " + properties.getMaxSymbols() + " symbols per request");
+        }
+
+        return queryTimer.record(() -> {
+            List<Future<List<PositionResponse>>> positionQueries = new ArrayList<>();
+            List<Future<List<AccountPositionSummary>>> summaryQueries = new ArrayList<>();
+            int chunkSize = properties.getAccountsPerQuery();
+            for (int from = 0; from < accountCodes.size(); from += chunkSize) {
+                List<String> chunk = accountCodes.subList(from, Math.min(from + chunkSize, accountCodes.size()));
+                positionQueries.add(submit(() ->
+                    positionQueryJdbcRepository.findByAccounts(chunk, asOfDate, symbols)));
+                if (request.isIncludeSummaries()) {
+                    summaryQueries.add(submit(() -> accountSummaryJdbcRepository.findByAccounts(chunk, asOfDate)));
+                }
+            }
+
+            // The database compares account codes case-insensitively, so rows are matched back the same way
+            Map<String, AccountPositionsResponse> accounts = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            List<AccountPositionsResponse> ordered = new ArrayList<>(accountCodes.size());
+            for (String accountCode : accountCodes) {
+                AccountPositionsResponse account = AccountPositionsResponse.builder()
+                    .accountCode(accountCode)
+                    .positions(new ArrayList<>())
+                    .build();
+                if (accounts.putIfAbsent(accountCode, account) == null) {
+                    ordered.add(account);
+                }
+            }
+
+            try {
+                for (Future<List<PositionResponse>> query : positionQueries) {
+                    for (PositionResponse position : await(query)) {
+                        accounts.get(position.getAccountCode()).getPositions().add(position);
+                    }
+                }
+                for (Future<List<AccountPositionSummary>> query : summaryQueries) {
+                    for (AccountPositionSummary summary : await(query)) {
+                        accounts.get(summary.getAccountCode()).setSummary(summary);
+                    }
+                }
+            } catch (RuntimeException e) {
+                positionQueries.forEach(query -> query.cancel(true));
+                summaryQueries.forEach(query -> query.cancel(true));
+                throw e;
+            }
+
+            if (request.isIncludeSummaries()) {
+                for (AccountPositionsResponse account : ordered) {
+                    if (account.getSummary() == null) {
+                        account.setSummary(emptySummary(account.getAccountCode(), asOfDate));
+                    }
+                }
+            }
+            log.debug("Bulk position query: accounts={}, symbols={}, statements={}",
+                ordered.size(), symbols.size(), positionQueries.size() + summaryQueries.size());
+            return BulkPositionResponse.builder().asOfDate(asOfDate).accounts(ordered).build();
+        });
+    }
+
+    private <T> Future<T> submit(Callable<T> query) {
+        return executor.submit(() -> {
+            connections.acquire();
+            try {
+                return query.call();
+            } finally {
+                connections.release();
+            }
+        });
+    }
+
+    private static <T> T await(Future<T> query) {
+        try {
+            return query.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying positions", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Bulk position query failed", e.getCause());
+        }
+    }
+
+    private static List<String> distinct(List<String> values) {
+        if (values == null) {
+            return List.of();
+        }
+        // SQL Server ignores trailing blanks when comparing, so they are dropped up front as well
+        return values.stream().filter(Objects::nonNull).map(String::strip).distinct().toList();
+    }
+
+    // Same shape as the single-account summary of an account without positions
+    private static AccountPositionSummary emptySummary(String accountCode, LocalDate asOfDate) {
+        return AccountPositionSummary.builder()
+            .accountCode(accountCode)
+            .asOfDate(asOfDate)
+            .totalCostBasis(BigDecimal.ZERO)
+            .totalRealizedPnl(BigDecimal.ZERO)
+            .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,226 @@
+package com.tms.position.service;
+
+import com.tms.position.cache.PositionQueryCache;
+import com.tms.position.calculation.FixedPoint;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dto.RebuildResponse;
+import com.tms.position.dto.SnapshotResponse;
+import com.tms.position.repository.PositionJournalJdbcRepository;
+import com.tms.position.repository.PositionJournalJdbcRepository.JournalRow;
+import com.tms.position.repository.PositionJournalJdbcRepository.RebuiltPosition;
+import com.tms.position.repository.PositionTables;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Per-date position snapshots, and rebuilding a date's positions from its latest
+ * snapshot plus the position_history rows written after it.
+ *
+ * <p>The rebuild splits the date's accounts with fork/join; each leaf replays one
+ * contiguous account range and writes back only the rows that differ. It assumes
+ * nothing else writes the date meanwhile: in book mode stop the consumers first.
+ */
+@Service
+@Slf4j
+public class PositionRebuildService {
+
+    private final PositionJournalJdbcRepository positionJournalJdbcRepository;
+    private final AccountSummaryReconciler accountSummaryReconciler;
+    private final PositionQueryCache positionQueryCache;
+    private final TransactionTemplate transactionTemplate;
+    private final PositionTables positionTables;
+    private final PositionProperties.Journal properties;
+    private final ForkJoinPool pool;
+    private final Counter corrected;
+    private final Timer rebuildTimer;
+
+    public PositionRebuildService(PositionJournalJdbcRepository positionJournalJdbcRepository,
+                                  AccountSummaryReconciler accountSummaryReconciler,
+                                  PositionQueryCache positionQueryCache,
+                                  TransactionTemplate transactionTemplate,
+                                  PositionTables positionTables,
+                                  PositionProperties positionProperties,
+                                  MeterRegistry meterRegistry) {
+        this.positionJournalJdbcRepository = positionJournalJdbcRepository;
+        this.accountSummaryReconciler = accountSummaryReconciler;
+        this.positionQueryCache = positionQueryCache;
+        this.transactionTemplate = transactionTemplate;
+        this.positionTables = positionTables;
+        this.properties = positionProperties.getJournal();
+        this.pool = new ForkJoinPool(properties.getRebuildParallelism());
+        this.corrected = Counter.builder("position.rebuild.corrected")
+            .description("Positions whose stored values differed from the journal replay")
+            .register(meterRegistry);
+        this.rebuildTimer = Timer.builder("position.rebuild.duration")
+            .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${position.journal.snapshot-cron:0 30 0 * * *}")
+    public void snapshotPreviousDay() {
+        LocalDate asOfDate = LocalDate.now().minusDays(1);
+        try {
+            snapshot(asOfDate);
+        } catch (Exception e) {
+            log.error("Scheduled position snapshot failed: asOfDate={}", asOfDate, e);
+        }
+    }
+
+    // Snapshots and rebuilds read and write the hot table only
+    public SnapshotResponse snapshot(LocalDate asOfDate) {
+        positionTables.checkWritable(asOfDate);
+        long snapshotId = transactionTemplate.execute(status -> {
+            long id = positionJournalJdbcRepository.insertSnapshot(asOfDate);
+            positionJournalJdbcRepository.deleteSnapshotsBefore(asOfDate, id);
+            return id;
+        });
+        log.info("Position snapshot taken: asOfDate={}, snapshotId={}", asOfDate, snapshotId);
+        return SnapshotResponse.builder().snapshotId(snapshotId).asOfDate(asOfDate).build();
+    }
+
+    public RebuildResponse rebuild(LocalDate asOfDate) {
+        positionTables.checkWritable(asOfDate);
+        long startTime = System.currentTimeMillis();
+        Long snapshotId = positionJournalJdbcRepository.findLatestSnapshotId(asOfDate).orElse(null);
+        List<Long> accountIds = positionJournalJdbcRepository.findAccountIds(asOfDate);
+        log.info("Position rebuild started: asOfDate={}, snapshotId={}, accounts={}",
+            asOfDate, snapshotId, accountIds.size());
+
+        RebuildResponse response = rebuildTimer.record(() ->
+            pool.invoke(new RebuildTask(asOfDate, snapshotId, accountIds, 0, accountIds.size())));
+        response.setAsOfDate(asOfDate);
+        response.setSnapshotId(snapshotId);
+
+        // Account aggregates are derived from the rows just rewritten
+        if (response.getPositionsCorrected() > 0) {
+            accountSummaryReconciler.reconcile(asOfDate);
+        }
+
+        response.setDurationMs(System.currentTimeMillis() - startTime);
+        log.info("Position rebuild finished: asOfDate={}, positions={}, corrected={}, durationMs={}",
+            asOfDate, response.getPositionsRebuilt(), response.getPositionsCorrected(), response.getDurationMs());
+        return response;
+    }
+
+    private RebuildResponse rebuildRange(LocalDate asOfDate, Long snapshotId, long accountIdFrom, long accountIdTo) {
+        Map<Long, ReplayState> states = new LinkedHashMap<>();
+        if (snapshotId != null) {
+            positionJournalJdbcRepository.forEachSnapshotRow(snapshotId, accountIdFrom, accountIdTo, row ->
+                states.put(row.positionId(), new ReplayState(row.accountCode(), row.quantity(), row.avgCost(),
+                    row.realizedPnl(), row.lastHistoryId())));
+        }
+
+        positionJournalJdbcRepository.forEachJournalRow(asOfDate, accountIdFrom, accountIdTo, row -> {
+            // Without a snapshot a position starts from the state before its first journaled change
+            ReplayState state = states.computeIfAbsent(row.positionId(), id -> new ReplayState(row.accountCode(),
+                row.previousQuantity(), row.previousAvgCost(), BigDecimal.ZERO, 0));
+            state.apply(row);
+        });
+
+        List<RebuiltPosition> rebuilt = new ArrayList<>(states.size());
+        states.forEach((positionId, state) -> rebuilt.add(state.toRebuilt(positionId)));
+        List<Long> correctedIds = rebuilt.isEmpty() ? List.of() : positionJournalJdbcRepository.updateRebuilt(rebuilt);
+
+        Set<String> accounts = new HashSet<>();
+        for (Long positionId : correctedIds) {
+            positionQueryCache.evictPosition(positionId);
+            accounts.add(states.get(positionId).accountCode);
+        }
+        accounts.forEach(accountCode -> positionQueryCache.accountChanged(accountCode, asOfDate));
+        corrected.increment(correctedIds.size());
+
+        return RebuildResponse.builder()
+            .positionsRebuilt(rebuilt.size())
+            .positionsCorrected(correctedIds.size())
+            .build();
+    }
+
+    private final class RebuildTask extends RecursiveTask<RebuildResponse> {
+
+        private final LocalDate asOfDate;
+        private final Long snapshotId;
+        private final List<Long> accountIds;
+        private final int from;
+        private final int to;
+
+        RebuildTask(LocalDate asOfDate, Long snapshotId, List<Long> accountIds, int from, int to) {
+            this.asOfDate = asOfDate;
+            this.snapshotId = snapshotId;
+            this.accountIds = accountIds;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected RebuildResponse compute() {
+            if (to - from <= properties.getRebuildAccountsPerTask()) {
+                if (from == to) {
+                    return RebuildResponse.builder().build();
+                }
+                // Account ids are sorted, so the slice is one contiguous id range
+                return rebuildRange(asOfDate, snapshotId, accountIds.get(from), accountIds.get(to - 1));
+            }
+
+            int middle = (from + to) >>> 1;
+            RebuildTask left = new RebuildTask(asOfDate, snapshotId, accountIds, from, middle);
+            RebuildTask right = new RebuildTask(asOfDate, snapshotId, accountIds, middle, to);
+            left.fork();
+            RebuildResponse result = right.compute();
+            RebuildResponse leftResult = left.join();
+            result.setPositionsRebuilt(result.getPositionsRebuilt() + leftResult.getPositionsRebuilt());
+            result.setPositionsCorrected(result.getPositionsCorrected() + leftResult.getPositionsCorrected());
+            return result;
+        }
+    }
+
+    private static final class ReplayState {
+        private final String accountCode;
+        private BigDecimal quantity;
+        private BigDecimal avgCost;
+        private BigDecimal realizedPnl;
+        private long lastHistoryId;
+
+        ReplayState(String accountCode, BigDecimal quantity, BigDecimal avgCost, BigDecimal realizedPnl,
+                    long lastHistoryId) {
+            this.accountCode = accountCode;
+            this.quantity = quantity;
+            this.avgCost = avgCost;
+            this.realizedPnl = realizedPnl;
+            this.lastHistoryId = lastHistoryId;
+        }
+
+        void apply(JournalRow row) {
+            if (row.historyId() <= lastHistoryId) {
+                return; // already in the snapshot
+            }
+            quantity = row.newQuantity();
+            avgCost = row.newAvgCost();
+            realizedPnl = realizedPnl.add(row.realizedPnl());
+            lastHistoryId = row.historyId();
+        }
+
+        // Cost basis is derived the way PositionCalculator derives it
+        RebuiltPosition toRebuilt(long positionId) {
+            BigDecimal costBasis = quantity.abs().multiply(avgCost)
+                .setScale(FixedPoint.AMOUNT_SCALE, RoundingMode.HALF_UP);
+            return new RebuiltPosition(positionId, quantity, avgCost, costBasis, realizedPnl);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,227 @@
+package com.tms.position.service;
+
+import com.tms.position.cache.PositionQueryCache;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dto.RollForwardResponse;
+import com.tms.position.model.RollForwardShard;
+import com.tms.position.repository.PositionTables;
+import com.tms.position.repository.RollForwardJdbcRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * End-of-day roll-forward: copies every open position of a date to the next day,
+ * one account-range shard per transaction, with shards running in parallel.
+ *
+ * <p>Shard progress is recorded in position_roll_forward_shard, so a run that
+ * failed part way can be started again and only does the remaining shards.
+ */
+@Service
+@Slf4j
+public class PositionRollForwardService {
+
+    private enum ShardOutcome { COMPLETED, SKIPPED, FAILED }
+
+    private record ShardResult(ShardOutcome outcome, int rowsCopied) {
+    }
+
+    private final RollForwardJdbcRepository rollForwardJdbcRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final PositionQueryCache positionQueryCache;
+    private final PositionTables positionTables;
+    private final PositionProperties.RollForward properties;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger pendingShards = new AtomicInteger();
+    private final Counter rowsCopied;
+    private final Counter shardsCompleted;
+    private final Counter shardsFailed;
+    private final Timer shardTimer;
+
+    public PositionRollForwardService(RollForwardJdbcRepository rollForwardJdbcRepository,
+                                      TransactionTemplate transactionTemplate,
+                                      PositionQueryCache positionQueryCache,
+                                      PositionTables positionTables,
+                                      PositionProperties positionProperties,
+                                      MeterRegistry meterRegistry) {
+        this.rollForwardJdbcRepository = rollForwardJdbcRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.positionQueryCache = positionQueryCache;
+        this.positionTables = positionTables;
+        this.properties = positionProperties.getRollForward();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getParallelism(), runnable -> {
+            Thread thread = new Thread(runnable, "position-roll-forward-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.rowsCopied = Counter.builder("position.rollforward.rows")
+            .description("Positions copied to the next day")
+            .register(meterRegistry);
+        this.shardsCompleted = Counter.builder("position.rollforward.shards")
+            .tag("outcome", "completed")
+            .register(meterRegistry);
+        this.shardsFailed = Counter.builder("position.rollforward.shards")
+            .tag("outcome", "failed")
+            .register(meterRegistry);
+        this.shardTimer = Timer.builder("position.rollforward.shard.duration")
+            .register(meterRegistry);
+        meterRegistry.gauge("position.rollforward.shards.pending", pendingShards);
+    }
+
+    @Scheduled(cron = "${position.roll-forward.cron:0 5 0 * * *}")
+    public void rollForwardPreviousDay() {
+        LocalDate fromDate = LocalDate.now().minusDays(1);
+        try {
+            rollForward(fromDate, false);
+        } catch (Exception e) {
+            log.error("Scheduled position roll-forward failed: fromDate={}", fromDate, e);
+        }
+    }
+
+    /**
+     * Copies the open positions of {@code fromDate} to the following day. Shards
+     * completed by an earlier run are skipped unless {@code rerun} is set; rerunning
+     * only copies positions that are still missing on the next day.
+     *
+     * @throws IllegalStateException if a roll-forward is already running on this instance
+     */
+    public RollForwardResponse rollForward(LocalDate fromDate, boolean rerun) {
+        // Reads and writes the hot table only
+        positionTables.checkWritable(fromDate);
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("Position roll-forward already running");
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            List<RollForwardShard> shards = plan(fromDate);
+            log.info("Position roll-forward started: fromDate={}, shards={}, rerun={}",
+                fromDate, shards.size(), rerun);
+
+            pendingShards.set(shards.size());
+            LocalDateTime staleBefore = LocalDateTime.now().minus(properties.getStaleAfter());
+            List<Future<ShardResult>> futures = new ArrayList<>(shards.size());
+            for (RollForwardShard shard : shards) {
+                futures.add(executor.submit(() -> runShard(shard, staleBefore, rerun)));
+            }
+
+            RollForwardResponse response = RollForwardResponse.builder()
+                .fromDate(fromDate)
+                .toDate(fromDate.plusDays(1))
+                .shards(shards.size())
+                .build();
+            for (Future<ShardResult> future : futures) {
+                ShardResult result = await(future);
+                switch (result.outcome()) {
+                    case COMPLETED -> response.setCompletedShards(response.getCompletedShards() + 1);
+                    case SKIPPED -> response.setSkippedShards(response.getSkippedShards() + 1);
+                    case FAILED -> response.setFailedShards(response.getFailedShards() + 1);
+                }
+                response.setRowsCopied(response.getRowsCopied() + result.rowsCopied());
+            }
+
+            log.info("Position roll-forward finished: fromDate={}, completed={}, skipped={}, failed={}, " +
+                    "rows={}, durationMs={}", fromDate, response.getCompletedShards(), response.getSkippedShards(),
+                response.getFailedShards(), response.getRowsCopied(), System.currentTimeMillis() - startTime);
+            return response;
+        } finally {
+            pendingShards.set(0);
+            running.set(false);
+        }
+    }
+
+    // Reuses the recorded plan on restart so shard boundaries never move under a partial run
+    private List<RollForwardShard> plan(LocalDate fromDate) {
+        List<RollForwardShard> shards = rollForwardJdbcRepository.findShards(fromDate);
+        if (!shards.isEmpty()) {
+            return shards;
+        }
+        try {
+            return transactionTemplate.execute(status ->
+                rollForwardJdbcRepository.insertPlan(fromDate, properties.getShards()));
+        } catch (DuplicateKeyException e) {
+            // Another instance planned the same date first
+            return rollForwardJdbcRepository.findShards(fromDate);
+        }
+    }
+
+    private ShardResult runShard(RollForwardShard shard, LocalDateTime staleBefore, boolean rerun) {
+        try {
+            if (!rollForwardJdbcRepository.claim(shard, staleBefore, rerun)) {
+                log.debug("Roll-forward shard skipped: fromDate={}, shard={}", shard.fromDate(), shard.shardNo());
+                return new ShardResult(ShardOutcome.SKIPPED, 0);
+            }
+
+            Map<String, Integer> rolled = shardTimer.record(() -> transactionTemplate.execute(status -> {
+                Map<String, Integer> copied = rollForwardJdbcRepository.rollShard(shard);
+                rollForwardJdbcRepository.complete(shard, copied.values().stream().mapToInt(Integer::intValue).sum());
+                return copied;
+            }));
+
+            int rows = rolled.values().stream().mapToInt(Integer::intValue).sum();
+            LocalDate toDate = shard.fromDate().plusDays(1);
+            rolled.keySet().forEach(accountCode -> positionQueryCache.accountChanged(accountCode, toDate));
+            rowsCopied.increment(rows);
+            shardsCompleted.increment();
+            log.debug("Roll-forward shard completed: fromDate={}, shard={}, rows={}",
+                shard.fromDate(), shard.shardNo(), rows);
+            return new ShardResult(ShardOutcome.COMPLETED, rows);
+
+        } catch (Exception e) {
+            log.error("Roll-forward shard failed: fromDate={}, shard={}", shard.fromDate(), shard.shardNo(), e);
+            shardsFailed.increment();
+            try {
+                rollForwardJdbcRepository.fail(shard, abbreviate(String.valueOf(e.getMessage())));
+            } catch (Exception failure) {
+                // The shard stays RUNNING and becomes claimable again once stale
+                log.warn("Failed to record roll-forward shard failure: shard={}", shard.shardNo(), failure);
+            }
+            return new ShardResult(ShardOutcome.FAILED, 0);
+        } finally {
+            pendingShards.decrementAndGet();
+        }
+    }
+
+    private static ShardResult await(Future<ShardResult> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException("Interrupted waiting for roll-forward shard", e);
+        } catch (ExecutionException e) {
+            // runShard handles its own failures
+            throw new CompletionException("Roll-forward shard failed unexpectedly", e.getCause());
+        }
+    }
+
+    private static String abbreviate(String message) {
+        return message.length() <= 1000 ? message : message.substring(0, 1000);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
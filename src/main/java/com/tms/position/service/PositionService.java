@@ -1,23 +1,39 @@
 package com.tms.position.service;
 
-import com.tms.common.config.kafka.KafkaTopics;
 import com.tms.common.observability.logging.CorrelationIdFilter;
 import com.tms.common.observability.metrics.TradeMetrics;
+import com.tms.position.book.PositionBook;
+import com.tms.position.cache.PositionQueryCache;
+import com.tms.position.calculation.PositionCalculator;
+import com.tms.position.calculation.PositionState;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dto.AccountPositionSummary;
+import com.tms.position.dto.PositionPageResponse;
+import com.tms.position.dto.PositionResponse;
 import com.tms.position.entity.Position;
+import com.tms.position.messaging.PositionEventPublisher;
+import com.tms.position.metrics.PositionPipelineMetrics;
+import com.tms.position.metrics.PositionPipelineMetrics.Stage;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionKey;
+import com.tms.position.replica.ReadConsistency;
+import com.tms.position.replica.ReadRouting;
+import com.tms.position.repository.AccountSummaryJdbcRepository;
+import com.tms.position.repository.PositionJdbcRepository;
+import com.tms.position.repository.PositionQueryJdbcRepository;
 import com.tms.position.repository.PositionRepository;
+import com.tms.position.repository.PositionTables;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Service
 @RequiredArgsConstructor
@@ -25,98 +41,61 @@ import java.util.concurrent.TimeUnit;
 public class PositionService {
 
     private final PositionRepository positionRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final PositionJdbcRepository positionJdbcRepository;
+    private final AccountSummaryJdbcRepository accountSummaryJdbcRepository;
+    private final PositionQueryJdbcRepository positionQueryJdbcRepository;
+    private final PositionCalculator positionCalculator;
+    private final PositionEventPublisher positionEventPublisher;
     private final TradeMetrics tradeMetrics;
-
-    private static final String POSITION_CACHE_PREFIX = "position:";
+    private final ObjectProvider<PositionBook> positionBook;
+    private final PositionQueryCache positionQueryCache;
+    private final ReadRouting readRouting;
+    private final PositionProperties properties;
+    private final PositionPipelineMetrics pipelineMetrics;
+    private final PositionTables positionTables;
 
     @Transactional
-    public Position updatePosition(Map<String, Object> tradeEvent) {
-        String correlationId = (String) tradeEvent.getOrDefault("correlationId",
-            CorrelationIdFilter.getCurrentCorrelationId());
-        String tradeId = (String) tradeEvent.get("tradeId");
+    public Position updatePosition(EnrichedTrade trade) {
+        String correlationId = trade.getCorrelationId() != null
+            ? trade.getCorrelationId() : CorrelationIdFilter.getCurrentCorrelationId();
+        String tradeId = trade.getTradeId();
+        // Consumers park these up front; this keeps any other caller off archived dates
+        positionTables.checkWritable(trade.getTradeDate());
 
         log.info("Updating position for trade: tradeId={}", tradeId);
         long startTime = System.currentTimeMillis();
+        long stage = pipelineMetrics.start();
 
         try {
-            // Extract trade details
-            Map<String, Object> account = (Map<String, Object>) tradeEvent.get("account");
-            Map<String, Object> instrument = (Map<String, Object>) tradeEvent.get("instrument");
-
-            Long accountId = Long.valueOf(account.get("accountId").toString());
-            String accountCode = (String) account.get("accountCode");
-            Long instrumentId = Long.valueOf(instrument.get("instrumentId").toString());
-            String symbol = (String) instrument.get("symbol");
-            String currency = (String) tradeEvent.get("currency");
-
-            String side = (String) tradeEvent.get("side");
-            BigDecimal quantity = new BigDecimal((String) tradeEvent.get("quantity"));
-            BigDecimal price = new BigDecimal((String) tradeEvent.get("price"));
-            LocalDate tradeDate = LocalDate.parse((String) tradeEvent.get("tradeDate"));
-
-            // Adjust quantity for sell trades
-            BigDecimal quantityChange = "SELL".equals(side) ? quantity.negate() : quantity;
-
             // Find or create position
             Position position = positionRepository
-                .findByAccountIdAndInstrumentIdAndAsOfDate(accountId, instrumentId, tradeDate)
-                .orElseGet(() -> Position.builder()
-                    .accountId(accountId)
-                    .accountCode(accountCode)
-                    .instrumentId(instrumentId)
-                    .symbol(symbol)
-                    .quantity(BigDecimal.ZERO)
-                    .avgCost(BigDecimal.ZERO)
-                    .costBasis(BigDecimal.ZERO)
-                    .realizedPnl(BigDecimal.ZERO)
-                    .currency(currency)
-                    .asOfDate(tradeDate)
-                    .build());
-
-            BigDecimal previousQuantity = position.getQuantity();
-            BigDecimal previousAvgCost = position.getAvgCost();
-            BigDecimal realizedPnl = BigDecimal.ZERO;
-
-            // Calculate new position
-            BigDecimal newQuantity = previousQuantity.add(quantityChange);
-
-            BigDecimal newAvgCost;
-            if ("BUY".equals(side)) {
-                // Weighted average cost for buys
-                if (newQuantity.compareTo(BigDecimal.ZERO) > 0) {
-                    BigDecimal existingValue = previousQuantity.multiply(previousAvgCost);
-                    BigDecimal newValue = quantity.multiply(price);
-                    newAvgCost = existingValue.add(newValue)
-                        .divide(newQuantity, 8, RoundingMode.HALF_UP);
-                } else {
-                    newAvgCost = price;
-                }
-            } else {
-                // For sells, calculate realized P&L
-                if (previousQuantity.compareTo(BigDecimal.ZERO) > 0) {
-                    realizedPnl = quantity.multiply(price.subtract(previousAvgCost));
-                }
-                newAvgCost = previousAvgCost; // Avg cost unchanged on sells
+                .findByAccountIdAndInstrumentIdAndAsOfDate(trade.getAccountId(), trade.getInstrumentId(),
+                    trade.getTradeDate())
+                .orElse(null);
+            boolean opened = position == null;
+            if (opened) {
+                Position prior = positionJdbcRepository.findLatestBefore(List.of(trade.positionKey()))
+                    .get(trade.positionKey());
+                position = Position.opening(trade, prior);
             }
+            stage = pipelineMetrics.lap(Stage.LOAD, stage);
 
-            // Update position
-            position.setQuantity(newQuantity);
-            position.setAvgCost(newAvgCost);
-            position.setCostBasis(newQuantity.abs().multiply(newAvgCost));
-            position.setRealizedPnl(position.getRealizedPnl().add(realizedPnl));
+            PositionChange change = positionCalculator.applyTrades(position, opened, List.of(trade),
+                new PositionState(), correlationId);
+            stage = pipelineMetrics.lap(Stage.CALCULATE, stage);
 
             position = positionRepository.save(position);
+            change = change.withPosition(position);
+            stage = pipelineMetrics.lap(Stage.SAVE, stage);
+            // Applied-trade marker, committed atomically with the position
+            positionJdbcRepository.insertJournal(List.of(change));
+            stage = pipelineMetrics.lap(Stage.JOURNAL, stage);
+            accountSummaryJdbcRepository.applyChanges(List.of(change));
+            pipelineMetrics.stop(Stage.SUMMARY, stage);
             log.info("Position updated: positionId={}, symbol={}, quantity={}",
-                position.getPositionId(), symbol, newQuantity);
-
-            // Update cache
-            updatePositionCache(position);
+                position.getPositionId(), trade.getSymbol(), position.getQuantity());
 
-            // Publish position updated event
-            publishPositionUpdatedEvent(position, tradeId, previousQuantity, quantityChange,
-                realizedPnl, correlationId);
+            positionEventPublisher.publish(change);
 
             long duration = System.currentTimeMillis() - startTime;
             tradeMetrics.recordPositionCalculationTime(duration);
@@ -130,69 +109,152 @@ public class PositionService {
         }
     }
 
-    public List<Position> getPositionsByAccount(String accountCode, LocalDate asOfDate) {
-        return positionRepository.findPositionsByAccount(accountCode, asOfDate);
+    // Applies a poll's worth of trades in one transaction: trades are grouped by
+    // (accountId, instrumentId, tradeDate) and folded in order, so each position
+    // is read, written and published once per batch
+    @Transactional
+    public List<Position> updatePositions(List<EnrichedTrade> trades) {
+        long startTime = System.currentTimeMillis();
+        long stage = pipelineMetrics.start();
+        String fallbackCorrelationId = CorrelationIdFilter.getCurrentCorrelationId();
+
+        Map<PositionKey, List<EnrichedTrade>> tradesByKey = new LinkedHashMap<>();
+        for (EnrichedTrade trade : trades) {
+            positionTables.checkWritable(trade.getTradeDate());
+            tradesByKey.computeIfAbsent(trade.positionKey(), k -> new ArrayList<>()).add(trade);
+        }
+
+        Map<PositionKey, Position> existing = positionJdbcRepository.findByKeys(tradesByKey.keySet());
+        Set<PositionKey> newKeys = new HashSet<>(tradesByKey.keySet());
+        newKeys.removeAll(existing.keySet());
+        Map<PositionKey, Position> priors = newKeys.isEmpty()
+            ? Map.of() : positionJdbcRepository.findLatestBefore(newKeys);
+        stage = pipelineMetrics.lap(Stage.LOAD, stage);
+        List<PositionChange> changes = new ArrayList<>(tradesByKey.size());
+        PositionState state = new PositionState();
+
+        for (Map.Entry<PositionKey, List<EnrichedTrade>> entry : tradesByKey.entrySet()) {
+            List<EnrichedTrade> keyTrades = entry.getValue();
+            Position position = existing.get(entry.getKey());
+            boolean opened = position == null;
+            if (opened) {
+                position = Position.opening(keyTrades.get(0), priors.get(entry.getKey()));
+            }
+            changes.add(positionCalculator.applyTrades(position, opened, keyTrades, state, fallbackCorrelationId));
+        }
+
+        stage = pipelineMetrics.lap(Stage.CALCULATE, stage);
+
+        List<Position> positions = changes.stream().map(PositionChange::position).toList();
+        positionJdbcRepository.upsertAll(positions);
+        stage = pipelineMetrics.lap(Stage.SAVE, stage);
+        positionJdbcRepository.insertJournal(changes);
+        stage = pipelineMetrics.lap(Stage.JOURNAL, stage);
+        accountSummaryJdbcRepository.applyChanges(changes);
+        pipelineMetrics.stop(Stage.SUMMARY, stage);
+        log.info("Batch position update: trades={}, positions={}", trades.size(), positions.size());
+
+        for (PositionChange change : changes) {
+            positionEventPublisher.publish(change);
+            tradeMetrics.incrementPositionsUpdated();
+        }
+
+        tradeMetrics.recordPositionCalculationTime(System.currentTimeMillis() - startTime);
+        return positions;
     }
 
-    public Optional<Position> getPosition(Long positionId) {
-        return positionRepository.findById(positionId);
+    // A read with a consistency bound skips the cache: entries loaded on other
+    // instances may predate the bound. The book always has the latest state.
+    public List<Position> getPositionsByAccount(String accountCode, LocalDate asOfDate,
+                                                ReadConsistency consistency) {
+        PositionBook book = positionBook.getIfAvailable();
+        if (book != null) {
+            Optional<List<Position>> local = book.findByAccount(accountCode, asOfDate);
+            if (local.isPresent()) {
+                return local.get();
+            }
+        }
+        if (consistency.isBounded()) {
+            return readRouting.read(consistency.asOfMillis(),
+                () -> positionJdbcRepository.findByAccount(accountCode, asOfDate));
+        }
+        return positionQueryCache.getPositionsByAccount(accountCode, asOfDate,
+            () -> positionJdbcRepository.findByAccount(accountCode, asOfDate));
     }
 
-    private void updatePositionCache(Position position) {
-        try {
-            String key = POSITION_CACHE_PREFIX + position.getAccountCode() + ":" + position.getSymbol();
-            Map<String, Object> cached = new HashMap<>();
-            cached.put("positionId", position.getPositionId());
-            cached.put("accountCode", position.getAccountCode());
-            cached.put("symbol", position.getSymbol());
-            cached.put("quantity", position.getQuantity().toString());
-            cached.put("avgCost", position.getAvgCost().toString());
-            cached.put("costBasis", position.getCostBasis().toString());
-            cached.put("currency", position.getCurrency());
-            cached.put("updatedAt", position.getUpdatedAt().toString());
-
-            redisTemplate.opsForValue().set(key, cached, 24, TimeUnit.HOURS);
-        } catch (Exception e) {
-            log.warn("Failed to update position cache", e);
+    public Optional<Position> getPosition(Long positionId, ReadConsistency consistency) {
+        PositionBook book = positionBook.getIfAvailable();
+        if (book != null) {
+            Optional<Position> local = book.findById(positionId);
+            if (local.isPresent()) {
+                return local;
+            }
+        }
+        if (!consistency.isBounded()) {
+            return positionQueryCache.getPosition(positionId, () -> findById(positionId));
+        }
+
+        Optional<Position> position = readRouting.read(consistency.asOfMillis(),
+            () -> findById(positionId));
+        Long minVersion = consistency.minVersion();
+        if (minVersion != null && position.map(p -> p.getVersion() < minVersion).orElse(true)) {
+            // The replica has not applied the version the client has already seen
+            return readRouting.onPrimary(() -> findById(positionId));
+        }
+        return position;
+    }
+
+    // Archived positions have left the JPA-mapped hot table
+    private Optional<Position> findById(Long positionId) {
+        return positionRepository.findById(positionId).or(() -> positionJdbcRepository.findArchivedById(positionId));
+    }
+
+    // Reads the incrementally maintained aggregate row, so the cost does not grow with
+    // the number of positions. In book mode it trails the book by the pending flush.
+    public AccountPositionSummary getAccountSummary(String accountCode, LocalDate asOfDate,
+                                                    ReadConsistency consistency) {
+        if (consistency.isBounded()) {
+            return readRouting.read(consistency.asOfMillis(), () -> loadAccountSummary(accountCode, asOfDate));
         }
+        return positionQueryCache.getAccountSummary(accountCode, asOfDate,
+            () -> loadAccountSummary(accountCode, asOfDate));
+    }
+
+    private AccountPositionSummary loadAccountSummary(String accountCode, LocalDate asOfDate) {
+        return accountSummaryJdbcRepository.find(accountCode, asOfDate)
+            .orElseGet(() -> AccountPositionSummary.builder()
+                .accountCode(accountCode)
+                .asOfDate(asOfDate)
+                .totalCostBasis(BigDecimal.ZERO)
+                .totalRealizedPnl(BigDecimal.ZERO)
+                .build());
     }
 
-    private void publishPositionUpdatedEvent(Position position, String tradeId,
-                                              BigDecimal previousQuantity, BigDecimal quantityChange,
-                                              BigDecimal realizedPnl, String correlationId) {
-        Map<String, Object> event = new HashMap<>();
-        event.put("eventId", UUID.randomUUID().toString());
-        event.put("eventType", "PositionUpdated");
-        event.put("eventTime", Instant.now().toEpochMilli());
-        event.put("correlationId", correlationId);
-        event.put("source", "position-service");
-
-        event.put("positionId", position.getPositionId().toString());
-        event.put("accountId", position.getAccountId().toString());
-        event.put("accountCode", position.getAccountCode());
-        event.put("instrumentId", position.getInstrumentId().toString());
-        event.put("symbol", position.getSymbol());
-        event.put("previousQuantity", previousQuantity.toString());
-        event.put("newQuantity", position.getQuantity().toString());
-        event.put("quantityChange", quantityChange.toString());
-        event.put("avgCost", position.getAvgCost().toString());
-        event.put("costBasis", position.getCostBasis().toString());
-        event.put("realizedPnl", realizedPnl.toString());
-        event.put("currency", position.getCurrency());
-        event.put("triggeringTradeId", tradeId);
-        event.put("asOfDate", position.getAsOfDate().toString());
-        event.put("updateType", "TRADE");
-
-        String key = position.getAccountCode() + ":" + position.getSymbol();
-        kafkaTemplate.send(KafkaTopics.POSITIONS_UPDATED, key, event)
-            .whenComplete((result, ex) -> {
-                if (ex != null) {
-                    log.error("Failed to publish PositionUpdated event: positionId={}",
-                        position.getPositionId(), ex);
-                } else {
-                    log.debug("PositionUpdated event published: positionId={}",
-                        position.getPositionId());
-                }
-            });
+    // Export and paging read committed rows straight from the database, also in book mode
+    public void exportPositionsByAccount(String accountCode, LocalDate asOfDate, Consumer<PositionResponse> action) {
+        positionQueryJdbcRepository.streamByAccount(accountCode, asOfDate, action);
+    }
+
+    public PositionPageResponse getPositionPage(String accountCode, LocalDate asOfDate,
+                                                String afterSymbol, Long afterPositionId, Integer limit) {
+        PositionProperties.Export export = properties.getExport();
+        int pageSize = limit == null
+            ? export.getDefaultPageSize()
+            : Math.max(1, Math.min(limit, export.getMaxPageSize()));
+
+        // One extra row tells whether another page follows
+        List<PositionResponse> rows = positionQueryJdbcRepository.findPageByAccount(accountCode, asOfDate,
+            afterSymbol, afterPositionId, pageSize + 1);
+        if (rows.size() <= pageSize) {
+            return PositionPageResponse.builder().positions(rows).build();
+        }
+
+        List<PositionResponse> page = rows.subList(0, pageSize);
+        PositionResponse last = page.get(pageSize - 1);
+        return PositionPageResponse.builder()
+            .positions(page)
+            .nextAfterSymbol(last.getSymbol())
+            .nextAfterPositionId(last.getPositionId())
+            .build();
     }
 }
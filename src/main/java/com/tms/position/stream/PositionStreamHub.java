@@ -0,0 +1,138 @@
+package com.tms.position.stream;
+
+import com.tms.position.config.PositionProperties;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionUpdated;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pushes position changes to SSE subscribers of their account. Publishing only
+ * hands the change to each subscriber's conflating buffer, so the update path never
+ * waits for a client.
+ */
+@Component
+@Slf4j
+public class PositionStreamHub {
+
+    private final PositionProperties.Streaming properties;
+    private final Map<String, Set<PositionSubscriber>> subscribersByAccount = new ConcurrentHashMap<>();
+    private final Set<PositionSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Counter sent;
+    private final Counter conflated;
+    private final Counter dropped;
+
+    public PositionStreamHub(PositionProperties positionProperties, MeterRegistry meterRegistry) {
+        this.properties = positionProperties.getStreaming();
+        Gauge.builder("position.stream.subscribers", subscriberCount, AtomicInteger::get)
+            .description("Connected position stream subscribers")
+            .register(meterRegistry);
+        this.sent = Counter.builder("position.stream.sent")
+            .description("Position updates written to stream subscribers")
+            .register(meterRegistry);
+        this.conflated = Counter.builder("position.stream.conflated")
+            .description("Position updates folded into a pending update of the same position")
+            .register(meterRegistry);
+        this.dropped = Counter.builder("position.stream.dropped")
+            .description("Position updates dropped because a subscriber buffer was full")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of the accounts' position changes.
+     *
+     * @throws IllegalArgumentException if no or too many accounts are given
+     * @throws IllegalStateException if the subscriber limit is reached
+     */
+    public SseEmitter subscribe(List<String> requestedAccountCodes) {
+        List<String> accountCodes = requestedAccountCodes.stream()
+            .map(String::strip)
+            .filter(code -> !code.isEmpty())
+            .distinct()
+            .toList();
+        if (accountCodes.isEmpty() || accountCodes.size() > properties.getMaxAccountsPerSubscriber()) {
+            throw new IllegalArgumentException("Between 1 and " + properties.getMaxAccountsPerSubscriber()
+                + " accounts per subscription");
+        }
+        if (subscriberCount.incrementAndGet() > properties.getMaxSubscribers()) {
+            subscriberCount.decrementAndGet();
+            throw new IllegalStateException("Position stream subscriber limit reached");
+        }
+
+        SseEmitter emitter = new SseEmitter(properties.getTimeout().toMillis());
+        PositionSubscriber subscriber = new PositionSubscriber(emitter, accountCodes,
+            properties.getBufferSize(), executor, this);
+        subscribers.add(subscriber);
+        for (String accountCode : accountCodes) {
+            subscribersByAccount.computeIfAbsent(accountCode, code -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        emitter.onCompletion(() -> unsubscribe(subscriber));
+        emitter.onTimeout(() -> unsubscribe(subscriber));
+        emitter.onError(e -> unsubscribe(subscriber));
+
+        log.debug("Position stream subscribed: accounts={}", accountCodes);
+        return emitter;
+    }
+
+    public void publish(PositionChange change) {
+        Set<PositionSubscriber> accountSubscribers = subscribersByAccount.get(change.position().getAccountCode());
+        if (accountSubscribers == null || accountSubscribers.isEmpty()) {
+            return;
+        }
+
+        PositionUpdated event = PositionUpdated.of(change, System.currentTimeMillis());
+        for (PositionSubscriber subscriber : accountSubscribers) {
+            switch (subscriber.offer(event)) {
+                case CONFLATED -> conflated.increment();
+                case DROPPED -> dropped.increment();
+                default -> {
+                }
+            }
+        }
+    }
+
+    void delivered(int count) {
+        sent.increment(count);
+    }
+
+    void unsubscribe(PositionSubscriber subscriber) {
+        if (!subscribers.remove(subscriber)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        for (String accountCode : subscriber.accountCodes()) {
+            subscribersByAccount.computeIfPresent(accountCode, (code, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    // Keeps idle connections from being cut by proxies, and finds clients that went away
+    @Scheduled(fixedDelayString = "${position.streaming.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        subscribers.forEach(PositionSubscriber::heartbeat);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(PositionSubscriber::close);
+        executor.shutdownNow();
+    }
+}
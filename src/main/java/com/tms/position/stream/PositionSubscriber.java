@@ -0,0 +1,142 @@
+package com.tms.position.stream;
+
+import com.tms.position.model.PositionUpdated;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * One SSE client. Updates wait in a bounded buffer holding the latest state per
+ * position, so updates of one symbol on different as-of dates stay apart; a
+ * delivery task runs on the executor only while there is something to send, so a
+ * slow client only ever slows down its own deliveries.
+ */
+@Slf4j
+final class PositionSubscriber {
+
+    static final String EVENT_POSITION = "position";
+    // Sent after updates were dropped: the client should reload its positions over REST
+    static final String EVENT_RESYNC = "resync";
+
+    private final SseEmitter emitter;
+    private final List<String> accountCodes;
+    private final int capacity;
+    private final Executor executor;
+    private final PositionStreamHub hub;
+
+    // positionId -> net update not sent yet
+    private Map<Long, PositionUpdated> pending = new LinkedHashMap<>();
+    private boolean resync;
+    private boolean heartbeat;
+    private boolean delivering;
+    private volatile boolean closed;
+
+    PositionSubscriber(SseEmitter emitter, List<String> accountCodes, int capacity, Executor executor,
+                       PositionStreamHub hub) {
+        this.emitter = emitter;
+        this.accountCodes = accountCodes;
+        this.capacity = capacity;
+        this.executor = executor;
+        this.hub = hub;
+    }
+
+    List<String> accountCodes() {
+        return accountCodes;
+    }
+
+    /**
+     * Queues an update without blocking. Returns whether it was conflated into a
+     * pending update of the same position, added, or dropped because the buffer is full.
+     */
+    synchronized Outcome offer(PositionUpdated event) {
+        if (closed) {
+            return Outcome.DROPPED;
+        }
+        Outcome outcome;
+        PositionUpdated previous = pending.get(event.positionId());
+        if (previous != null) {
+            pending.put(event.positionId(), previous.conflate(event));
+            outcome = Outcome.CONFLATED;
+        } else if (pending.size() < capacity) {
+            pending.put(event.positionId(), event);
+            outcome = Outcome.QUEUED;
+        } else {
+            resync = true;
+            outcome = Outcome.DROPPED;
+        }
+        scheduleDelivery();
+        return outcome;
+    }
+
+    synchronized void heartbeat() {
+        heartbeat = true;
+        scheduleDelivery();
+    }
+
+    void close() {
+        closed = true;
+        emitter.complete();
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    private void scheduleDelivery() {
+        if (!delivering) {
+            delivering = true;
+            executor.execute(this::deliver);
+        }
+    }
+
+    private void deliver() {
+        while (!closed) {
+            Map<Long, PositionUpdated> batch;
+            boolean sendResync;
+            boolean sendHeartbeat;
+            synchronized (this) {
+                if (pending.isEmpty() && !resync && !heartbeat) {
+                    delivering = false;
+                    return;
+                }
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                sendResync = resync;
+                sendHeartbeat = heartbeat;
+                resync = false;
+                heartbeat = false;
+            }
+
+            try {
+                for (PositionUpdated event : batch.values()) {
+                    emitter.send(SseEmitter.event()
+                        .id(event.eventId())
+                        .name(EVENT_POSITION)
+                        .data(event, MediaType.APPLICATION_JSON));
+                }
+                hub.delivered(batch.size());
+                if (sendResync) {
+                    emitter.send(SseEmitter.event().name(EVENT_RESYNC).data(accountCodes));
+                }
+                if (sendHeartbeat) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Position stream subscriber disconnected: accounts={}", accountCodes);
+                closed = true;
+                hub.unsubscribe(this);
+                return;
+            }
+        }
+    }
+
+    enum Outcome {
+        QUEUED, CONFLATED, DROPPED
+    }
+}
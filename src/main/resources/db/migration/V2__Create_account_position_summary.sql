@@ -0,0 +1,20 @@
+-- V2: Incrementally maintained account-level aggregates
+
+CREATE TABLE account_position_summary (
+    account_code VARCHAR(50) NOT NULL,
+    as_of_date DATE NOT NULL,
+    position_count INT NOT NULL DEFAULT 0,
+    total_cost_basis DECIMAL(22, 4) NOT NULL DEFAULT 0,
+    total_realized_pnl DECIMAL(22, 4) NOT NULL DEFAULT 0,
+    -- NULL until positions are revalued
+    total_market_value DECIMAL(22, 4) NULL,
+    updated_at DATETIME2 NOT NULL DEFAULT GETDATE(),
+
+    CONSTRAINT pk_account_position_summary PRIMARY KEY (account_code, as_of_date)
+);
+
+-- Backfill from existing positions
+INSERT INTO account_position_summary (account_code, as_of_date, position_count, total_cost_basis, total_realized_pnl)
+SELECT account_code, as_of_date, COUNT(*), SUM(cost_basis), SUM(realized_pnl)
+FROM position
+GROUP BY account_code, as_of_date;
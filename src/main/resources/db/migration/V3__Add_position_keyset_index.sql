@@ -0,0 +1,4 @@
+-- V3: Covers keyset pagination and streaming export over an account's positions
+
+CREATE INDEX idx_position_account_date_symbol
+    ON position(account_code, as_of_date, symbol, position_id);
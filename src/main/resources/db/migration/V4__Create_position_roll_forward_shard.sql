@@ -0,0 +1,16 @@
+-- V4: Progress of end-of-day roll-forward runs, one row per account-range shard
+
+CREATE TABLE position_roll_forward_shard (
+    from_date DATE NOT NULL,
+    shard_no INT NOT NULL,
+    account_id_from BIGINT NOT NULL,
+    account_id_to BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    rows_copied INT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    started_at DATETIME2 NULL,
+    completed_at DATETIME2 NULL,
+    last_error VARCHAR(1000) NULL,
+
+    CONSTRAINT pk_position_roll_forward_shard PRIMARY KEY (from_date, shard_no)
+);
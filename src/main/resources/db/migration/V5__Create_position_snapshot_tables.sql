@@ -0,0 +1,27 @@
+-- V5: Per-date position snapshots used as the base for journal replay
+
+CREATE TABLE position_snapshot_run (
+    snapshot_id BIGINT IDENTITY(1,1) PRIMARY KEY,
+    as_of_date DATE NOT NULL,
+    position_count INT NOT NULL,
+    created_at DATETIME2 NOT NULL DEFAULT GETDATE()
+);
+
+CREATE INDEX idx_position_snapshot_run_date ON position_snapshot_run(as_of_date, snapshot_id);
+
+-- last_history_id: newest position_history row already reflected in the snapshot row
+CREATE TABLE position_snapshot (
+    snapshot_id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL,
+    position_id BIGINT NOT NULL,
+    account_code VARCHAR(50) NOT NULL,
+    quantity DECIMAL(18, 8) NOT NULL,
+    avg_cost DECIMAL(18, 8) NOT NULL,
+    cost_basis DECIMAL(18, 4) NOT NULL,
+    realized_pnl DECIMAL(18, 4) NOT NULL,
+    last_history_id BIGINT NULL,
+
+    CONSTRAINT pk_position_snapshot PRIMARY KEY (snapshot_id, account_id, position_id),
+    CONSTRAINT fk_position_snapshot_run
+        FOREIGN KEY (snapshot_id) REFERENCES position_snapshot_run(snapshot_id)
+);
@@ -0,0 +1,5 @@
+-- V6: Market value and unrealized P&L, maintained by the revaluation engine
+
+ALTER TABLE position ADD
+    market_value DECIMAL(18, 4) NULL,
+    unrealized_pnl DECIMAL(18, 4) NULL;
@@ -0,0 +1,19 @@
+-- V7: Point-in-time position queries
+
+-- Finds the newest change of a position at or before a timestamp with one seek
+CREATE INDEX idx_position_history_position_time
+    ON position_history(position_id, created_at, history_id)
+    INCLUDE (previous_quantity, previous_avg_cost, new_quantity, new_avg_cost, realized_pnl);
+
+-- Intraday checkpoints of the realized P&L a position has accumulated on its date,
+-- up to and including last_history_id; later changes are summed on top at query time
+CREATE TABLE position_checkpoint (
+    position_id BIGINT NOT NULL,
+    checkpoint_at DATETIME2 NOT NULL,
+    last_history_id BIGINT NOT NULL,
+    realized_pnl DECIMAL(18, 4) NOT NULL,
+
+    CONSTRAINT pk_position_checkpoint PRIMARY KEY (position_id, checkpoint_at, last_history_id)
+);
+
+CREATE INDEX idx_position_checkpoint_history ON position_checkpoint(last_history_id);
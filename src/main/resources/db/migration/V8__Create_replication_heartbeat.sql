@@ -0,0 +1,13 @@
+-- V8: Replica lag measurement
+
+-- Bumped by the primary and read back from the read replica; the sequence the
+-- replica shows tells how far it has caught up
+CREATE TABLE replication_heartbeat (
+    id TINYINT NOT NULL,
+    seq BIGINT NOT NULL,
+    beat_at DATETIME2 NOT NULL,
+
+    CONSTRAINT pk_replication_heartbeat PRIMARY KEY (id)
+);
+
+INSERT INTO replication_heartbeat (id, seq, beat_at) VALUES (1, 0, SYSUTCDATETIME());
@@ -0,0 +1,85 @@
+-- V9: Date-partitioned position storage with a columnstore archive for closed dates
+
+-- One partition per date. Only a fixed seed boundary is created here, so every
+-- environment gets the same layout; the archive service rolls daily boundaries
+-- forward from it and merges away archived ones
+CREATE PARTITION FUNCTION pf_position_as_of_date (DATE) AS RANGE RIGHT FOR VALUES ('2000-01-01');
+
+CREATE PARTITION SCHEME ps_position_as_of_date AS PARTITION pf_position_as_of_date ALL TO ([PRIMARY]);
+
+-- Journal rows outlive their position once it is archived
+ALTER TABLE position_history DROP CONSTRAINT fk_position_history_position;
+
+-- The clustered key has to carry the partitioning column; the V1 key was unnamed
+DECLARE @pk SYSNAME = (SELECT name FROM sys.key_constraints
+    WHERE parent_object_id = OBJECT_ID('position') AND type = 'PK');
+EXEC (N'ALTER TABLE position DROP CONSTRAINT ' + @pk);
+
+-- The hot table keeps only the indexes the write and query paths use. Account code
+-- and (account code, date) are prefixes of the V3 index; the date is the partition
+DROP INDEX idx_position_account_code ON position;
+DROP INDEX idx_position_as_of_date ON position;
+DROP INDEX idx_position_account_date ON position;
+DROP INDEX idx_position_symbol ON position;
+DROP INDEX idx_position_account_date_symbol ON position;
+ALTER TABLE position DROP CONSTRAINT uq_position_account_instrument_date;
+
+-- Identity order, so intraday inserts append to the end of today's partition
+ALTER TABLE position ADD CONSTRAINT pk_position
+    PRIMARY KEY CLUSTERED (position_id, as_of_date) ON ps_position_as_of_date(as_of_date);
+
+ALTER TABLE position ADD CONSTRAINT uq_position_account_instrument_date
+    UNIQUE (account_id, instrument_id, as_of_date) ON ps_position_as_of_date(as_of_date);
+
+CREATE INDEX idx_position_account_date_symbol
+    ON position(account_code, as_of_date, symbol, position_id) ON ps_position_as_of_date(as_of_date);
+
+-- Closed dates, read-only and columnstore compressed, one partition per month
+CREATE PARTITION FUNCTION pf_position_archive_month (DATE) AS RANGE RIGHT FOR VALUES ();
+
+CREATE PARTITION SCHEME ps_position_archive_month AS PARTITION pf_position_archive_month ALL TO ([PRIMARY]);
+
+CREATE TABLE position_archive (
+    position_id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL,
+    account_code VARCHAR(50) NOT NULL,
+    instrument_id BIGINT NOT NULL,
+    symbol VARCHAR(20) NOT NULL,
+    quantity DECIMAL(18, 8) NOT NULL,
+    avg_cost DECIMAL(18, 8) NOT NULL,
+    cost_basis DECIMAL(18, 4) NOT NULL,
+    realized_pnl DECIMAL(18, 4) NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    as_of_date DATE NOT NULL,
+    created_at DATETIME2 NOT NULL,
+    updated_at DATETIME2 NOT NULL,
+    version BIGINT NOT NULL,
+    market_value DECIMAL(18, 4) NULL,
+    unrealized_pnl DECIMAL(18, 4) NULL
+) ON ps_position_archive_month(as_of_date);
+
+CREATE CLUSTERED COLUMNSTORE INDEX cci_position_archive
+    ON position_archive ON ps_position_archive_month(as_of_date);
+
+-- Point lookups and account pages would otherwise scan whole row groups
+CREATE INDEX idx_position_archive_account_date_symbol
+    ON position_archive(account_code, as_of_date, symbol, position_id) ON ps_position_archive_month(as_of_date);
+
+CREATE INDEX idx_position_archive_position_id
+    ON position_archive(position_id) ON ps_position_archive_month(as_of_date);
+
+-- Prior state of positions that reopen with no hot row
+CREATE INDEX idx_position_archive_account_instrument_date
+    ON position_archive(account_id, instrument_id, as_of_date) ON ps_position_archive_month(as_of_date);
+GO
+
+-- Both tiers, for dates whose tier a reader cannot be sure of
+CREATE VIEW position_all AS
+SELECT position_id, account_id, account_code, instrument_id, symbol, quantity, avg_cost, cost_basis,
+    realized_pnl, currency, as_of_date, created_at, updated_at, version, market_value, unrealized_pnl
+FROM position
+UNION ALL
+SELECT position_id, account_id, account_code, instrument_id, symbol, quantity, avg_cost, cost_basis,
+    realized_pnl, currency, as_of_date, created_at, updated_at, version, market_value, unrealized_pnl
+FROM position_archive;
+GO
@@ -0,0 +1,340 @@
+package com.tms.position.book;
+
+import com.tms.common.observability.metrics.TradeMetrics;
+import com.tms.position.config.PositionProperties;
+import com.tms.position.dedup.TradeDedupFilter;
+import com.tms.position.entity.Position;
+import com.tms.position.messaging.PositionEventPublisher;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionJournalEntry;
+import com.tms.position.repository.AccountSummaryJdbcRepository;
+import com.tms.position.repository.PositionJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WriteBehindFlusherTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private PositionJdbcRepository positionJdbcRepository;
+    private AccountSummaryJdbcRepository accountSummaryJdbcRepository;
+    private PositionEventPublisher positionEventPublisher;
+    private TransactionStatus transactionStatus;
+    private TradeDedupFilter tradeDedupFilter;
+    private WriteBehindFlusher flusher;
+
+    // Positions handed to each upsertAll call, with the ids they carried on entry
+    private final List<List<Position>> upserted = new ArrayList<>();
+    private final List<List<Long>> idsOnEntry = new ArrayList<>();
+    private final AtomicInteger nextId = new AtomicInteger(100);
+    private final CountDownLatch firstUpsertEntered = new CountDownLatch(1);
+    private CountDownLatch releaseFirstUpsert = new CountDownLatch(0);
+    private RuntimeException failFirstUpsert;
+    // Holds the flusher inside the commit, after the transaction callback returned
+    private final CountDownLatch commitEntered = new CountDownLatch(1);
+    private CountDownLatch releaseCommit = new CountDownLatch(0);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        positionJdbcRepository = mock(PositionJdbcRepository.class);
+        accountSummaryJdbcRepository = mock(AccountSummaryJdbcRepository.class);
+        positionEventPublisher = mock(PositionEventPublisher.class);
+        transactionStatus = mock(TransactionStatus.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation -> {
+            Object result = invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(transactionStatus);
+            commitEntered.countDown();
+            assertTrue(releaseCommit.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+            return result;
+        });
+
+        doAnswer(invocation -> {
+            List<Position> positions = new ArrayList<>(invocation.getArgument(0));
+            boolean first;
+            synchronized (upserted) {
+                first = upserted.isEmpty();
+                upserted.add(positions);
+                idsOnEntry.add(positions.stream().map(Position::getPositionId).toList());
+            }
+            // Assigned like the real upsert, so a rollback has something to undo
+            positions.forEach(position -> position.setPositionId((long) nextId.incrementAndGet()));
+            if (first) {
+                firstUpsertEntered.countDown();
+                assertTrue(releaseFirstUpsert.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+                if (failFirstUpsert != null) {
+                    throw failFirstUpsert;
+                }
+            }
+            return null;
+        }).when(positionJdbcRepository).upsertAll(anyList());
+
+        PositionProperties properties = new PositionProperties();
+        properties.getBook().setRetryBackoffMs(1);
+        ObjectProvider<PositionBook> positionBook = mock(ObjectProvider.class);
+        // The mocked repository knows no applied trades, so only the index can flag a duplicate
+        tradeDedupFilter = new TradeDedupFilter(positionJdbcRepository, properties, new SimpleMeterRegistry());
+
+        flusher = new WriteBehindFlusher(positionJdbcRepository, accountSummaryJdbcRepository,
+            positionEventPublisher, tradeDedupFilter, transactionTemplate, mock(TradeMetrics.class), properties,
+            positionBook);
+        flusher.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        releaseFirstUpsert.countDown();
+        releaseCommit.countDown();
+        flusher.stop();
+    }
+
+    @Test
+    void publishesAndAcknowledgesOnlyAfterCommit() {
+        PositionChange first = change(1, "AAPL");
+        PositionChange second = change(2, "MSFT");
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+        flusher.submit(Map.of(0, List.of(first), 1, List.of(second)), acknowledgment);
+        assertTrue(flusher.awaitFlushed(TIMEOUT));
+
+        InOrder inOrder = inOrder(positionJdbcRepository, accountSummaryJdbcRepository, positionEventPublisher,
+            acknowledgment);
+        inOrder.verify(positionJdbcRepository).upsertAll(anyList());
+        inOrder.verify(positionJdbcRepository).insertJournal(any());
+        inOrder.verify(accountSummaryJdbcRepository).applyChanges(any());
+        inOrder.verify(positionEventPublisher, times(2)).publish(any());
+        inOrder.verify(acknowledgment).acknowledge();
+        assertFalse(isUnapplied("T-1"));
+        assertFalse(isUnapplied("T-2"));
+    }
+
+    @Test
+    void acknowledgesInSubmissionOrder() throws InterruptedException {
+        releaseFirstUpsert = new CountDownLatch(1);
+        Acknowledgment[] acknowledgments = new Acknowledgment[4];
+        for (int i = 0; i < acknowledgments.length; i++) {
+            acknowledgments[i] = mock(Acknowledgment.class);
+        }
+
+        flusher.submit(Map.of(0, List.of(change(1, "AAPL"))), acknowledgments[0]);
+        awaitFirstUpsert();
+        for (int i = 1; i < acknowledgments.length; i++) {
+            flusher.submit(Map.of(i % 2, List.of(change(i, "AAPL"))), acknowledgments[i]);
+        }
+        releaseFirstUpsert.countDown();
+        assertTrue(flusher.awaitFlushed(TIMEOUT));
+
+        InOrder inOrder = inOrder((Object[]) acknowledgments);
+        for (Acknowledgment acknowledgment : acknowledgments) {
+            inOrder.verify(acknowledgment).acknowledge();
+        }
+    }
+
+    @Test
+    void coalescesQueuedSnapshotsOfOnePosition() throws InterruptedException {
+        releaseFirstUpsert = new CountDownLatch(1);
+        flusher.submit(Map.of(0, List.of(change(1, "AAPL"))), mock(Acknowledgment.class));
+        awaitFirstUpsert();
+
+        PositionChange earlier = change(7, "MSFT");
+        PositionChange later = change(7, "MSFT");
+        flusher.submit(Map.of(0, List.of(earlier)), mock(Acknowledgment.class));
+        flusher.submit(Map.of(0, List.of(later)), mock(Acknowledgment.class));
+        releaseFirstUpsert.countDown();
+        assertTrue(flusher.awaitFlushed(TIMEOUT));
+
+        assertEquals(2, upserted.size());
+        assertEquals(1, upserted.get(1).size());
+        assertSame(later.position(), upserted.get(1).get(0));
+        // The earlier snapshot learns the id assigned to the one written
+        assertEquals(later.position().getPositionId(), earlier.position().getPositionId());
+        verify(positionEventPublisher).publish(earlier);
+        verify(positionEventPublisher).publish(later);
+    }
+
+    @Test
+    void retriesFailedFlushWithRestoredIds() throws InterruptedException {
+        failFirstUpsert = new IllegalStateException("deadlock victim");
+        PositionChange change = change(1, "AAPL");
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+        flusher.submit(Map.of(0, List.of(change)), acknowledgment);
+        assertTrue(flusher.awaitFlushed(TIMEOUT));
+
+        assertEquals(2, upserted.size());
+        assertNull(idsOnEntry.get(1).get(0));
+        verify(positionJdbcRepository, times(1)).insertJournal(any());
+        verify(positionEventPublisher, times(1)).publish(change);
+        verify(acknowledgment, times(1)).acknowledge();
+    }
+
+    @Test
+    void fenceDuringFlushRollsBackWithoutAcknowledging() throws InterruptedException {
+        releaseFirstUpsert = new CountDownLatch(1);
+        PositionChange change = change(1, "AAPL");
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+        flusher.submit(Map.of(0, List.of(change)), acknowledgment);
+        awaitFirstUpsert();
+        flusher.fence(List.of(0));
+        releaseFirstUpsert.countDown();
+        assertTrue(flusher.awaitFlushed(TIMEOUT));
+
+        verify(transactionStatus).setRollbackOnly();
+        assertEquals(1, upserted.size());
+        assertNull(change.position().getPositionId());
+        verify(positionEventPublisher, never()).publish(any());
+        verify(acknowledgment, never()).acknowledge();
+        // Redelivered after reassignment, the trade must be applied again
+        assertTrue(isUnapplied("T-1"));
+    }
+
+    @Test
+    void fenceWaitsForCommitInProgress() throws InterruptedException {
+        releaseCommit = new CountDownLatch(1);
+        flusher.submit(Map.of(0, List.of(change(1, "AAPL"))), mock(Acknowledgment.class));
+        assertTrue(commitEntered.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+
+        CountDownLatch fenced = new CountDownLatch(1);
+        Thread revocation = new Thread(() -> {
+            flusher.fence(List.of(0));
+            fenced.countDown();
+        });
+        revocation.start();
+        // Past the last fence check: the commit goes ahead and the fence waits for it
+        assertFalse(fenced.await(200, TimeUnit.MILLISECONDS));
+        releaseCommit.countDown();
+        assertTrue(fenced.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+        assertTrue(flusher.awaitFlushed(TIMEOUT));
+
+        verify(transactionStatus, never()).setRollbackOnly();
+        assertEquals(1, upserted.size());
+    }
+
+    @Test
+    void partialFenceFlushesLivePartitionsWithoutAcknowledging() throws InterruptedException {
+        releaseFirstUpsert = new CountDownLatch(1);
+        PositionChange revoked = change(1, "AAPL");
+        PositionChange retained = change(2, "MSFT");
+        Acknowledgment acknowledgment = mock(Acknowledgment.class);
+        Map<Integer, List<PositionChange>> changes = new LinkedHashMap<>();
+        changes.put(0, List.of(revoked));
+        changes.put(1, List.of(retained));
+
+        flusher.submit(changes, acknowledgment);
+        awaitFirstUpsert();
+        flusher.fence(List.of(0));
+        releaseFirstUpsert.countDown();
+        assertTrue(flusher.awaitFlushed(TIMEOUT));
+
+        assertEquals(2, upserted.size());
+        assertEquals(List.of(retained.position()), upserted.get(1));
+        ArgumentCaptor<PositionChange> published = ArgumentCaptor.forClass(PositionChange.class);
+        verify(positionEventPublisher).publish(published.capture());
+        assertSame(retained, published.getValue());
+        // The acknowledgment also covers the revoked partition; later polls commit the retained one
+        verify(acknowledgment, never()).acknowledge();
+        assertTrue(isUnapplied("T-1"));
+        assertFalse(isUnapplied("T-2"));
+    }
+
+    @Test
+    void dropsQueuedChangesOfFencedPartitionButFlushesLaterOnes() throws InterruptedException {
+        releaseFirstUpsert = new CountDownLatch(1);
+        Acknowledgment inFlight = mock(Acknowledgment.class);
+        Acknowledgment queued = mock(Acknowledgment.class);
+        Acknowledgment reassigned = mock(Acknowledgment.class);
+        PositionChange queuedChange = change(2, "MSFT");
+        PositionChange reassignedChange = change(3, "IBM");
+
+        flusher.submit(Map.of(1, List.of(change(1, "AAPL"))), inFlight);
+        awaitFirstUpsert();
+        flusher.submit(Map.of(0, List.of(queuedChange)), queued);
+        flusher.fence(List.of(0));
+        // Partition 0 assigned back: submitted under the new epoch
+        flusher.submit(Map.of(0, List.of(reassignedChange)), reassigned);
+        releaseFirstUpsert.countDown();
+        assertTrue(flusher.awaitFlushed(TIMEOUT));
+
+        verify(inFlight).acknowledge();
+        verify(queued, never()).acknowledge();
+        verify(reassigned).acknowledge();
+        verify(positionEventPublisher, never()).publish(queuedChange);
+        verify(positionEventPublisher).publish(reassignedChange);
+        assertTrue(isUnapplied("T-2"));
+        assertFalse(isUnapplied("T-3"));
+        assertTrue(upserted.stream().flatMap(List::stream).noneMatch(position -> position == queuedChange.position()));
+    }
+
+    private boolean isUnapplied(String tradeId) {
+        EnrichedTrade trade = new EnrichedTrade();
+        trade.setTradeId(tradeId);
+        ConsumerRecord<String, EnrichedTrade> record = new ConsumerRecord<>("trades.enriched", 0, 0,
+            System.currentTimeMillis(), TimestampType.CREATE_TIME, -1, -1, "key", trade, new RecordHeaders(),
+            Optional.empty());
+        return !tradeDedupFilter.filterUnapplied(List.of(record)).isEmpty();
+    }
+
+    private void awaitFirstUpsert() throws InterruptedException {
+        assertTrue(firstUpsertEntered.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+    }
+
+    private static PositionChange change(long accountId, String symbol) {
+        Position position = Position.builder()
+            .accountId(accountId)
+            .accountCode("ACC-" + accountId)
+            .instrumentId((long) symbol.hashCode())
+            .symbol(symbol)
+            .quantity(BigDecimal.TEN)
+            .avgCost(BigDecimal.ONE)
+            .costBasis(BigDecimal.TEN)
+            .realizedPnl(BigDecimal.ZERO)
+            .currency("USD")
+            .asOfDate(LocalDate.of(2024, 1, 17))
+            .build();
+        String tradeId = "T-" + accountId;
+        return new PositionChange(position, BigDecimal.ZERO, BigDecimal.TEN, BigDecimal.ZERO, tradeId, null,
+            List.of(new PositionJournalEntry(tradeId, 0, 1_000_000_000L, 0, 100_000_000L, 0)), true,
+            BigDecimal.TEN, 0);
+    }
+}
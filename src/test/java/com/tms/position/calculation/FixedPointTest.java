@@ -0,0 +1,170 @@
+package com.tms.position.calculation;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import static com.tms.position.calculation.FixedPoint.NaN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FixedPointTest {
+
+    private static final BigInteger TWO_64 = BigInteger.ONE.shiftLeft(64);
+    private static final BigInteger LONG_MIN = BigInteger.valueOf(Long.MIN_VALUE);
+    private static final BigInteger LONG_MAX = BigInteger.valueOf(Long.MAX_VALUE);
+
+    private final Random random = new Random(20240117L);
+
+    @Test
+    void divideUnsigned128MatchesBigInteger() {
+        for (int i = 0; i < 200_000; i++) {
+            long divisor = randomDivisor();
+            long hi = Long.remainderUnsigned(random.nextLong(), divisor);
+            long lo = random.nextLong();
+            assertDivision(hi, lo, divisor);
+        }
+    }
+
+    @Test
+    void divideUnsigned128HandlesCornerCases() {
+        long[] divisors = {1, 2, 3, 10, 1L << 32, (1L << 32) - 1, (1L << 32) + 1,
+            1_000_000_000_000L, Long.MAX_VALUE - 1, Long.MAX_VALUE};
+        long[] lows = {0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, 0xFFFF_FFFFL, 0xFFFF_FFFF_0000_0000L};
+        for (long divisor : divisors) {
+            for (long lo : lows) {
+                assertDivision(0, lo, divisor);
+                assertDivision(divisor - 1, lo, divisor);
+                assertDivision((divisor - 1) >>> 1, lo, divisor);
+            }
+        }
+    }
+
+    @Test
+    void mulAddDivHalfUpMatchesBigInteger() {
+        for (int i = 0; i < 200_000; i++) {
+            long a = randomOperand();
+            long b = randomOperand();
+            long c = randomOperand();
+            long d = randomOperand();
+            long divisor = randomDivisor();
+            assertEquals(expected(a, b, c, d, divisor), FixedPoint.mulAddDivHalfUp(a, b, c, d, divisor),
+                () -> "(" + a + " * " + b + " + " + c + " * " + d + ") / " + divisor);
+        }
+    }
+
+    @Test
+    void mulAddDivHalfUpRoundsHalfAwayFromZero() {
+        assertEquals(3, FixedPoint.mulAddDivHalfUp(5, 1, 0, 0, 2));
+        assertEquals(-3, FixedPoint.mulAddDivHalfUp(-5, 1, 0, 0, 2));
+        assertEquals(2, FixedPoint.mulAddDivHalfUp(7, 1, 0, 0, 4));
+        assertEquals(-2, FixedPoint.mulAddDivHalfUp(-7, 1, 0, 0, 4));
+        assertEquals(1, FixedPoint.mulAddDivHalfUp(3, 1, -1, 2, 2));
+        assertEquals(0, FixedPoint.mulAddDivHalfUp(Long.MAX_VALUE, 2, Long.MAX_VALUE, -2, 7));
+    }
+
+    @Test
+    void mulAddDivHalfUpReturnsNaNWhenResultDoesNotFit() {
+        // Quotient just below 2^64, where rounding up must not wrap to zero
+        long divisor = 10;
+        BigInteger numerator = TWO_64.subtract(BigInteger.ONE).multiply(BigInteger.valueOf(divisor))
+            .add(BigInteger.valueOf(9));
+        long[] parts = split(numerator);
+        assertEquals(NaN, FixedPoint.mulAddDivHalfUp(parts[0], 1L << 32, parts[1], 1, divisor));
+
+        assertEquals(NaN, FixedPoint.mulAddDivHalfUp(Long.MAX_VALUE, 2, 0, 0, 1));
+        assertEquals(NaN, FixedPoint.mulAddDivHalfUp(Long.MAX_VALUE, Long.MAX_VALUE, 0, 0, Long.MAX_VALUE - 1));
+        assertEquals(NaN, FixedPoint.mulAddDivHalfUp(Long.MIN_VALUE + 1, 1, -1, 1, 1));
+        assertEquals(Long.MAX_VALUE, FixedPoint.mulAddDivHalfUp(Long.MAX_VALUE, Long.MAX_VALUE, 0, 0, Long.MAX_VALUE));
+        assertEquals(-Long.MAX_VALUE,
+            FixedPoint.mulAddDivHalfUp(Long.MAX_VALUE, -Long.MAX_VALUE, 0, 0, Long.MAX_VALUE));
+    }
+
+    @Test
+    void nanOperandsPropagate() {
+        assertEquals(NaN, FixedPoint.mulAddDivHalfUp(NaN, 1, 1, 1, 1));
+        assertEquals(NaN, FixedPoint.mulAddDivHalfUp(1, 1, 1, NaN, 1));
+        assertEquals(NaN, FixedPoint.mulDivHalfUp(1, NaN, 1));
+        assertEquals(NaN, FixedPoint.add(Long.MAX_VALUE, 1));
+        assertEquals(NaN, FixedPoint.add(Long.MIN_VALUE + 1, -1));
+        assertEquals(NaN, FixedPoint.subtract(Long.MIN_VALUE + 1, 1));
+    }
+
+    @Test
+    void parseAgreesWithFromBigDecimal() {
+        for (int i = 0; i < 50_000; i++) {
+            BigDecimal value = BigDecimal.valueOf(random.nextLong() % 1_000_000_000_000_000L, random.nextInt(9));
+            long scaled = FixedPoint.fromBigDecimal(value, FixedPoint.QUANTITY_SCALE);
+            // fromBigDecimal is limited to 18 digits, parse to the long range
+            if (scaled != NaN) {
+                String text = value.toPlainString();
+                assertEquals(scaled, FixedPoint.parse(text, FixedPoint.QUANTITY_SCALE), text);
+                assertEquals(0, value.compareTo(FixedPoint.toBigDecimal(scaled, FixedPoint.QUANTITY_SCALE)), text);
+            }
+        }
+        assertEquals(NaN, FixedPoint.fromBigDecimal(new BigDecimal("1.000000001"), FixedPoint.QUANTITY_SCALE));
+        assertEquals(NaN, FixedPoint.parse("1.000000001", FixedPoint.QUANTITY_SCALE));
+        assertEquals(100_000_000L,
+            FixedPoint.fromBigDecimal(new BigDecimal("1.0000000000"), FixedPoint.QUANTITY_SCALE));
+        assertEquals(100_000_000L, FixedPoint.parse("1.0000000000", FixedPoint.QUANTITY_SCALE));
+        assertEquals(NaN, FixedPoint.parse("100000000000", FixedPoint.QUANTITY_SCALE));
+    }
+
+    private void assertDivision(long hi, long lo, long divisor) {
+        BigInteger dividend = unsigned(hi).shiftLeft(64).add(unsigned(lo));
+        BigInteger quotient = dividend.divide(BigInteger.valueOf(divisor));
+        assertEquals(quotient.longValue(), FixedPoint.divideUnsigned128(hi, lo, divisor),
+            () -> "(" + Long.toUnsignedString(hi) + ":" + Long.toUnsignedString(lo) + ") / " + divisor);
+    }
+
+    private static long expected(long a, long b, long c, long d, long divisor) {
+        BigInteger numerator = BigInteger.valueOf(a).multiply(BigInteger.valueOf(b))
+            .add(BigInteger.valueOf(c).multiply(BigInteger.valueOf(d)));
+        BigInteger[] division = numerator.abs().divideAndRemainder(BigInteger.valueOf(divisor));
+        BigInteger quotient = division[0];
+        if (division[1].shiftLeft(1).compareTo(BigInteger.valueOf(divisor)) >= 0) {
+            quotient = quotient.add(BigInteger.ONE);
+        }
+        if (numerator.signum() < 0) {
+            quotient = quotient.negate();
+        }
+        // Long.MIN_VALUE is the NaN sentinel and never a valid result
+        if (quotient.compareTo(LONG_MAX) > 0 || quotient.compareTo(LONG_MIN) <= 0) {
+            return NaN;
+        }
+        return quotient.longValue();
+    }
+
+    // Splits a non-negative value below 2^96 into (x, y) with x * 2^32 + y equal to it
+    private static long[] split(BigInteger value) {
+        long high = value.shiftRight(32).longValueExact();
+        long low = value.and(BigInteger.valueOf(0xFFFF_FFFFL)).longValue();
+        return new long[] {high, low};
+    }
+
+    private long randomOperand() {
+        long operand = switch (random.nextInt(4)) {
+            case 0 -> random.nextLong() % 1_000_000_000L;
+            case 1 -> random.nextLong() >> random.nextInt(64);
+            case 2 -> Long.MAX_VALUE - random.nextInt(1_000);
+            default -> random.nextLong();
+        };
+        // NaN operands are covered separately
+        return operand == NaN ? 0 : random.nextBoolean() ? operand : -operand;
+    }
+
+    private long randomDivisor() {
+        return switch (random.nextInt(4)) {
+            case 0 -> FixedPoint.pow10(random.nextInt(19));
+            case 1 -> 1 + random.nextInt(Integer.MAX_VALUE);
+            case 2 -> Long.MAX_VALUE - random.nextInt(1_000);
+            default -> 1 + (random.nextLong() >>> (1 + random.nextInt(63)));
+        };
+    }
+
+    private static BigInteger unsigned(long value) {
+        BigInteger result = BigInteger.valueOf(value);
+        return value < 0 ? result.add(TWO_64) : result;
+    }
+}
@@ -0,0 +1,199 @@
+package com.tms.position.calculation;
+
+import com.tms.position.model.TradeSide;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import static com.tms.position.calculation.FixedPoint.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the fixed-point path against the BigDecimal reference: wherever
+ * {@link PositionCalculator#tryApply} succeeds it must produce exactly the
+ * reference result, and it must fail (leaving the state untouched) exactly
+ * where the reference overflows the column range.
+ */
+class PositionCalculatorDifferentialTest {
+
+    private static final long ONE = pow10(QUANTITY_SCALE);
+    private static final BigInteger AMOUNT_DIVISOR = BigInteger.TEN.pow(QUANTITY_SCALE + COST_SCALE - AMOUNT_SCALE);
+
+    private final PositionCalculator calculator = new PositionCalculator();
+    private final Random random = new Random(20240117L);
+
+    @Test
+    void randomTradeSequencesMatchReference() {
+        for (int sequence = 0; sequence < 2_000; sequence++) {
+            PositionState state = new PositionState();
+            for (int i = 0; i < 100; i++) {
+                TradeSide side = random.nextBoolean() ? TradeSide.BUY : TradeSide.SELL;
+                long price = randomPrice();
+                state = assertMatchesReference(state, side, randomQuantity(state, side, price), price);
+            }
+        }
+    }
+
+    @Test
+    void closesToZeroMatchReference() {
+        for (int i = 0; i < 20_000; i++) {
+            PositionState state = randomState();
+            TradeSide side = state.getQuantity() > 0 ? TradeSide.SELL : TradeSide.BUY;
+            long quantity = Math.abs(state.getQuantity());
+            PositionState closed = assertMatchesReference(state, side, quantity, randomPrice());
+            assertEquals(0, closed.getQuantity());
+            assertEquals(0, closed.getCostBasis());
+        }
+    }
+
+    @Test
+    void flipsMatchReference() {
+        for (int i = 0; i < 20_000; i++) {
+            PositionState state = randomState();
+            TradeSide side = state.getQuantity() > 0 ? TradeSide.SELL : TradeSide.BUY;
+            long quantity = Math.abs(state.getQuantity()) + 1 + random.nextLong(1_000 * ONE);
+            assertMatchesReference(state, side, quantity, randomPrice());
+        }
+    }
+
+    @Test
+    void overflowBoundariesMatchReference() {
+        int overflowed = 0;
+        for (int i = 0; i < 20_000; i++) {
+            PositionState state = randomState();
+            TradeSide side = random.nextBoolean() ? TradeSide.BUY : TradeSide.SELL;
+            long price = 1 + random.nextLong(1_000_000 * ONE);
+            long quantity = boundaryQuantity(state, price);
+            if (!calculator.tryApply(copy(state), side, quantity, price)) {
+                overflowed++;
+            }
+            assertMatchesReference(state, side, quantity, price);
+        }
+        assertTrue(overflowed > 0, "no case crossed the column range");
+    }
+
+    @Test
+    void overflowLeavesStateUntouched() {
+        PositionState state = state(Long.MAX_VALUE - ONE, 5 * ONE, 0);
+        PositionState before = copy(state);
+
+        assertFalse(calculator.tryApply(state, TradeSide.BUY, 2 * ONE, 5 * ONE));
+
+        assertState(before, state, "overflowing buy");
+    }
+
+    @Test
+    void unrepresentableInputsFallBackToReference() {
+        PositionState state = state(10 * ONE, 5 * ONE, 0);
+        PositionState reference = copy(state);
+        BigDecimal quantity = new BigDecimal("3");
+        BigDecimal price = new BigDecimal("7.123456789");
+
+        calculator.apply(state, "SELL", quantity, price);
+        PositionCalculator.applyReference(reference, "SELL", quantity, price);
+
+        assertState(reference, state, "nine decimal place price");
+    }
+
+    /**
+     * Applies one trade through both paths and returns the resulting state, or
+     * the unchanged state when both overflow.
+     */
+    private PositionState assertMatchesReference(PositionState state, TradeSide side, long quantity, long price) {
+        String trade = side + " " + toBigDecimal(quantity, QUANTITY_SCALE) + " @ " + toBigDecimal(price, COST_SCALE)
+            + " on " + describe(state);
+
+        PositionState fixed = copy(state);
+        boolean applied = calculator.tryApply(fixed, side, quantity, price);
+
+        PositionState reference = copy(state);
+        boolean referenceApplied = true;
+        try {
+            PositionCalculator.applyReference(reference, side.name(),
+                toBigDecimal(quantity, QUANTITY_SCALE), toBigDecimal(price, COST_SCALE));
+        } catch (ArithmeticException e) {
+            referenceApplied = false;
+        }
+
+        assertEquals(referenceApplied, applied, trade);
+        if (!applied) {
+            assertState(state, fixed, trade);
+            return state;
+        }
+        assertState(reference, fixed, trade);
+        return fixed;
+    }
+
+    private long randomQuantity(PositionState state, TradeSide side, long price) {
+        return switch (random.nextInt(6)) {
+            case 0 -> Math.max(1, Math.abs(state.getQuantity()));
+            case 1 -> Math.abs(state.getQuantity()) + 1 + random.nextLong(100 * ONE);
+            case 2 -> boundaryQuantity(state, price);
+            default -> randomAmount(1_000_000);
+        };
+    }
+
+    // Quantities around where the cost basis (quantity * price) leaves the column range
+    private long boundaryQuantity(PositionState state, long price) {
+        BigInteger limit = BigInteger.valueOf(Long.MAX_VALUE).multiply(AMOUNT_DIVISOR)
+            .divide(BigInteger.valueOf(Math.max(price, Math.max(state.getAvgCost(), 1))));
+        long quantity = limit.min(BigInteger.valueOf(Long.MAX_VALUE)).longValue()
+            - Math.abs(state.getQuantity()) + random.nextLong(-ONE, ONE);
+        return Math.max(1, quantity);
+    }
+
+    private long randomPrice() {
+        return switch (random.nextInt(4)) {
+            case 0 -> 1 + random.nextLong(100 * ONE);
+            case 1 -> (1 + random.nextLong(10_000)) * ONE;
+            default -> 1 + randomAmount(100_000);
+        };
+    }
+
+    // Up to max units with a random number (0 to 8) of decimal places
+    private long randomAmount(long max) {
+        long unit = pow10(random.nextInt(QUANTITY_SCALE + 1));
+        return (1 + random.nextLong(max * ONE / unit)) * unit;
+    }
+
+    private PositionState randomState() {
+        PositionState state = new PositionState();
+        for (int i = 0; i < 1 + random.nextInt(5); i++) {
+            TradeSide side = random.nextBoolean() ? TradeSide.BUY : TradeSide.SELL;
+            state = assertMatchesReference(state, side, randomAmount(1_000_000), randomPrice());
+        }
+        return state;
+    }
+
+    private static PositionState state(long quantity, long avgCost, long realizedPnl) {
+        PositionState state = new PositionState();
+        state.setQuantity(quantity);
+        state.setAvgCost(avgCost);
+        state.setCostBasis(mulDivHalfUp(Math.abs(quantity), avgCost, AMOUNT_DIVISOR.longValueExact()));
+        state.setRealizedPnl(realizedPnl);
+        return state;
+    }
+
+    private static PositionState copy(PositionState state) {
+        PositionState copy = new PositionState();
+        copy.set(state.getQuantity(), state.getAvgCost(), state.getCostBasis(), state.getRealizedPnl(),
+            state.getLastRealizedPnl());
+        return copy;
+    }
+
+    private static void assertState(PositionState expected, PositionState actual, String trade) {
+        assertEquals(describe(expected), describe(actual), trade);
+    }
+
+    private static String describe(PositionState state) {
+        return "quantity=" + toBigDecimal(state.getQuantity(), QUANTITY_SCALE)
+            + " avgCost=" + toBigDecimal(state.getAvgCost(), COST_SCALE)
+            + " costBasis=" + toBigDecimal(state.getCostBasis(), AMOUNT_SCALE)
+            + " realizedPnl=" + toBigDecimal(state.getRealizedPnl(), AMOUNT_SCALE)
+            + " lastRealizedPnl=" + toBigDecimal(state.getLastRealizedPnl(), AMOUNT_SCALE);
+    }
+}
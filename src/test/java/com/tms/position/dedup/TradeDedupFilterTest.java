@@ -0,0 +1,150 @@
+package com.tms.position.dedup;
+
+import com.tms.position.config.PositionProperties;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.PositionChange;
+import com.tms.position.model.PositionJournalEntry;
+import com.tms.position.repository.PositionJdbcRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TradeDedupFilterTest {
+
+    private PositionJdbcRepository repository;
+    private PositionProperties properties;
+    private TradeDedupFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(PositionJdbcRepository.class);
+        properties = new PositionProperties();
+        filter = new TradeDedupFilter(repository, properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void checksDatabaseBeforeFirstWarmUp() {
+        when(repository.findAppliedTradeIds(anyCollection())).thenReturn(Set.of("T-1"));
+
+        List<ConsumerRecord<String, EnrichedTrade>> result = filter.filterUnapplied(
+            List.of(record(0, "T-1"), record(1, "T-2"), record(2, "T-2")));
+
+        assertEquals(List.of("T-2"), tradeIds(result));
+        assertEquals(1, result.get(0).offset());
+        verify(repository).findAppliedTradeIds(Set.of("T-1", "T-2"));
+    }
+
+    @Test
+    void skipsTradesMarkedApplied() {
+        when(repository.findAppliedTradeIds(anyCollection())).thenReturn(Set.of());
+        filter.markApplied(List.of(trade("T-1")));
+
+        List<ConsumerRecord<String, EnrichedTrade>> result = filter.filterUnapplied(
+            List.of(record(0, "T-1"), record(1, "T-2")));
+
+        assertEquals(List.of("T-2"), tradeIds(result));
+        verify(repository).findAppliedTradeIds(Set.of("T-2"));
+    }
+
+    @Test
+    void skipsTradesOfChangesMarkedApplied() {
+        warmUp();
+        PositionChange change = new PositionChange(null, null, null, null, "T-2", null,
+            List.of(new PositionJournalEntry("T-1", 0, 0, 0, 0, 0), new PositionJournalEntry("T-2", 0, 0, 0, 0, 0)),
+            false, null, 0);
+        filter.markChangesApplied(List.of(change));
+
+        List<ConsumerRecord<String, EnrichedTrade>> result = filter.filterUnapplied(
+            List.of(record(0, "T-1"), record(1, "T-2"), record(2, "T-3")));
+
+        assertEquals(List.of("T-3"), tradeIds(result));
+    }
+
+    @Test
+    void trustsIndexForRecordsProducedAfterWarmUp() {
+        warmUp("T-1");
+
+        List<ConsumerRecord<String, EnrichedTrade>> result = filter.filterUnapplied(
+            List.of(record(0, "T-1"), record(1, "T-2")));
+
+        assertEquals(List.of("T-2"), tradeIds(result));
+        verify(repository, never()).findAppliedTradeIds(anyCollection());
+    }
+
+    @Test
+    void checksDatabaseForRecordsProducedBeforeCoverage() {
+        warmUp();
+        when(repository.findAppliedTradeIds(anyCollection())).thenReturn(Set.of("T-old"));
+        long beforeWindow = System.currentTimeMillis() - properties.getDedup().getWarmWindow().toMillis()
+            - properties.getDedup().getClockSkew().toMillis() * 2;
+
+        List<ConsumerRecord<String, EnrichedTrade>> result = filter.filterUnapplied(
+            List.of(record(0, "T-old", beforeWindow), record(1, "T-new")));
+
+        assertEquals(List.of("T-new"), tradeIds(result));
+        verify(repository).findAppliedTradeIds(Set.of("T-old"));
+
+        // The database hit is remembered
+        assertEquals(List.of(), tradeIds(filter.filterUnapplied(List.of(record(2, "T-old", beforeWindow)))));
+    }
+
+    @Test
+    void passesEverythingThroughWhenDisabled() {
+        properties.getDedup().setEnabled(false);
+        filter = new TradeDedupFilter(repository, properties, new SimpleMeterRegistry());
+        filter.markApplied(List.of(trade("T-1")));
+        List<ConsumerRecord<String, EnrichedTrade>> records = List.of(record(0, "T-1"), record(1, "T-1"));
+
+        assertEquals(records, filter.filterUnapplied(records));
+        verify(repository, never()).findAppliedTradeIds(anyCollection());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void warmUp(String... appliedTradeIds) {
+        doAnswer(invocation -> {
+            BiConsumer<String, LocalDateTime> action = invocation.getArgument(1);
+            for (String tradeId : appliedTradeIds) {
+                action.accept(tradeId, LocalDateTime.now());
+            }
+            return null;
+        }).when(repository).forEachAppliedTradeSince(any(), any(BiConsumer.class));
+        filter.onTradePartitionsAssigned(null, List.of(0));
+    }
+
+    private static ConsumerRecord<String, EnrichedTrade> record(long offset, String tradeId) {
+        return record(offset, tradeId, System.currentTimeMillis());
+    }
+
+    private static ConsumerRecord<String, EnrichedTrade> record(long offset, String tradeId, long timestamp) {
+        return new ConsumerRecord<>("trades.enriched", 0, offset, timestamp, TimestampType.CREATE_TIME,
+            -1, -1, "key", trade(tradeId), new RecordHeaders(), Optional.empty());
+    }
+
+    private static EnrichedTrade trade(String tradeId) {
+        EnrichedTrade trade = new EnrichedTrade();
+        trade.setTradeId(tradeId);
+        return trade;
+    }
+
+    private static List<String> tradeIds(List<ConsumerRecord<String, EnrichedTrade>> records) {
+        return records.stream().map(record -> record.value().getTradeId()).toList();
+    }
+}
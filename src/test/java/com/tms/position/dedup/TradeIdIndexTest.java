@@ -0,0 +1,158 @@
+package com.tms.position.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TradeIdIndexTest {
+
+    // The smallest index: 1024 slots per generation, rotating at 512 ids
+    private static final int GENERATION_IDS = 512;
+
+    @Test
+    void containsAddedIds() {
+        TradeIdIndex index = new TradeIdIndex(1024);
+
+        index.add("T-1", 100);
+        index.add("T-1", 200);
+
+        assertTrue(index.contains("T-1"));
+        assertFalse(index.contains("T-2"));
+        assertEquals(1, index.size());
+        assertEquals(Long.MIN_VALUE, index.coveredSince());
+    }
+
+    @Test
+    void keepsPreviousGenerationAfterRotation() {
+        TradeIdIndex index = new TradeIdIndex(1024);
+
+        for (int i = 0; i < GENERATION_IDS + 10; i++) {
+            index.add("T-" + i, i);
+        }
+
+        for (int i = 0; i < GENERATION_IDS + 10; i++) {
+            assertTrue(index.contains("T-" + i), "T-" + i);
+        }
+        assertEquals(GENERATION_IDS + 10, index.size());
+        assertEquals(Long.MIN_VALUE, index.coveredSince());
+    }
+
+    @Test
+    void dropsOldestGenerationAndRaisesCoverage() {
+        TradeIdIndex index = new TradeIdIndex(1024);
+
+        for (int i = 0; i < 2 * GENERATION_IDS; i++) {
+            index.add("T-" + i, 1_000 + i);
+        }
+
+        for (int i = 0; i < GENERATION_IDS; i++) {
+            assertFalse(index.contains("T-" + i), "T-" + i);
+        }
+        for (int i = GENERATION_IDS; i < 2 * GENERATION_IDS; i++) {
+            assertTrue(index.contains("T-" + i), "T-" + i);
+        }
+        assertEquals(1_000 + GENERATION_IDS - 1, index.coveredSince());
+    }
+
+    @Test
+    void coverageUsesLatestApplyTimeOfDroppedIds() {
+        TradeIdIndex index = new TradeIdIndex(1024);
+
+        // Apply times out of order, as when warming from history
+        for (int i = 0; i < 2 * GENERATION_IDS; i++) {
+            index.add("T-" + i, i == 7 ? 50_000 : i);
+        }
+
+        assertEquals(50_000, index.coveredSince());
+    }
+
+    @Test
+    void concurrentAddsAreAllVisible() throws Exception {
+        TradeIdIndex index = new TradeIdIndex(1 << 18);
+        int threads = 8;
+        int idsPerThread = 10_000;
+
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < idsPerThread; i++) {
+                index.add(thread + "-" + i, i);
+            }
+        });
+
+        for (int thread = 0; thread < threads; thread++) {
+            for (int i = 0; i < idsPerThread; i++) {
+                assertTrue(index.contains(thread + "-" + i), thread + "-" + i);
+            }
+        }
+        assertEquals(threads * idsPerThread, index.size());
+    }
+
+    @Test
+    void concurrentRotationsNeverDropIdsAfterCoverage() throws Exception {
+        TradeIdIndex index = new TradeIdIndex(1024);
+        int threads = 8;
+        int idsPerThread = 5_000;
+        AtomicLong clock = new AtomicLong();
+        long[][] appliedAt = new long[threads][idsPerThread];
+
+        runConcurrently(threads, thread -> {
+            for (int i = 0; i < idsPerThread; i++) {
+                appliedAt[thread][i] = clock.incrementAndGet();
+                index.add(thread + "-" + i, appliedAt[thread][i]);
+            }
+        });
+
+        // A miss must be explained by the coverage watermark
+        long coveredSince = index.coveredSince();
+        for (int thread = 0; thread < threads; thread++) {
+            for (int i = 0; i < idsPerThread; i++) {
+                String tradeId = thread + "-" + i;
+                assertTrue(index.contains(tradeId) || appliedAt[thread][i] <= coveredSince,
+                    tradeId + " applied at " + appliedAt[thread][i] + " missing, covered since " + coveredSince);
+            }
+        }
+    }
+
+    @Test
+    void fingerprintIsNeverEmptySlotMarker() {
+        for (int i = 0; i < 100_000; i++) {
+            assertTrue(TradeIdIndex.fingerprint("T-" + i) != 0);
+        }
+    }
+
+    private interface Worker {
+        void run(int thread);
+    }
+
+    private static void runConcurrently(int threads, Worker worker) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int id = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    worker.run(id);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
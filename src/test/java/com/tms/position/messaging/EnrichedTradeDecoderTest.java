@@ -0,0 +1,175 @@
+package com.tms.position.messaging;
+
+import com.tms.position.calculation.FixedPoint;
+import com.tms.position.model.EnrichedTrade;
+import com.tms.position.model.TradeSide;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EnrichedTradeDecoderTest {
+
+    private static final String TRADE = """
+        {
+          "eventId": "evt-1",
+          "eventType": "TradeEnriched",
+          "tradeId": "T-1",
+          "correlationId": "corr-1",
+          "eventTime": 1705449600000,
+          "side": "BUY",
+          "quantity": "100.5",
+          "price": "185.12345678",
+          "currency": "USD",
+          "tradeDate": "2024-01-17",
+          "account": {"accountId": 7, "accountCode": "ACC-7", "limits": {"max": [1, 2, {"x": null}]}},
+          "instrument": {"instrumentId": "99", "symbol": "AAPL", "exchange": "XNAS"},
+          "fees": [{"type": "commission", "amount": "1.25"}],
+          "flags": null
+        }
+        """;
+
+    private final EnrichedTradeDecoder decoder = new EnrichedTradeDecoder();
+
+    @Test
+    void decodesUsedFieldsAndSkipsTheRest() {
+        EnrichedTrade trade = decode(TRADE);
+
+        assertEquals("T-1", trade.getTradeId());
+        assertEquals("corr-1", trade.getCorrelationId());
+        assertEquals(1_705_449_600_000L, trade.getEventTime());
+        assertEquals("BUY", trade.getSide());
+        assertEquals(TradeSide.BUY, trade.getTradeSide());
+        assertEquals(10_050_000_000L, trade.getScaledQuantity());
+        assertEquals(18_512_345_678L, trade.getScaledPrice());
+        assertTrue(trade.isFixedPoint());
+        assertEquals("USD", trade.getCurrency());
+        assertEquals(LocalDate.of(2024, 1, 17), trade.getTradeDate());
+        assertEquals(7, trade.getAccountId());
+        assertEquals("ACC-7", trade.getAccountCode());
+        assertEquals(99, trade.getInstrumentId());
+        assertEquals("AAPL", trade.getSymbol());
+    }
+
+    @Test
+    void acceptsJsonNumbersForDecimals() {
+        EnrichedTrade trade = decode(TRADE.replace("\"100.5\"", "100.5").replace("\"185.12345678\"", "185"));
+
+        assertEquals(new BigDecimal("100.50000000"), trade.getQuantity());
+        assertEquals(18_500_000_000L, trade.getScaledPrice());
+    }
+
+    @Test
+    void keepsUnrepresentableDecimalsExact() {
+        EnrichedTrade trade = decode(TRADE
+            .replace("\"100.5\"", "\"0.123456789\"")
+            .replace("\"185.12345678\"", "\"123456789012345678901234567890\""));
+
+        assertFalse(trade.isFixedPoint());
+        assertEquals(FixedPoint.NaN, trade.getScaledQuantity());
+        assertEquals(new BigDecimal("0.123456789"), trade.getQuantity());
+        assertEquals(new BigDecimal("123456789012345678901234567890"), trade.getPrice());
+    }
+
+    @Test
+    void unknownSideKeepsTextWithoutTradeSide() {
+        EnrichedTrade trade = decode(TRADE.replace("\"BUY\"", "\"SHORT\""));
+
+        assertEquals("SHORT", trade.getSide());
+        assertNull(trade.getTradeSide());
+    }
+
+    @Test
+    void ignoresNonNumericEventTime() {
+        EnrichedTrade trade = decode(TRADE.replace("1705449600000", "\"2024-01-17T00:00:00Z\""));
+
+        assertEquals(0, trade.getEventTime());
+    }
+
+    @Test
+    void reusedTradeIsResetBetweenMessages() {
+        EnrichedTrade trade = new EnrichedTrade();
+        decoder.decode(bytes(TRADE.replace("\"100.5\"", "\"0.123456789\"")), trade);
+
+        decoder.decode(bytes(TRADE.replace("\"correlationId\": \"corr-1\",", "")), trade);
+
+        assertNull(trade.getCorrelationId());
+        assertNull(trade.getExactQuantity());
+        assertEquals(10_050_000_000L, trade.getScaledQuantity());
+    }
+
+    @Test
+    void roundTripsThroughEncoder() {
+        EnrichedTrade trade = decode(TRADE.replace("\"185.12345678\"", "\"0.0000000001\""));
+
+        EnrichedTrade copy = decoder.decode(new EnrichedTradeEncoder().encode(trade));
+
+        assertEquals(trade.getTradeId(), copy.getTradeId());
+        assertEquals(trade.getCorrelationId(), copy.getCorrelationId());
+        assertEquals(trade.getEventTime(), copy.getEventTime());
+        assertEquals(trade.getSide(), copy.getSide());
+        assertEquals(trade.getQuantity(), copy.getQuantity());
+        assertEquals(trade.getPrice(), copy.getPrice());
+        assertEquals(trade.getCurrency(), copy.getCurrency());
+        assertEquals(trade.getTradeDate(), copy.getTradeDate());
+        assertEquals(trade.getAccountId(), copy.getAccountId());
+        assertEquals(trade.getAccountCode(), copy.getAccountCode());
+        assertEquals(trade.getInstrumentId(), copy.getInstrumentId());
+        assertEquals(trade.getSymbol(), copy.getSymbol());
+    }
+
+    @Test
+    void reportsMissingRequiredFields() {
+        EnrichedTradeDecodingException e = assertThrows(EnrichedTradeDecodingException.class,
+            () -> decode("{\"tradeId\": \"T-1\", \"account\": {\"accountId\": 7}}"));
+
+        assertEquals("Enriched trade T-1 is missing required field(s): account.accountCode "
+            + "instrument.instrumentId instrument.symbol side quantity price tradeDate", e.getMessage());
+    }
+
+    @Test
+    void rejectsMalformedPayloadsAsSerializationException() {
+        String[] payloads = {
+            "",
+            "[]",
+            "not json",
+            TRADE.substring(0, TRADE.length() / 2),
+            TRADE.replace("\"100.5\"", "\"1O0\""),
+            TRADE.replace("\"100.5\"", "true"),
+            TRADE.replace("\"2024-01-17\"", "\"2024-02-30\""),
+            TRADE.replace("\"2024-01-17\"", "\"17/01/2024\""),
+            TRADE.replace("\"2024-01-17\"", "20240117"),
+            TRADE.replace("\"accountId\": 7", "\"accountId\": \"seven\""),
+            TRADE.replace("\"accountId\": 7", "\"accountId\": 7.5"),
+            TRADE.replace("\"symbol\": \"AAPL\"", "\"symbol\": {\"code\": \"AAPL\"}"),
+            TRADE.replace("\"account\": {", "\"account\": 7, \"unused\": {")
+        };
+        for (String payload : payloads) {
+            assertThrows(SerializationException.class, () -> decode(payload), payload);
+        }
+        assertThrows(SerializationException.class, () -> decoder.decode((byte[]) null));
+    }
+
+    @Test
+    void decodesTradeDatesOutsideTheFastPath() {
+        EnrichedTrade trade = decode(TRADE.replace("\"2024-01-17\"", "\"+12024-01-17\""));
+
+        assertEquals(LocalDate.of(12024, 1, 17), trade.getTradeDate());
+    }
+
+    private EnrichedTrade decode(String json) {
+        return decoder.decode(bytes(json));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
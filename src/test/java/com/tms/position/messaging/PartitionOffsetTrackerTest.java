@@ -0,0 +1,149 @@
+package com.tms.position.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PartitionOffsetTrackerTest {
+
+    private final PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+
+    @Test
+    void nothingToCommitBeforeAnyOffset() {
+        assertEquals(-1, tracker.committable());
+        assertTrue(tracker.isIdle());
+    }
+
+    @Test
+    void commitsUpToLowestUnfinishedOffset() {
+        for (long offset = 0; offset < 5; offset++) {
+            tracker.dispatched(offset);
+        }
+        tracker.completed(1);
+        tracker.completed(2);
+
+        assertEquals(-1, tracker.committable());
+
+        tracker.completed(0);
+        assertEquals(3, tracker.committable());
+        tracker.committed(3);
+        assertEquals(-1, tracker.committable());
+
+        tracker.completed(4);
+        assertEquals(-1, tracker.committable());
+        tracker.completed(3);
+        assertEquals(5, tracker.committable());
+        assertTrue(tracker.isIdle());
+    }
+
+    @Test
+    void seenOffsetsOnlyMoveTheHighWaterMark() {
+        tracker.dispatched(10);
+        tracker.seen(11);
+        tracker.seen(12);
+
+        assertEquals(10, tracker.committable());
+        assertFalse(tracker.isIdle());
+
+        tracker.completed(10);
+        assertEquals(13, tracker.committable());
+
+        tracker.seen(5);
+        assertEquals(13, tracker.committable());
+    }
+
+    @Test
+    void matchesModelUnderRandomCompletionOrder() {
+        Random random = new Random(20240117L);
+        TreeSet<Long> pending = new TreeSet<>();
+        long next = 0;
+        long committed = -1;
+
+        for (int step = 0; step < 100_000; step++) {
+            int action = random.nextInt(4);
+            if (action == 0 || pending.isEmpty()) {
+                if (random.nextInt(5) == 0) {
+                    tracker.seen(next);
+                } else {
+                    tracker.dispatched(next);
+                    pending.add(next);
+                }
+                next++;
+            } else if (action == 1) {
+                long done = new ArrayList<>(pending).get(random.nextInt(pending.size()));
+                tracker.completed(done);
+                pending.remove(done);
+            } else {
+                long expected = pending.isEmpty() ? next : pending.first();
+                long committable = tracker.committable();
+                // Offset 0 would commit nothing
+                assertEquals(expected > committed && expected > 0 ? expected : -1, committable, "step " + step);
+                if (committable > 0) {
+                    assertTrue(committable > committed);
+                    tracker.committed(committable);
+                    committed = committable;
+                }
+            }
+        }
+    }
+
+    @Test
+    void concurrentCompletionsEndAtHighWaterMark() throws Exception {
+        int offsets = 100_000;
+        List<Long> order = new ArrayList<>(offsets);
+        for (long offset = 0; offset < offsets; offset++) {
+            tracker.dispatched(offset);
+            order.add(offset);
+        }
+        Collections.shuffle(order, new Random(20240117L));
+
+        ExecutorService lanes = Executors.newFixedThreadPool(4);
+        int slice = offsets / 4;
+        for (int lane = 0; lane < 4; lane++) {
+            List<Long> mine = order.subList(lane * slice, (lane + 1) * slice);
+            lanes.execute(() -> mine.forEach(tracker::completed));
+        }
+        long last = -1;
+        lanes.shutdown();
+        while (!lanes.awaitTermination(1, TimeUnit.MILLISECONDS)) {
+            long committable = tracker.committable();
+            if (committable > 0) {
+                assertTrue(committable > last, committable + " after " + last);
+                tracker.committed(committable);
+                last = committable;
+            }
+        }
+
+        assertTrue(tracker.isIdle());
+        assertEquals(offsets, tracker.committable());
+    }
+
+    @Test
+    void reportsAgeOfLowestPendingOffset() {
+        assertEquals(0, tracker.oldestPendingNanos(1_000));
+
+        tracker.dispatched(7, 100);
+        tracker.dispatched(8, 50);
+        assertEquals(900, tracker.oldestPendingNanos(1_000));
+
+        tracker.completed(7);
+        assertEquals(950, tracker.oldestPendingNanos(1_000));
+
+        // Clock readings from before the dispatch never report a negative age
+        assertEquals(0, tracker.oldestPendingNanos(10));
+
+        tracker.completed(8);
+        assertEquals(0, tracker.oldestPendingNanos(1_000));
+    }
+}
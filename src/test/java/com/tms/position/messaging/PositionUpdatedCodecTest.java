@@ -0,0 +1,138 @@
+package com.tms.position.messaging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tms.position.model.PositionUpdated;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PositionUpdatedCodecTest {
+
+    private final PositionUpdatedCodec codec = new PositionUpdatedCodec();
+
+    @Test
+    void binaryRoundTrip() {
+        PositionUpdated event = event();
+
+        assertEquals(event, codec.decodeBinary(codec.encodeBinary(event)));
+    }
+
+    @Test
+    void binaryRoundTripKeepsNullsAndEdgeValues() {
+        PositionUpdated event = new PositionUpdated(null, -1L, null, Long.MAX_VALUE, Long.MIN_VALUE, "",
+            0L, "\u00dcn\u00efc\u00f8d\u00e9 \u2713", null, null, null, new BigDecimal("-0.00000001"),
+            new BigDecimal("123456789012345678901234567890.12345678"), BigDecimal.ZERO, new BigDecimal("1E+3"),
+            null, null, "", Integer.MAX_VALUE);
+
+        PositionUpdated decoded = codec.decodeBinary(codec.encodeBinary(event));
+
+        assertEquals(event, decoded);
+        // BigDecimal equality includes the scale
+        assertEquals(8, decoded.newQuantity().scale());
+        assertEquals(-3, decoded.costBasis().scale());
+    }
+
+    @Test
+    void binaryKeepsDatesAroundEpoch() {
+        for (LocalDate date : List.of(LocalDate.EPOCH, LocalDate.EPOCH.minusDays(1), LocalDate.MIN, LocalDate.MAX)) {
+            assertEquals(date, codec.decodeBinary(codec.encodeBinary(withAsOfDate(date))).asOfDate());
+        }
+    }
+
+    @Test
+    void rejectsEveryTruncation() {
+        byte[] payload = codec.encodeBinary(event());
+
+        for (int length = 0; length < payload.length; length++) {
+            byte[] truncated = Arrays.copyOf(payload, length);
+            assertThrows(SerializationException.class, () -> codec.decodeBinary(truncated), "length " + length);
+        }
+    }
+
+    @Test
+    void rejectsLengthPastEndOfPayload() {
+        byte[] payload = codec.encodeBinary(event());
+        // The event id length prefix (length + 1, zigzag) directly follows the version byte
+        payload[1] = 0x7E;
+
+        SerializationException e = assertThrows(SerializationException.class, () -> codec.decodeBinary(payload));
+        assertTrue(e.getMessage().contains("exceeds"), e.getMessage());
+    }
+
+    @Test
+    void corruptPayloadsDecodeOrFailWithSerializationException() {
+        byte[] payload = codec.encodeBinary(event());
+        Random random = new Random(20240117L);
+
+        for (int i = 0; i < 100_000; i++) {
+            byte[] corrupt = payload.clone();
+            corrupt[1 + random.nextInt(corrupt.length - 1)] = (byte) random.nextInt(256);
+            try {
+                codec.decodeBinary(corrupt);
+            } catch (SerializationException expected) {
+                // Anything else would escape the consumer's deserialization error handling
+            }
+        }
+    }
+
+    @Test
+    void rejectsDateOutOfRange() {
+        PositionUpdated empty = new PositionUpdated(null, 0L, null, 0L, 0L, null, 0L, null, null, null,
+            null, null, null, null, null, null, null, null, 0);
+        byte[] payload = codec.encodeBinary(empty);
+        // Version byte and eight zero bytes precede the date; replace its null marker with a huge epoch day
+        byte[] hugeDate = {(byte) 0xFE, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF,
+            (byte) 0xFF, (byte) 0xFF, 0x7F};
+        byte[] corrupt = new byte[payload.length - 1 + hugeDate.length];
+        System.arraycopy(payload, 0, corrupt, 0, 9);
+        System.arraycopy(hugeDate, 0, corrupt, 9, hugeDate.length);
+        System.arraycopy(payload, 10, corrupt, 9 + hugeDate.length, payload.length - 10);
+
+        assertThrows(SerializationException.class, () -> codec.decodeBinary(corrupt));
+    }
+
+    @Test
+    void rejectsUnknownSchemaVersion() {
+        byte[] payload = codec.encodeBinary(event());
+        payload[0] = PositionUpdatedCodec.SCHEMA_VERSION + 1;
+
+        assertThrows(SerializationException.class, () -> codec.decodeBinary(payload));
+        assertThrows(SerializationException.class, () -> codec.decodeBinary(null));
+    }
+
+    @Test
+    void jsonUsesEventFieldNamesAndPlainDecimals() throws Exception {
+        JsonNode json = new ObjectMapper().readTree(codec.encodeJson(event()));
+
+        assertEquals("42:T-1", json.get("eventId").asText());
+        assertEquals(PositionUpdated.EVENT_TYPE, json.get("eventType").asText());
+        assertEquals("position-service", json.get("source").asText());
+        assertEquals("42", json.get("positionId").asText());
+        assertEquals("1000", json.get("costBasis").asText());
+        assertEquals("-12.50000000", json.get("quantityChange").asText());
+        assertEquals("2024-01-17", json.get("asOfDate").asText());
+        assertEquals(3, json.get("tradeCount").asInt());
+        assertTrue(json.get("realizedPnl").isNull());
+    }
+
+    private static PositionUpdated event() {
+        return withAsOfDate(LocalDate.of(2024, 1, 17));
+    }
+
+    private static PositionUpdated withAsOfDate(LocalDate asOfDate) {
+        return new PositionUpdated("42:T-1", 1_705_449_600_000L, "corr-1", 42L, 7L, "ACC-7", 99L, "AAPL",
+            asOfDate, "USD", new BigDecimal("100.00000000"), new BigDecimal("87.50000000"),
+            new BigDecimal("-12.50000000"), new BigDecimal("185.12345678"), new BigDecimal("1E+3"), null,
+            "T-1", PositionUpdated.UPDATE_TYPE_TRADE, 3);
+    }
+}